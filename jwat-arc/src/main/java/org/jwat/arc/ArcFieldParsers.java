@@ -21,9 +21,9 @@ import java.net.InetAddress;
 import java.util.Date;
 
 import org.jwat.common.ContentType;
-import org.jwat.common.Diagnosis;
 import org.jwat.common.DiagnosisType;
 import org.jwat.common.Diagnostics;
+import org.jwat.common.IPAddress;
 import org.jwat.common.IPAddressParser;
 import org.jwat.common.Uri;
 import org.jwat.common.UriProfile;
@@ -48,7 +48,7 @@ public class ArcFieldParsers {
      * @param information optional extra information
      */
     public void addInvalidExpectedError(String entity, String... information) {
-        diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_EXPECTED, entity, information));
+        diagnostics.addError(DiagnosisType.INVALID_EXPECTED, entity, information);
     }
 
     /**
@@ -57,7 +57,7 @@ public class ArcFieldParsers {
      * @param entity entity examined
      */
     public void addRequiredMissingError(String entity) {
-        diagnostics.addError(new Diagnosis(DiagnosisType.REQUIRED_MISSING, entity));
+        diagnostics.addError(DiagnosisType.REQUIRED_MISSING, entity);
     }
 
     /**
@@ -150,18 +150,30 @@ public class ArcFieldParsers {
      * @return the IP address or null, if unable to parse the value as an IP-address
      */
     public InetAddress parseIpAddress(String ipAddress, String field, boolean nullable) {
-        InetAddress inetAddr = null;
+        IPAddress ipAddr = parseIPAddress(ipAddress, field, nullable);
+        return (ipAddr != null) ? ipAddr.getInetAddress() : null;
+    }
+
+    /**
+     * Parse and validate an IP address into its numeric form.
+     * @param ipAddress the IP address to parse
+     * @param field field name
+     * @param nullable allow empty or null value
+     * @return the numeric IP address or null, if unable to parse the value as an IP-address
+     */
+    public IPAddress parseIPAddress(String ipAddress, String field, boolean nullable) {
+        IPAddress ipAddr = null;
         if (ipAddress != null && ipAddress.length() > 0) {
-            inetAddr = IPAddressParser.getAddress(ipAddress);
-            if (inetAddr == null) {
-                // Invalid date.
+            ipAddr = IPAddressParser.parse(ipAddress);
+            if (ipAddr == null) {
+                // Invalid ip address.
                 addInvalidExpectedError("'" + field + "' value", ipAddress, "IPv4 or IPv6 format");
             }
         } else if (!nullable) {
             // Missing mandatory value.
             addRequiredMissingError("'" + field + "' value");
         }
-        return inetAddr;
+        return ipAddr;
     }
 
     /**
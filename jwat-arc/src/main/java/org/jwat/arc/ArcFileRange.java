@@ -0,0 +1,77 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.arc;
+
+import java.io.File;
+
+/**
+ * Byte range of a ARC file which can be parsed independently of the rest
+ * of the file. A range starts at a record boundary and contains all the
+ * records starting before the end of the range, the last record may extend
+ * beyond the end of the range.
+ *
+ * @author nicl
+ */
+public class ArcFileRange {
+
+    /** ARC file. */
+    public final File file;
+
+    /** Offset of the first record in the range. */
+    public final long start;
+
+    /** End offset of the range, exclusive. */
+    public final long end;
+
+    /** Is the ARC file GZip compressed. */
+    public final boolean bCompressed;
+
+    /**
+     * Construct a ARC file range.
+     * @param file ARC file
+     * @param start offset of the first record in the range
+     * @param end end offset of the range, exclusive
+     * @param bCompressed is the ARC file GZip compressed
+     */
+    public ArcFileRange(File file, long start, long end, boolean bCompressed) {
+        if (file == null) {
+            throw new IllegalArgumentException("'file' is null!");
+        }
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("Invalid range: " + start + "-" + end);
+        }
+        this.file = file;
+        this.start = start;
+        this.end = end;
+        this.bCompressed = bCompressed;
+    }
+
+    /**
+     * Returns the length of the range.
+     * @return length of the range
+     */
+    public long getLength() {
+        return end - start;
+    }
+
+    @Override
+    public String toString() {
+        return file.getPath() + ":" + start + "-" + end;
+    }
+
+}
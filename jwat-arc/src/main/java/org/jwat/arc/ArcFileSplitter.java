@@ -0,0 +1,435 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.arc;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jwat.common.ByteCountingPushBackInputStream;
+import org.jwat.common.Diagnostics;
+import org.jwat.common.ValidationLevel;
+import org.jwat.gzip.GzipMemberScanner;
+
+/**
+ * Split ARC files into ranges aligned to record boundaries so each range
+ * can be parsed independently, and in parallel, by <code>ArcRangeParser</code>.
+ * ({@link ArcRangeParser})
+ *
+ * @author nicl
+ */
+public class ArcFileSplitter {
+
+    /** Buffer size used when scanning for records. */
+    public static final int DEFAULT_SCAN_BUFFER_SIZE = 65536;
+
+    /** Maximum length of a candidate record header line. */
+    protected static final int HEADER_BUFFER_SIZE = 8192;
+
+    /** Maximum number of newline characters accepted after a record. */
+    protected static final int MAX_TRAILING_NEWLINE_BYTES = ArcConstants.ARC_RECORD_TRAILING_NEWLINES * 2;
+
+    /**
+     * Split a GZip compressed ARC file into approximately equally sized
+     * ranges. Each range starts at a verified GZip member containing the
+     * beginning of an ARC record, see <code>findMemberStart</code>. Files
+     * with fewer members than requested splits return fewer ranges.
+     * @param file GZip compressed ARC file, one record per GZip member
+     * @param splits requested number of ranges
+     * @return list of ranges covering the whole file in offset order
+     * @throws IOException if an I/O error occurs while scanning the file
+     */
+    public static List<ArcFileRange> splitCompressed(File file, int splits) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("'file' is null!");
+        }
+        if (splits <= 0) {
+            throw new IllegalArgumentException("'splits' must be greater than 0!");
+        }
+        long length = file.length();
+        List<Long> boundaries = new ArrayList<Long>();
+        boundaries.add(0L);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long last = 0;
+            long nominal;
+            long start;
+            for (int i=1; i<splits; ++i) {
+                nominal = length / splits * i;
+                if (nominal <= last) {
+                    continue;
+                }
+                start = findMemberStart(raf, nominal, length);
+                if (start == -1) {
+                    break;
+                }
+                if (start > last) {
+                    boundaries.add(start);
+                    last = start;
+                }
+            }
+        } finally {
+            raf.close();
+        }
+        return toRanges(file, boundaries, length, true);
+    }
+
+    /**
+     * Split an uncompressed ARC file into approximately equally sized
+     * ranges. Each range starts at a verified record boundary, see
+     * <code>findRecordStart</code>. Files with fewer records than requested
+     * splits return fewer ranges.
+     * @param file uncompressed ARC file
+     * @param splits requested number of ranges
+     * @return list of ranges covering the whole file in offset order
+     * @throws IOException if an I/O error occurs while scanning the file
+     */
+    public static List<ArcFileRange> splitUncompressed(File file, int splits) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("'file' is null!");
+        }
+        if (splits <= 0) {
+            throw new IllegalArgumentException("'splits' must be greater than 0!");
+        }
+        long length = file.length();
+        List<Long> boundaries = new ArrayList<Long>();
+        boundaries.add(0L);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long last = 0;
+            long nominal;
+            long start;
+            for (int i=1; i<splits; ++i) {
+                nominal = length / splits * i;
+                if (nominal <= last) {
+                    continue;
+                }
+                start = findRecordStart(raf, nominal, length);
+                if (start == -1) {
+                    break;
+                }
+                if (start > last) {
+                    boundaries.add(start);
+                    last = start;
+                }
+            }
+        } finally {
+            raf.close();
+        }
+        return toRanges(file, boundaries, length, false);
+    }
+
+    /**
+     * Find the first GZip member starting with an ARC record header in a
+     * compressed ARC file at or after the given offset. ARC records have no
+     * magic bytes, so each valid GZip member is inflated and its first line
+     * parsed as a record header. This rejects GZip streams embedded in
+     * payloads, for instance in archived ARC files.
+     * @param raf random access file, the file pointer is modified
+     * @param from offset to start scanning from
+     * @param to offset where candidates are no longer considered
+     * @return offset of the first verified member or -1, if none was found
+     * @throws IOException if an I/O error occurs while reading the file
+     */
+    public static long findMemberStart(RandomAccessFile raf, long from, long to) throws IOException {
+        if (raf == null) {
+            throw new IllegalArgumentException("'raf' is null!");
+        }
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("Invalid range: " + from + "-" + to);
+        }
+        ArcReader reader = newHeaderReader();
+        long start = from;
+        while (start < to && (start = GzipMemberScanner.findMemberStart(raf, start, to, null)) != -1) {
+            if (parseMemberHeader(raf, reader, start) != null) {
+                return start;
+            }
+            ++start;
+        }
+        return -1;
+    }
+
+    /**
+     * Parse the record header at the beginning of the GZip member starting
+     * at the given offset.
+     * @param raf random access file, the file pointer is modified
+     * @param reader reader used to parse record headers
+     * @param offset offset of a verified GZip member
+     * @return parsed header or null, if the member does not start with a
+     * valid record header
+     * @throws IOException if an I/O error occurs while reading the file
+     */
+    protected static ArcHeader parseMemberHeader(RandomAccessFile raf, ArcReader reader, long offset) throws IOException {
+        byte[] buffer = new byte[HEADER_BUFFER_SIZE];
+        int len = GzipMemberScanner.inflateMember(raf, offset, buffer);
+        if (len == -1) {
+            return null;
+        }
+        return parseHeaderLine(reader, firstLine(buffer, len));
+    }
+
+    /**
+     * Find the first record boundary in an uncompressed ARC file at or after
+     * the given offset. Candidates are lines with the number of fields of an
+     * ARC record header. A candidate is only accepted if its header parses
+     * and its archive length leads to the end of the file or to another
+     * parsable record header, separated only by newlines. This rejects header
+     * lines embedded in payloads, for instance in archived ARC files.
+     * @param raf random access file, the file pointer is modified
+     * @param from offset to start scanning from
+     * @param to offset where candidates are no longer considered
+     * @return offset of the first verified record or -1, if none was found
+     * @throws IOException if an I/O error occurs while reading the file
+     */
+    public static long findRecordStart(RandomAccessFile raf, long from, long to) throws IOException {
+        if (raf == null) {
+            throw new IllegalArgumentException("'raf' is null!");
+        }
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("Invalid range: " + from + "-" + to);
+        }
+        long length = raf.length();
+        to = Math.min(to, length);
+        ArcReader reader = newHeaderReader();
+        byte[] buffer = new byte[DEFAULT_SCAN_BUFFER_SIZE];
+        // Include the preceding byte so line starts can be checked.
+        long bufferOffset = (from > 0) ? from - 1 : 0;
+        int first = (from > 0) ? 1 : 0;
+        int read;
+        int i;
+        while (bufferOffset < to) {
+            raf.seek(bufferOffset);
+            read = raf.read(buffer, 0, buffer.length);
+            if (read <= first) {
+                break;
+            }
+            i = first;
+            while (i < read && bufferOffset + i < to) {
+                if ((bufferOffset + i == 0 || buffer[i - 1] == '\n') && isHeaderCandidate(buffer, i, read)) {
+                    if (verifyRecord(raf, reader, bufferOffset + i, length)) {
+                        return bufferOffset + i;
+                    }
+                }
+                ++i;
+            }
+            // Overlap by one byte so the byte preceding the next candidate
+            // is available.
+            bufferOffset += read - 1;
+            first = 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Verify that a record starts at the given offset. The record header is
+     * parsed and the archive length used to locate the end of the record
+     * which must be followed by newlines and the end of the file or another
+     * record header.
+     * @param raf random access file, the file pointer is modified
+     * @param reader reader used to parse record headers
+     * @param offset offset of the candidate record
+     * @param length length of the file
+     * @return boolean indicating whether a record starts at the given offset
+     * @throws IOException if an I/O error occurs while reading the file
+     */
+    protected static boolean verifyRecord(RandomAccessFile raf, ArcReader reader, long offset, long length) throws IOException {
+        ArcHeader header = parseRecordHeader(raf, reader, offset);
+        if (header == null) {
+            return false;
+        }
+        long next = offset + header.headerBytes.length + header.archiveLength;
+        if (next > length) {
+            return false;
+        }
+        raf.seek(next);
+        int newlines = 0;
+        int c;
+        while (newlines < MAX_TRAILING_NEWLINE_BYTES && (c = raf.read()) != -1) {
+            if (c != '\r' && c != '\n') {
+                break;
+            }
+            ++newlines;
+        }
+        next += newlines;
+        if (next == length) {
+            return true;
+        }
+        return parseRecordHeader(raf, reader, next) != null;
+    }
+
+    /**
+     * Parse a record header line starting exactly at the given offset.
+     * @param raf random access file, the file pointer is modified
+     * @param reader reader used to parse record headers
+     * @param offset offset of the record header
+     * @return parsed header or null, if no valid header starts at the offset
+     * @throws IOException if an I/O error occurs while reading the file
+     */
+    protected static ArcHeader parseRecordHeader(RandomAccessFile raf, ArcReader reader, long offset) throws IOException {
+        byte[] buffer = new byte[HEADER_BUFFER_SIZE];
+        raf.seek(offset);
+        int len = 0;
+        int read;
+        while (len < buffer.length && (read = raf.read(buffer, len, buffer.length - len)) != -1) {
+            len += read;
+        }
+        return parseHeaderLine(reader, firstLine(buffer, len));
+    }
+
+    /**
+     * Check whether the line starting at an index could be a record header
+     * line, judged by its number of fields. Lines extending beyond the data
+     * in the buffer are always candidates.
+     * @param b byte array
+     * @param idx index of the beginning of the line
+     * @param len number of bytes in the byte array
+     * @return boolean indicating whether the line could be a header line
+     */
+    protected static boolean isHeaderCandidate(byte[] b, int idx, int len) {
+        int fields = 1;
+        while (idx < len) {
+            if (b[idx] == '\n') {
+                return fields == ArcConstants.VERSION_1_BLOCK_NUMBER_FIELDS
+                        || fields == ArcConstants.VERSION_2_BLOCK_NUMBER_FIELDS;
+            }
+            if (b[idx] == ' ') {
+                ++fields;
+            }
+            ++idx;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the first line of a byte array.
+     * @param b byte array
+     * @param len number of bytes in the byte array
+     * @return first line including the terminating newline or null, if no
+     * newline was found
+     */
+    protected static byte[] firstLine(byte[] b, int len) {
+        for (int i=0; i<len; ++i) {
+            if (b[i] == '\n') {
+                return Arrays.copyOf(b, i + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parse a candidate record header line. The URL, archive date and archive
+     * length fields must all be valid.
+     * @param reader reader used to parse record headers
+     * @param line candidate line including the terminating newline or null
+     * @return parsed header or null, if the line is not a valid header
+     * @throws IOException if an I/O error occurs while parsing the line
+     */
+    protected static ArcHeader parseHeaderLine(ArcReader reader, byte[] line) throws IOException {
+        if (line == null || line.length < 2 || line[0] == '\r' || line[0] == '\n') {
+            return null;
+        }
+        ByteCountingPushBackInputStream pbin = new ByteCountingPushBackInputStream(
+                new ByteArrayInputStream(line), ArcReaderUncompressed.PUSHBACK_BUFFER_SIZE);
+        Diagnostics diagnostics = new Diagnostics();
+        diagnostics.setValidationLevel(ValidationLevel.NONE);
+        reader.fieldParsers.diagnostics = diagnostics;
+        ArcHeader header = ArcHeader.initHeader(reader, 0, diagnostics);
+        if (!header.parseHeader(pbin) || header.startOffset != 0
+                || header.urlUri == null || header.archiveDate == null
+                || header.archiveLength == null || header.archiveLength < 0) {
+            return null;
+        }
+        return header;
+    }
+
+    /**
+     * Create a reader used only for parsing candidate record headers.
+     * @return reader used only for parsing candidate record headers
+     */
+    protected static ArcReader newHeaderReader() {
+        ArcReader reader = new ArcReaderUncompressed();
+        reader.setValidationLevel(ValidationLevel.NONE);
+        return reader;
+    }
+
+    /**
+     * Split an ARC file into approximately equally sized ranges using known
+     * record offsets, for instance from a CDX index. No file data is read.
+     * @param file ARC file
+     * @param recordOffsets offsets of the records in the file
+     * @param splits requested number of ranges
+     * @param bCompressed is the ARC file GZip compressed
+     * @return list of ranges covering the whole file in offset order
+     */
+    public static List<ArcFileRange> split(File file, long[] recordOffsets, int splits, boolean bCompressed) {
+        if (file == null) {
+            throw new IllegalArgumentException("'file' is null!");
+        }
+        if (recordOffsets == null) {
+            throw new IllegalArgumentException("'recordOffsets' is null!");
+        }
+        if (splits <= 0) {
+            throw new IllegalArgumentException("'splits' must be greater than 0!");
+        }
+        long length = file.length();
+        long[] offsets = recordOffsets.clone();
+        Arrays.sort(offsets);
+        List<Long> boundaries = new ArrayList<Long>();
+        boundaries.add(0L);
+        long last = 0;
+        long nominal;
+        int idx = 0;
+        for (int i=1; i<splits; ++i) {
+            nominal = length / splits * i;
+            while (idx < offsets.length && offsets[idx] < nominal) {
+                ++idx;
+            }
+            if (idx == offsets.length) {
+                break;
+            }
+            if (offsets[idx] > last && offsets[idx] < length) {
+                boundaries.add(offsets[idx]);
+                last = offsets[idx];
+            }
+        }
+        return toRanges(file, boundaries, length, bCompressed);
+    }
+
+    /**
+     * Convert a list of range start offsets into a list of ranges.
+     * @param file ARC file
+     * @param boundaries increasing list of range start offsets
+     * @param length length of the file
+     * @param bCompressed is the ARC file GZip compressed
+     * @return list of ranges covering the whole file in offset order
+     */
+    protected static List<ArcFileRange> toRanges(File file, List<Long> boundaries, long length, boolean bCompressed) {
+        List<ArcFileRange> ranges = new ArrayList<ArcFileRange>(boundaries.size());
+        long end;
+        for (int i=0; i<boundaries.size(); ++i) {
+            end = (i + 1 < boundaries.size()) ? boundaries.get(i + 1) : length;
+            ranges.add(new ArcFileRange(file, boundaries.get(i), end, bCompressed));
+        }
+        return ranges;
+    }
+
+}
@@ -23,10 +23,10 @@ import java.util.Date;
 
 import org.jwat.common.ByteCountingPushBackInputStream;
 import org.jwat.common.ContentType;
-import org.jwat.common.Diagnosis;
 import org.jwat.common.DiagnosisType;
 import org.jwat.common.Diagnostics;
 import org.jwat.common.HeaderLine;
+import org.jwat.common.IPAddress;
 import org.jwat.common.Scheme;
 import org.jwat.common.Uri;
 import org.jwat.common.UriProfile;
@@ -82,7 +82,11 @@ public class ArcHeader {
 
     /** ARC record IP-Address field string value. */
     public String ipAddressStr;
-    /** IP-Address validated and converted to an <code>InetAddress</code> object. */
+    /** IP-Address validated and converted to its numeric form. */
+    public IPAddress ipAddress;
+    /** IP-Address as an <code>InetAddress</code> object supplied by the
+     *  caller, e.g. for the writer. Not filled in by the parser, use
+     *  <code>getInetAddress()</code> to read it from a parsed header. */
     public InetAddress inetAddress;
 
     /** ARC record archive-date field string value. */
@@ -217,10 +221,10 @@ public class ArcHeader {
             }
         }
         if (bInvalidDataBeforeVersion) {
-            diagnostics.addError(new Diagnosis(DiagnosisType.INVALID, "Data before ARC record"));
+            diagnostics.addError(DiagnosisType.INVALID, "Data before ARC record");
         }
         if (bEmptyLinesBeforeVersion) {
-            diagnostics.addError(new Diagnosis(DiagnosisType.INVALID, "Empty lines before ARC record"));
+            diagnostics.addError(DiagnosisType.INVALID, "Empty lines before ARC record");
         }
         return bHeaderParsed;
     }
@@ -257,7 +261,7 @@ public class ArcHeader {
             if ("-".equals(ipAddressStr)) {
                 ipAddressStr = null;
             }
-            inetAddress = fieldParsers.parseIpAddress(ipAddressStr, ArcConstants.FN_IP_ADDRESS, false);
+            ipAddress = fieldParsers.parseIPAddress(ipAddressStr, ArcConstants.FN_IP_ADDRESS, false);
 
             archiveDateStr = fields[ArcConstants.FN_IDX_ARCHIVE_DATE];
             if ("-".equals(archiveDateStr)) {
@@ -285,7 +289,7 @@ public class ArcHeader {
                 resultCode = fieldParsers.parseInteger(
                         resultCodeStr, ArcConstants.FN_RESULT_CODE, false);
                 if (resultCode != null && (resultCode < 100 || resultCode > 999)) {
-                    diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_EXPECTED, "'" + ArcConstants.FN_RESULT_CODE + "' value", resultCodeStr, "A number between 100 and 999"));
+                    diagnostics.addError(DiagnosisType.INVALID_EXPECTED, "'" + ArcConstants.FN_RESULT_CODE + "' value", resultCodeStr, "A number between 100 and 999");
                 }
 
                 checksumStr = fields[ArcConstants.FN_IDX_CHECKSUM];
@@ -307,7 +311,7 @@ public class ArcHeader {
                 offset = fieldParsers.parseLong(
                         offsetStr, ArcConstants.FN_OFFSET, false);
                 if (offset != null && offset < 0) {
-                    diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_EXPECTED, "'" + ArcConstants.FN_OFFSET + "' value", offsetStr, "A non negative number"));
+                    diagnostics.addError(DiagnosisType.INVALID_EXPECTED, "'" + ArcConstants.FN_OFFSET + "' value", offsetStr, "A non negative number");
                 }
 
                 filenameStr = fields[ArcConstants.FN_IDX_FILENAME];
@@ -322,7 +326,7 @@ public class ArcHeader {
             }
             archiveLength = fieldParsers.parseLong(archiveLengthStr, ArcConstants.FN_ARCHIVE_LENGTH, false);
             if (archiveLength != null && archiveLength < 0) {
-                diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_EXPECTED, "'" + ArcConstants.FN_ARCHIVE_LENGTH + "' value", archiveLengthStr, "A non negative number"));
+                diagnostics.addError(DiagnosisType.INVALID_EXPECTED, "'" + ArcConstants.FN_ARCHIVE_LENGTH + "' value", archiveLengthStr, "A non negative number");
             }
         }
     }
@@ -335,6 +339,19 @@ public class ArcHeader {
         return startOffset;
     }
 
+    /**
+     * Returns the IP-Address as an <code>InetAddress</code> object, if valid.
+     * The object is created from the numeric form on the first call without
+     * any name resolution.
+     * @return IP-Address as an <code>InetAddress</code> or null
+     */
+    public InetAddress getInetAddress() {
+        if (inetAddress != null) {
+            return inetAddress;
+        }
+        return (ipAddress != null) ? ipAddress.getInetAddress() : null;
+    }
+
     /**
      * Add object information to <code>StringBuilder</code>.
      * @param sb <code>StringBuilder</code> where to add information
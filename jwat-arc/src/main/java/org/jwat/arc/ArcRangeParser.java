@@ -0,0 +1,204 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.arc;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.jwat.archive.common.ReaderConfig;
+import org.jwat.common.ByteCountingPushBackInputStream;
+import org.jwat.common.RandomAccessFileInputStream;
+import org.jwat.gzip.GzipReader;
+
+/**
+ * Parse ranges of ARC files, as returned by <code>ArcFileSplitter</code>,
+ * each with its own reader. Ranges not starting at the beginning of the file
+ * read the version block first, so the records are validated against it
+ * just like when the file is read sequentially. ({@link ArcFileSplitter})
+ *
+ * @author nicl
+ */
+public class ArcRangeParser {
+
+    /** Buffer size used to read the input stream. */
+    public static final int DEFAULT_READER_BUFFER_SIZE = 8192;
+
+    /*
+     * Settings.
+     */
+
+    /** Reader configuration used by all the readers. */
+    public ReaderConfig readerConfig = ReaderConfig.DEFAULT;
+
+    /** Buffer size used by the readers. */
+    public int bufferSize = DEFAULT_READER_BUFFER_SIZE;
+
+    /**
+     * Construct instance. Modify the fields directly to customise.
+     */
+    public ArcRangeParser() {
+    }
+
+    /**
+     * Create a reader positioned at the start of a range. The offsets of the
+     * reader and its records are relative to the beginning of the file.
+     * @param raf random access file of the range, the file pointer is modified
+     * @param range range to read
+     * @return reader positioned at the start of the range
+     * @throws IOException if an I/O error occurs while opening the reader
+     */
+    protected ArcReader openReader(RandomAccessFile raf, ArcFileRange range) throws IOException {
+        ArcVersionHeader versionHeader = null;
+        if (range.start > 0) {
+            versionHeader = readVersionHeader(raf, range);
+        }
+        ArcReader reader = newReader(raf, range.start, range.bCompressed);
+        reader.versionHeader = versionHeader;
+        return reader;
+    }
+
+    /**
+     * Read the version block at the beginning of the file of a range.
+     * @param raf random access file of the range, the file pointer is modified
+     * @param range range being read
+     * @return version header of the file or null, if the file does not
+     * start with a version block
+     * @throws IOException if an I/O error occurs while reading the version block
+     */
+    protected ArcVersionHeader readVersionHeader(RandomAccessFile raf, ArcFileRange range) throws IOException {
+        ArcVersionHeader versionHeader = null;
+        ArcReader reader = newReader(raf, 0, range.bCompressed);
+        try {
+            ArcRecordBase record = reader.getNextRecord();
+            if (record != null) {
+                if (record.recordType == ArcRecordBase.RT_VERSION_BLOCK) {
+                    versionHeader = record.versionHeader;
+                }
+                record.close();
+            }
+        } finally {
+            reader.close();
+        }
+        return versionHeader;
+    }
+
+    /**
+     * Create a reader positioned at the given offset.
+     * @param raf random access file, the file pointer is modified
+     * @param offset offset of the first record to read
+     * @param bCompressed is the ARC file GZip compressed
+     * @return reader positioned at the given offset
+     * @throws IOException if an I/O error occurs while opening the reader
+     */
+    protected ArcReader newReader(RandomAccessFile raf, long offset, boolean bCompressed) throws IOException {
+        ArcReader reader;
+        raf.seek(offset);
+        RandomAccessFileInputStream rafin = new RandomAccessFileInputStream(raf);
+        if (bCompressed) {
+            GzipReader gzipReader = new GzipReader(rafin, bufferSize);
+            gzipReader.setOffset(offset);
+            reader = new ArcReaderCompressed(gzipReader, bufferSize, readerConfig);
+        } else {
+            ByteCountingPushBackInputStream pbin = new ByteCountingPushBackInputStream(
+                    new BufferedInputStream(rafin, bufferSize), ArcReaderUncompressed.PUSHBACK_BUFFER_SIZE);
+            pbin.setConsumed(offset);
+            reader = new ArcReaderUncompressed(pbin, readerConfig);
+        }
+        return reader;
+    }
+
+    /**
+     * Read the next record of a range using a reader returned by
+     * <code>openReader</code>.
+     * @param reader reader positioned in the range
+     * @param range range being read
+     * @return next record in the range or null, if the end of the range
+     * has been reached
+     * @throws IOException if an I/O error occurs while reading the record
+     */
+    protected static ArcRecordBase nextRecord(ArcReader reader, ArcFileRange range) throws IOException {
+        ArcRecordBase record = reader.getNextRecord();
+        if (record != null && record.getStartOffset() >= range.end) {
+            record = null;
+        }
+        return record;
+    }
+
+    /**
+     * Returns an ordered <code>Stream</code> over the records of the ranges.
+     * A parallel stream is split at range boundaries and each range is read
+     * by its own reader, so the ranges should be smaller than the total size
+     * divided by the number of cores. Parallel streams run in the common
+     * fork-join pool.
+     * Each record is closed as soon as it has passed through the stream
+     * pipeline, so its payload must be consumed within the pipeline stages.
+     * Close the stream to release the files of a partially consumed stream.
+     * @param ranges ranges to read, in offset order
+     * @param bParallel return a parallel stream
+     * @return <code>Stream</code> over the records of the ranges
+     */
+    public Stream<ArcRecordBase> stream(List<ArcFileRange> ranges, boolean bParallel) {
+        if (ranges == null) {
+            throw new IllegalArgumentException("'ranges' is null!");
+        }
+        final ArcRangeSpliterator spliterator = new ArcRangeSpliterator(this, ranges);
+        return StreamSupport.stream(spliterator, bParallel).onClose(new Runnable() {
+            @Override
+            public void run() {
+                spliterator.closeAll();
+            }
+        });
+    }
+
+    /**
+     * Returns a parallel <code>Stream</code> over the records of an ARC file.
+     * The file is split into ranges using <code>ArcFileSplitter</code>.
+     * ({@link #stream(List, boolean)})
+     * @param file GZip compressed or uncompressed ARC file
+     * @param splits requested number of ranges
+     * @return parallel <code>Stream</code> over the records of the file
+     * @throws IOException if an I/O error occurs while splitting the file
+     */
+    public Stream<ArcRecordBase> parallelStream(File file, int splits) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("'file' is null!");
+        }
+        List<ArcFileRange> ranges;
+        InputStream in = new FileInputStream(file);
+        boolean bCompressed;
+        try {
+            bCompressed = GzipReader.isGzipped(new ByteCountingPushBackInputStream(in, GzipReader.DEFAULT_INPUT_BUFFER_SIZE));
+        } finally {
+            in.close();
+        }
+        if (bCompressed) {
+            ranges = ArcFileSplitter.splitCompressed(file, splits);
+        } else {
+            ranges = ArcFileSplitter.splitUncompressed(file, splits);
+        }
+        return stream(ranges, true);
+    }
+
+}
@@ -20,13 +20,23 @@ package org.jwat.arc;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
-
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.jwat.archive.common.ReaderConfig;
+import org.jwat.archive.common.RecordSampler;
 import org.jwat.common.Diagnostics;
 import org.jwat.common.Digest;
+import org.jwat.common.Fingerprint;
 import org.jwat.common.HeaderLineReader;
 import org.jwat.common.UriProfile;
+import org.jwat.common.ValidationLevel;
 
 /**
  * ARC Reader base class.
@@ -65,6 +75,9 @@ public abstract class ArcReader implements Closeable, Iterable<ArcRecordBase> {
     /** Encoding scheme used to encode payload digest into a string. */
     protected String payloadDigestEncoding = "base32";
 
+    /** Payload fingerprint size, 64 or 128, or 0 if disabled. */
+    protected int payloadFingerprintBits = 0;
+
     /** Max size allowed for a record header. */
     protected int recordHeaderMaxSize;
 
@@ -80,6 +93,18 @@ public abstract class ArcReader implements Closeable, Iterable<ArcRecordBase> {
     /** Report HTTP header errors on reader diagnosis list. */
     protected boolean bReportHttpHeaderError = true;
 
+    /** Postpone HTTP header parsing until the header or payload is requested. */
+    protected boolean bDeferHttpHeader = false;
+
+    /** Only parse record headers and skip the record blocks. */
+    protected boolean bHeaderOnly = false;
+
+    /** Sampler used by <code>getNextSampledRecord</code>. */
+    protected RecordSampler sampler;
+
+    /** Level of validation information collected. */
+    protected ValidationLevel validationLevel = ValidationLevel.FULL;
+
     /*
      * State.
      */
@@ -102,6 +127,15 @@ public abstract class ArcReader implements Closeable, Iterable<ArcRecordBase> {
     /** Aggregate number of warnings encountered while parsing. */
     protected int warnings = 0;
 
+    /** Is the reader currently reading sampled records. */
+    protected boolean bSampling = false;
+
+    /** Was the record being parsed sampled. */
+    protected boolean bSampled = true;
+
+    /** Number of records passed to the sampler. */
+    protected long sampleIndex = 0;
+
     /** Version header from version block. */
     public ArcVersionHeader versionHeader;
 
@@ -121,6 +155,23 @@ public abstract class ArcReader implements Closeable, Iterable<ArcRecordBase> {
         uriProfile = UriProfile.RFC3986;
         recordHeaderMaxSize = 8192;
         payloadHeaderMaxSize = 32768;
+        initParsers();
+    }
+
+    /**
+     * Method used to initialize a readers internal state from a
+     * configuration. Must be called by all configuration constructors.
+     * @param config reader configuration
+     */
+    protected void init(ReaderConfig config) {
+        initParsers();
+        setConfig(config);
+    }
+
+    /**
+     * Create the line reader and field parser used by this reader.
+     */
+    protected void initParsers() {
         lineReader = HeaderLineReader.getReader();
         lineReader.bNameValue = false;
         lineReader.encoding = HeaderLineReader.ENC_US_ASCII;
@@ -150,6 +201,30 @@ public abstract class ArcReader implements Closeable, Iterable<ArcRecordBase> {
         return bIsCompliant;
     }
 
+    /**
+     * Returns the number of records parsed so far.
+     * @return number of records parsed so far
+     */
+    public int getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Returns the aggregated number of errors encountered so far.
+     * @return aggregated number of errors encountered so far
+     */
+    public int getErrorCount() {
+        return errors;
+    }
+
+    /**
+     * Returns the aggregated number of warnings encountered so far.
+     * @return aggregated number of warnings encountered so far
+     */
+    public int getWarningCount() {
+        return warnings;
+    }
+
     /**
      * Is this reader assuming GZip compressed input.
      * @return boolean indicating the assumption of GZip compressed input
@@ -322,6 +397,27 @@ public abstract class ArcReader implements Closeable, Iterable<ArcRecordBase> {
         }
     }
 
+    /**
+     * Get the payload fingerprint size.
+     * @return payload fingerprint size in bits or 0, if disabled
+     */
+    public int getPayloadFingerprintBits() {
+        return payloadFingerprintBits;
+    }
+
+    /**
+     * Set the payload fingerprint size. The fingerprint is a fast
+     * non-cryptographic hash of the payload, computed in the same pass as
+     * any digest and exposed as the record's computed payload fingerprint.
+     * @param bits fingerprint size, 64 or 128, or 0 to disable
+     */
+    public void setPayloadFingerprintBits(int bits) {
+        if (bits != 0) {
+            Fingerprint.checkBits(bits);
+        }
+        payloadFingerprintBits = bits;
+    }
+
     /**
      * Get the max size allowed for a record header.
      * @return max size allowed for a record header
@@ -370,6 +466,165 @@ public abstract class ArcReader implements Closeable, Iterable<ArcRecordBase> {
         this.bReportHttpHeaderError = bReportHttpHeaderError;
     }
 
+    /**
+     * Get a boolean indicating whether HTTP header parsing is deferred.
+     * @return boolean indicating whether HTTP header parsing is deferred
+     */
+    public boolean getDeferHttpHeader() {
+        return bDeferHttpHeader;
+    }
+
+    /**
+     * Enable or disable deferred HTTP header parsing. When enabled the HTTP
+     * header is only parsed when the HTTP header or the payload stream of a
+     * record is first requested. Records closed without accessing either are
+     * never parsed and do not report HTTP header errors. If payload digests
+     * are enabled the HTTP header is always parsed while reading the record.
+     * @param bDeferHttpHeader enable or disable deferred HTTP header parsing
+     */
+    public void setDeferHttpHeader(boolean bDeferHttpHeader) {
+        this.bDeferHttpHeader = bDeferHttpHeader;
+    }
+
+    /**
+     * Get a boolean indicating whether only record headers are parsed.
+     * @return boolean indicating whether only record headers are parsed
+     */
+    public boolean getHeaderOnly() {
+        return bHeaderOnly;
+    }
+
+    /**
+     * Enable or disable header only reading, used to scan record headers as
+     * cheaply as possible. When enabled no payload object is created for the
+     * records read, so no HTTP header is parsed and no digests are computed.
+     * The record block is skipped when the record is closed, seeking past it
+     * if the input stream supports it. The start offset, the number of bytes
+     * consumed and the compressed length are available once the record is
+     * closed.
+     * @param bHeaderOnly enable or disable header only reading
+     */
+    public void setHeaderOnly(boolean bHeaderOnly) {
+        this.bHeaderOnly = bHeaderOnly;
+    }
+
+    /**
+     * Get the sampler used by <code>getNextSampledRecord</code>.
+     * @return sampler or null
+     */
+    public RecordSampler getSampler() {
+        return sampler;
+    }
+
+    /**
+     * Set the sampler used by <code>getNextSampledRecord</code>.
+     * @param sampler sampler or null to return every record
+     */
+    public void setSampler(RecordSampler sampler) {
+        this.sampler = sampler;
+    }
+
+    /**
+     * Returns the index of the last record passed to the sampler, which is
+     * the index of the record returned by <code>getNextSampledRecord</code>.
+     * @return index of the last record passed to the sampler or -1
+     */
+    public long getSampleIndex() {
+        return sampleIndex - 1;
+    }
+
+    /**
+     * Get the next record sampled by the sampler, or every record if no
+     * sampler is set. Whether a record is sampled is decided as soon as its
+     * header has been parsed. The blocks of unsampled records are skipped
+     * just like in header only mode: uncompressed input that supports it is
+     * seeked past the block, compressed input is inflated but nothing else
+     * is processed. To avoid reading unsampled records at all, select
+     * record offsets from an index using <code>RecordSampler.select</code>
+     * and read those records using <code>getNextRecordFrom</code>.
+     * The version block is always returned and is not passed to the
+     * sampler, so the index of the first ARC record is 0.
+     * @return next sampled record or null
+     * @throws IOException if an I/O error occurs while reading records
+     */
+    public ArcRecordBase getNextSampledRecord() throws IOException {
+        ArcRecordBase record;
+        bSampling = (sampler != null);
+        try {
+            do {
+                bSampled = true;
+                record = getNextRecord();
+            } while (record != null && !bSampled);
+        } finally {
+            bSampling = false;
+        }
+        return record;
+    }
+
+    /**
+     * Ask the sampler whether the record being parsed is sampled. Called
+     * once a record header has been parsed, unsampled records are parsed as
+     * in header only mode.
+     * @return true if the record is sampled or no records are being sampled
+     */
+    protected boolean sampleRecord() {
+        if (!bSampling) {
+            return true;
+        }
+        bSampled = sampler.sample(sampleIndex++);
+        return bSampled;
+    }
+
+    /**
+     * Get the level of validation information collected.
+     * @return level of validation information collected
+     */
+    public ValidationLevel getValidationLevel() {
+        return validationLevel;
+    }
+
+    /**
+     * Set the level of validation information collected while reading.
+     * <code>FULL</code> reports every error and warning as a diagnosis,
+     * <code>COUNT_ONLY</code> only counts them and <code>NONE</code> skips
+     * them altogether in which case everything is reported as compliant.
+     * @param validationLevel level of validation information collected
+     */
+    public void setValidationLevel(ValidationLevel validationLevel) {
+        if (validationLevel == null) {
+            throw new IllegalArgumentException("'validationLevel' is null!");
+        }
+        this.validationLevel = validationLevel;
+        diagnostics.setValidationLevel(validationLevel);
+    }
+
+    /**
+     * Apply a shared reader configuration. The configuration values are
+     * copied into this reader, so the settings can still be changed
+     * individually afterwards without affecting the shared configuration.
+     * @param config reader configuration
+     */
+    public void setConfig(ReaderConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException("'config' is null!");
+        }
+        bStrict = config.bStrict;
+        uriProfile = config.uriProfile;
+        bBlockDigest = config.bBlockDigest;
+        blockDigestAlgorithm = config.blockDigestAlgorithm;
+        blockDigestEncoding = config.blockDigestEncoding;
+        bPayloadDigest = config.bPayloadDigest;
+        payloadDigestAlgorithm = config.payloadDigestAlgorithm;
+        payloadDigestEncoding = config.payloadDigestEncoding;
+        payloadFingerprintBits = config.payloadFingerprintBits;
+        recordHeaderMaxSize = config.recordHeaderMaxSize;
+        payloadHeaderMaxSize = config.payloadHeaderMaxSize;
+        bReportHttpHeaderError = config.bReportHttpHeaderError;
+        bDeferHttpHeader = config.bDeferHttpHeader;
+        bHeaderOnly = config.bHeaderOnly;
+        setValidationLevel(config.validationLevel);
+    }
+
     /**
      * Close current record resource(s) and input stream(s).
      */
@@ -494,4 +749,44 @@ public abstract class ArcReader implements Closeable, Iterable<ArcRecordBase> {
         };
     }
 
+    /**
+     * Returns a sequential, ordered <code>Stream</code> over the records as
+     * they are being parsed. Unlike the iterator, exceptions thrown during
+     * parsing are rethrown as <code>UncheckedIOException</code>.
+     * Each record is closed as soon as it has passed through the stream
+     * pipeline, so its payload must be consumed within the pipeline stages.
+     * Stateful operations such as <code>sorted</code> must not be used on
+     * the records themselves, only on values mapped from them.
+     * The stream does not close the reader.
+     * The stream is sequential, parallel streams over a file are returned
+     * by <code>ArcReaderFactory.parallelStream</code>.
+     * @return sequential <code>Stream</code> over the records
+     */
+    public Stream<ArcRecordBase> stream() {
+        Spliterator<ArcRecordBase> spliterator = new Spliterators.AbstractSpliterator<ArcRecordBase>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super ArcRecordBase> action) {
+                ArcRecordBase record;
+                try {
+                    record = getNextRecord();
+                    if (record == null) {
+                        return false;
+                    }
+                    action.accept(record);
+                    record.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return true;
+            }
+            @Override
+            public Spliterator<ArcRecordBase> trySplit() {
+                // Records are read from a single stream and are only valid
+                // until the next record is read, so they are never batched.
+                return null;
+            }
+        };
+        return StreamSupport.stream(spliterator, false);
+    }
+
 }
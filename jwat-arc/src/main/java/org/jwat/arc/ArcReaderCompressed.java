@@ -21,6 +21,7 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.jwat.archive.common.ReaderConfig;
 import org.jwat.common.ByteCountingPushBackInputStream;
 import org.jwat.gzip.GzipEntry;
 import org.jwat.gzip.GzipReader;
@@ -47,6 +48,12 @@ public class ArcReaderCompressed extends ArcReader {
     /** GZip entry for the current record, if random access methods used. */
     protected GzipEntry currentEntry;
 
+    /** Reuse one GZip reader for all the random access calls. */
+    protected boolean bReuseGzipReader = false;
+
+    /** GZip reader reused by the random access methods, if enabled. */
+    protected GzipReader randomAccessReader;
+
     /**
      * This constructor is used to get random access to records.
      * The records are then accessed using the getNextRecordFrom methods
@@ -89,11 +96,101 @@ public class ArcReaderCompressed extends ArcReader {
         init();
     }
 
+    /**
+     * This constructor is used to get random access to records using the
+     * supplied configuration and its shared precomputed state.
+     * The records are then accessed using the getNextRecordFrom methods
+     * using a supplied input stream for each record.
+     * @param config reader configuration
+     */
+    public ArcReaderCompressed(ReaderConfig config) {
+        init(config);
+    }
+
+    /**
+     * Construct reader using the supplied input stream, configuration and
+     * its shared precomputed state.
+     * This method is primarily for sequential access to records.
+     * @param reader GZip reader
+     * @param config reader configuration
+     */
+    public ArcReaderCompressed(GzipReader reader, ReaderConfig config) {
+        if (reader == null) {
+            throw new IllegalArgumentException("'reader' is null");
+        }
+        this.reader = reader;
+        init(config);
+    }
+
+    /**
+     * Construct object using supplied <code>GzipInputStream</code>,
+     * configuration and its shared precomputed state.
+     * This method is primarily for sequential access to records.
+     * @param reader GZip reader
+     * @param buffer_size buffer size used on entries
+     * @param config reader configuration
+     */
+    public ArcReaderCompressed(GzipReader reader, int buffer_size, ReaderConfig config) {
+        if (reader == null) {
+            throw new IllegalArgumentException("'reader' is null");
+        }
+        if (buffer_size <= 0) {
+            throw new IllegalArgumentException(
+                    "The 'buffer_size' is less than or equal to zero: "
+                    + buffer_size);
+        }
+        this.reader = reader;
+        this.bufferSize = buffer_size;
+        init(config);
+    }
+
     @Override
     public boolean isCompressed() {
         return true;
     }
 
+    /**
+     * Get a boolean indicating whether the random access methods reuse one
+     * GZip reader.
+     * @return boolean indicating whether the random access methods reuse one GZip reader
+     */
+    public boolean getReuseGzipReader() {
+        return bReuseGzipReader;
+    }
+
+    /**
+     * Enable or disable reuse of one GZip reader, including its inflater and
+     * buffers, by the <code>getNextRecordFrom</code> methods instead of
+     * creating a new GZip reader for each call. When enabled a record
+     * returned by a previous call can no longer be read once the next
+     * record has been requested. The reused GZip reader is closed, along
+     * with the input stream of the last call, when this reader is closed.
+     * @param bReuseGzipReader enable or disable reuse of one GZip reader
+     */
+    public void setReuseGzipReader(boolean bReuseGzipReader) {
+        this.bReuseGzipReader = bReuseGzipReader;
+    }
+
+    /**
+     * Returns the GZip reader to use for a random access call, either a new
+     * reader or the reused reader switched to the supplied input stream.
+     * The sequential reader is never used.
+     * @param rin input stream positioned at the GZip entry
+     * @return GZip reader reading from the supplied input stream
+     */
+    protected GzipReader getRandomAccessReader(InputStream rin) {
+        if (!bReuseGzipReader) {
+            return new GzipReader(rin);
+        }
+        if (randomAccessReader == null) {
+            randomAccessReader = new GzipReader(rin);
+        } else {
+            // Reuse the inflater and buffers of the previous call.
+            randomAccessReader.setInputStream(rin);
+        }
+        return randomAccessReader;
+    }
+
     @Override
     public void close() {
         if (currentRecord != null) {
@@ -110,6 +207,12 @@ public class ArcReaderCompressed extends ArcReader {
             } catch (IOException e) { /* ignore */ }
             reader = null;
         }
+        if (randomAccessReader != null) {
+            try {
+                randomAccessReader.close();
+            } catch (IOException e) { /* ignore */ }
+            randomAccessReader = null;
+        }
     }
 
     @Override
@@ -118,6 +221,9 @@ public class ArcReaderCompressed extends ArcReader {
             try {
                 currentEntry.close();
                 consumed += currentEntry.consumed;
+                if (currentRecord != null) {
+                    currentRecord.compressedLength = currentEntry.consumed;
+                }
             } catch (IOException e) { /* ignore */ }
             currentEntry = null;
         } else {
@@ -219,7 +325,7 @@ public class ArcReaderCompressed extends ArcReader {
                     "The 'offset' is less than -1: " + offset);
         }
         currentRecord = null;
-        currentReader = new GzipReader(rin);
+        currentReader = getRandomAccessReader(rin);
         currentEntry = currentReader.getNextEntry();
         if (currentEntry != null) {
             ByteCountingPushBackInputStream pbin =
@@ -258,7 +364,7 @@ public class ArcReaderCompressed extends ArcReader {
                     + buffer_size);
         }
         currentRecord = null;
-        currentReader = new GzipReader(rin);
+        currentReader = getRandomAccessReader(rin);
         currentEntry = currentReader.getNextEntry();
         if (currentEntry != null) {
             ByteCountingPushBackInputStream pbin =
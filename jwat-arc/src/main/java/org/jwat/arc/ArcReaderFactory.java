@@ -18,9 +18,11 @@
 package org.jwat.arc;
 
 import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.stream.Stream;
 
 import org.jwat.archive.common.ReaderFactoryAbstract;
 import org.jwat.common.ByteCountingPushBackInputStream;
@@ -43,6 +45,9 @@ public class ArcReaderFactory extends ReaderFactoryAbstract {
     /** Buffer size used by <code>PushbackInputStream</code>. */
     public static final int PUSHBACK_BUFFER_SIZE = 32;
 
+    /** Number of ranges per available processor used by <code>parallelStream</code>. */
+    public static final int PARALLEL_SPLITS_PER_PROCESSOR = 4;
+
     /**
      * Private constructor to enforce factory methods.
      */
@@ -242,4 +247,27 @@ public class ArcReaderFactory extends ReaderFactoryAbstract {
                                 new BufferedInputStream(in, buffer_size)));
     }
 
+    /**
+     * Returns a parallel <code>Stream</code> over the records of a GZip
+     * compressed or uncompressed ARC file. The file is split into
+     * <code>PARALLEL_SPLITS_PER_PROCESSOR</code> ranges per available
+     * processor, each read by its own reader. Use <code>ArcRangeParser</code>
+     * directly to configure the readers or the splits.
+     * Each record is closed as soon as it has passed through the stream
+     * pipeline, so its payload must be consumed within the pipeline stages.
+     * Close the stream to release the files of a partially consumed stream.
+     * ({@link ArcRangeParser#parallelStream(File, int)})
+     * @param file ARC file
+     * @return parallel <code>Stream</code> over the records of the file
+     * @throws IOException if an I/O error occurs while splitting the file
+     */
+    public static Stream<ArcRecordBase> parallelStream(File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException(
+                    "The file 'file' is null");
+        }
+        return new ArcRangeParser().parallelStream(file,
+                Runtime.getRuntime().availableProcessors() * PARALLEL_SPLITS_PER_PROCESSOR);
+    }
+
 }
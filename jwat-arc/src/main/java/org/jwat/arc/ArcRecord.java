@@ -20,11 +20,11 @@ package org.jwat.arc;
 import java.io.IOException;
 
 import org.jwat.common.ByteCountingPushBackInputStream;
-import org.jwat.common.Diagnosis;
 import org.jwat.common.DiagnosisType;
 import org.jwat.common.Diagnostics;
 import org.jwat.common.HttpHeader;
 import org.jwat.common.Payload;
+import org.jwat.common.PayloadOnAccessHandler;
 
 /**
  * This class represents an ARC record and header including possible
@@ -35,7 +35,7 @@ import org.jwat.common.Payload;
  *
  * @author lbihanic, selghissassi, nicl
  */
-public class ArcRecord extends ArcRecordBase {
+public class ArcRecord extends ArcRecordBase implements PayloadOnAccessHandler {
 
     /** Buffer size used in toString(). */
     public static final int TOSTRING_BUFFER_SIZE = 256;
@@ -89,43 +89,80 @@ public class ArcRecord extends ArcRecordBase {
     protected void processPayload(ByteCountingPushBackInputStream in,
                                         ArcReader reader) throws IOException {
         payload = null;
-        if (header.archiveLength != null && header.archiveLength > 0L) {
+        boolean bSampled = reader.sampleRecord();
+        if (reader.bHeaderOnly || !bSampled) {
+            // Skip the payload when the record is closed.
+            if (header.archiveLength != null && header.archiveLength > 0L) {
+                skipLength = header.archiveLength;
+            }
+        } else if (header.archiveLength != null && header.archiveLength > 0L) {
             String digestAlgorithm = null;
             if (reader.bBlockDigest) {
                 digestAlgorithm = reader.blockDigestAlgorithm;
             }
+            // The block fingerprint is also computed for HTTP records,
+            // in case the HTTP header turns out to be invalid.
             payload = Payload.processPayload(in, header.archiveLength.longValue(),
-                    reader.payloadHeaderMaxSize, digestAlgorithm);
+                    reader.payloadHeaderMaxSize, digestAlgorithm, reader.payloadFingerprintBits);
             payload.setOnClosedHandler(this);
             // HttpHeader.
             if (HttpHeader.isSupported(header.urlScheme)) {
                 // Never! -> && !ArcConstants.CONTENT_TYPE_NO_TYPE.equals(header.contentTypeStr)
-                digestAlgorithm = null;
-                if (reader.bPayloadDigest) {
-                    digestAlgorithm = reader.payloadDigestAlgorithm;
-                }
-                // Try to read a valid HTTP response header from the payload.
-                httpHeader = HttpHeader.processPayload(HttpHeader.HT_RESPONSE,
-                            payload.getInputStream(), header.archiveLength.longValue(),
-                            digestAlgorithm);
-                if (httpHeader != null) {
-                    if (httpHeader.isValid()) {
-                        payload.setPayloadHeaderWrapped(httpHeader);
-                    } else if (reader.bReportHttpHeaderError) {
-                        diagnostics.addWarning(
-                                DiagnosisType.ERROR, "http header", "Unable to parse http header!");
+                if (reader.bDeferHttpHeader && !reader.bPayloadDigest && reader.payloadFingerprintBits == 0) {
+                    // Postpone parsing until the http header or the
+                    // payload is requested.
+                    payload.setOnAccessHandler(this);
+                } else {
+                    digestAlgorithm = null;
+                    if (reader.bPayloadDigest) {
+                        digestAlgorithm = reader.payloadDigestAlgorithm;
                     }
+                    processHttpHeader(digestAlgorithm);
                 }
             }
         } else if (HttpHeader.isSupported(header.urlScheme)) {
             // Never! -> && !ArcConstants.CONTENT_TYPE_NO_TYPE.equals(header.contentTypeStr)
-            diagnostics.addError(new Diagnosis(DiagnosisType.ERROR_EXPECTED,
+            diagnostics.addError(DiagnosisType.ERROR_EXPECTED,
                     ArcConstants.ARC_FILE,
-                    "Expected payload not found in the record block"));
+                    "Expected payload not found in the record block");
         }
         return;
     }
 
+    /**
+     * Try to read a valid HTTP response header from the payload.
+     * @param digestAlgorithm payload digest algorithm or null
+     * @throws IOException if an I/O error occurs while reading the header
+     */
+    protected void processHttpHeader(String digestAlgorithm) throws IOException {
+        httpHeader = HttpHeader.processPayload(HttpHeader.HT_RESPONSE,
+                    payload.getInputStream(), header.archiveLength.longValue(),
+                    digestAlgorithm, reader.payloadFingerprintBits);
+        if (httpHeader != null) {
+            if (httpHeader.isValid()) {
+                payload.setPayloadHeaderWrapped(httpHeader);
+            } else if (reader.bReportHttpHeaderError) {
+                diagnostics.addWarning(
+                        DiagnosisType.ERROR, "http header", "Unable to parse http header!");
+            }
+        }
+    }
+
+    /**
+     * Called the first time the payload is accessed, if the parsing of the
+     * HTTP header was postponed.
+     * @param payload payload object being accessed
+     */
+    @Override
+    public void payloadAccessed(Payload payload) {
+        try {
+            processHttpHeader(null);
+        } catch (IOException e) {
+            diagnostics.addError(
+                    DiagnosisType.ERROR, "http header", e.toString());
+        }
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder(TOSTRING_BUFFER_SIZE);
@@ -28,7 +28,6 @@ import org.jwat.common.Base32;
 import org.jwat.common.Base64;
 import org.jwat.common.ByteCountingPushBackInputStream;
 import org.jwat.common.ContentType;
-import org.jwat.common.Diagnosis;
 import org.jwat.common.DiagnosisType;
 import org.jwat.common.Diagnostics;
 import org.jwat.common.Digest;
@@ -79,6 +78,10 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
     /** Uncompressed bytes consumed while validating this record. */
     protected long consumed;
 
+    /** Bytes occupied by this record in the archive file, the GZip entry
+     *  size for compressed files, or -1 until the record is closed. */
+    protected long compressedLength = -1;
+
     /** Validation errors and warnings. */
     public Diagnostics diagnostics;
 
@@ -114,6 +117,9 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
     /** Payload object if any exists. */
     protected Payload payload;
 
+    /** Length of the record block skipped on close in header only mode. */
+    protected long skipLength;
+
     /** Has all the payload data been processed while reading the record header. */
     protected boolean bHasPseudoEmptyPayload;
 
@@ -126,6 +132,10 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
     /** Computed payload digest. */
     public Digest computedPayloadDigest;
 
+    /** Computed payload fingerprint, of the HTTP payload for records with
+     *  a valid HTTP header otherwise of the block. (Null is equal to not computed) */
+    public byte[] computedPayloadFingerprint;
+
     /** This array is used to store metadata which should not be present.
      *  Only available for forensic purposes. */
     public byte[] excessiveMetadata;
@@ -143,6 +153,7 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
         long startOffset = in.getConsumed();
         // Initialize ArcHeader with required context.
         Diagnostics diagnostics = new Diagnostics();
+        diagnostics.setValidationLevel(reader.validationLevel);
         ArcHeader header = ArcHeader.initHeader(reader, startOffset, diagnostics);
         // Initialize ArcFieldParser to report diagnoses here.
         reader.fieldParsers.diagnostics = diagnostics;
@@ -173,30 +184,31 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
             // a plain ARC file, not a GZipped ARC.
             if ((header.offset != null) && (header.startOffset > 0L)
                                 && (header.offset.longValue() != header.startOffset)) {
-                diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_EXPECTED,
+                diagnostics.addError(DiagnosisType.INVALID_EXPECTED,
                         "'" + ArcConstants.FN_OFFSET + "' value",
                         header.offset.toString(),
-                        Long.toString(header.startOffset)));
+                        Long.toString(header.startOffset));
             }
             if (reader.records == 1) {
-                if (record.recordType == ArcRecordBase.RT_ARC_RECORD) {
-                    diagnostics.addError(new Diagnosis(DiagnosisType.ERROR_EXPECTED,
+                // Readers of a range of the file are given the version block.
+                if (record.recordType == ArcRecordBase.RT_ARC_RECORD && reader.versionHeader == null) {
+                    diagnostics.addError(DiagnosisType.ERROR_EXPECTED,
                             ArcConstants.ARC_FILE,
-                            "Expected a version block as the first record."));
+                            "Expected a version block as the first record.");
                 }
             } else {
                 if (record.recordType == ArcRecordBase.RT_VERSION_BLOCK) {
-                    diagnostics.addError(new Diagnosis(DiagnosisType.ERROR_EXPECTED,
+                    diagnostics.addError(DiagnosisType.ERROR_EXPECTED,
                             ArcConstants.ARC_FILE,
-                            "Expected an ARC record not version block."));
+                            "Expected an ARC record not version block.");
                 }
             }
             if (reader.versionHeader != null && reader.versionHeader.blockDescVersion > 0
                     && record.header.recordFieldVersion != reader.versionHeader.blockDescVersion) {
-                diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_EXPECTED,
+                diagnostics.addError(DiagnosisType.INVALID_EXPECTED,
                         "ARC record does not match the version block definition",
                         Integer.toString(record.header.recordFieldVersion),
-                        Integer.toString(reader.versionHeader.blockDescVersion)));
+                        Integer.toString(reader.versionHeader.blockDescVersion));
             }
             // Preliminary compliance status, will be updated when the
             // payload/record is closed.
@@ -212,18 +224,18 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
             reader.consumed += excess;
             reader.diagnostics.addAll(diagnostics);
             if (diagnostics.hasErrors() || diagnostics.hasWarnings()) {
-                reader.errors += diagnostics.getErrors().size();
-                reader.warnings += diagnostics.getWarnings().size();
+                reader.errors += diagnostics.getErrorCount();
+                reader.warnings += diagnostics.getWarningCount();
                 reader.bIsCompliant = false;
             }
             // Require one or more records to be present.
             if (reader.records == 0) {
-                reader.diagnostics.addError(new Diagnosis(DiagnosisType.ERROR_EXPECTED, "ARC file", "One or more records"));
+                reader.diagnostics.addError(DiagnosisType.ERROR_EXPECTED, "ARC file", "One or more records");
                 ++reader.errors;
                 reader.bIsCompliant = false;
             }
             if (excess != 0) {
-                reader.diagnostics.addError(new Diagnosis(DiagnosisType.UNDESIRED_DATA, "Trailing data", "Garbage data found at offset=" + startOffset + " - length=" + excess));
+                reader.diagnostics.addError(DiagnosisType.UNDESIRED_DATA, "Trailing data", "Garbage data found at offset=" + startOffset + " - length=" + excess);
             }
         }
         return record;
@@ -298,6 +310,18 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
                         }
                     }
                 }
+                // Fingerprint of the HTTP payload or of the block.
+                if (payloadHeaderWrapped != null && payloadHeaderWrapped.isValid()) {
+                    computedPayloadFingerprint = payloadHeaderWrapped.getFingerprint();
+                } else {
+                    computedPayloadFingerprint = payload.getFingerprint();
+                }
+            } else if (skipLength > 0) {
+                // Header only, skip the record block.
+                if (in.skipFully(skipLength) < skipLength) {
+                    // Payload length mismatch - Payload truncated
+                    addErrorDiagnosis(DiagnosisType.INVALID_DATA, "Payload length mismatch", "Payload truncated");
+                }
             }
             // Check for trailing newlines.
             trailingNewLines = nlp.parseLFs(in, diagnostics);
@@ -310,14 +334,15 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
             // isCompliant status update.
             if (diagnostics.hasErrors() || diagnostics.hasWarnings()) {
                 bIsCompliant = false;
-                reader.errors += diagnostics.getErrors().size();
-                reader.warnings += diagnostics.getWarnings().size();
+                reader.errors += diagnostics.getErrorCount();
+                reader.warnings += diagnostics.getWarningCount();
             } else {
                 bIsCompliant = true;
             }
             reader.bIsCompliant &= bIsCompliant;
             // Updated consumed after payload has been consumed.
             consumed = in.getConsumed() - startOffset;
+            compressedLength = consumed;
             // Don't not close payload again.
             bPayloadClosed = true;
             // Callback.
@@ -375,6 +400,17 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
         return consumed;
     }
 
+    /**
+     * Return number of bytes occupied by this record in the archive file.
+     * For compressed files this is the size of the GZip entry, otherwise it
+     * equals the number of bytes consumed. Only available once the record
+     * has been closed.
+     * @return number of bytes occupied by this record in the archive file or -1
+     */
+    public long getCompressedLength() {
+        return compressedLength;
+    }
+
     /**
      * Process the ARC record stream for possible payload data.
      * @param in ARC record <code>InputStream</code>
@@ -393,6 +429,29 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
         return (payload != null);
     }
 
+    /**
+     * Peek at the start of the record block without consuming it, e.g. to
+     * read the status line of an HTTP response cheaply. Only possible when
+     * reading record headers only and before the record is closed. No more
+     * bytes than the size of the reader's push back buffer can be peeked.
+     * @param buffer byte buffer to peek bytes into
+     * @return the number of bytes peeked or -1, if the block is not available
+     * @throws IOException if an I/O error occurs while peeking
+     */
+    public int peekBlock(byte[] buffer) throws IOException {
+        if (bClosed || payload != null || skipLength <= 0) {
+            return -1;
+        }
+        if (buffer.length <= skipLength) {
+            return in.peek(buffer);
+        }
+        // Never peek past the end of the block.
+        byte[] tmpBuf = new byte[(int)skipLength];
+        int peeked = in.peek(tmpBuf);
+        System.arraycopy(tmpBuf, 0, buffer, 0, peeked);
+        return peeked;
+    }
+
     /**
      * Specifies whether this record has had all it's payload processed already.
      * @return true/false whether this record's payload has been completely processed
@@ -423,6 +482,10 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
      * @return the <code>HttpHeader</code> object if identified or null
      */
     public HttpHeader getHttpHeader() {
+        if (payload != null) {
+            // Parse a postponed http header.
+            payload.getPayloadHeaderWrapped();
+        }
         return httpHeader;
     }
 
@@ -458,7 +521,7 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
      * @param information optional extra information
      */
     protected void addErrorDiagnosis(DiagnosisType type, String entity, String... information) {
-        diagnostics.addError(new Diagnosis(type, entity, information));
+        diagnostics.addError(type, entity, information);
     }
 
     /**
@@ -471,7 +534,7 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
      */
     /*
     protected void addWarningDiagnosis(DiagnosisType type, String entity, String... information) {
-        diagnostics.addWarning(new Diagnosis(type, entity, information));
+        diagnostics.addWarning(type, entity, information);
     }
     */
 
@@ -520,7 +583,7 @@ public abstract class ArcRecordBase implements PayloadOnClosedHandler, Closeable
      * @return the InetAddress
      */
     public InetAddress getInetAddress() {
-        return header.inetAddress;
+        return header.getInetAddress();
     }
 
     /**
@@ -23,7 +23,6 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import org.jwat.common.ByteCountingPushBackInputStream;
-import org.jwat.common.Diagnosis;
 import org.jwat.common.DiagnosisType;
 import org.jwat.common.Diagnostics;
 import org.jwat.common.Payload;
@@ -98,17 +97,17 @@ public class ArcVersionBlock extends ArcRecordBase {
     protected void validateContentType() {
         if (header.contentType == null) {
             // Version block content-type is required.
-            diagnostics.addError(new Diagnosis(DiagnosisType.ERROR_EXPECTED,
+            diagnostics.addError(DiagnosisType.ERROR_EXPECTED,
                     "'" + ArcConstants.FN_CONTENT_TYPE + "' value",
-                    ArcConstants.CONTENT_TYPE_FORMAT));
+                    ArcConstants.CONTENT_TYPE_FORMAT);
         } else if (!ArcConstants.VERSION_BLOCK_CONTENT_TYPE.equals(
                 header.contentType.contentType) ||
                 !ArcConstants.VERSION_BLOCK_MEDIA_TYPE.equals(header.contentType.mediaType)) {
             // Version block content-type should be equal to "text/plain"
-            diagnostics.addWarning(new Diagnosis(DiagnosisType.INVALID_EXPECTED,
+            diagnostics.addWarning(DiagnosisType.INVALID_EXPECTED,
                     "'" + ArcConstants.FN_CONTENT_TYPE + "' value",
                     header.contentTypeStr,
-                    ArcConstants.CONTENT_TYPE_TEXT_PLAIN));
+                    ArcConstants.CONTENT_TYPE_TEXT_PLAIN);
         }
     }
 
@@ -148,25 +147,23 @@ public class ArcVersionBlock extends ArcRecordBase {
                 if (versionHeader.isValid()) {
                     payload.setPayloadHeaderWrapped(versionHeader);
                 } else {
-                    diagnostics.addError(
-                            new Diagnosis(DiagnosisType.ERROR,
-                                    ArcConstants.ARC_VERSION_BLOCK,
-                                    "Version block is not valid!"));
+                    diagnostics.addError(DiagnosisType.ERROR,
+                            ArcConstants.ARC_VERSION_BLOCK,
+                            "Version block is not valid!");
                 }
             }
         } else {
-            diagnostics.addError(
-                    new Diagnosis(DiagnosisType.INVALID,
-                            ArcConstants.ARC_FILE,
-                            "VersionBlock length missing!"));
+            diagnostics.addError(DiagnosisType.INVALID,
+                    ArcConstants.ARC_FILE,
+                    "VersionBlock length missing!");
         }
         if (versionHeader != null && versionHeader.isValid()) {
             if (ArcVersion.VERSION_1_1.equals(version)) {
                 if ((versionHeader.getRemaining() == 0)) {
                     bHasPseudoEmptyPayload = true;
-                    diagnostics.addError(new Diagnosis(DiagnosisType.ERROR_EXPECTED,
+                    diagnostics.addError(DiagnosisType.ERROR_EXPECTED,
                             ArcConstants.ARC_FILE,
-                            "Expected metadata payload not found in the version block"));
+                            "Expected metadata payload not found in the version block");
                 }
             } else {
                 if (versionHeader.getRemaining() == 0) {
@@ -192,17 +189,17 @@ public class ArcVersionBlock extends ArcRecordBase {
                         excessiveMetadata = out_payload.toByteArray();
                         ByteArrayInputStream in_newlines = new ByteArrayInputStream(excessiveMetadata);
                         if (!isValidStreamOfCRLF(in_newlines)) {
-                            diagnostics.addError(new Diagnosis(DiagnosisType.UNDESIRED_DATA,
+                            diagnostics.addError(DiagnosisType.UNDESIRED_DATA,
                                     "version block metadata payload",
-                                    "Metadata payload must not be present in this version"));
+                                    "Metadata payload must not be present in this version");
                         } else {
                             bHasPseudoEmptyPayload = true;
                         }
                         in_newlines.close();
                     } else {
-                        diagnostics.addError(new Diagnosis(DiagnosisType.UNDESIRED_DATA,
+                        diagnostics.addError(DiagnosisType.UNDESIRED_DATA,
                                 "version block metadata payload",
-                                "Metadata payload must not be present in this version"));
+                                "Metadata payload must not be present in this version");
                     }
                 }
             }
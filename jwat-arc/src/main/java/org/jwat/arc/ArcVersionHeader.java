@@ -21,7 +21,6 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 
 import org.jwat.common.ByteCountingPushBackInputStream;
-import org.jwat.common.Diagnosis;
 import org.jwat.common.DiagnosisType;
 import org.jwat.common.Diagnostics;
 import org.jwat.common.MaxLengthRecordingInputStream;
@@ -192,9 +191,9 @@ public class ArcVersionHeader extends PayloadWithHeaderAbstract {
         if (versionLine != null && versionLine.length() > 0) {
             String[] versionArr = versionLine.split(" ", -1);
             if (versionArr.length != ArcConstants.VERSION_DESC_FIELDS.length) {
-                diagnostics.addError(new Diagnosis(DiagnosisType.INVALID,
+                diagnostics.addError(DiagnosisType.INVALID,
                         ArcConstants.ARC_VERSION_BLOCK,
-                        "Invalid version description"));
+                        "Invalid version description");
             }
             /*
              * Get version and origin.
@@ -230,15 +229,15 @@ public class ArcVersionHeader extends PayloadWithHeaderAbstract {
             isVersionValid = (version != null);
             if (!isVersionValid) {
                 // Add validation error
-                diagnostics.addError(new Diagnosis(DiagnosisType.INVALID,
+                diagnostics.addError(DiagnosisType.INVALID,
                         ArcConstants.ARC_VERSION_BLOCK,
                         "Invalid version: [version number: " + versionNumber
-                        + ", reserved: " + reserved +']'));
+                        + ", reserved: " + reserved +']');
             }
         } else {
-            diagnostics.addError(new Diagnosis(DiagnosisType.ERROR,
+            diagnostics.addError(DiagnosisType.ERROR,
                     ArcConstants.ARC_VERSION_BLOCK,
-                    "Version line empty"));
+                    "Version line empty");
         }
         /*
          * Identify block description.
@@ -251,14 +250,14 @@ public class ArcVersionHeader extends PayloadWithHeaderAbstract {
                 isValidBlockdDesc = true;
                 blockDescVersion = 2;
             } else {
-                diagnostics.addError(new Diagnosis(DiagnosisType.INVALID,
+                diagnostics.addError(DiagnosisType.INVALID,
                         ArcConstants.ARC_VERSION_BLOCK,
-                        "Unsupported version block definition"));
+                        "Unsupported version block definition");
             }
         } else {
-            diagnostics.addError(new Diagnosis(DiagnosisType.ERROR,
+            diagnostics.addError(DiagnosisType.ERROR,
                     ArcConstants.ARC_VERSION_BLOCK,
-                    "Block definition empty"));
+                    "Block definition empty");
         }
         boolean bIsValidVersionBlock = (version != null) && (blockDescVersion > 0);
         if (bIsValidVersionBlock) {
@@ -275,9 +274,9 @@ public class ArcVersionHeader extends PayloadWithHeaderAbstract {
                 break;
             }
             if (!bIsValidVersionBlock) {
-                diagnostics.addError(new Diagnosis(DiagnosisType.INVALID,
+                diagnostics.addError(DiagnosisType.INVALID,
                         ArcConstants.ARC_VERSION_BLOCK,
-                        "Version number does not match the block definition"));
+                        "Version number does not match the block definition");
             }
         }
         return bIsValidVersionBlock;
@@ -219,7 +219,7 @@ public abstract class ArcWriter implements Closeable {
         if (headerContentLength == null && header.archiveLengthStr != null) {
             headerContentLength = fieldParsers.parseLong(header.archiveLengthStr, ArcConstants.FN_ARCHIVE_LENGTH, false);
             if (headerContentLength != null && headerContentLength < 0) {
-                diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_EXPECTED, "'" + ArcConstants.FN_ARCHIVE_LENGTH + "' value", header.archiveLengthStr, "A non negative number"));
+                diagnostics.addError(DiagnosisType.INVALID_EXPECTED, "'" + ArcConstants.FN_ARCHIVE_LENGTH + "' value", header.archiveLengthStr, "A non negative number");
             }
         }
         ByteArrayOutputStream outBuf = new ByteArrayOutputStream();
@@ -0,0 +1,396 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.arc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestArcRangeParser {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    public static byte[] arcVersionBlock(String filename) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String content = "1 0 JWAT\n"
+                + "URL IP-address Archive-date Content-type Archive-length\n";
+        String header = "filedesc://" + filename + " 127.0.0.1 20120517001447 text/plain " + content.length() + "\n";
+        out.write(header.getBytes("ISO-8859-1"));
+        out.write(content.getBytes("ISO-8859-1"));
+        out.write("\n".getBytes("ISO-8859-1"));
+        return out.toByteArray();
+    }
+
+    public static byte[] arcRecord(int idx, byte[] payload) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] httpHeader = ("HTTP/1.1 200 OK\r\n"
+                + "Content-Type: application/octet-stream\r\n"
+                + "Content-Length: " + payload.length + "\r\n"
+                + "\r\n").getBytes("ISO-8859-1");
+        String header = "http://jwat.org/" + idx + " 127.0.0.1 20120517001447 application/octet-stream " + (httpHeader.length + payload.length) + "\n";
+        out.write(header.getBytes("ISO-8859-1"));
+        out.write(httpHeader);
+        out.write(payload);
+        out.write("\n".getBytes("ISO-8859-1"));
+        return out.toByteArray();
+    }
+
+    public static byte[] gzip(byte[] data, boolean bStored) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzout;
+        if (bStored) {
+            gzout = new GZIPOutputStream(out) {
+                {
+                    def.setLevel(Deflater.NO_COMPRESSION);
+                }
+            };
+        } else {
+            gzout = new GZIPOutputStream(out);
+        }
+        gzout.write(data);
+        gzout.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Write a compressed ARC file where every third record stores an
+     * embedded GZip stream verbatim to produce false member candidates.
+     */
+    public static File writeArcGz(File file, int records) throws IOException {
+        byte[] embedded = gzip("embedded gzip data which is not an ARC record\n".getBytes("ISO-8859-1"), false);
+        OutputStream out = new FileOutputStream(file);
+        out.write(gzip(arcVersionBlock(file.getName()), false));
+        byte[] payload;
+        for (int i=0; i<records; ++i) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (int j=0; j<=i % 5; ++j) {
+                bytes.write(("Payload " + i + "-" + j + " ").getBytes("ISO-8859-1"));
+                bytes.write(embedded);
+            }
+            payload = bytes.toByteArray();
+            out.write(gzip(arcRecord(i, payload), i % 3 == 0));
+        }
+        out.close();
+        return file;
+    }
+
+    /**
+     * Write an uncompressed ARC file where the payloads contain lines with
+     * the number of fields of a record header and embedded record headers
+     * to produce false record candidates.
+     */
+    public static File writeArc(File file, int records) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        out.write(arcVersionBlock(file.getName()));
+        for (int i=0; i<records; ++i) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (int j=0; j<=i % 5; ++j) {
+                bytes.write(("Payload " + i + "-" + j + "\n").getBytes("ISO-8859-1"));
+                bytes.write("http://jwat.org/fake 127.0.0.1 20120517001447 text/plain 5\nabcde\nnot a record\n".getBytes("ISO-8859-1"));
+                bytes.write("just five fields of text\n".getBytes("ISO-8859-1"));
+            }
+            out.write(arcRecord(i, bytes.toByteArray()));
+        }
+        out.close();
+        return file;
+    }
+
+    public static String recordUrl(ArcRecordBase record) {
+        return record.header.urlStr;
+    }
+
+    /**
+     * Read the offsets and urls of all the records using a sequential reader.
+     */
+    public static List<String> readSequential(File file, List<Long> offsets) throws IOException {
+        List<String> urls = new ArrayList<String>();
+        InputStream in = new FileInputStream(file);
+        ArcReader reader = ArcReaderFactory.getReader(in);
+        ArcRecordBase record;
+        while ((record = reader.getNextRecord()) != null) {
+            Assert.assertTrue(record.isCompliant());
+            if (offsets != null) {
+                offsets.add(record.getStartOffset());
+            }
+            urls.add(recordUrl(record));
+        }
+        reader.close();
+        in.close();
+        return urls;
+    }
+
+    @Test
+    public void test_arcrangeparser_compressed() throws IOException {
+        File file = writeArcGz(tmpFolder.newFile("ranges.arc.gz"), 40);
+
+        List<Long> offsets = new ArrayList<Long>();
+        List<String> urls = readSequential(file, offsets);
+        Assert.assertEquals(41, urls.size());
+
+        List<ArcFileRange> ranges = ArcFileSplitter.splitCompressed(file, 6);
+        Assert.assertTrue(ranges.size() > 1);
+        Assert.assertTrue(ranges.size() <= 6);
+        checkRanges(file, ranges, offsets);
+        for (int i=0; i<ranges.size(); ++i) {
+            Assert.assertTrue(ranges.get(i).bCompressed);
+        }
+
+        ArcRangeParser parser = new ArcRangeParser();
+        checkReaderOffsets(parser, file, ranges, offsets);
+
+        // Per range, using known record offsets.
+        long[] offsetArr = new long[offsets.size()];
+        for (int i=0; i<offsetArr.length; ++i) {
+            offsetArr[i] = offsets.get(i);
+        }
+        ranges = ArcFileSplitter.split(file, offsetArr, 4, true);
+        Assert.assertEquals(4, ranges.size());
+        checkRanges(file, ranges, offsets);
+        checkReaderOffsets(parser, file, ranges, offsets);
+
+        // A single split covers the whole file.
+        ranges = ArcFileSplitter.splitCompressed(file, 1);
+        Assert.assertEquals(1, ranges.size());
+        Assert.assertEquals(0, ranges.get(0).start);
+        Assert.assertEquals(file.length(), ranges.get(0).end);
+
+        try {
+            ArcFileSplitter.splitCompressed(file, 0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new ArcFileRange(file, 10, 5, true);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            ArcFileSplitter.findMemberStart(null, 0, 0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void test_arcrangeparser_uncompressed() throws IOException {
+        File file = writeArc(tmpFolder.newFile("ranges.arc"), 40);
+
+        List<Long> offsets = new ArrayList<Long>();
+        List<String> urls = readSequential(file, offsets);
+        Assert.assertEquals(41, urls.size());
+
+        // Every scan position must lead to the next record boundary.
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            int idx = 0;
+            for (long from=0; from<file.length(); from += 97) {
+                while (idx < offsets.size() && offsets.get(idx) < from) {
+                    ++idx;
+                }
+                long expected = (idx < offsets.size()) ? offsets.get(idx) : -1;
+                Assert.assertEquals(expected, ArcFileSplitter.findRecordStart(raf, from, file.length()));
+            }
+            Assert.assertEquals(-1, ArcFileSplitter.findRecordStart(raf, offsets.get(1) + 1, offsets.get(2)));
+        } finally {
+            raf.close();
+        }
+
+        List<ArcFileRange> ranges = ArcFileSplitter.splitUncompressed(file, 7);
+        Assert.assertEquals(7, ranges.size());
+        checkRanges(file, ranges, offsets);
+        for (int i=0; i<ranges.size(); ++i) {
+            Assert.assertFalse(ranges.get(i).bCompressed);
+        }
+
+        ArcRangeParser parser = new ArcRangeParser();
+        checkReaderOffsets(parser, file, ranges, offsets);
+
+        // More splits than records.
+        ranges = ArcFileSplitter.splitUncompressed(file, 1000);
+        Assert.assertEquals(41, ranges.size());
+        checkRanges(file, ranges, offsets);
+        checkReaderOffsets(parser, file, ranges, offsets);
+
+        try {
+            ArcFileSplitter.splitUncompressed(file, 0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            ArcFileSplitter.findRecordStart(null, 0, 0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void test_arcrangeparser_stream() throws IOException {
+        File[] files = new File[] {
+                writeArcGz(tmpFolder.newFile("stream.arc.gz"), 40),
+                writeArc(tmpFolder.newFile("stream.arc"), 40)
+        };
+        ArcRangeParser parser = new ArcRangeParser();
+        for (int f=0; f<files.length; ++f) {
+            File file = files[f];
+            List<String> urls = readSequential(file, null);
+            Assert.assertEquals(41, urls.size());
+
+            Function<ArcRecordBase, String> urlMapper = new Function<ArcRecordBase, String>() {
+                @Override
+                public String apply(ArcRecordBase record) {
+                    // The payload must be readable inside the stream stage.
+                    try {
+                        InputStream pin = record.getPayloadContent();
+                        while (pin.read() != -1) {
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    Assert.assertTrue(record.isCompliant());
+                    return recordUrl(record);
+                }
+            };
+
+            Stream<ArcRecordBase> stream = parser.parallelStream(file, 8);
+            Assert.assertTrue(stream.isParallel());
+            List<String> parallel = stream.map(urlMapper).collect(Collectors.toList());
+            stream.close();
+            Assert.assertEquals(urls, parallel);
+
+            stream = ArcReaderFactory.parallelStream(file);
+            Assert.assertTrue(stream.isParallel());
+            Assert.assertEquals(urls, stream.map(urlMapper).collect(Collectors.toList()));
+            stream.close();
+
+            List<ArcFileRange> ranges = (f == 0) ? ArcFileSplitter.splitCompressed(file, 5) : ArcFileSplitter.splitUncompressed(file, 5);
+            stream = parser.stream(ranges, false);
+            Assert.assertFalse(stream.isParallel());
+            Assert.assertEquals(urls, stream.map(urlMapper).collect(Collectors.toList()));
+            stream.close();
+
+            // Short-circuiting leaves ranges open until the stream is closed.
+            stream = parser.stream(ranges, false);
+            Assert.assertEquals(urls.get(0), stream.map(urlMapper).findFirst().get());
+            stream.close();
+
+            // Splitting hands off whole ranges as prefixes.
+            ArcRangeSpliterator spliterator = new ArcRangeSpliterator(parser, ranges);
+            final List<String> split = new ArrayList<String>();
+            Consumer<ArcRecordBase> collector = new Consumer<ArcRecordBase>() {
+                @Override
+                public void accept(ArcRecordBase record) {
+                    split.add(recordUrl(record));
+                }
+            };
+            Assert.assertTrue(spliterator.tryAdvance(collector));
+            Spliterator<ArcRecordBase> prefix = spliterator.trySplit();
+            Assert.assertNotNull(prefix);
+            prefix.forEachRemaining(collector);
+            Spliterator<ArcRecordBase> prefix2 = spliterator.trySplit();
+            Assert.assertNotNull(prefix2);
+            prefix2.forEachRemaining(collector);
+            spliterator.forEachRemaining(collector);
+            Assert.assertNull(spliterator.trySplit());
+            Assert.assertEquals(urls, split);
+        }
+        try {
+            parser.stream(null, true);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            parser.parallelStream(null, 4);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            ArcReaderFactory.parallelStream(null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    /**
+     * Check that the ranges are contiguous, cover the whole file and start
+     * at record offsets.
+     */
+    public static void checkRanges(File file, List<ArcFileRange> ranges, List<Long> offsets) {
+        long expectedStart = 0;
+        for (int i=0; i<ranges.size(); ++i) {
+            ArcFileRange range = ranges.get(i);
+            Assert.assertEquals(expectedStart, range.start);
+            Assert.assertTrue(range.getLength() > 0);
+            Assert.assertTrue(offsets.contains(range.start));
+            expectedStart = range.end;
+        }
+        Assert.assertEquals(file.length(), expectedStart);
+    }
+
+    /**
+     * Check that the record offsets of each range are relative to the
+     * beginning of the file and that the records are validated against
+     * the version block.
+     */
+    public static void checkReaderOffsets(ArcRangeParser parser, File file, List<ArcFileRange> ranges, List<Long> offsets) throws IOException {
+        int records = 0;
+        for (int i=0; i<ranges.size(); ++i) {
+            ArcFileRange range = ranges.get(i);
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            ArcReader reader = parser.openReader(raf, range);
+            Assert.assertTrue(range.start == 0 || reader.versionHeader != null);
+            ArcRecordBase record;
+            while ((record = ArcRangeParser.nextRecord(reader, range)) != null) {
+                Assert.assertEquals(offsets.get(records), Long.valueOf(record.getStartOffset()));
+                Assert.assertTrue(record.isCompliant());
+                Assert.assertNotNull(reader.versionHeader);
+                Assert.assertEquals(reader.versionHeader.version, record.version);
+                record.close();
+                ++records;
+            }
+            Assert.assertTrue(reader.isCompliant());
+            reader.close();
+            raf.close();
+        }
+        Assert.assertEquals(offsets.size(), records);
+    }
+
+}
@@ -676,6 +676,74 @@ public class TestArcReaderCompressed {
         return arcEntries;
     }
 
+    @Test
+    public void test_arcreadercompressed_reuse_gzipreader() {
+        RandomAccessFile ram;
+        InputStream in;
+        ArcReaderCompressed reader;
+        ArcRecordBase record;
+        ArcEntry entry;
+        try {
+            List<ArcEntry> entries = new ArrayList<ArcEntry>();
+            in = TestHelpers.getTestResourceAsStream(arcFile);
+            ArcReader sequentialReader = ArcReaderFactory.getReaderCompressed(in);
+            while ((record = sequentialReader.getNextRecord()) != null) {
+                entry = new ArcEntry();
+                entry.recordId = record.header.urlUri;
+                entry.offset = record.getStartOffset();
+                entries.add(entry);
+            }
+            sequentialReader.close();
+            in.close();
+            Assert.assertEquals(expected_records, entries.size());
+
+            ram = new RandomAccessFile(TestHelpers.getTestResourceFile(arcFile), "r");
+            in = new RandomAccessFileInputStream(ram);
+
+            reader = ArcReaderFactory.getReaderCompressed();
+            Assert.assertFalse(reader.getReuseGzipReader());
+            reader.setReuseGzipReader(true);
+            Assert.assertTrue(reader.getReuseGzipReader());
+
+            GzipReader gzipReader = null;
+            for (int i=entries.size() - 1; i>=0; --i) {
+                entry = entries.get(i);
+                ram.seek(entry.offset);
+                record = reader.getNextRecordFrom(in, entry.offset, 8192);
+                Assert.assertNotNull(record);
+                Assert.assertEquals(0, record.header.urlUri.compareTo(entry.recordId));
+                Assert.assertEquals(entry.offset, record.getStartOffset());
+                if (gzipReader == null) {
+                    gzipReader = reader.currentReader;
+                }
+                Assert.assertSame(gzipReader, reader.currentReader);
+                Assert.assertNull(reader.reader);
+                record.close();
+            }
+
+            reader.setReuseGzipReader(false);
+            entry = entries.get(0);
+            ram.seek(entry.offset);
+            record = reader.getNextRecordFrom(in, entry.offset);
+            Assert.assertEquals(0, record.header.urlUri.compareTo(entry.recordId));
+            Assert.assertNotSame(gzipReader, reader.currentReader);
+            record.close();
+
+            // The reused GZip reader is closed with the reader.
+            Assert.assertSame(gzipReader, reader.randomAccessReader);
+            reader.close();
+            Assert.assertNull(reader.randomAccessReader);
+            try {
+                gzipReader.setInputStream(in);
+                Assert.fail("Exception expected!");
+            } catch (IllegalStateException e) {
+            }
+            in.close();
+        } catch (IOException e) {
+            Assert.fail("Unexpected I/O exception");
+        }
+    }
+
     @Test
     public void test_arcreadercompressed_exceptions() {
         ArcReaderCompressed reader = ArcReaderFactory.getReaderCompressed();
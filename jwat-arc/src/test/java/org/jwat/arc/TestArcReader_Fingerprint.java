@@ -0,0 +1,77 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.arc;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.common.Fingerprint;
+import org.jwat.common.Payload;
+import org.jwat.common.PayloadWithHeaderAbstract;
+
+@RunWith(JUnit4.class)
+public class TestArcReader_Fingerprint {
+
+    @Test
+    public void test_arcreader_fingerprint() throws IOException {
+        String[] files = {"small_BNF.arc", "IAH-20080430204825-00000-blackbook.arc.gz"};
+        byte[] tmpBuf = new byte[8192];
+        int read;
+        for (int i=0; i<files.length; ++i) {
+            ArcReader reader = ArcReaderFactory.getReader(TestHelpers.getTestResourceAsStream(files[i]), 8192);
+            Assert.assertEquals(0, reader.getPayloadFingerprintBits());
+            reader.setPayloadFingerprintBits(Fingerprint.BITS_64);
+            reader.setBlockDigestEnabled(true);
+            reader.setBlockDigestAlgorithm("sha1");
+            int records = 0;
+            ArcRecordBase record;
+            while ((record = reader.getNextRecord()) != null) {
+                Payload payload = record.getPayload();
+                if (record.recordType == ArcRecordBase.RT_ARC_RECORD && payload != null) {
+                    // Read half of the payload, the rest is fingerprinted on close.
+                    Fingerprint expected = new Fingerprint(Fingerprint.BITS_64);
+                    PayloadWithHeaderAbstract payloadWithHeader = payload.getPayloadHeaderWrapped();
+                    InputStream in = payload.getInputStream();
+                    long remaining = payload.getRemaining() / 2;
+                    while (remaining > 0 && (read = in.read(tmpBuf, 0, (int)Math.min(remaining, tmpBuf.length))) != -1) {
+                        expected.update(tmpBuf, 0, read);
+                        remaining -= read;
+                    }
+                    while ((read = in.read(tmpBuf)) != -1) {
+                        expected.update(tmpBuf, 0, read);
+                    }
+                    record.close();
+                    if (payloadWithHeader == null || payloadWithHeader.isValid()) {
+                        Assert.assertArrayEquals(expected.getBytes(), record.computedPayloadFingerprint);
+                    }
+                    Assert.assertNotNull(record.computedBlockDigest);
+                    ++records;
+                } else {
+                    record.close();
+                }
+            }
+            reader.close();
+            Assert.assertTrue(records > 0);
+        }
+    }
+
+}
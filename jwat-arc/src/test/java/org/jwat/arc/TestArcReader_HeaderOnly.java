@@ -0,0 +1,92 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.arc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestArcReader_HeaderOnly {
+
+    public static final String[] FILES = new String[] {
+        "IAH-20080430204825-00000-blackbook.arc.gz",
+        "small_BNF.arc",
+        "1-1-20110922131213-00000-svc-VirtualBox.arc"
+    };
+
+    @Test
+    public void test_arcreader_headeronly() throws IOException {
+        for (int f=0; f<FILES.length; ++f) {
+            List<Object[]> full = readRecords(FILES[f], false);
+            List<Object[]> headers = readRecords(FILES[f], true);
+            Assert.assertTrue(full.size() > 1);
+            Assert.assertEquals(full.size(), headers.size());
+            for (int i=0; i<full.size(); ++i) {
+                Object[] expected = full.get(i);
+                Object[] actual = headers.get(i);
+                // URL, start offset, consumed, compressed length.
+                Assert.assertEquals(expected[0], actual[0]);
+                Assert.assertEquals(expected[1], actual[1]);
+                Assert.assertEquals(expected[2], actual[2]);
+                Assert.assertEquals(expected[3], actual[3]);
+                long offset = (Long)actual[1];
+                long compressedLength = (Long)actual[3];
+                if (i + 1 < headers.size()) {
+                    Assert.assertEquals((Long)headers.get(i + 1)[1] - offset, compressedLength);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the records of a test file.
+     * @param fileName test file
+     * @param bHeaderOnly header only reading
+     * @return URL, start offset, consumed and compressed length of each record
+     * @throws IOException if an I/O exception occurs while reading
+     */
+    public static List<Object[]> readRecords(String fileName, boolean bHeaderOnly) throws IOException {
+        InputStream in = TestArcReader_HeaderOnly.class.getClassLoader().getResourceAsStream(fileName);
+        ArcReader reader = ArcReaderFactory.getReader(in);
+        reader.setHeaderOnly(bHeaderOnly);
+        Assert.assertEquals(bHeaderOnly, reader.getHeaderOnly());
+        List<Object[]> records = new ArrayList<Object[]>();
+        ArcRecordBase record;
+        while ((record = reader.getNextRecord()) != null) {
+            Assert.assertEquals(-1, record.getCompressedLength());
+            if (bHeaderOnly && record.recordType == ArcRecordBase.RT_ARC_RECORD) {
+                Assert.assertFalse(record.hasPayload());
+                Assert.assertNull(record.getHttpHeader());
+            }
+            record.close();
+            records.add(new Object[] {record.header.urlStr, record.getStartOffset(),
+                    record.getConsumed(), record.getCompressedLength()});
+        }
+        reader.close();
+        in.close();
+        return records;
+    }
+
+}
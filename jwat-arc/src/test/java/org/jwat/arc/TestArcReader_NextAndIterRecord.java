@@ -27,10 +27,14 @@ import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -264,4 +268,33 @@ public class TestArcReader_NextAndIterRecord {
         Assert.assertEquals(0, i_warnings);
     }
 
+
+    @Test
+    public void test_arcreader_stream() throws IOException {
+        InputStream in = TestHelpers.getTestResourceAsStream(arcFile);
+        ArcReader reader = ArcReaderFactory.getReader(in);
+        List<Long> offsets = new ArrayList<Long>();
+        ArcRecordBase record;
+        while ((record = reader.getNextRecord()) != null) {
+            offsets.add(record.getStartOffset());
+        }
+        reader.close();
+        in.close();
+
+        in = TestHelpers.getTestResourceAsStream(arcFile);
+        reader = ArcReaderFactory.getReader(in);
+        List<Long> streamOffsets = reader.stream().map(new Function<ArcRecordBase, Long>() {
+            @Override
+            public Long apply(ArcRecordBase record) {
+                Assert.assertTrue(record.isCompliant());
+                return record.getStartOffset();
+            }
+        }).collect(Collectors.toList());
+        Assert.assertEquals(expected_records, streamOffsets.size());
+        Assert.assertEquals(offsets, streamOffsets);
+        Assert.assertTrue(reader.isCompliant());
+        reader.close();
+        in.close();
+    }
+
 }
@@ -0,0 +1,86 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.arc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.archive.common.RecordSampler;
+
+@RunWith(JUnit4.class)
+public class TestArcReader_Sampling {
+
+    /**
+     * Read the URLs of the records in a test file, using a sampler if not null.
+     * @param fileName test file
+     * @param sampler sampler or null
+     * @return URLs of the records returned
+     * @throws IOException if an I/O exception occurs while reading
+     */
+    public static List<String> readUrls(String fileName, RecordSampler sampler) throws IOException {
+        InputStream in = TestArcReader_Sampling.class.getClassLoader().getResourceAsStream(fileName);
+        ArcReader reader = ArcReaderFactory.getReader(in);
+        reader.setSampler(sampler);
+        Assert.assertSame(sampler, reader.getSampler());
+        List<String> urls = new ArrayList<String>();
+        ArcRecordBase record;
+        while ((record = reader.getNextSampledRecord()) != null) {
+            if (record.recordType == ArcRecordBase.RT_ARC_RECORD
+                    && record.header.archiveLength != null && record.header.archiveLength > 0) {
+                Assert.assertTrue(record.hasPayload());
+            }
+            urls.add(record.header.urlStr);
+        }
+        reader.close();
+        in.close();
+        return urls;
+    }
+
+    @Test
+    public void test_arcreader_sampling() throws IOException {
+        for (int f=0; f<TestArcReader_HeaderOnly.FILES.length; ++f) {
+            String fileName = TestArcReader_HeaderOnly.FILES[f];
+            List<String> all = readUrls(fileName, null);
+            Assert.assertTrue(all.size() > 2);
+            // The version block is always returned and not sampled.
+            List<String> urls = readUrls(fileName, RecordSampler.everyNth(2));
+            Assert.assertEquals(all.get(0), urls.get(0));
+            Assert.assertEquals(1 + all.size() / 2, urls.size());
+            for (int i=1; i<urls.size(); ++i) {
+                Assert.assertEquals(all.get(1 + (i - 1) * 2), urls.get(i));
+            }
+
+            RecordSampler expected = RecordSampler.bernoulli(0.3, 7L);
+            urls = readUrls(fileName, RecordSampler.bernoulli(0.3, 7L));
+            int idx = 1;
+            for (int i=1; i<all.size(); ++i) {
+                if (expected.sample(i - 1)) {
+                    Assert.assertEquals(all.get(i), urls.get(idx++));
+                }
+            }
+            Assert.assertEquals(idx, urls.size());
+        }
+    }
+
+}
@@ -25,6 +25,10 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.jwat.archive.common.ReaderConfig;
+import org.jwat.common.ByteCountingPushBackInputStream;
+import org.jwat.common.UriProfile;
+import org.jwat.common.ValidationLevel;
 import org.jwat.gzip.GzipReader;
 
 @RunWith(JUnit4.class)
@@ -100,7 +104,7 @@ public class TestArcReaders_Params {
 
         readerUncompressed = new ArcReaderUncompressed();
         try {
-            readerUncompressed = new ArcReaderUncompressed(null);
+            readerUncompressed = new ArcReaderUncompressed((ByteCountingPushBackInputStream)null);
         } catch (IllegalArgumentException e) {
             readerUncompressed = null;
         }
@@ -217,7 +221,7 @@ public class TestArcReaders_Params {
 
         readerCompressed = new ArcReaderCompressed();
         try {
-            readerCompressed = new ArcReaderCompressed(null);
+            readerCompressed = new ArcReaderCompressed((GzipReader)null);
         } catch (IllegalArgumentException e) {
             readerCompressed = null;
         }
@@ -382,4 +386,117 @@ public class TestArcReaders_Params {
         is = null;
     }
 
+    @Test
+    public void test_params_readers_config() {
+        ReaderConfig config = new ReaderConfig.Builder()
+                .setStrict(true)
+                .setUriProfile(UriProfile.RFC3986_ABS_16BIT_LAX)
+                .setBlockDigestEnabled(true)
+                .setBlockDigestAlgorithm("sha1")
+                .setBlockDigestEncoding("base16")
+                .setPayloadDigestEnabled(true)
+                .setPayloadDigestAlgorithm("md5")
+                .setPayloadDigestEncoding("base64")
+                .setRecordHeaderMaxSize(1024)
+                .setPayloadHeaderMaxSize(2048)
+                .setReportHttpHeaderErrors(false)
+                .setDeferHttpHeader(true)
+                .setHeaderOnly(true)
+                .setValidationLevel(ValidationLevel.COUNT_ONLY)
+                .build();
+        ArcReader[] readers = new ArcReader[] {
+                new ArcReaderUncompressed(), new ArcReaderCompressed()
+        };
+        for (int i=0; i<readers.length; ++i) {
+            ArcReader reader = readers[i];
+            try {
+                reader.setConfig(null);
+                Assert.fail("Exception expected!");
+            } catch (IllegalArgumentException e) {
+            }
+            reader.setConfig(config);
+            Assert.assertTrue(reader.isStrict());
+            Assert.assertEquals(UriProfile.RFC3986_ABS_16BIT_LAX, reader.getUriProfile());
+            Assert.assertTrue(reader.getBlockDigestEnabled());
+            Assert.assertEquals("sha1", reader.getBlockDigestAlgorithm());
+            Assert.assertEquals("base16", reader.getBlockDigestEncoding());
+            Assert.assertTrue(reader.getPayloadDigestEnabled());
+            Assert.assertEquals("md5", reader.getPayloadDigestAlgorithm());
+            Assert.assertEquals("base64", reader.getPayloadDigestEncoding());
+            Assert.assertEquals(1024, reader.getRecordHeaderMaxSize());
+            Assert.assertEquals(2048, reader.getPayloadHeaderMaxSize());
+            Assert.assertFalse(reader.getReportHttpHeaderErrors());
+            Assert.assertTrue(reader.getDeferHttpHeader());
+            Assert.assertTrue(reader.getHeaderOnly());
+            Assert.assertEquals(ValidationLevel.COUNT_ONLY, reader.getValidationLevel());
+            Assert.assertEquals(ValidationLevel.COUNT_ONLY, reader.diagnostics.getValidationLevel());
+            reader.setConfig(ReaderConfig.DEFAULT);
+            Assert.assertFalse(reader.isStrict());
+            Assert.assertEquals(UriProfile.RFC3986, reader.getUriProfile());
+            Assert.assertFalse(reader.getBlockDigestEnabled());
+            Assert.assertNull(reader.getBlockDigestAlgorithm());
+            Assert.assertEquals("base32", reader.getBlockDigestEncoding());
+            Assert.assertEquals(8192, reader.getRecordHeaderMaxSize());
+            Assert.assertEquals(32768, reader.getPayloadHeaderMaxSize());
+            Assert.assertTrue(reader.getReportHttpHeaderErrors());
+            Assert.assertFalse(reader.getDeferHttpHeader());
+            Assert.assertFalse(reader.getHeaderOnly());
+            Assert.assertEquals(ValidationLevel.FULL, reader.getValidationLevel());
+            try {
+                reader.setValidationLevel(null);
+                Assert.fail("Exception expected!");
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+
+    @Test
+    public void test_params_readers_config_constructors() {
+        ReaderConfig config = new ReaderConfig.Builder()
+                .setUriProfile(UriProfile.RFC3986_ABS_16BIT_LAX)
+                .setBlockDigestEnabled(true)
+                .setRecordHeaderMaxSize(1024)
+                .setValidationLevel(ValidationLevel.COUNT_ONLY)
+                .build();
+        ByteCountingPushBackInputStream pbin = new ByteCountingPushBackInputStream(new ByteArrayInputStream(new byte[0]), 16);
+        GzipReader gzipReader = new GzipReader(new ByteArrayInputStream(new byte[0]));
+        ArcReader[] readers = new ArcReader[] {
+                new ArcReaderUncompressed(config),
+                new ArcReaderUncompressed(pbin, config),
+                new ArcReaderCompressed(config),
+                new ArcReaderCompressed(gzipReader, config),
+                new ArcReaderCompressed(gzipReader, 8192, config)
+        };
+        for (int i=0; i<readers.length; ++i) {
+            ArcReader reader = readers[i];
+            Assert.assertEquals(UriProfile.RFC3986_ABS_16BIT_LAX, reader.getUriProfile());
+            Assert.assertTrue(reader.getBlockDigestEnabled());
+            Assert.assertEquals(1024, reader.getRecordHeaderMaxSize());
+            Assert.assertEquals(32768, reader.getPayloadHeaderMaxSize());
+            Assert.assertEquals(ValidationLevel.COUNT_ONLY, reader.diagnostics.getValidationLevel());
+            Assert.assertNotNull(reader.lineReader);
+            Assert.assertNotNull(reader.fieldParsers);
+        }
+        try {
+            new ArcReaderUncompressed((ReaderConfig)null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new ArcReaderCompressed((ReaderConfig)null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new ArcReaderUncompressed(null, config);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new ArcReaderCompressed(null, config);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
 }
@@ -20,6 +20,7 @@ package org.jwat.arc;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -220,6 +221,36 @@ public class TestArcRecord {
                 TestBaseUtils.compareDiagnoses((Object[][])test_cases[i][3], record.diagnostics.getErrors());
                 TestBaseUtils.compareDiagnoses((Object[][])test_cases[i][4], record.diagnostics.getWarnings());
                 reader.close();
+
+                // Deferred http header parsing.
+                in = new ByteArrayInputStream(out.toByteArray());
+                reader = ArcReaderFactory.getReader(in, 1024);
+                reader.setPayloadDigestEnabled(false);
+                Assert.assertFalse(reader.getDeferHttpHeader());
+                reader.setDeferHttpHeader(true);
+                Assert.assertTrue(reader.getDeferHttpHeader());
+                record = reader.getNextRecord();
+                Assert.assertNotNull(record);
+                record = reader.getNextRecord();
+                Assert.assertNotNull(record);
+                Assert.assertNull(record.httpHeader);
+                Assert.assertFalse(record.diagnostics.hasWarnings());
+                if (record.hasPayload()) {
+                    // Accessing the complete stream parses the header but
+                    // must still return the complete payload.
+                    ByteArrayOutputStream completeOut = new ByteArrayOutputStream();
+                    InputStream completeIn = record.getPayload().getInputStreamComplete();
+                    byte[] tmpBuf = new byte[16];
+                    int read;
+                    while ((read = completeIn.read(tmpBuf)) != -1) {
+                        completeOut.write(tmpBuf, 0, read);
+                    }
+                    Assert.assertEquals(payloadData, new String(completeOut.toByteArray()));
+                }
+                record.getHttpHeader();
+                TestBaseUtils.compareDiagnoses((Object[][])test_cases[i][3], record.diagnostics.getErrors());
+                TestBaseUtils.compareDiagnoses((Object[][])test_cases[i][4], record.diagnostics.getWarnings());
+                reader.close();
             }
         } catch (IOException e) {
             e.printStackTrace();
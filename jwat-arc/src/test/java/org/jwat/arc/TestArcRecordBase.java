@@ -86,7 +86,9 @@ public class TestArcRecordBase {
 
             Assert.assertEquals(Uri.create("filedesc://BNF-inktomi_arc39.20011005200622.arc.gz"), header.urlUri);
             Assert.assertEquals("filedesc", header.urlScheme);
-            Assert.assertEquals(InetAddress.getByName("192.168.1.2"), header.inetAddress);
+            Assert.assertEquals(InetAddress.getByName("192.168.1.2"), header.getInetAddress());
+            // Only created on request.
+            Assert.assertNull(header.inetAddress);
             Assert.assertEquals(ArcDateParser.getDate("20120712144000"), header.archiveDate);
             Assert.assertEquals(ContentType.parseContentType("text/htlm"), header.contentType);
             Assert.assertEquals(new Integer(200), header.resultCode);
@@ -106,7 +108,7 @@ public class TestArcRecordBase {
 
             Assert.assertEquals(header.urlUri, record.getUrl());
             Assert.assertEquals(header.urlScheme, record.getScheme());
-            Assert.assertEquals(header.inetAddress, record.getInetAddress());
+            Assert.assertEquals(header.getInetAddress(), record.getInetAddress());
             Assert.assertEquals(header.archiveDate, record.getArchiveDate());
             Assert.assertEquals(header.contentType, record.getContentType());
             Assert.assertEquals(header.resultCode, record.getResultCode());
@@ -231,7 +233,7 @@ public class TestArcRecordBase {
 
             Assert.assertEquals(Uri.create("filedesc://BNF-inktomi_arc39.20011005200622.arc.gz"), header.urlUri);
             Assert.assertEquals("filedesc", header.urlScheme);
-            Assert.assertEquals(InetAddress.getByName("192.168.1.2"), header.inetAddress);
+            Assert.assertEquals(InetAddress.getByName("192.168.1.2"), header.getInetAddress());
             Assert.assertEquals(ArcDateParser.getDate("20120712144000"), header.archiveDate);
             Assert.assertEquals(ContentType.parseContentType("text/htlm"), header.contentType);
             Assert.assertEquals(new Integer(200), header.resultCode);
@@ -251,7 +253,7 @@ public class TestArcRecordBase {
 
             Assert.assertEquals(header.urlUri, record.getUrl());
             Assert.assertEquals(header.urlScheme, record.getScheme());
-            Assert.assertEquals(header.inetAddress, record.getInetAddress());
+            Assert.assertEquals(header.getInetAddress(), record.getInetAddress());
             Assert.assertEquals(header.archiveDate, record.getArchiveDate());
             Assert.assertEquals(header.contentType, record.getContentType());
             Assert.assertEquals(header.resultCode, record.getResultCode());
@@ -293,7 +295,7 @@ public class TestArcRecordBase {
 
             Assert.assertEquals(Uri.create("http://cctr.umkc.edu:80/user/jbenz/tst.htm"), header.urlUri);
             Assert.assertEquals("http", header.urlScheme);
-            Assert.assertEquals(InetAddress.getByName("134.193.4.1"), header.inetAddress);
+            Assert.assertEquals(InetAddress.getByName("134.193.4.1"), header.getInetAddress());
             Assert.assertEquals(ArcDateParser.getDate("19970417175710"), header.archiveDate);
             Assert.assertEquals(ContentType.parseContentType("text/html"), header.contentType);
             Assert.assertEquals(new Integer(102), header.resultCode);
@@ -313,7 +315,7 @@ public class TestArcRecordBase {
 
             Assert.assertEquals(header.urlUri, record.getUrl());
             Assert.assertEquals(header.urlScheme, record.getScheme());
-            Assert.assertEquals(header.inetAddress, record.getInetAddress());
+            Assert.assertEquals(header.getInetAddress(), record.getInetAddress());
             Assert.assertEquals(header.archiveDate, record.getArchiveDate());
             Assert.assertEquals(header.contentType, record.getContentType());
             Assert.assertEquals(header.resultCode, record.getResultCode());
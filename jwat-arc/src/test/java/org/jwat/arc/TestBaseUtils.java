@@ -45,7 +45,7 @@ public class TestBaseUtils {
         Assert.assertEquals(expected_fieldStrings[8], header.filenameStr);
         Assert.assertEquals(expected_fieldStrings[9], header.archiveLengthStr);
         Assert.assertEquals(expected_fieldObjects[0], header.urlUri);
-        Assert.assertEquals(expected_fieldObjects[1], header.inetAddress);
+        Assert.assertEquals(expected_fieldObjects[1], header.getInetAddress());
         Assert.assertEquals(expected_fieldObjects[2], header.archiveDate);
         Assert.assertEquals(expected_fieldObjects[3], header.contentType);
         Assert.assertEquals(expected_fieldObjects[4], header.resultCode);
@@ -87,7 +87,7 @@ public class TestBaseUtils {
             System.out.println( "              " + header.urlUri.getScheme() );
             System.out.println( "              " + header.urlUri.getSchemeSpecificPart() );
         }
-        System.out.println( "      ipaddr: " + header.ipAddressStr + " - " + header.inetAddress );
+        System.out.println( "      ipaddr: " + header.ipAddressStr + " - " + header.getInetAddress() );
         System.out.println( "        date: " + header.archiveDateStr + " - " + header.archiveDate );
         System.out.println( "content-type: " + header.contentTypeStr + " - " + header.contentType.toStringShort() );
         System.out.println( " result-code: " + header.resultCodeStr + " - " + header.resultCode );
@@ -0,0 +1,461 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive.common;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jwat.common.Digest;
+import org.jwat.common.Fingerprint;
+import org.jwat.common.UriProfile;
+import org.jwat.common.ValidationLevel;
+
+/**
+ * Immutable reader configuration shared by the ARC and WARC readers.
+ * All values are validated when the configuration is built, so applying it
+ * to a reader is a plain field copy. Instances are thread-safe and a single
+ * instance is intended to be shared by any number of readers.
+ * Readers constructed with a configuration also share any precomputed
+ * immutable state, such as the WARC validators, which is created once per
+ * configuration and kept in the configuration.
+ * Use a <code>ReaderConfig.Builder</code> to create a custom configuration.
+ *
+ * @author nicl
+ */
+public final class ReaderConfig {
+
+    /** Default max size allowed for a record header. */
+    public static final int DEFAULT_RECORD_HEADER_MAX_SIZE = 8192;
+
+    /** Default max size allowed for a payload header. */
+    public static final int DEFAULT_PAYLOAD_HEADER_MAX_SIZE = 32768;
+
+    /** Default encoding scheme used to encode digests into a string. */
+    public static final String DEFAULT_DIGEST_ENCODING = "base32";
+
+    /** Configuration with the same values as a newly created reader. */
+    public static final ReaderConfig DEFAULT = new Builder().build();
+
+    /** ARC strict mode enabled or disabled. */
+    public final boolean bStrict;
+
+    /** ARC URL and WARC URI profile. */
+    public final UriProfile uriProfile;
+
+    /** WARC-Target-URI profile. */
+    public final UriProfile warcTargetUriProfile;
+
+    /** Block Digest enabled/disabled. */
+    public final boolean bBlockDigest;
+
+    /** Default block digest algorithm or null. */
+    public final String blockDigestAlgorithm;
+
+    /** Default block digest encoding scheme. */
+    public final String blockDigestEncoding;
+
+    /** Payload Digest enabled/disabled. */
+    public final boolean bPayloadDigest;
+
+    /** Default payload digest algorithm or null. */
+    public final String payloadDigestAlgorithm;
+
+    /** Default payload digest encoding scheme. */
+    public final String payloadDigestEncoding;
+
+    /** Payload fingerprint size, 64 or 128, or 0 if disabled. */
+    public final int payloadFingerprintBits;
+
+    /** Max size allowed for a record header. */
+    public final int recordHeaderMaxSize;
+
+    /** Max size allowed for a payload header. */
+    public final int payloadHeaderMaxSize;
+
+    /** Report HTTP header errors on record diagnosis lists. */
+    public final boolean bReportHttpHeaderError;
+
+    /** Postpone HTTP header parsing until the header or payload is requested. */
+    public final boolean bDeferHttpHeader;
+
+    /** Only parse record headers and skip the record blocks. */
+    public final boolean bHeaderOnly;
+
+    /** Level of validation information collected. */
+    public final ValidationLevel validationLevel;
+
+    /** Precomputed immutable reader state shared by all readers using this
+     *  configuration, identified by a key chosen by the reader. */
+    protected final ConcurrentMap<Object, Object> sharedState = new ConcurrentHashMap<Object, Object>();
+
+    /**
+     * Construct an immutable configuration from a builder.
+     * @param builder builder with the configuration values
+     */
+    private ReaderConfig(Builder builder) {
+        bStrict = builder.bStrict;
+        uriProfile = builder.uriProfile;
+        warcTargetUriProfile = builder.warcTargetUriProfile;
+        bBlockDigest = builder.bBlockDigest;
+        blockDigestAlgorithm = builder.blockDigestAlgorithm;
+        blockDigestEncoding = builder.blockDigestEncoding;
+        bPayloadDigest = builder.bPayloadDigest;
+        payloadDigestAlgorithm = builder.payloadDigestAlgorithm;
+        payloadDigestEncoding = builder.payloadDigestEncoding;
+        payloadFingerprintBits = builder.payloadFingerprintBits;
+        recordHeaderMaxSize = builder.recordHeaderMaxSize;
+        payloadHeaderMaxSize = builder.payloadHeaderMaxSize;
+        bReportHttpHeaderError = builder.bReportHttpHeaderError;
+        bDeferHttpHeader = builder.bDeferHttpHeader;
+        bHeaderOnly = builder.bHeaderOnly;
+        validationLevel = builder.validationLevel;
+    }
+
+    /**
+     * Returns the precomputed reader state stored with the given key.
+     * @param key key identifying the state
+     * @return precomputed reader state or null, if none has been stored
+     */
+    public Object getSharedState(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("'key' is null!");
+        }
+        return sharedState.get(key);
+    }
+
+    /**
+     * Store precomputed reader state with the given key, unless some other
+     * state has already been stored with the same key. The state must be
+     * immutable since it is shared by all readers using this configuration.
+     * @param key key identifying the state
+     * @param state precomputed immutable reader state
+     * @return the state stored with the key, which is either the supplied
+     * state or the state stored earlier
+     */
+    public Object putSharedStateIfAbsent(Object key, Object state) {
+        if (key == null) {
+            throw new IllegalArgumentException("'key' is null!");
+        }
+        if (state == null) {
+            throw new IllegalArgumentException("'state' is null!");
+        }
+        Object previous = sharedState.putIfAbsent(key, state);
+        return (previous != null) ? previous : state;
+    }
+
+    /**
+     * Returns a builder initialized with the values of this configuration.
+     * @return builder initialized with the values of this configuration
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.bStrict = bStrict;
+        builder.uriProfile = uriProfile;
+        builder.warcTargetUriProfile = warcTargetUriProfile;
+        builder.bBlockDigest = bBlockDigest;
+        builder.blockDigestAlgorithm = blockDigestAlgorithm;
+        builder.blockDigestEncoding = blockDigestEncoding;
+        builder.bPayloadDigest = bPayloadDigest;
+        builder.payloadDigestAlgorithm = payloadDigestAlgorithm;
+        builder.payloadDigestEncoding = payloadDigestEncoding;
+        builder.payloadFingerprintBits = payloadFingerprintBits;
+        builder.recordHeaderMaxSize = recordHeaderMaxSize;
+        builder.payloadHeaderMaxSize = payloadHeaderMaxSize;
+        builder.bReportHttpHeaderError = bReportHttpHeaderError;
+        builder.bDeferHttpHeader = bDeferHttpHeader;
+        builder.bHeaderOnly = bHeaderOnly;
+        builder.validationLevel = validationLevel;
+        return builder;
+    }
+
+    /**
+     * Mutable builder used to create <code>ReaderConfig</code> instances.
+     * A builder is not thread-safe, the configurations it builds are.
+     */
+    public static class Builder {
+
+        /** ARC strict mode enabled or disabled. */
+        protected boolean bStrict = false;
+
+        /** ARC URL and WARC URI profile. */
+        protected UriProfile uriProfile = UriProfile.RFC3986;
+
+        /** WARC-Target-URI profile. */
+        protected UriProfile warcTargetUriProfile = UriProfile.RFC3986;
+
+        /** Block Digest enabled/disabled. */
+        protected boolean bBlockDigest = false;
+
+        /** Default block digest algorithm or null. */
+        protected String blockDigestAlgorithm;
+
+        /** Default block digest encoding scheme. */
+        protected String blockDigestEncoding = DEFAULT_DIGEST_ENCODING;
+
+        /** Payload Digest enabled/disabled. */
+        protected boolean bPayloadDigest = false;
+
+        /** Default payload digest algorithm or null. */
+        protected String payloadDigestAlgorithm;
+
+        /** Default payload digest encoding scheme. */
+        protected String payloadDigestEncoding = DEFAULT_DIGEST_ENCODING;
+
+        /** Payload fingerprint size, 64 or 128, or 0 if disabled. */
+        protected int payloadFingerprintBits = 0;
+
+        /** Max size allowed for a record header. */
+        protected int recordHeaderMaxSize = DEFAULT_RECORD_HEADER_MAX_SIZE;
+
+        /** Max size allowed for a payload header. */
+        protected int payloadHeaderMaxSize = DEFAULT_PAYLOAD_HEADER_MAX_SIZE;
+
+        /** Report HTTP header errors on record diagnosis lists. */
+        protected boolean bReportHttpHeaderError = true;
+
+        /** Postpone HTTP header parsing until the header or payload is requested. */
+        protected boolean bDeferHttpHeader = false;
+
+        /** Only parse record headers and skip the record blocks. */
+        protected boolean bHeaderOnly = false;
+
+        /** Level of validation information collected. */
+        protected ValidationLevel validationLevel = ValidationLevel.FULL;
+
+        /**
+         * Construct a builder with the default reader values.
+         */
+        public Builder() {
+        }
+
+        /**
+         * Enable or disable ARC strict mode.
+         * @param bStrict strict mode enabled or disabled
+         * @return this builder
+         */
+        public Builder setStrict(boolean bStrict) {
+            this.bStrict = bStrict;
+            return this;
+        }
+
+        /**
+         * Set the ARC URL and WARC URI profile.
+         * @param uriProfile URI profile
+         * @return this builder
+         */
+        public Builder setUriProfile(UriProfile uriProfile) {
+            if (uriProfile == null) {
+                throw new IllegalArgumentException("'uriProfile' is null!");
+            }
+            this.uriProfile = uriProfile;
+            return this;
+        }
+
+        /**
+         * Set the WARC-Target-URI profile.
+         * @param warcTargetUriProfile URI profile
+         * @return this builder
+         */
+        public Builder setWarcTargetUriProfile(UriProfile warcTargetUriProfile) {
+            if (warcTargetUriProfile == null) {
+                throw new IllegalArgumentException("'warcTargetUriProfile' is null!");
+            }
+            this.warcTargetUriProfile = warcTargetUriProfile;
+            return this;
+        }
+
+        /**
+         * Enable or disable block digest validation.
+         * @param enabled block digest enabled or disabled
+         * @return this builder
+         */
+        public Builder setBlockDigestEnabled(boolean enabled) {
+            bBlockDigest = enabled;
+            return this;
+        }
+
+        /**
+         * Set the default block digest algorithm, null or empty to disable.
+         * @param digestAlgorithm block digest algorithm
+         * @return this builder
+         */
+        public Builder setBlockDigestAlgorithm(String digestAlgorithm) {
+            blockDigestAlgorithm = checkDigestAlgorithm(digestAlgorithm);
+            return this;
+        }
+
+        /**
+         * Set the default block digest encoding scheme.
+         * @param encodingScheme block digest encoding scheme
+         * @return this builder
+         */
+        public Builder setBlockDigestEncoding(String encodingScheme) {
+            blockDigestEncoding = checkDigestEncoding(encodingScheme);
+            return this;
+        }
+
+        /**
+         * Enable or disable payload digest validation.
+         * @param enabled payload digest enabled or disabled
+         * @return this builder
+         */
+        public Builder setPayloadDigestEnabled(boolean enabled) {
+            bPayloadDigest = enabled;
+            return this;
+        }
+
+        /**
+         * Set the default payload digest algorithm, null or empty to disable.
+         * @param digestAlgorithm payload digest algorithm
+         * @return this builder
+         */
+        public Builder setPayloadDigestAlgorithm(String digestAlgorithm) {
+            payloadDigestAlgorithm = checkDigestAlgorithm(digestAlgorithm);
+            return this;
+        }
+
+        /**
+         * Set the default payload digest encoding scheme.
+         * @param encodingScheme payload digest encoding scheme
+         * @return this builder
+         */
+        public Builder setPayloadDigestEncoding(String encodingScheme) {
+            payloadDigestEncoding = checkDigestEncoding(encodingScheme);
+            return this;
+        }
+
+        /**
+         * Set the payload fingerprint size, 0 to disable.
+         * @param bits fingerprint size, 64 or 128, or 0
+         * @return this builder
+         */
+        public Builder setPayloadFingerprintBits(int bits) {
+            if (bits != 0) {
+                Fingerprint.checkBits(bits);
+            }
+            payloadFingerprintBits = bits;
+            return this;
+        }
+
+        /**
+         * Set the max size allowed for a record header.
+         * @param size max size allowed
+         * @return this builder
+         */
+        public Builder setRecordHeaderMaxSize(int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("'size' is less than or equal to zero: " + size);
+            }
+            recordHeaderMaxSize = size;
+            return this;
+        }
+
+        /**
+         * Set the max size allowed for a payload header.
+         * @param size max size allowed
+         * @return this builder
+         */
+        public Builder setPayloadHeaderMaxSize(int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("'size' is less than or equal to zero: " + size);
+            }
+            payloadHeaderMaxSize = size;
+            return this;
+        }
+
+        /**
+         * Enable or disable HTTP header error reporting.
+         * @param bReportHttpHeaderError HTTP header error reporting enabled or disabled
+         * @return this builder
+         */
+        public Builder setReportHttpHeaderErrors(boolean bReportHttpHeaderError) {
+            this.bReportHttpHeaderError = bReportHttpHeaderError;
+            return this;
+        }
+
+        /**
+         * Enable or disable deferred HTTP header parsing.
+         * @param bDeferHttpHeader deferred HTTP header parsing enabled or disabled
+         * @return this builder
+         */
+        public Builder setDeferHttpHeader(boolean bDeferHttpHeader) {
+            this.bDeferHttpHeader = bDeferHttpHeader;
+            return this;
+        }
+
+        /**
+         * Enable or disable header only reading.
+         * @param bHeaderOnly header only reading enabled or disabled
+         * @return this builder
+         */
+        public Builder setHeaderOnly(boolean bHeaderOnly) {
+            this.bHeaderOnly = bHeaderOnly;
+            return this;
+        }
+
+        /**
+         * Set the level of validation information collected.
+         * @param validationLevel validation level
+         * @return this builder
+         */
+        public Builder setValidationLevel(ValidationLevel validationLevel) {
+            if (validationLevel == null) {
+                throw new IllegalArgumentException("'validationLevel' is null!");
+            }
+            this.validationLevel = validationLevel;
+            return this;
+        }
+
+        /**
+         * Build an immutable configuration with the current values.
+         * @return immutable configuration
+         */
+        public ReaderConfig build() {
+            return new ReaderConfig(this);
+        }
+
+        /**
+         * Check that a digest algorithm is supported.
+         * @param digestAlgorithm digest algorithm, null or empty
+         * @return digest algorithm or null
+         */
+        protected static String checkDigestAlgorithm(String digestAlgorithm) {
+            if (digestAlgorithm == null || digestAlgorithm.length() == 0) {
+                return null;
+            }
+            if (Digest.digestAlgorithmLength(digestAlgorithm) <= 0) {
+                throw new IllegalArgumentException("Unsupported digest algorithm: " + digestAlgorithm);
+            }
+            return digestAlgorithm;
+        }
+
+        /**
+         * Normalize a digest encoding scheme.
+         * @param encodingScheme encoding scheme, null or empty
+         * @return lower case encoding scheme or null
+         */
+        protected static String checkDigestEncoding(String encodingScheme) {
+            if (encodingScheme == null || encodingScheme.length() == 0) {
+                return null;
+            }
+            return encodingScheme.toLowerCase();
+        }
+
+    }
+
+}
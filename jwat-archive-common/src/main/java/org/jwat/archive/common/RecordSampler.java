@@ -0,0 +1,127 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive.common;
+
+/**
+ * Decides which records to sample by their index, the zero based position
+ * of the record in the archive file. Since the decision is made before a
+ * record is parsed, readers can skip unsampled records as cheaply as the
+ * input allows, see <code>getNextSampledRecord</code> in the ARC and WARC
+ * readers. When an index of the record offsets is available the
+ * <code>select</code> method picks the offsets to fetch directly.
+ * Samplers are stateful and not thread-safe, use one per file.
+ *
+ * @author nicl
+ */
+public abstract class RecordSampler {
+
+    /**
+     * Decide whether the record with the given index is sampled. Indexes
+     * must be supplied in increasing order.
+     * @param index zero based index of the record
+     * @return true if the record is sampled
+     */
+    public abstract boolean sample(long index);
+
+    /**
+     * Select the sampled record offsets from an index of all the record
+     * offsets in a file.
+     * @param offsets record offsets in file order
+     * @return sampled record offsets in file order
+     */
+    public long[] select(long[] offsets) {
+        if (offsets == null) {
+            throw new IllegalArgumentException("'offsets' is null!");
+        }
+        long[] selected = new long[offsets.length];
+        int count = 0;
+        for (int i=0; i<offsets.length; ++i) {
+            if (sample(i)) {
+                selected[count++] = offsets[i];
+            }
+        }
+        long[] tmp = new long[count];
+        System.arraycopy(selected, 0, tmp, 0, count);
+        return tmp;
+    }
+
+    /**
+     * Returns a sampler which samples every Nth record, starting with the
+     * first.
+     * @param n sampling interval
+     * @return sampler which samples every Nth record
+     */
+    public static RecordSampler everyNth(final long n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("'n' is less than 1!");
+        }
+        return new RecordSampler() {
+            @Override
+            public boolean sample(long index) {
+                return index % n == 0;
+            }
+        };
+    }
+
+    /**
+     * Returns a sampler which samples each record independently with the
+     * given probability. The decision is a hash of the seed and the record
+     * index, so a seed always samples the same records no matter which
+     * records are asked about.
+     * @param probability sampling probability between 0 and 1
+     * @param seed random seed
+     * @return sampler which samples records with the given probability
+     */
+    public static RecordSampler bernoulli(final double probability, final long seed) {
+        if (!(probability >= 0.0 && probability <= 1.0)) {
+            throw new IllegalArgumentException("'probability' must be between 0 and 1!");
+        }
+        return new RecordSampler() {
+            @Override
+            public boolean sample(long index) {
+                return uniform(seed, index) < probability;
+            }
+        };
+    }
+
+    /**
+     * Returns a sampler which keeps a uniform random sample of K records.
+     * @param k number of records to keep
+     * @param seed random seed
+     * @return reservoir sampler
+     */
+    public static ReservoirSampler reservoir(int k, long seed) {
+        return new ReservoirSampler(k, seed);
+    }
+
+    /**
+     * Map a seed and an index to a uniformly distributed value in [0,1),
+     * using the SplitMix64 finalizer.
+     * @param seed random seed
+     * @param index record index
+     * @return value in [0,1)
+     */
+    protected static double uniform(long seed, long index) {
+        long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+}
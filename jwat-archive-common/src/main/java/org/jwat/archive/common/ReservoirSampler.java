@@ -0,0 +1,155 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive.common;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Reservoir sampler keeping a uniform random sample of K records out of an
+ * unknown number of records, using Algorithm L. The gaps between the
+ * records entering the reservoir are drawn up front, so only about
+ * K*(1+ln(N/K)) of N records are ever sampled, the rest can be skipped.
+ * A record that is sampled may later be evicted from the reservoir, the
+ * final sample is available from <code>getIndexes</code> once all the
+ * records have been seen. Reading a file is therefore a cheap pass over
+ * the record headers followed by fetching the records kept, or a single
+ * call to <code>select</code> if an index of the record offsets exists.
+ *
+ * @author nicl
+ */
+public class ReservoirSampler extends RecordSampler {
+
+    /** Reservoir size. */
+    public final int k;
+
+    /** Random number generator. */
+    protected final Random random;
+
+    /** Record indexes in the reservoir. */
+    protected final long[] reservoir;
+
+    /** Number of records in the reservoir. */
+    protected int size;
+
+    /** Index of the next record to enter the reservoir, once it is full. */
+    protected long next;
+
+    /** Algorithm L weight. */
+    protected double w;
+
+    /**
+     * Construct a reservoir sampler.
+     * @param k number of records to keep
+     * @param seed random seed
+     */
+    public ReservoirSampler(int k, long seed) {
+        if (k < 1) {
+            throw new IllegalArgumentException("'k' is less than 1!");
+        }
+        this.k = k;
+        this.random = new Random(seed);
+        this.reservoir = new long[k];
+    }
+
+    /**
+     * Returns a random value in the open interval (0,1).
+     * @return random value in (0,1)
+     */
+    protected double random() {
+        double r;
+        do {
+            r = random.nextDouble();
+        } while (r == 0.0);
+        return r;
+    }
+
+    /**
+     * Draw the index of the next record to enter the full reservoir.
+     * @param index index of the last record that entered the reservoir
+     */
+    protected void skip(long index) {
+        double gap = Math.floor(Math.log(random()) / Math.log(1.0 - w));
+        if (Double.isNaN(gap) || gap >= Long.MAX_VALUE - index - 1) {
+            next = Long.MAX_VALUE;
+        } else {
+            next = index + (long)gap + 1;
+        }
+    }
+
+    @Override
+    public boolean sample(long index) {
+        if (size < k) {
+            reservoir[size++] = index;
+            if (size == k) {
+                w = Math.exp(Math.log(random()) / k);
+                skip(index);
+            }
+            return true;
+        }
+        if (index < next) {
+            return false;
+        }
+        reservoir[random.nextInt(k)] = index;
+        w *= Math.exp(Math.log(random()) / k);
+        skip(index);
+        return true;
+    }
+
+    /**
+     * Returns the number of records in the reservoir.
+     * @return number of records in the reservoir
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the indexes of the records kept, in increasing order.
+     * @return indexes of the records kept
+     */
+    public long[] getIndexes() {
+        long[] indexes = new long[size];
+        System.arraycopy(reservoir, 0, indexes, 0, size);
+        Arrays.sort(indexes);
+        return indexes;
+    }
+
+    /**
+     * Select a uniform random sample of K record offsets from an index of
+     * all the record offsets in a file. Use a new sampler for each index.
+     * @param offsets record offsets in file order
+     * @return sampled record offsets in file order
+     */
+    @Override
+    public long[] select(long[] offsets) {
+        if (offsets == null) {
+            throw new IllegalArgumentException("'offsets' is null!");
+        }
+        for (int i=0; i<offsets.length; ++i) {
+            sample(i);
+        }
+        long[] indexes = getIndexes();
+        long[] selected = new long[indexes.length];
+        for (int i=0; i<indexes.length; ++i) {
+            selected[i] = offsets[(int)indexes[i]];
+        }
+        return selected;
+    }
+
+}
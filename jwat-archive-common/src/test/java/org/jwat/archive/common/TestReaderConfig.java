@@ -0,0 +1,196 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.common.UriProfile;
+import org.jwat.common.ValidationLevel;
+
+@RunWith(JUnit4.class)
+public class TestReaderConfig {
+
+    @Test
+    public void test_readerconfig_defaults() {
+        ReaderConfig config = ReaderConfig.DEFAULT;
+        Assert.assertFalse(config.bStrict);
+        Assert.assertEquals(UriProfile.RFC3986, config.uriProfile);
+        Assert.assertEquals(UriProfile.RFC3986, config.warcTargetUriProfile);
+        Assert.assertFalse(config.bBlockDigest);
+        Assert.assertNull(config.blockDigestAlgorithm);
+        Assert.assertEquals("base32", config.blockDigestEncoding);
+        Assert.assertFalse(config.bPayloadDigest);
+        Assert.assertNull(config.payloadDigestAlgorithm);
+        Assert.assertEquals("base32", config.payloadDigestEncoding);
+        Assert.assertEquals(0, config.payloadFingerprintBits);
+        Assert.assertEquals(8192, config.recordHeaderMaxSize);
+        Assert.assertEquals(32768, config.payloadHeaderMaxSize);
+        Assert.assertTrue(config.bReportHttpHeaderError);
+        Assert.assertFalse(config.bDeferHttpHeader);
+        Assert.assertFalse(config.bHeaderOnly);
+        Assert.assertEquals(ValidationLevel.FULL, config.validationLevel);
+    }
+
+    @Test
+    public void test_readerconfig_builder() {
+        ReaderConfig config = new ReaderConfig.Builder()
+                .setStrict(true)
+                .setUriProfile(UriProfile.RFC3986_ABS_16BIT_LAX)
+                .setWarcTargetUriProfile(UriProfile.RFC3986_ABS_16BIT)
+                .setBlockDigestEnabled(true)
+                .setBlockDigestAlgorithm("sha1")
+                .setBlockDigestEncoding("BASE16")
+                .setPayloadDigestEnabled(true)
+                .setPayloadDigestAlgorithm("md5")
+                .setPayloadDigestEncoding("Base64")
+                .setPayloadFingerprintBits(128)
+                .setRecordHeaderMaxSize(1024)
+                .setPayloadHeaderMaxSize(2048)
+                .setReportHttpHeaderErrors(false)
+                .setDeferHttpHeader(true)
+                .setHeaderOnly(true)
+                .setValidationLevel(ValidationLevel.COUNT_ONLY)
+                .build();
+        Assert.assertTrue(config.bStrict);
+        Assert.assertEquals(UriProfile.RFC3986_ABS_16BIT_LAX, config.uriProfile);
+        Assert.assertEquals(UriProfile.RFC3986_ABS_16BIT, config.warcTargetUriProfile);
+        Assert.assertTrue(config.bBlockDigest);
+        Assert.assertEquals("sha1", config.blockDigestAlgorithm);
+        Assert.assertEquals("base16", config.blockDigestEncoding);
+        Assert.assertTrue(config.bPayloadDigest);
+        Assert.assertEquals("md5", config.payloadDigestAlgorithm);
+        Assert.assertEquals("base64", config.payloadDigestEncoding);
+        Assert.assertEquals(128, config.payloadFingerprintBits);
+        Assert.assertEquals(1024, config.recordHeaderMaxSize);
+        Assert.assertEquals(2048, config.payloadHeaderMaxSize);
+        Assert.assertFalse(config.bReportHttpHeaderError);
+        Assert.assertTrue(config.bDeferHttpHeader);
+        Assert.assertTrue(config.bHeaderOnly);
+        Assert.assertEquals(ValidationLevel.COUNT_ONLY, config.validationLevel);
+
+        ReaderConfig copy = config.toBuilder().build();
+        Assert.assertNotSame(config, copy);
+        Assert.assertEquals(config.bStrict, copy.bStrict);
+        Assert.assertEquals(config.uriProfile, copy.uriProfile);
+        Assert.assertEquals(config.warcTargetUriProfile, copy.warcTargetUriProfile);
+        Assert.assertEquals(config.bBlockDigest, copy.bBlockDigest);
+        Assert.assertEquals(config.blockDigestAlgorithm, copy.blockDigestAlgorithm);
+        Assert.assertEquals(config.blockDigestEncoding, copy.blockDigestEncoding);
+        Assert.assertEquals(config.bPayloadDigest, copy.bPayloadDigest);
+        Assert.assertEquals(config.payloadDigestAlgorithm, copy.payloadDigestAlgorithm);
+        Assert.assertEquals(config.payloadDigestEncoding, copy.payloadDigestEncoding);
+        Assert.assertEquals(config.payloadFingerprintBits, copy.payloadFingerprintBits);
+        Assert.assertEquals(config.recordHeaderMaxSize, copy.recordHeaderMaxSize);
+        Assert.assertEquals(config.payloadHeaderMaxSize, copy.payloadHeaderMaxSize);
+        Assert.assertEquals(config.bReportHttpHeaderError, copy.bReportHttpHeaderError);
+        Assert.assertEquals(config.bDeferHttpHeader, copy.bDeferHttpHeader);
+        Assert.assertEquals(config.bHeaderOnly, copy.bHeaderOnly);
+        Assert.assertEquals(config.validationLevel, copy.validationLevel);
+
+        copy = config.toBuilder()
+                .setBlockDigestAlgorithm("")
+                .setPayloadDigestAlgorithm(null)
+                .setBlockDigestEncoding(null)
+                .setPayloadDigestEncoding("")
+                .build();
+        Assert.assertNull(copy.blockDigestAlgorithm);
+        Assert.assertNull(copy.payloadDigestAlgorithm);
+        Assert.assertNull(copy.blockDigestEncoding);
+        Assert.assertNull(copy.payloadDigestEncoding);
+        // The original configuration is not affected.
+        Assert.assertEquals("sha1", config.blockDigestAlgorithm);
+        Assert.assertEquals("base16", config.blockDigestEncoding);
+    }
+
+    @Test
+    public void test_readerconfig_invalid() {
+        ReaderConfig.Builder builder = new ReaderConfig.Builder();
+        try {
+            builder.setUriProfile(null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            builder.setWarcTargetUriProfile(null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            builder.setBlockDigestAlgorithm("shaft1");
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            builder.setPayloadDigestAlgorithm("shaft1");
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            builder.setPayloadFingerprintBits(96);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            builder.setRecordHeaderMaxSize(0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            builder.setPayloadHeaderMaxSize(-1);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            builder.setValidationLevel(null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void test_readerconfig_sharedstate() {
+        ReaderConfig config = new ReaderConfig.Builder().build();
+        Object state1 = new Object();
+        Object state2 = new Object();
+        Assert.assertNull(config.getSharedState(String.class));
+        Assert.assertSame(state1, config.putSharedStateIfAbsent(String.class, state1));
+        Assert.assertSame(state1, config.putSharedStateIfAbsent(String.class, state2));
+        Assert.assertSame(state1, config.getSharedState(String.class));
+        Assert.assertNull(config.getSharedState(Integer.class));
+        // State is never carried over to a new configuration.
+        Assert.assertNull(config.toBuilder().build().getSharedState(String.class));
+        try {
+            config.getSharedState(null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            config.putSharedStateIfAbsent(null, state1);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            config.putSharedStateIfAbsent(String.class, null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
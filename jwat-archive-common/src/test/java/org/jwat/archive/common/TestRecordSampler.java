@@ -0,0 +1,147 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestRecordSampler {
+
+    @Test
+    public void test_recordsampler_everynth() {
+        RecordSampler sampler = RecordSampler.everyNth(1);
+        for (int i=0; i<10; ++i) {
+            Assert.assertTrue(sampler.sample(i));
+        }
+        sampler = RecordSampler.everyNth(4);
+        long[] offsets = {0, 10, 20, 30, 40, 50, 60, 70, 80};
+        Assert.assertArrayEquals(new long[] {0, 40, 80}, sampler.select(offsets));
+        try {
+            RecordSampler.everyNth(0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            sampler.select(null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void test_recordsampler_bernoulli() {
+        RecordSampler sampler1 = RecordSampler.bernoulli(0.1, 42L);
+        RecordSampler sampler2 = RecordSampler.bernoulli(0.1, 42L);
+        RecordSampler sampler3 = RecordSampler.bernoulli(0.1, 43L);
+        int sampled = 0;
+        int differs = 0;
+        for (int i=0; i<100000; ++i) {
+            boolean b = sampler1.sample(i);
+            // The same seed samples the same records.
+            Assert.assertEquals(b, sampler2.sample(i));
+            if (b) {
+                ++sampled;
+            }
+            if (b != sampler3.sample(i)) {
+                ++differs;
+            }
+        }
+        Assert.assertEquals(10000, sampled, 500);
+        Assert.assertTrue(differs > 10000);
+        // Decisions do not depend on the records asked about before.
+        Assert.assertEquals(sampler1.sample(12345), RecordSampler.bernoulli(0.1, 42L).sample(12345));
+
+        RecordSampler none = RecordSampler.bernoulli(0.0, 42L);
+        RecordSampler all = RecordSampler.bernoulli(1.0, 42L);
+        for (int i=0; i<1000; ++i) {
+            Assert.assertFalse(none.sample(i));
+            Assert.assertTrue(all.sample(i));
+        }
+        try {
+            RecordSampler.bernoulli(1.5, 42L);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void test_recordsampler_reservoir() {
+        // Fewer records than the reservoir size.
+        ReservoirSampler reservoir = RecordSampler.reservoir(10, 42L);
+        for (int i=0; i<5; ++i) {
+            Assert.assertTrue(reservoir.sample(i));
+        }
+        Assert.assertEquals(5, reservoir.size());
+        Assert.assertArrayEquals(new long[] {0, 1, 2, 3, 4}, reservoir.getIndexes());
+
+        // Each record is kept with probability k/n.
+        int n = 1000;
+        int k = 10;
+        int runs = 2000;
+        int[] hits = new int[n];
+        long candidates = 0;
+        for (int r=0; r<runs; ++r) {
+            reservoir = new ReservoirSampler(k, r);
+            for (int i=0; i<n; ++i) {
+                if (reservoir.sample(i)) {
+                    ++candidates;
+                }
+            }
+            long[] indexes = reservoir.getIndexes();
+            Assert.assertEquals(k, indexes.length);
+            for (int i=0; i<indexes.length; ++i) {
+                if (i > 0) {
+                    Assert.assertTrue(indexes[i - 1] < indexes[i]);
+                }
+                ++hits[(int)indexes[i]];
+            }
+        }
+        int[] deciles = new int[10];
+        for (int i=0; i<n; ++i) {
+            deciles[i / 100] += hits[i];
+        }
+        double expected = (double)runs * k / 10;
+        for (int i=0; i<deciles.length; ++i) {
+            Assert.assertEquals(expected, deciles[i], expected * 0.1);
+        }
+        // Only about k*(1+ln(n/k)) records are ever sampled.
+        double expectedCandidates = k * (1.0 + Math.log((double)n / k));
+        Assert.assertEquals(expectedCandidates, (double)candidates / runs, expectedCandidates * 0.2);
+
+        long[] offsets = new long[100];
+        for (int i=0; i<offsets.length; ++i) {
+            offsets[i] = i * 1000L;
+        }
+        reservoir = RecordSampler.reservoir(3, 42L);
+        long[] selected = reservoir.select(offsets);
+        long[] indexes = reservoir.getIndexes();
+        Assert.assertEquals(3, selected.length);
+        for (int i=0; i<selected.length; ++i) {
+            Assert.assertEquals(indexes[i] * 1000L, selected[i]);
+        }
+        try {
+            RecordSampler.reservoir(0, 42L);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
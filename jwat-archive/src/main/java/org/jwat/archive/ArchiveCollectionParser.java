@@ -0,0 +1,369 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jwat.arc.ArcReader;
+import org.jwat.arc.ArcRecordBase;
+import org.jwat.archive.common.ReaderConfig;
+import org.jwat.gzip.GzipEntry;
+import org.jwat.gzip.GzipReader;
+import org.jwat.warc.WarcReader;
+import org.jwat.warc.WarcRecord;
+
+/**
+ * Parse a collection of GZIP/ARC/WARC files concurrently.
+ * Files are scheduled largest first on a work-stealing pool to avoid a few
+ * large files being parsed last. Each file is parsed by its own
+ * <code>ArchiveParser</code> instance and the per file results are merged
+ * into an aggregated summary.
+ * @author nicl
+ */
+public class ArchiveCollectionParser {
+
+    /*
+     * Settings.
+     */
+
+    /** Number of files parsed concurrently. */
+    public int threads = Runtime.getRuntime().availableProcessors();
+
+    /** Reader configuration shared by all the parsers, if null the
+     *  <code>ArchiveParser</code> defaults are used. */
+    public ReaderConfig readerConfig;
+
+    /** Callback used to monitor and modify internal data as it is being
+     *  parsed. Must be thread-safe since it is shared by all the parsers. */
+    public ArchiveRecordParserCallback arpCallback;
+
+    /** Algorithms used to digest each whole file while it is being parsed,
+     *  see <code>ArchiveParser</code>. Null disables it. */
+    public String[] fileDigestAlgorithms;
+
+    /** Collect record statistics per file and for the whole collection,
+     *  see <code>ArchiveStats</code>. Combine with a header only reader
+     *  configuration for the cheapest scan. */
+    public boolean bCollectStats = false;
+
+    /**
+     * Construct instance. Modify the fields directly to customise.
+     */
+    public ArchiveCollectionParser() {
+    }
+
+    /**
+     * Recursively list the files in a directory accepted by the filter.
+     * @param dir directory to walk
+     * @param filter file filter or null to accept all files
+     * @return list of files accepted by the filter
+     */
+    public static List<File> listFiles(File dir, FileFilter filter) {
+        if (dir == null) {
+            throw new IllegalArgumentException("'dir' is null!");
+        }
+        List<File> files = new ArrayList<File>();
+        List<File> dirs = new ArrayList<File>();
+        dirs.add(dir);
+        File[] entries;
+        while (!dirs.isEmpty()) {
+            entries = dirs.remove(dirs.size() - 1).listFiles();
+            if (entries != null) {
+                for (int i=0; i<entries.length; ++i) {
+                    if (entries[i].isDirectory()) {
+                        dirs.add(entries[i]);
+                    } else if (filter == null || filter.accept(entries[i])) {
+                        files.add(entries[i]);
+                    }
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Parse all the files in a directory, and its sub directories, accepted
+     * by the filter.
+     * @param dir directory to walk
+     * @param filter file filter or null to accept all files
+     * @param factory callback handler factory or null
+     * @return aggregated summary of the parsing
+     * @throws InterruptedException if interrupted while waiting for the parsers
+     */
+    public ArchiveCollectionResult parse(File dir, FileFilter filter, ArchiveParserCallbackFactory factory) throws InterruptedException {
+        return parse(listFiles(dir, filter), factory);
+    }
+
+    /**
+     * Parse a collection of files concurrently.
+     * @param files files to parse
+     * @param factory callback handler factory or null
+     * @return aggregated summary of the parsing, the per file results are
+     * in the same order as the supplied files
+     * @throws InterruptedException if interrupted while waiting for the parsers
+     */
+    public ArchiveCollectionResult parse(Collection<File> files, ArchiveParserCallbackFactory factory) throws InterruptedException {
+        if (files == null) {
+            throw new IllegalArgumentException("'files' is null!");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("'threads' must be greater than 0!");
+        }
+        long start = System.currentTimeMillis();
+        ReaderConfig config = readerConfig;
+        if (config == null) {
+            // The default ARC and WARC configurations are the same.
+            config = new ArchiveParser().getWarcReaderConfig();
+        }
+        ArchiveFileResult[] fileResults = new ArchiveFileResult[files.size()];
+        int idx = 0;
+        for (File file : files) {
+            fileResults[idx++] = new ArchiveFileResult(file);
+        }
+        // Schedule the largest files first.
+        ArchiveFileResult[] scheduled = fileResults.clone();
+        Arrays.sort(scheduled, new Comparator<ArchiveFileResult>() {
+            @Override
+            public int compare(ArchiveFileResult r1, ArchiveFileResult r2) {
+                return r1.length < r2.length ? 1 : (r1.length > r2.length ? -1 : 0);
+            }
+        });
+        List<Callable<ArchiveFileResult>> tasks = new ArrayList<Callable<ArchiveFileResult>>(scheduled.length);
+        for (int i=0; i<scheduled.length; ++i) {
+            tasks.add(new ParseTask(scheduled[i], factory, config));
+        }
+        ExecutorService executor = Executors.newWorkStealingPool(threads);
+        try {
+            List<Future<ArchiveFileResult>> futures = executor.invokeAll(tasks);
+            for (int i=0; i<futures.size(); ++i) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    // Only thrown by the callback handler factory.
+                    scheduled[i].runtimeError = e.getCause();
+                    scheduled[i].bIsCompliant = false;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        ArchiveCollectionResult result = new ArchiveCollectionResult();
+        for (int i=0; i<fileResults.length; ++i) {
+            result.add(fileResults[i]);
+        }
+        result.elapsed = System.currentTimeMillis() - start;
+        return result;
+    }
+
+    /**
+     * Parse a single file with an isolated parser and update its result.
+     * @param fileResult result object of the file to parse
+     * @param factory callback handler factory or null
+     * @param config reader configuration
+     */
+    protected void parseFile(ArchiveFileResult fileResult, ArchiveParserCallbackFactory factory, ReaderConfig config) {
+        long start = System.currentTimeMillis();
+        ArchiveParserCallback callbacks = null;
+        if (factory != null) {
+            callbacks = factory.getCallback(fileResult.file);
+        }
+        if (bCollectStats) {
+            fileResult.stats = new ArchiveStats();
+        }
+        ArchiveParser parser = new ArchiveParser();
+        parser.readerConfig = config;
+        parser.arpCallback = arpCallback;
+        parser.fileDigestAlgorithms = fileDigestAlgorithms;
+        ResultCallback resultCallback = new ResultCallback(fileResult, callbacks);
+        try {
+            fileResult.consumed = parser.parse(fileResult.file, resultCallback);
+        } catch (Throwable t) {
+            // The parser only fails outright if the file could not be opened.
+            if (fileResult.runtimeError == null) {
+                fileResult.runtimeError = t;
+            }
+            fileResult.fileId = FileIdent.FILEID_ERROR;
+        }
+        // The readers have been closed, so all records are accounted for.
+        if (parser.gzipReader != null) {
+            fileResult.bIsCompliant &= parser.gzipReader.isCompliant();
+            fileResult.errors += parser.gzipReader.diagnostics.getErrorCount();
+            fileResult.warnings += parser.gzipReader.diagnostics.getWarningCount();
+        }
+        if (parser.arcReader != null) {
+            fileResult.bIsCompliant &= parser.arcReader.isCompliant();
+            fileResult.records += parser.arcReader.getRecordCount();
+            fileResult.errors += parser.arcReader.getErrorCount();
+            fileResult.warnings += parser.arcReader.getWarningCount();
+        }
+        if (parser.warcReader != null) {
+            fileResult.bIsCompliant &= parser.warcReader.isCompliant();
+            fileResult.records += parser.warcReader.getRecordCount();
+            fileResult.errors += parser.warcReader.getErrorCount();
+            fileResult.warnings += parser.warcReader.getWarningCount();
+        }
+        if (fileResult.runtimeError != null) {
+            fileResult.bIsCompliant = false;
+        }
+        if (fileResult.stats != null && parser.gzipReader == null) {
+            // Uncompressed archive, the bytes on disk are the bytes read.
+            fileResult.stats.addBytes(fileResult.consumed, fileResult.consumed);
+        }
+        fileResult.elapsed = System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Task parsing a single file.
+     */
+    protected class ParseTask implements Callable<ArchiveFileResult> {
+
+        /** Result object of the file to parse. */
+        protected final ArchiveFileResult fileResult;
+
+        /** Callback handler factory or null. */
+        protected final ArchiveParserCallbackFactory factory;
+
+        /** Reader configuration. */
+        protected final ReaderConfig config;
+
+        /**
+         * Construct a task parsing the file of the result object.
+         * @param fileResult result object of the file to parse
+         * @param factory callback handler factory or null
+         * @param config reader configuration
+         */
+        protected ParseTask(ArchiveFileResult fileResult, ArchiveParserCallbackFactory factory, ReaderConfig config) {
+            this.fileResult = fileResult;
+            this.factory = factory;
+            this.config = config;
+        }
+
+        @Override
+        public ArchiveFileResult call() {
+            parseFile(fileResult, factory, config);
+            return fileResult;
+        }
+
+    }
+
+    /**
+     * Callback handler recording the file result and forwarding all calls
+     * to the optional callback handler supplied by the factory.
+     */
+    protected static class ResultCallback implements ArchiveParserCallback {
+
+        /** Result object of the file being parsed. */
+        protected final ArchiveFileResult fileResult;
+
+        /** Callback handler supplied by the factory or null. */
+        protected final ArchiveParserCallback callbacks;
+
+        /**
+         * Construct a callback handler for the given result object.
+         * @param fileResult result object of the file being parsed
+         * @param callbacks callback handler supplied by the factory or null
+         */
+        protected ResultCallback(ArchiveFileResult fileResult, ArchiveParserCallback callbacks) {
+            this.fileResult = fileResult;
+            this.callbacks = callbacks;
+        }
+
+        @Override
+        public void apcFileId(File file, int fileId) {
+            fileResult.fileId = fileId;
+            if (callbacks != null) {
+                callbacks.apcFileId(file, fileId);
+            }
+        }
+
+        @Override
+        public void apcGzipEntryStart(GzipEntry gzipEntry, long startOffset) {
+            ++fileResult.gzipEntries;
+            if (fileResult.stats != null) {
+                fileResult.stats.addGzipEntry(gzipEntry);
+            }
+            if (callbacks != null) {
+                callbacks.apcGzipEntryStart(gzipEntry, startOffset);
+            }
+        }
+
+        @Override
+        public void apcArcRecordStart(ArcRecordBase arcRecord, long startOffset, boolean compressed) throws IOException {
+            if (fileResult.stats != null) {
+                fileResult.stats.addArcRecord(arcRecord);
+            }
+            if (callbacks != null) {
+                callbacks.apcArcRecordStart(arcRecord, startOffset, compressed);
+            }
+        }
+
+        @Override
+        public void apcWarcRecordStart(WarcRecord warcRecord, long startOffset, boolean compressed) throws IOException {
+            if (fileResult.stats != null) {
+                fileResult.stats.addWarcRecord(warcRecord);
+            }
+            if (callbacks != null) {
+                callbacks.apcWarcRecordStart(warcRecord, startOffset, compressed);
+            }
+        }
+
+        @Override
+        public void apcUpdateConsumed(long consumed) {
+            if (callbacks != null) {
+                callbacks.apcUpdateConsumed(consumed);
+            }
+        }
+
+        @Override
+        public void apcRuntimeError(Throwable t, long offset, long consumed) {
+            fileResult.runtimeError = t;
+            fileResult.runtimeErrorOffset = offset;
+            if (callbacks != null) {
+                callbacks.apcRuntimeError(t, offset, consumed);
+            }
+        }
+
+        @Override
+        public void apcDone(GzipReader gzipReader, ArcReader arcReader, WarcReader warcReader) {
+            apcDone(gzipReader, arcReader, warcReader, null);
+        }
+
+        @Override
+        public void apcDone(GzipReader gzipReader, ArcReader arcReader, WarcReader warcReader, Map<String, byte[]> fileDigests) {
+            fileResult.fileDigests = fileDigests;
+            if (callbacks != null) {
+                callbacks.apcDone(gzipReader, arcReader, warcReader, fileDigests);
+            }
+        }
+
+    }
+
+}
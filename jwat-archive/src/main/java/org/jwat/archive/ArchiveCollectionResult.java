@@ -0,0 +1,102 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Aggregated summary of the parsing of a collection of files by
+ * <code>ArchiveCollectionParser</code>. ({@link ArchiveCollectionParser})
+ * @author nicl
+ */
+public class ArchiveCollectionResult {
+
+    /** Per file results in the order the files were supplied. */
+    public final List<ArchiveFileResult> fileResults = new ArrayList<ArchiveFileResult>();
+
+    /** Number of files parsed. */
+    public int files;
+
+    /** Number of files identified per file id, indexed by file id + 1. */
+    public final int[] fileIds = new int[FileIdent.FILEID_WARC_GZ + 2];
+
+    /** Total number of bytes consumed. */
+    public long consumed;
+
+    /** Total number of GZip entries parsed. */
+    public long gzipEntries;
+
+    /** Total number of ARC/WARC records parsed. */
+    public long records;
+
+    /** Total number of errors reported. */
+    public long errors;
+
+    /** Total number of warnings reported. */
+    public long warnings;
+
+    /** Number of compliant files. */
+    public int compliantFiles;
+
+    /** Number of files where a runtime error was encountered. */
+    public int runtimeErrors;
+
+    /** Merged record statistics of all the files, if enabled. */
+    public ArchiveStats stats;
+
+    /** Time spent parsing the collection in milliseconds. */
+    public long elapsed;
+
+    /**
+     * Merge the result of a single file into this summary.
+     * @param fileResult result of a single file
+     */
+    public void add(ArchiveFileResult fileResult) {
+        fileResults.add(fileResult);
+        ++files;
+        ++fileIds[fileResult.fileId + 1];
+        consumed += fileResult.consumed;
+        gzipEntries += fileResult.gzipEntries;
+        records += fileResult.records;
+        errors += fileResult.errors;
+        warnings += fileResult.warnings;
+        if (fileResult.bIsCompliant) {
+            ++compliantFiles;
+        }
+        if (fileResult.runtimeError != null) {
+            ++runtimeErrors;
+        }
+        if (fileResult.stats != null) {
+            if (stats == null) {
+                stats = new ArchiveStats();
+            }
+            stats.merge(fileResult.stats);
+        }
+    }
+
+    /**
+     * Returns the number of files identified as the given file id.
+     * @param fileId file id, see <code>FileIdent</code>
+     * @return number of files identified as the given file id
+     */
+    public int getFileIdCount(int fileId) {
+        return fileIds[fileId + 1];
+    }
+
+}
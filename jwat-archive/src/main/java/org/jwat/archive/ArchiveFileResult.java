@@ -0,0 +1,81 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * Summary of the parsing of a single file by <code>ArchiveCollectionParser</code>.
+ * ({@link ArchiveCollectionParser})
+ * @author nicl
+ */
+public class ArchiveFileResult {
+
+    /** File parsed. */
+    public final File file;
+
+    /** Length of the file when it was scheduled. */
+    public final long length;
+
+    /** What the file has been identified as, see <code>FileIdent</code>. */
+    public int fileId = FileIdent.FILEID_UNKNOWN;
+
+    /** Number of bytes consumed by the parser. */
+    public long consumed;
+
+    /** Number of GZip entries parsed. */
+    public int gzipEntries;
+
+    /** Number of ARC/WARC records parsed. */
+    public int records;
+
+    /** Aggregated number of errors reported by the readers. */
+    public int errors;
+
+    /** Aggregated number of warnings reported by the readers. */
+    public int warnings;
+
+    /** Compliance status of all the readers used. */
+    public boolean bIsCompliant = true;
+
+    /** Runtime error encountered while parsing the file or null. */
+    public Throwable runtimeError;
+
+    /** Offset of the runtime error, if any. */
+    public long runtimeErrorOffset = -1;
+
+    /** Digests of the whole file keyed by algorithm, if enabled. */
+    public Map<String, byte[]> fileDigests;
+
+    /** Record statistics of the file, if enabled. */
+    public ArchiveStats stats;
+
+    /** Time spent parsing the file in milliseconds. */
+    public long elapsed;
+
+    /**
+     * Construct a result object for the given file.
+     * @param file file parsed
+     */
+    public ArchiveFileResult(File file) {
+        this.file = file;
+        this.length = file.length();
+    }
+
+}
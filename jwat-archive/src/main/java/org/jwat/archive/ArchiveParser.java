@@ -21,17 +21,22 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.Map;
 
 import org.jwat.arc.ArcReader;
 import org.jwat.arc.ArcReaderFactory;
+import org.jwat.arc.ArcReaderUncompressed;
 import org.jwat.arc.ArcRecordBase;
+import org.jwat.archive.common.ReaderConfig;
 import org.jwat.common.ByteCountingPushBackInputStream;
+import org.jwat.common.FixityInputStream;
 import org.jwat.common.RandomAccessFileInputStream;
 import org.jwat.common.UriProfile;
 import org.jwat.gzip.GzipEntry;
 import org.jwat.gzip.GzipReader;
 import org.jwat.warc.WarcReader;
 import org.jwat.warc.WarcReaderFactory;
+import org.jwat.warc.WarcReaderUncompressed;
 import org.jwat.warc.WarcRecord;
 
 /**
@@ -69,6 +74,14 @@ public class ArchiveParser {
     /** Report HTTP header errors on reader diagnosis list. */
     public boolean bReportHttpHeaderError = true;
 
+    /** Shared reader configuration, used instead of the individual
+     *  settings above if not null. */
+    public ReaderConfig readerConfig;
+
+    /** Algorithms used to digest the whole file, as stored on disk, while
+     *  it is being parsed, e.g. "SHA-256" and "MD5". Null disables it. */
+    public String[] fileDigestAlgorithms;
+
     /** Callback used to monitor and modify internal data as it is being parsed. */
     public ArchiveRecordParserCallback arpCallback;
 
@@ -82,18 +95,110 @@ public class ArchiveParser {
     public ArcReader arcReader = null;
     /** Access to used WARC reader to read state. */
     public WarcReader warcReader = null;
+    /** File digests keyed by algorithm, if enabled and the file was parsed to the end. */
+    public Map<String, byte[]> fileDigests = null;
 
     /** Temporary buffer. */
     protected byte[] buffer = new byte[ 8192 ];
 
+    /** ARC reader configuration built from the individual settings, reused
+     *  until one of the settings is changed. */
+    protected ReaderConfig arcSettingsConfig;
+
+    /** WARC reader configuration built from the individual settings, reused
+     *  until one of the settings is changed. */
+    protected ReaderConfig warcSettingsConfig;
+
     /**
      * Construct instance. Modify the fields directly to customise.
      */
     public ArchiveParser() {
     }
 
+    /**
+     * Returns the shared reader configuration, if set, or a configuration
+     * built from the individual settings for the ARC readers. The URI
+     * profile is used for the ARC URLs.
+     * @return reader configuration used for the ARC readers
+     */
+    protected ReaderConfig getArcReaderConfig() {
+        if (readerConfig != null) {
+            return readerConfig;
+        }
+        if (!isSettingsConfig(arcSettingsConfig) || arcSettingsConfig.uriProfile != uriProfile) {
+            arcSettingsConfig = getSettingsBuilder()
+                    .setUriProfile(uriProfile)
+                    .build();
+        }
+        return arcSettingsConfig;
+    }
+
+    /**
+     * Returns the shared reader configuration, if set, or a configuration
+     * built from the individual settings for the WARC readers. The URI
+     * profile is only used for the WARC-Target-URI.
+     * @return reader configuration used for the WARC readers
+     */
+    protected ReaderConfig getWarcReaderConfig() {
+        if (readerConfig != null) {
+            return readerConfig;
+        }
+        if (!isSettingsConfig(warcSettingsConfig)) {
+            warcSettingsConfig = getSettingsBuilder().build();
+        }
+        return warcSettingsConfig;
+    }
+
+    /**
+     * Returns a builder initialised with the individual settings shared by
+     * the ARC and WARC readers.
+     * @return builder initialised with the individual settings
+     */
+    protected ReaderConfig.Builder getSettingsBuilder() {
+        return new ReaderConfig.Builder()
+                .setWarcTargetUriProfile(uriProfile)
+                .setBlockDigestEnabled(bBlockDigestEnabled)
+                .setPayloadDigestEnabled(bPayloadDigestEnabled)
+                .setRecordHeaderMaxSize(recordHeaderMaxSize)
+                .setPayloadHeaderMaxSize(payloadHeaderMaxSize)
+                .setReportHttpHeaderErrors(bReportHttpHeaderError);
+    }
+
+    /**
+     * Check whether a configuration was built from the current values of
+     * the individual settings shared by the ARC and WARC readers.
+     * @param config configuration or null
+     * @return boolean indicating whether the configuration is up to date
+     */
+    protected boolean isSettingsConfig(ReaderConfig config) {
+        return config != null
+                && config.warcTargetUriProfile == uriProfile
+                && config.bBlockDigest == bBlockDigestEnabled
+                && config.bPayloadDigest == bPayloadDigestEnabled
+                && config.recordHeaderMaxSize == recordHeaderMaxSize
+                && config.payloadHeaderMaxSize == payloadHeaderMaxSize
+                && config.bReportHttpHeaderError == bReportHttpHeaderError;
+    }
+
+    /**
+     * Read the rest of the file through the digesting stream and return the
+     * file digests. Must be called before the readers close the stream.
+     * @param fixin digesting stream or null
+     * @return file digests keyed by algorithm or null, if not enabled
+     * @throws IOException if an I/O error occurs while reading
+     */
+    protected Map<String, byte[]> getFileDigests(FixityInputStream fixin) throws IOException {
+        if (fixin == null) {
+            return null;
+        }
+        fixin.drain();
+        return fixin.getDigests();
+    }
+
     /**
      * Parse a file invoking the appropriate callback methods according to the input file.
+     * If enabled, the file digests are passed to the <code>apcDone</code>
+     * callback and are also available from <code>fileDigests</code>.
      * @param file input file
      * @param callbacks callback handler
      * @return number of bytes consumed by the parsing, should correspond to the size of the input file
@@ -101,14 +206,26 @@ public class ArchiveParser {
     public long parse(File file, ArchiveParserCallback callbacks) {
         RandomAccessFile raf = null;
         RandomAccessFileInputStream rafin;
+        FixityInputStream fixin = null;
         ByteCountingPushBackInputStream pbin = null;
         GzipEntry gzipEntry = null;
         ArcRecordBase arcRecord = null;
         WarcRecord warcRecord = null;
+        gzipReader = null;
+        arcReader = null;
+        warcReader = null;
+        fileDigests = null;
         try {
             raf = new RandomAccessFile( file, "r" );
             rafin = new RandomAccessFileInputStream( raf );
-            pbin = new ByteCountingPushBackInputStream( new BufferedInputStream( rafin, DEFAULT_READER_BUFFER_SIZE ), DEFAULT_PUSHBASH_BUFFER_SIZE );
+            if ( fileDigestAlgorithms != null ) {
+                // Digest the raw bytes below the buffer and all the readers.
+                fixin = new FixityInputStream( rafin, fileDigestAlgorithms );
+                pbin = new ByteCountingPushBackInputStream( new BufferedInputStream( fixin, DEFAULT_READER_BUFFER_SIZE ), DEFAULT_PUSHBASH_BUFFER_SIZE );
+            }
+            else {
+                pbin = new ByteCountingPushBackInputStream( new BufferedInputStream( rafin, DEFAULT_READER_BUFFER_SIZE ), DEFAULT_PUSHBASH_BUFFER_SIZE );
+            }
             if ( GzipReader.isGzipped( pbin ) ) {
                 gzipReader = new GzipReader( pbin );
                 ByteCountingPushBackInputStream in;
@@ -119,24 +236,12 @@ public class ArchiveParser {
                     //System.out.println(gzipEntries + " - " + gzipEntry.getStartOffset() + " (0x" + (Long.toHexString(gzipEntry.getStartOffset())) + ")");
                     if ( gzipEntries == 1 ) {
                         if ( ArcReaderFactory.isArcFile( in ) ) {
-                            arcReader = ArcReaderFactory.getReaderUncompressed();
-                            arcReader.setUriProfile(uriProfile);
-                            arcReader.setBlockDigestEnabled( bBlockDigestEnabled );
-                            arcReader.setPayloadDigestEnabled( bPayloadDigestEnabled );
-                            arcReader.setRecordHeaderMaxSize( recordHeaderMaxSize );
-                            arcReader.setPayloadHeaderMaxSize( payloadHeaderMaxSize );
-                            arcReader.setReportHttpHeaderErrors(bReportHttpHeaderError);
+                            arcReader = new ArcReaderUncompressed( getArcReaderConfig() );
                             arcReader.setArcRecordParserCallback( arpCallback );
                             callbacks.apcFileId(file, FileIdent.FILEID_ARC_GZ);
                         }
                         else if ( WarcReaderFactory.isWarcFile( in ) ) {
-                            warcReader = WarcReaderFactory.getReaderUncompressed();
-                            warcReader.setWarcTargetUriProfile(uriProfile);
-                            warcReader.setBlockDigestEnabled( bBlockDigestEnabled );
-                            warcReader.setPayloadDigestEnabled( bPayloadDigestEnabled );
-                            warcReader.setRecordHeaderMaxSize( recordHeaderMaxSize );
-                            warcReader.setPayloadHeaderMaxSize( payloadHeaderMaxSize );
-                            warcReader.setReportHttpHeaderErrors(bReportHttpHeaderError);
+                            warcReader = new WarcReaderUncompressed( getWarcReaderConfig() );
                             warcReader.setWarcRecordParserCallback( arpCallback );
                             callbacks.apcFileId(file, FileIdent.FILEID_WARC_GZ);
                         }
@@ -165,41 +270,34 @@ public class ArchiveParser {
                 }
             }
             else if ( ArcReaderFactory.isArcFile( pbin ) ) {
-                arcReader = ArcReaderFactory.getReaderUncompressed( pbin );
-                arcReader.setUriProfile(uriProfile);
-                arcReader.setBlockDigestEnabled( bBlockDigestEnabled );
-                arcReader.setPayloadDigestEnabled( bPayloadDigestEnabled );
-                arcReader.setRecordHeaderMaxSize( recordHeaderMaxSize );
-                arcReader.setPayloadHeaderMaxSize( payloadHeaderMaxSize );
-                arcReader.setReportHttpHeaderErrors(bReportHttpHeaderError);
+                arcReader = new ArcReaderUncompressed( pbin, getArcReaderConfig() );
                 arcReader.setArcRecordParserCallback( arpCallback );
                 callbacks.apcFileId(file, FileIdent.FILEID_ARC);
                 while ( (arcRecord = arcReader.getNextRecord()) != null ) {
                     callbacks.apcArcRecordStart(arcRecord, arcReader.getStartOffset(), false);
                     callbacks.apcUpdateConsumed(pbin.getConsumed());
                 }
+                fileDigests = getFileDigests( fixin );
                 arcReader.close();
             }
             else if ( WarcReaderFactory.isWarcFile( pbin ) ) {
-                warcReader = WarcReaderFactory.getReaderUncompressed( pbin );
-                warcReader.setWarcTargetUriProfile(uriProfile);
-                warcReader.setBlockDigestEnabled( bBlockDigestEnabled );
-                warcReader.setPayloadDigestEnabled( bPayloadDigestEnabled );
-                warcReader.setRecordHeaderMaxSize( recordHeaderMaxSize );
-                warcReader.setPayloadHeaderMaxSize( payloadHeaderMaxSize );
-                warcReader.setReportHttpHeaderErrors(bReportHttpHeaderError);
+                warcReader = new WarcReaderUncompressed( pbin, getWarcReaderConfig() );
                 warcReader.setWarcRecordParserCallback( arpCallback );
                 callbacks.apcFileId(file, FileIdent.FILEID_WARC);
                 while ( (warcRecord = warcReader.getNextRecord()) != null ) {
                     callbacks.apcWarcRecordStart(warcRecord, warcReader.getStartOffset(), false);
                     callbacks.apcUpdateConsumed(pbin.getConsumed());
                 }
+                fileDigests = getFileDigests( fixin );
                 warcReader.close();
             }
             else {
                 callbacks.apcFileId(file, FileIdent.identFileName(file));
             }
-            callbacks.apcDone(gzipReader, arcReader, warcReader);
+            if ( fileDigests == null ) {
+                fileDigests = getFileDigests( fixin );
+            }
+            callbacks.apcDone(gzipReader, arcReader, warcReader, fileDigests);
         }
         catch (Throwable t) {
             // TODO just use reader.getStartOffset?
@@ -221,7 +319,7 @@ public class ArchiveParser {
             if (length != null) {
                 startOffset += length;
             }
-            callbacks.apcRuntimeError(t, startOffset, pbin.getConsumed());
+            callbacks.apcRuntimeError(t, startOffset, (pbin != null) ? pbin.getConsumed() : 0);
         }
         finally {
             if ( arcReader != null ) {
@@ -252,7 +350,7 @@ public class ArchiveParser {
                 }
             }
         }
-        return pbin.getConsumed();
+        return (pbin != null) ? pbin.getConsumed() : 0;
     }
 
 }
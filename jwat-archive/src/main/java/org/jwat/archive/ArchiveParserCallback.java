@@ -19,6 +19,7 @@ package org.jwat.archive;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
 
 import org.jwat.arc.ArcReader;
 import org.jwat.arc.ArcRecordBase;
@@ -54,4 +55,14 @@ public interface ArchiveParserCallback {
     /** Parser done, no more records/entries. */
     public void apcDone(GzipReader gzipReader, ArcReader arcReader, WarcReader warcReader);
 
+    /**
+     * Parser done, no more records/entries. Invoked by the parser instead of
+     * the method above, which it calls by default.
+     * @param fileDigests file digests keyed by algorithm or null, if not enabled
+     * or the file was not parsed to the end
+     */
+    public default void apcDone(GzipReader gzipReader, ArcReader arcReader, WarcReader warcReader, Map<String, byte[]> fileDigests) {
+        apcDone(gzipReader, arcReader, warcReader);
+    }
+
 }
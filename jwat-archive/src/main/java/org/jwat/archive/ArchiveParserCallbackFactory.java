@@ -0,0 +1,40 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive;
+
+import java.io.File;
+
+/**
+ * Factory used by <code>ArchiveCollectionParser</code> to obtain a callback
+ * handler for each file parsed. Files are parsed concurrently, so this method
+ * may be called from several threads at the same time. Each callback handler
+ * returned is only used by the thread parsing the given file.
+ * ({@link ArchiveCollectionParser})
+ * @author nicl
+ */
+public interface ArchiveParserCallbackFactory {
+
+    /**
+     * Returns a callback handler for the given file or null if no callbacks
+     * are required.
+     * @param file file about to be parsed
+     * @return callback handler for the file or null
+     */
+    public ArchiveParserCallback getCallback(File file);
+
+}
@@ -0,0 +1,343 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jwat.arc.ArcHeader;
+import org.jwat.arc.ArcRecordBase;
+import org.jwat.common.HttpHeader;
+import org.jwat.common.HyperLogLog;
+import org.jwat.common.QuantileSketch;
+import org.jwat.gzip.GzipEntry;
+import org.jwat.warc.WarcHeader;
+import org.jwat.warc.WarcRecord;
+
+/**
+ * Mergeable statistics of the records in one or more archive files.
+ * Records are counted by WARC-Type, record mime type, payload mime type and
+ * HTTP status, the number of distinct hosts is estimated with a
+ * <code>HyperLogLog</code> sketch and the record sizes are kept in a
+ * <code>QuantileSketch</code>.
+ * Everything is taken from the record headers, so the statistics can be
+ * collected on the header only path. In that case the HTTP header of a WARC
+ * HTTP record is read from the start of the record block, to get its payload
+ * mime type, and the rest of the block is skipped. The HTTP status of an ARC
+ * record, or of a WARC record without a valid HTTP header, is read by peeking
+ * at the status line of the record block. When the HTTP header has been
+ * parsed its status and content type are used instead.
+ * The add methods are not thread-safe, collect the statistics of each file
+ * in its own instance and merge them into the collection statistics.
+ * @author nicl
+ */
+public class ArchiveStats {
+
+    /** Key used when a value is not available. */
+    public static final String NO_VALUE = "-";
+
+    /** Number of bytes peeked to read an HTTP status line. */
+    protected static final int STATUS_PEEK_SIZE = 16;
+
+    /** Number of ARC/WARC records. */
+    public long records;
+
+    /** Number of GZip entries. */
+    public long gzipEntries;
+
+    /** Number of bytes on disk, including GZip overhead. */
+    public long compressedBytes;
+
+    /** Number of uncompressed bytes. */
+    public long uncompressedBytes;
+
+    /** Number of records per WARC-Type, "-" for ARC records. */
+    public final Map<String, Long> warcTypes = new TreeMap<String, Long>();
+
+    /** Number of records per record header mime type, e.g. "application/http"
+     *  for WARC HTTP records. */
+    public final Map<String, Long> recordMimeTypes = new TreeMap<String, Long>();
+
+    /** Number of records per payload mime type, "-" if unknown. */
+    public final Map<String, Long> mimeTypes = new TreeMap<String, Long>();
+
+    /** Number of records per HTTP status. */
+    public final Map<String, Long> httpStatuses = new TreeMap<String, Long>();
+
+    /** Sketch of the distinct target hosts. */
+    public final HyperLogLog hosts = new HyperLogLog();
+
+    /** Sketch of the record block sizes. */
+    public final QuantileSketch recordSizes = new QuantileSketch();
+
+    /** Buffer used to peek at HTTP status lines. */
+    protected final byte[] peekBuf = new byte[STATUS_PEEK_SIZE];
+
+    /**
+     * Construct an empty statistics object.
+     */
+    public ArchiveStats() {
+    }
+
+    /**
+     * Add the sizes of a closed GZip entry. The number of bytes consumed is
+     * used as the compressed size since <code>compressed_size</code> does not
+     * include the GZip header and trailer.
+     * @param gzipEntry closed GZip entry
+     */
+    public void addGzipEntry(GzipEntry gzipEntry) {
+        ++gzipEntries;
+        compressedBytes += gzipEntry.consumed;
+        uncompressedBytes += gzipEntry.uncompressed_size;
+    }
+
+    /**
+     * Add the sizes of data not read from GZip entries, e.g. an
+     * uncompressed archive file.
+     * @param compressed number of bytes on disk
+     * @param uncompressed number of uncompressed bytes
+     */
+    public void addBytes(long compressed, long uncompressed) {
+        compressedBytes += compressed;
+        uncompressedBytes += uncompressed;
+    }
+
+    /**
+     * Add a WARC record, must be called before the record is closed.
+     * @param record WARC record
+     * @throws IOException if an I/O error occurs while peeking at the block
+     */
+    public void addWarcRecord(WarcRecord record) throws IOException {
+        WarcHeader header = record.header;
+        ++records;
+        increment(warcTypes, header.warcTypeStr);
+        increment(recordMimeTypes, getMimeType(header.contentTypeStr));
+        String mimeType = null;
+        String status = null;
+        HttpHeader httpHeader = record.getHttpHeader();
+        if (httpHeader != null) {
+            mimeType = httpHeader.getProtocolContentType();
+            if (httpHeader.headerType == HttpHeader.HT_RESPONSE) {
+                status = httpHeader.statusCodeStr;
+            }
+        } else if (header.contentType != null) {
+            if ("application".equals(header.contentType.contentType)
+                    && "http".equals(header.contentType.mediaType)) {
+                // Header only, peek before the HTTP header is read.
+                status = getHttpStatus(peekBuf, record.peekBlock(peekBuf));
+                httpHeader = record.readHttpHeader();
+                if (httpHeader != null) {
+                    mimeType = httpHeader.getProtocolContentType();
+                    status = (httpHeader.headerType == HttpHeader.HT_RESPONSE) ? httpHeader.statusCodeStr : null;
+                }
+            } else {
+                mimeType = header.contentTypeStr;
+            }
+        }
+        increment(mimeTypes, getMimeType(mimeType));
+        increment(httpStatuses, status);
+        String host = getHost(header.warcTargetUriStr);
+        if (host != null) {
+            hosts.add(host);
+        }
+        if (header.contentLength != null) {
+            recordSizes.add(header.contentLength);
+        }
+    }
+
+    /**
+     * Add an ARC record, must be called before the record is closed.
+     * @param record ARC record
+     * @throws IOException if an I/O error occurs while peeking at the block
+     */
+    public void addArcRecord(ArcRecordBase record) throws IOException {
+        ArcHeader header = record.header;
+        ++records;
+        increment(warcTypes, null);
+        increment(recordMimeTypes, getMimeType(header.contentTypeStr));
+        String mimeType = header.contentTypeStr;
+        String status = header.resultCodeStr;
+        HttpHeader httpHeader = record.getHttpHeader();
+        if (httpHeader != null) {
+            mimeType = httpHeader.getProtocolContentType();
+            if (status == null) {
+                status = httpHeader.statusCodeStr;
+            }
+        } else if (status == null && record.recordType == ArcRecordBase.RT_ARC_RECORD
+                && HttpHeader.isSupported(header.urlScheme)) {
+            status = getHttpStatus(peekBuf, record.peekBlock(peekBuf));
+        }
+        increment(mimeTypes, getMimeType(mimeType));
+        increment(httpStatuses, status);
+        if (record.recordType == ArcRecordBase.RT_ARC_RECORD) {
+            String host = getHost(header.urlStr);
+            if (host != null) {
+                hosts.add(host);
+            }
+        }
+        if (header.archiveLength != null) {
+            recordSizes.add(header.archiveLength);
+        }
+    }
+
+    /**
+     * Merge other statistics into these statistics. Synchronized so several
+     * threads can merge their results into shared collection statistics.
+     * @param other statistics to merge, no longer being updated
+     */
+    public synchronized void merge(ArchiveStats other) {
+        if (other == null) {
+            throw new IllegalArgumentException("'other' is null!");
+        }
+        records += other.records;
+        gzipEntries += other.gzipEntries;
+        compressedBytes += other.compressedBytes;
+        uncompressedBytes += other.uncompressedBytes;
+        merge(warcTypes, other.warcTypes);
+        merge(recordMimeTypes, other.recordMimeTypes);
+        merge(mimeTypes, other.mimeTypes);
+        merge(httpStatuses, other.httpStatuses);
+        hosts.merge(other.hosts);
+        recordSizes.merge(other.recordSizes);
+    }
+
+    /**
+     * Increment the count of a key, null keys are counted as "-".
+     * @param map counts per key
+     * @param key key to increment
+     */
+    protected static void increment(Map<String, Long> map, String key) {
+        if (key == null || key.length() == 0) {
+            key = NO_VALUE;
+        }
+        Long count = map.get(key);
+        map.put(key, (count != null) ? count + 1 : 1L);
+    }
+
+    /**
+     * Add all the counts of one map to another.
+     * @param dst counts to add to
+     * @param src counts to add
+     */
+    protected static void merge(Map<String, Long> dst, Map<String, Long> src) {
+        Long count;
+        for (Map.Entry<String, Long> entry : src.entrySet()) {
+            count = dst.get(entry.getKey());
+            dst.put(entry.getKey(), (count != null) ? count + entry.getValue() : entry.getValue());
+        }
+    }
+
+    /**
+     * Returns the mime type of a content type, without any parameters and
+     * in lower case.
+     * @param contentType content type or null
+     * @return mime type or null
+     */
+    public static String getMimeType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int idx = contentType.indexOf(';');
+        if (idx != -1) {
+            contentType = contentType.substring(0, idx);
+        }
+        return contentType.trim().toLowerCase();
+    }
+
+    /**
+     * Returns the status code from the start of an HTTP status line.
+     * @param bytes bytes from the start of the record block
+     * @param len number of bytes available
+     * @return status code or null, if not an HTTP status line
+     */
+    public static String getHttpStatus(byte[] bytes, int len) {
+        if (len < 12 || bytes[0] != 'H' || bytes[1] != 'T' || bytes[2] != 'T'
+                || bytes[3] != 'P' || bytes[4] != '/') {
+            return null;
+        }
+        int idx = 5;
+        while (idx < len && bytes[idx] != ' ') {
+            ++idx;
+        }
+        ++idx;
+        if (idx + 3 > len) {
+            return null;
+        }
+        for (int i=idx; i<idx + 3; ++i) {
+            if (bytes[i] < '0' || bytes[i] > '9') {
+                return null;
+            }
+        }
+        if (idx + 3 < len && bytes[idx + 3] != ' ' && bytes[idx + 3] != '\r' && bytes[idx + 3] != '\n') {
+            return null;
+        }
+        return new String(bytes, idx, 3);
+    }
+
+    /**
+     * Returns the host of a URI, in lower case and without user info and
+     * port. URIs without an authority, e.g. "dns:", use the scheme specific
+     * part as host.
+     * @param uri URI string or null
+     * @return host or null
+     */
+    public static String getHost(String uri) {
+        if (uri == null) {
+            return null;
+        }
+        int start = uri.indexOf("://");
+        if (start != -1) {
+            start += 3;
+        } else {
+            start = uri.indexOf(':');
+            if (start == -1) {
+                return null;
+            }
+            ++start;
+        }
+        int end = start;
+        char c;
+        while (end < uri.length() && (c = uri.charAt(end)) != '/' && c != '?' && c != '#' && c != '>') {
+            ++end;
+        }
+        int idx = uri.lastIndexOf('@', end - 1);
+        if (idx >= start) {
+            start = idx + 1;
+        }
+        if (start < end && uri.charAt(start) == '[') {
+            idx = uri.indexOf(']', start);
+            if (idx != -1 && idx < end) {
+                end = idx + 1;
+            }
+        } else {
+            idx = uri.indexOf(':', start);
+            if (idx != -1 && idx < end) {
+                end = idx;
+            }
+        }
+        if (end > start && uri.charAt(end - 1) == '.') {
+            --end;
+        }
+        if (start >= end) {
+            return null;
+        }
+        return uri.substring(start, end).toLowerCase();
+    }
+
+}
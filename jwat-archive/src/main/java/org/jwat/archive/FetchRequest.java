@@ -0,0 +1,70 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive;
+
+import java.io.File;
+
+/**
+ * Request for a single record used by batch fetches.
+ * ({@link RecordFetcher})
+ *
+ * @author nicl
+ */
+public class FetchRequest {
+
+    /** File containing the record. */
+    public final File file;
+
+    /** Offset of the record or the GZip member containing it. */
+    public final long offset;
+
+    /** Length of the record or GZip member, -1 if unknown. */
+    public final long length;
+
+    /**
+     * Construct a request for a record of unknown length.
+     * @param file file containing the record
+     * @param offset offset of the record or the GZip member containing it
+     */
+    public FetchRequest(File file, long offset) {
+        this(file, offset, -1);
+    }
+
+    /**
+     * Construct a request for a record, the length is used to size the reads
+     * and may be -1 if unknown.
+     * @param file file containing the record
+     * @param offset offset of the record or the GZip member containing it
+     * @param length length of the record or GZip member or -1
+     */
+    public FetchRequest(File file, long offset, long length) {
+        if (file == null) {
+            throw new IllegalArgumentException("'file' is null!");
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException("The 'offset' is less than 0: " + offset);
+        }
+        if (length < -1) {
+            throw new IllegalArgumentException("The 'length' is less than -1: " + length);
+        }
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+    }
+
+}
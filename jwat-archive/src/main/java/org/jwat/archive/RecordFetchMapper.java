@@ -0,0 +1,46 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive;
+
+import java.io.IOException;
+
+import org.jwat.warc.WarcRecord;
+
+/**
+ * Mapper used by <code>RecordFetcher</code> batch fetches. Records are mapped
+ * to values as they are decoded, the values are returned in request order.
+ * ({@link RecordFetcher})
+ *
+ * @param <T> type of value each record is mapped to
+ *
+ * @author nicl
+ */
+public interface RecordFetchMapper<T> {
+
+    /**
+     * Map a record to a value, called concurrently from several threads if
+     * the batch is fetched using an executor.
+     * The record is closed when this method returns.
+     * @param request request the record was fetched for
+     * @param record WARC record
+     * @return value of the record
+     * @throws IOException if an I/O error occurs while processing the record
+     */
+    public T mapRecord(FetchRequest request, WarcRecord record) throws IOException;
+
+}
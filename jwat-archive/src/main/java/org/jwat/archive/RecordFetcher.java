@@ -0,0 +1,743 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.jwat.arc.ArcReader;
+import org.jwat.arc.ArcReaderCompressed;
+import org.jwat.arc.ArcReaderUncompressed;
+import org.jwat.arc.ArcRecordBase;
+import org.jwat.archive.common.ReaderConfig;
+import org.jwat.common.FileChannelInputStream;
+import org.jwat.gzip.GzipConstants;
+import org.jwat.warc.WarcReader;
+import org.jwat.warc.WarcReaderCompressed;
+import org.jwat.warc.WarcReaderUncompressed;
+import org.jwat.warc.WarcRecord;
+
+/**
+ * Random access record fetcher for replay style lookups of single records by
+ * file and offset. Open files are kept in an LRU cache of
+ * <code>FileChannel</code>s, which are read using
+ * <code>FileChannelInputStream</code>s so they can be shared by all threads.
+ * Readers, inflaters and buffers are kept per thread and reused for every
+ * fetch. GZip compression is detected from the data at the offset.
+ * Batches of records can be fetched using <code>fetchWarcRecords</code>,
+ * which sorts the requests by file and offset and coalesces nearby records
+ * into single large reads before decoding them.
+ * A fetched record is usable until it is closed or until the next fetch or
+ * <code>release</code> call on the same thread.
+ *
+ * @author nicl
+ */
+public class RecordFetcher implements Closeable {
+
+    /** Default maximum number of cached open files. */
+    public static final int DEFAULT_MAX_OPEN_FILES = 256;
+
+    /** Default size of the per thread read buffer. */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /** Default maximum number of unrequested bytes read to join two reads. */
+    public static final int DEFAULT_MAX_GAP = 64 * 1024;
+
+    /** Default maximum size of a coalesced batch read. */
+    public static final int DEFAULT_MAX_READ_SIZE = 4 * 1024 * 1024;
+
+    /** Maximum number of unrequested bytes read to join two batch reads. */
+    public int maxGap = DEFAULT_MAX_GAP;
+
+    /** Maximum size of a coalesced batch read. */
+    public int maxReadSize = DEFAULT_MAX_READ_SIZE;
+
+    /** Maximum number of cached open files. */
+    protected final int maxOpenFiles;
+
+    /** Size of the per thread read buffer. */
+    protected final int bufferSize;
+
+    /** Configuration applied to the per thread readers. */
+    protected final ReaderConfig readerConfig;
+
+    /** LRU cache of open files, access ordered. */
+    protected final LinkedHashMap<String, CachedChannel> channelCache;
+
+    /** Fetch states of all the threads, closed when the fetcher is closed. */
+    protected final Set<FetchState> fetchStates = Collections.newSetFromMap(new ConcurrentHashMap<FetchState, Boolean>());
+
+    /** Per thread readers and buffers. */
+    protected final ThreadLocal<FetchState> fetchState = new ThreadLocal<FetchState>() {
+        @Override
+        protected FetchState initialValue() {
+            return newFetchState();
+        }
+    };
+
+    /** Per thread readers used by batch fetches. */
+    protected final ThreadLocal<FetchState> batchState = new ThreadLocal<FetchState>() {
+        @Override
+        protected FetchState initialValue() {
+            return newFetchState();
+        }
+    };
+
+    /** Has the fetcher been closed. */
+    protected boolean bClosed;
+
+    /**
+     * Construct a fetcher using the default settings.
+     */
+    public RecordFetcher() {
+        this(DEFAULT_MAX_OPEN_FILES, DEFAULT_BUFFER_SIZE, ReaderConfig.DEFAULT);
+    }
+
+    /**
+     * Construct a fetcher using the given settings.
+     * @param maxOpenFiles maximum number of cached open files
+     * @param bufferSize size of the per thread read buffer
+     * @param readerConfig configuration applied to the per thread readers
+     */
+    public RecordFetcher(int maxOpenFiles, int bufferSize, ReaderConfig readerConfig) {
+        if (maxOpenFiles <= 0) {
+            throw new IllegalArgumentException("'maxOpenFiles' must be greater than 0!");
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("'bufferSize' must be greater than 0!");
+        }
+        if (readerConfig == null) {
+            throw new IllegalArgumentException("'readerConfig' is null!");
+        }
+        this.maxOpenFiles = maxOpenFiles;
+        this.bufferSize = bufferSize;
+        this.readerConfig = readerConfig;
+        channelCache = new LinkedHashMap<String, CachedChannel>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedChannel> eldest) {
+                if (size() > RecordFetcher.this.maxOpenFiles) {
+                    eldest.getValue().evict();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Fetch the WARC record starting at the given offset.
+     * @param file WARC file, GZip compressed or uncompressed
+     * @param offset offset of the record or the GZip member containing it
+     * @return WARC record or null, if no record was found at the offset
+     * @throws IOException if an I/O error occurs while reading the record
+     */
+    public WarcRecord fetchWarcRecord(File file, long offset) throws IOException {
+        FetchState state = prepare(file, offset);
+        boolean bGzipped = state.in.startsWith(GzipConstants.GZIP_MAGIC_HEADER);
+        WarcReader reader = state.getWarcReader(bGzipped, readerConfig);
+        WarcRecord record = reader.getNextRecordFrom(state.in, offset);
+        state.record = record;
+        return record;
+    }
+
+    /**
+     * Fetch the ARC record starting at the given offset.
+     * @param file ARC file, GZip compressed or uncompressed
+     * @param offset offset of the record or the GZip member containing it
+     * @return ARC record or null, if no record was found at the offset
+     * @throws IOException if an I/O error occurs while reading the record
+     */
+    public ArcRecordBase fetchArcRecord(File file, long offset) throws IOException {
+        FetchState state = prepare(file, offset);
+        boolean bGzipped = state.in.startsWith(GzipConstants.GZIP_MAGIC_HEADER);
+        ArcReader reader = state.getArcReader(bGzipped, readerConfig);
+        ArcRecordBase record = reader.getNextRecordFrom(state.in, offset);
+        state.record = record;
+        return record;
+    }
+
+    /**
+     * Fetch a batch of WARC records and map each of them to a value.
+     * The requests are grouped by file and sorted by offset. Records close
+     * to each other are read using a single read of up to
+     * <code>maxReadSize</code> bytes, including gaps of up to
+     * <code>maxGap</code> unrequested bytes. Records extending beyond the
+     * data read are completed using positional reads.
+     * The records are decoded and mapped concurrently if an executor is
+     * supplied, otherwise on the calling thread.
+     * @param requests records to fetch
+     * @param mapper mapper called for each record found
+     * @param executor executor used to read and decode concurrently or null
+     * @param <T> type of value each record is mapped to
+     * @return mapped values in request order, null where no record was found
+     * @throws IOException if an I/O error occurs while fetching the records
+     */
+    public <T> List<T> fetchWarcRecords(List<FetchRequest> requests, final RecordFetchMapper<T> mapper,
+            ExecutorService executor) throws IOException {
+        if (requests == null) {
+            throw new IllegalArgumentException("'requests' is null!");
+        }
+        if (mapper == null) {
+            throw new IllegalArgumentException("'mapper' is null!");
+        }
+        final Object[] results = new Object[requests.size()];
+        Map<String, List<Integer>> files = new HashMap<String, List<Integer>>();
+        List<String> keys = new ArrayList<String>();
+        for (int i=0; i<requests.size(); ++i) {
+            FetchRequest request = requests.get(i);
+            if (request == null) {
+                throw new IllegalArgumentException("Request " + i + " is null!");
+            }
+            String key = request.file.getAbsolutePath();
+            List<Integer> indexes = files.get(key);
+            if (indexes == null) {
+                indexes = new ArrayList<Integer>();
+                files.put(key, indexes);
+                keys.add(key);
+            }
+            indexes.add(i);
+        }
+        List<CachedChannel> leases = new ArrayList<CachedChannel>();
+        try {
+            List<BatchRead> reads = new ArrayList<BatchRead>();
+            for (int i=0; i<keys.size(); ++i) {
+                List<Integer> indexes = files.get(keys.get(i));
+                CachedChannel cachedChannel = acquire(requests.get(indexes.get(0)).file);
+                leases.add(cachedChannel);
+                coalesce(requests, indexes, cachedChannel.channel, reads);
+            }
+            List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(reads.size());
+            for (int i=0; i<reads.size(); ++i) {
+                final BatchRead read = reads.get(i);
+                tasks.add(new Callable<Object>() {
+                    @Override
+                    public Object call() throws IOException {
+                        read.read();
+                        return null;
+                    }
+                });
+            }
+            invokeAll(tasks, executor);
+            tasks.clear();
+            for (int i=0; i<reads.size(); ++i) {
+                final BatchRead read = reads.get(i);
+                for (int j=0; j<read.requests.size(); ++j) {
+                    final FetchRequest request = read.requests.get(j);
+                    final int index = read.indexes.get(j);
+                    tasks.add(new Callable<Object>() {
+                        @Override
+                        public Object call() throws IOException {
+                            results[index] = decode(read, request, mapper);
+                            return null;
+                        }
+                    });
+                }
+            }
+            invokeAll(tasks, executor);
+        } finally {
+            for (int i=0; i<leases.size(); ++i) {
+                leases.get(i).release();
+            }
+        }
+        @SuppressWarnings("unchecked")
+        List<T> list = (List<T>)Arrays.asList(results);
+        return list;
+    }
+
+    /**
+     * Sort the requests of a single file by offset and coalesce them into
+     * batch reads.
+     * @param requests all requests of the batch
+     * @param indexes indexes of the requests for this file
+     * @param channel open file
+     * @param reads list the batch reads are added to
+     * @throws IOException if an I/O error occurs while accessing the file
+     */
+    protected void coalesce(final List<FetchRequest> requests, List<Integer> indexes,
+            FileChannel channel, List<BatchRead> reads) throws IOException {
+        Collections.sort(indexes, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return Long.compare(requests.get(i1).offset, requests.get(i2).offset);
+            }
+        });
+        long size = channel.size();
+        BatchRead read = null;
+        for (int i=0; i<indexes.size(); ++i) {
+            FetchRequest request = requests.get(indexes.get(i));
+            long end;
+            if (request.length >= 0) {
+                end = request.offset + request.length;
+            } else if (i + 1 < indexes.size()) {
+                // Assume the record ends where the next requested one starts.
+                end = Math.max(request.offset, requests.get(indexes.get(i + 1)).offset);
+            } else {
+                end = request.offset + bufferSize;
+            }
+            end = Math.min(end, size);
+            if (read == null || request.offset - read.end > maxGap
+                    || Math.max(read.end, end) - read.start > maxReadSize) {
+                read = new BatchRead(channel, request.offset);
+                reads.add(read);
+            }
+            // Records larger than a read are completed using positional reads.
+            read.end = Math.max(read.end, Math.min(end, read.start + maxReadSize));
+            read.requests.add(request);
+            read.indexes.add(indexes.get(i));
+        }
+    }
+
+    /**
+     * Decode a single record of a batch read and map it to a value.
+     * @param read batch read containing the start of the record
+     * @param request requested record
+     * @param mapper mapper called with the record
+     * @param <T> type of value the record is mapped to
+     * @return mapped value or null, if no record was found
+     * @throws IOException if an I/O error occurs while decoding the record
+     */
+    protected <T> T decode(BatchRead read, FetchRequest request, RecordFetchMapper<T> mapper)
+            throws IOException {
+        FileChannelInputStream in = new FileChannelInputStream(bufferSize);
+        if (request.offset - read.start < read.length) {
+            in.setChannel(read.channel, read.data, (int)(request.offset - read.start),
+                    read.length, read.start + read.length);
+        } else {
+            in.setChannel(read.channel, request.offset);
+        }
+        FetchState state = batchState.get();
+        boolean bGzipped = in.startsWith(GzipConstants.GZIP_MAGIC_HEADER);
+        WarcReader reader = state.getWarcReader(bGzipped, readerConfig);
+        WarcRecord record = reader.getNextRecordFrom(in, request.offset);
+        if (record == null) {
+            return null;
+        }
+        try {
+            return mapper.mapRecord(request, record);
+        } finally {
+            record.close();
+        }
+    }
+
+    /**
+     * Run the tasks using the executor or on the calling thread and wait for
+     * all of them to complete.
+     * @param tasks tasks to run
+     * @param executor executor or null
+     * @throws IOException if a task threw an <code>IOException</code> or
+     * the calling thread was interrupted
+     */
+    protected static void invokeAll(List<Callable<Object>> tasks, ExecutorService executor)
+            throws IOException {
+        try {
+            if (executor == null) {
+                for (int i=0; i<tasks.size(); ++i) {
+                    tasks.get(i).call();
+                }
+                return;
+            }
+            List<Future<Object>> futures = executor.invokeAll(tasks);
+            for (int i=0; i<futures.size(); ++i) {
+                futures.get(i).get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching records", e);
+        } catch (IOException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Release the record fetched by the calling thread, if any, and the file
+     * it was read from.
+     */
+    public void release() {
+        fetchState.get().release();
+    }
+
+    /**
+     * Returns the number of cached open files.
+     * @return number of cached open files
+     */
+    public int getOpenFileCount() {
+        synchronized (channelCache) {
+            return channelCache.size();
+        }
+    }
+
+    /**
+     * Create a fetch state and register it so it is closed with the fetcher.
+     * @return new fetch state
+     */
+    protected FetchState newFetchState() {
+        FetchState state = new FetchState();
+        fetchStates.add(state);
+        return state;
+    }
+
+    /**
+     * Close the fetched records and readers of all the threads and all the
+     * cached open files. Must not be called while other threads are still
+     * fetching records.
+     */
+    @Override
+    public void close() {
+        Iterator<FetchState> stateIter = fetchStates.iterator();
+        while (stateIter.hasNext()) {
+            stateIter.next().close();
+            stateIter.remove();
+        }
+        fetchState.remove();
+        batchState.remove();
+        List<CachedChannel> channels;
+        synchronized (channelCache) {
+            bClosed = true;
+            channels = new ArrayList<CachedChannel>(channelCache.values());
+            channelCache.clear();
+            Iterator<CachedChannel> iter = channels.iterator();
+            while (iter.hasNext()) {
+                iter.next().evict();
+            }
+        }
+    }
+
+    /**
+     * Release the previous record of the calling thread and position the
+     * per thread input stream at the offset of the given file.
+     * @param file file to read from
+     * @param offset offset to read from
+     * @return per thread fetch state
+     * @throws IOException if an I/O error occurs while opening the file
+     */
+    protected FetchState prepare(File file, long offset) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("'file' is null!");
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException("The 'offset' is less than 0: " + offset);
+        }
+        FetchState state = fetchState.get();
+        state.release();
+        state.cachedChannel = acquire(file);
+        if (state.in == null) {
+            state.in = new FileChannelInputStream(bufferSize);
+        }
+        state.in.setChannel(state.cachedChannel.channel, offset);
+        return state;
+    }
+
+    /**
+     * Get an open file from the cache, opening it if necessary. The returned
+     * file must be released again.
+     * @param file file to open
+     * @return cached open file with an added lease
+     * @throws IOException if an I/O error occurs while opening the file
+     */
+    protected CachedChannel acquire(File file) throws IOException {
+        String key = file.getAbsolutePath();
+        CachedChannel cachedChannel;
+        synchronized (channelCache) {
+            if (bClosed) {
+                throw new IllegalStateException("Fetcher has been closed!");
+            }
+            cachedChannel = channelCache.get(key);
+            if (cachedChannel != null) {
+                ++cachedChannel.leases;
+                return cachedChannel;
+            }
+        }
+        // Open outside the lock so slow opens do not block other threads.
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        synchronized (channelCache) {
+            cachedChannel = channelCache.get(key);
+            if (cachedChannel == null) {
+                cachedChannel = new CachedChannel(channel);
+                channelCache.put(key, cachedChannel);
+            } else {
+                channel.close();
+            }
+            ++cachedChannel.leases;
+        }
+        return cachedChannel;
+    }
+
+    /**
+     * Open file in the cache with a count of the fetched records using it.
+     */
+    protected class CachedChannel {
+
+        /** Open file. */
+        protected final FileChannel channel;
+
+        /** Number of fetched records using the file. */
+        protected int leases;
+
+        /** Has the file been removed from the cache. */
+        protected boolean bEvicted;
+
+        /**
+         * Construct a cache entry for the given open file.
+         * @param channel open file
+         */
+        protected CachedChannel(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Remove the file from the cache, closing it if it is not in use.
+         * Must be called while holding the cache lock.
+         */
+        protected void evict() {
+            bEvicted = true;
+            if (leases == 0) {
+                closeChannel();
+            }
+        }
+
+        /**
+         * Release a lease, closing the file if it has been evicted and is no
+         * longer in use.
+         */
+        protected void release() {
+            synchronized (channelCache) {
+                --leases;
+                if (leases == 0 && bEvicted) {
+                    closeChannel();
+                }
+            }
+        }
+
+        /**
+         * Close the file ignoring exceptions.
+         */
+        protected void closeChannel() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+            }
+        }
+
+    }
+
+    /**
+     * Range of a file read using a single positional read, containing the
+     * start of one or more requested records.
+     */
+    protected static class BatchRead {
+
+        /** Open file. */
+        protected final FileChannel channel;
+
+        /** Offset of the first byte to read. */
+        protected final long start;
+
+        /** Offset of the byte following the last byte to read. */
+        protected long end;
+
+        /** Requested records starting in the range, sorted by offset. */
+        protected final List<FetchRequest> requests = new ArrayList<FetchRequest>();
+
+        /** Batch indexes of the requested records. */
+        protected final List<Integer> indexes = new ArrayList<Integer>();
+
+        /** Data read. */
+        protected byte[] data;
+
+        /** Number of bytes read, less than requested at the end of the file. */
+        protected int length;
+
+        /**
+         * Construct a read starting at the given offset.
+         * @param channel open file
+         * @param start offset of the first byte to read
+         */
+        protected BatchRead(FileChannel channel, long start) {
+            this.channel = channel;
+            this.start = start;
+            this.end = start;
+        }
+
+        /**
+         * Read the range into memory.
+         * @throws IOException if an I/O error occurs while reading
+         */
+        protected void read() throws IOException {
+            data = new byte[(int)Math.max(0, end - start)];
+            ByteBuffer byteBuffer = ByteBuffer.wrap(data);
+            while (byteBuffer.hasRemaining()) {
+                int read = channel.read(byteBuffer, start + byteBuffer.position());
+                if (read <= 0) {
+                    break;
+                }
+            }
+            length = byteBuffer.position();
+        }
+
+    }
+
+    /**
+     * Readers, input stream and current record of a thread.
+     */
+    protected static class FetchState {
+
+        /** Reusable input stream over the cached open files. */
+        protected FileChannelInputStream in;
+
+        /** Reader used for compressed WARC records. */
+        protected WarcReaderCompressed warcReaderCompressed;
+
+        /** Reader used for uncompressed WARC records. */
+        protected WarcReaderUncompressed warcReaderUncompressed;
+
+        /** Reader used for compressed ARC records. */
+        protected ArcReaderCompressed arcReaderCompressed;
+
+        /** Reader used for uncompressed ARC records. */
+        protected ArcReaderUncompressed arcReaderUncompressed;
+
+        /** Record fetched by the thread or null. */
+        protected Closeable record;
+
+        /** File used by the fetched record or null. */
+        protected CachedChannel cachedChannel;
+
+        /**
+         * Returns the WARC reader of the thread for compressed or
+         * uncompressed records, creating it if necessary.
+         * @param bGzipped compressed or uncompressed records
+         * @param readerConfig configuration applied to a new reader
+         * @return WARC reader
+         */
+        protected WarcReader getWarcReader(boolean bGzipped, ReaderConfig readerConfig) {
+            if (bGzipped) {
+                if (warcReaderCompressed == null) {
+                    warcReaderCompressed = new WarcReaderCompressed(readerConfig);
+                    warcReaderCompressed.setReuseGzipReader(true);
+                }
+                return warcReaderCompressed;
+            } else {
+                if (warcReaderUncompressed == null) {
+                    warcReaderUncompressed = new WarcReaderUncompressed(readerConfig);
+                }
+                return warcReaderUncompressed;
+            }
+        }
+
+        /**
+         * Returns the ARC reader of the thread for compressed or
+         * uncompressed records, creating it if necessary.
+         * @param bGzipped compressed or uncompressed records
+         * @param readerConfig configuration applied to a new reader
+         * @return ARC reader
+         */
+        protected ArcReader getArcReader(boolean bGzipped, ReaderConfig readerConfig) {
+            if (bGzipped) {
+                if (arcReaderCompressed == null) {
+                    arcReaderCompressed = new ArcReaderCompressed(readerConfig);
+                    arcReaderCompressed.setReuseGzipReader(true);
+                }
+                return arcReaderCompressed;
+            } else {
+                if (arcReaderUncompressed == null) {
+                    arcReaderUncompressed = new ArcReaderUncompressed(readerConfig);
+                }
+                return arcReaderUncompressed;
+            }
+        }
+
+        /**
+         * Close the fetched record, if any, and release its file.
+         */
+        protected void release() {
+            if (record != null) {
+                try {
+                    record.close();
+                } catch (IOException e) {
+                }
+                record = null;
+            }
+            if (cachedChannel != null) {
+                cachedChannel.release();
+                cachedChannel = null;
+            }
+        }
+
+        /**
+         * Release the fetched record and close the readers, ending their
+         * inflaters.
+         */
+        protected void close() {
+            release();
+            if (warcReaderCompressed != null) {
+                warcReaderCompressed.close();
+                warcReaderCompressed = null;
+            }
+            if (warcReaderUncompressed != null) {
+                warcReaderUncompressed.close();
+                warcReaderUncompressed = null;
+            }
+            if (arcReaderCompressed != null) {
+                arcReaderCompressed.close();
+                arcReaderCompressed = null;
+            }
+            if (arcReaderUncompressed != null) {
+                arcReaderUncompressed.close();
+                arcReaderUncompressed = null;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,51 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive;
+
+import java.io.IOException;
+
+/**
+ * Callback interface used by <code>WarcRecordPipeline</code>.
+ * Records are processed concurrently by the consumer threads and the results
+ * are then delivered one at a time in the order the records were read.
+ *
+ * @param <T> type of value each record is processed into
+ *
+ * @author nicl
+ */
+public interface WarcPipelineCallback<T> {
+
+    /**
+     * Process a buffered record. Called concurrently from the consumer
+     * threads, the record slot is only valid until the method returns.
+     * @param record buffered record
+     * @return value passed on to <code>recordProcessed</code>, may be null
+     * @throws IOException if an I/O error occurs while processing the record
+     */
+    T processRecord(WarcPipelineRecord record) throws IOException;
+
+    /**
+     * Called in record order, one record at a time, after the record has been
+     * processed. The payload of the record has not yet been released.
+     * @param record buffered record
+     * @param value value returned by <code>processRecord</code>
+     * @throws IOException if an I/O error occurs while completing the record
+     */
+    void recordProcessed(WarcPipelineRecord record, T value) throws IOException;
+
+}
@@ -0,0 +1,116 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.jwat.common.HttpHeader;
+import org.jwat.warc.WarcHeader;
+import org.jwat.warc.WarcRecord;
+
+/**
+ * Reusable slot in the ring buffer of a <code>WarcRecordPipeline</code>.
+ * The record has been fully read by the producer, the payload is buffered in
+ * memory or, if larger than the in-memory threshold, in a temporary file.
+ * ({@link WarcRecordPipeline})
+ *
+ * @author nicl
+ */
+public class WarcPipelineRecord {
+
+    /** Ring buffer slot is free. */
+    protected static final int S_FREE = 0;
+
+    /** Ring buffer slot contains a record waiting to be processed. */
+    protected static final int S_FILLED = 1;
+
+    /** Ring buffer slot contains a record being processed. */
+    protected static final int S_PROCESSING = 2;
+
+    /** Ring buffer slot contains a record waiting to be completed in order. */
+    protected static final int S_PROCESSED = 3;
+
+    /** Sequence number of the record, starting with 0. */
+    public long sequence;
+
+    /** Parsed record, the payload stream has been consumed and closed. */
+    public WarcRecord record;
+
+    /** Buffered payload, excluding any HTTP header. */
+    public ManagedPayload managedPayload;
+
+    /** Slot state. */
+    protected int state = S_FREE;
+
+    /** Value returned by the callback, kept until the slot is completed. */
+    protected Object value;
+
+    /**
+     * Construct a ring buffer slot using the given payload buffer.
+     * @param managedPayload payload buffer reused for every record
+     */
+    protected WarcPipelineRecord(ManagedPayload managedPayload) {
+        this.managedPayload = managedPayload;
+    }
+
+    /**
+     * Returns the record header.
+     * @return the record header
+     */
+    public WarcHeader getHeader() {
+        return record.header;
+    }
+
+    /**
+     * Returns the HTTP header of the payload, if present and valid.
+     * @return the HTTP header of the payload or null
+     */
+    public HttpHeader getHttpHeader() {
+        return managedPayload.httpHeader;
+    }
+
+    /**
+     * Returns the length of the buffered payload, excluding any HTTP header.
+     * @return the length of the buffered payload
+     */
+    public long getPayloadLength() {
+        return managedPayload.payloadLength;
+    }
+
+    /**
+     * Returns an input stream over the buffered payload, excluding any HTTP
+     * header. The stream can be requested multiple times.
+     * @return input stream over the buffered payload or null, if the record
+     * has no payload
+     * @throws IOException if an I/O error occurs while opening the stream
+     */
+    public InputStream getPayloadStream() throws IOException {
+        return managedPayload.getPayloadStream();
+    }
+
+    /**
+     * Release the record so the slot can be reused.
+     */
+    protected void clear() {
+        record = null;
+        value = null;
+        state = S_FREE;
+    }
+
+}
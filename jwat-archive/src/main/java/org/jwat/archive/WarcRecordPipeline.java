@@ -0,0 +1,329 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jwat.warc.WarcReader;
+import org.jwat.warc.WarcRecord;
+
+/**
+ * Producer/consumer pipeline for processing the records of a WARC reader.
+ * The calling thread reads and parses the records and buffers each record
+ * payload in a reusable slot of a bounded ring buffer. Consumer threads
+ * process the buffered records concurrently, while the results are completed
+ * in record order. When all the slots are in use the reader waits, so the
+ * memory used is bounded by the number of slots times the in-memory buffer
+ * size. Payloads larger than the in-memory buffer are spilled to temporary
+ * files. ({@link WarcPipelineCallback})
+ *
+ * @author nicl
+ */
+public class WarcRecordPipeline {
+
+    /** Default number of ring buffer slots. */
+    public static final int DEFAULT_SLOTS = 32;
+
+    /** Default size of the in-memory payload buffer of each slot. */
+    public static final int DEFAULT_IN_MEMORY_BUFFER_SIZE = 1024 * 1024;
+
+    /*
+     * Settings.
+     */
+
+    /** Number of ring buffer slots. */
+    public int slots = DEFAULT_SLOTS;
+
+    /** Number of consumer threads. */
+    public int consumers = Runtime.getRuntime().availableProcessors();
+
+    /** Size of the in-memory payload buffer of each slot. */
+    public int inMemoryBufferSize = DEFAULT_IN_MEMORY_BUFFER_SIZE;
+
+    /** Compute block and payload digests while buffering payloads. */
+    public boolean bDigest = false;
+
+    /*
+     * State.
+     */
+
+    /** Lock protecting the ring buffer state. */
+    protected final ReentrantLock lock = new ReentrantLock();
+
+    /** Signalled when a slot has been filled or the pipeline is finishing. */
+    protected final Condition notEmpty = lock.newCondition();
+
+    /** Signalled when a slot has been freed or the pipeline is failing. */
+    protected final Condition notFull = lock.newCondition();
+
+    /** Ring buffer slots. */
+    protected WarcPipelineRecord[] ring;
+
+    /** Sequence number of the next record to fill. */
+    protected long fillSeq;
+
+    /** Sequence number of the next record to process. */
+    protected long claimSeq;
+
+    /** Sequence number of the next record to complete. */
+    protected long completeSeq;
+
+    /** Is a consumer currently completing records. */
+    protected boolean bCompleting;
+
+    /** Has the reader been exhausted. */
+    protected boolean bEof;
+
+    /** First exception thrown by the reader or a callback. */
+    protected Throwable failure;
+
+    /**
+     * Construct instance. Modify the fields directly to customise.
+     */
+    public WarcRecordPipeline() {
+    }
+
+    /**
+     * Read all the records from the reader and process them using the
+     * callback. The reader is used on the calling thread only.
+     * @param reader WARC reader
+     * @param callback callback used to process and complete the records
+     * @param <T> type of value each record is processed into
+     * @return number of records processed
+     * @throws IOException if an I/O error occurs while reading the records or
+     * in the callback
+     * @throws InterruptedException if interrupted while waiting for the consumers
+     */
+    public <T> long process(WarcReader reader, final WarcPipelineCallback<T> callback) throws IOException, InterruptedException {
+        if (reader == null) {
+            throw new IllegalArgumentException("'reader' is null!");
+        }
+        if (callback == null) {
+            throw new IllegalArgumentException("'callback' is null!");
+        }
+        if (slots <= 0) {
+            throw new IllegalArgumentException("'slots' must be greater than 0!");
+        }
+        if (consumers <= 0) {
+            throw new IllegalArgumentException("'consumers' must be greater than 0!");
+        }
+        ManagedPayloadManager mpm = ManagedPayloadManager.getInstance(ManagedPayloadManager.DEFAULT_COPY_BUFFER_SIZE, inMemoryBufferSize);
+        ring = new WarcPipelineRecord[slots];
+        for (int i=0; i<ring.length; ++i) {
+            ring[i] = new WarcPipelineRecord(mpm.checkout());
+        }
+        fillSeq = 0;
+        claimSeq = 0;
+        completeSeq = 0;
+        bCompleting = false;
+        bEof = false;
+        failure = null;
+        ExecutorService executor = Executors.newFixedThreadPool(consumers);
+        List<Future<?>> futures = new ArrayList<Future<?>>(consumers);
+        boolean bDone = false;
+        try {
+            for (int i=0; i<consumers; ++i) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        consume(callback);
+                    }
+                }));
+            }
+            produce(reader);
+            for (int i=0; i<futures.size(); ++i) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    fail(e.getCause());
+                }
+            }
+            bDone = true;
+        } finally {
+            if (!bDone) {
+                // Release consumers waiting for records that never arrive.
+                fail(new InterruptedException("Pipeline aborted"));
+            }
+            executor.shutdownNow();
+            for (int i=0; i<ring.length; ++i) {
+                ring[i].managedPayload.close();
+                mpm.checkin(ring[i].managedPayload);
+                ring[i].clear();
+            }
+        }
+        Throwable t = failure;
+        if (t != null) {
+            if (t instanceof IOException) {
+                throw (IOException)t;
+            } else if (t instanceof RuntimeException) {
+                throw (RuntimeException)t;
+            } else if (t instanceof Error) {
+                throw (Error)t;
+            } else if (t instanceof InterruptedException) {
+                throw (InterruptedException)t;
+            }
+            throw new IOException(t);
+        }
+        return completeSeq;
+    }
+
+    /**
+     * Read the records and fill the ring buffer slots, waiting for a free
+     * slot when the ring buffer is full.
+     * @param reader WARC reader
+     * @throws InterruptedException if interrupted while waiting for a free slot
+     */
+    protected void produce(WarcReader reader) throws InterruptedException {
+        WarcPipelineRecord slot;
+        WarcRecord record;
+        try {
+            while (true) {
+                lock.lock();
+                try {
+                    while (fillSeq - completeSeq >= ring.length && failure == null) {
+                        notFull.await();
+                    }
+                    if (failure != null) {
+                        return;
+                    }
+                    slot = ring[(int)(fillSeq % ring.length)];
+                } finally {
+                    lock.unlock();
+                }
+                // The slot is free, so it is only accessed by the producer.
+                record = reader.getNextRecord();
+                if (record == null) {
+                    break;
+                }
+                slot.managedPayload.manageWarcRecord(record, bDigest);
+                record.close();
+                slot.record = record;
+                lock.lock();
+                try {
+                    slot.sequence = fillSeq++;
+                    slot.state = WarcPipelineRecord.S_FILLED;
+                    notEmpty.signal();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (InterruptedException e) {
+            fail(e);
+            throw e;
+        } catch (Throwable t) {
+            fail(t);
+        }
+        lock.lock();
+        try {
+            bEof = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Consumer loop, processes filled slots until the reader is exhausted or
+     * the pipeline fails. Processed slots are completed in record order by
+     * whichever consumer finds the oldest slot processed.
+     * @param callback callback used to process and complete the records
+     * @param <T> type of value each record is processed into
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> void consume(WarcPipelineCallback<T> callback) {
+        WarcPipelineRecord slot;
+        T value;
+        while (true) {
+            lock.lock();
+            try {
+                while (claimSeq == fillSeq && !bEof && failure == null) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (claimSeq == fillSeq || failure != null) {
+                    return;
+                }
+                slot = ring[(int)(claimSeq++ % ring.length)];
+                slot.state = WarcPipelineRecord.S_PROCESSING;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                value = callback.processRecord(slot);
+            } catch (Throwable t) {
+                fail(t);
+                return;
+            }
+            lock.lock();
+            try {
+                slot.value = value;
+                slot.state = WarcPipelineRecord.S_PROCESSED;
+                if (bCompleting) {
+                    // Another consumer completes the slot when it gets to it.
+                    continue;
+                }
+                bCompleting = true;
+                while (completeSeq < claimSeq && failure == null) {
+                    slot = ring[(int)(completeSeq % ring.length)];
+                    if (slot.state != WarcPipelineRecord.S_PROCESSED) {
+                        break;
+                    }
+                    lock.unlock();
+                    try {
+                        callback.recordProcessed(slot, (T)slot.value);
+                    } catch (Throwable t) {
+                        fail(t);
+                    } finally {
+                        lock.lock();
+                    }
+                    slot.clear();
+                    ++completeSeq;
+                    notFull.signal();
+                }
+                bCompleting = false;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Record the first failure and wake up all waiting threads.
+     * @param t exception thrown by the reader or a callback
+     */
+    protected void fail(Throwable t) {
+        lock.lock();
+        try {
+            if (failure == null) {
+                failure = t;
+            }
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
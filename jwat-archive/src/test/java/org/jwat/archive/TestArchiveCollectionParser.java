@@ -0,0 +1,334 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.arc.ArcReader;
+import org.jwat.arc.ArcRecordBase;
+import org.jwat.archive.common.ReaderConfig;
+import org.jwat.common.UriProfile;
+import org.jwat.gzip.GzipEntry;
+import org.jwat.gzip.GzipReader;
+import org.jwat.warc.WarcReader;
+import org.jwat.warc.WarcRecord;
+
+@RunWith(JUnit4.class)
+public class TestArchiveCollectionParser {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    public static byte[] warcRecord(int idx) throws IOException {
+        String record = "WARC/1.0\r\n"
+                + "WARC-Type: resource\r\n"
+                + "WARC-Record-ID: <urn:uuid:0d5d5e9f-2222-4780-b5a4-bbcb3f2843" + (10 + idx) + ">\r\n"
+                + "WARC-Date: 2012-05-17T00:14:47Z\r\n"
+                + "WARC-Target-URI: http://jwat.org/" + idx + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Length: 5\r\n"
+                + "\r\n"
+                + "hello"
+                + "\r\n\r\n";
+        return record.getBytes("ISO-8859-1");
+    }
+
+    public static File writeFile(File file, int records, boolean bCompressed) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        for (int i=0; i<records; ++i) {
+            if (bCompressed) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                GZIPOutputStream gzout = new GZIPOutputStream(bytes);
+                gzout.write(warcRecord(i));
+                gzout.close();
+                out.write(bytes.toByteArray());
+            } else {
+                out.write(warcRecord(i));
+            }
+        }
+        out.close();
+        return file;
+    }
+
+    @Test
+    public void test_archivecollectionparser() throws IOException, InterruptedException {
+        File dir = tmpFolder.newFolder("collection");
+        File subDir = new File(dir, "sub");
+        Assert.assertTrue(subDir.mkdir());
+        List<File> files = new ArrayList<File>();
+        files.add(writeFile(new File(dir, "a.warc"), 2, false));
+        files.add(writeFile(new File(subDir, "b.warc.gz"), 3, true));
+        File txtFile = new File(dir, "c.txt");
+        OutputStream out = new FileOutputStream(txtFile);
+        out.write("Just some text.".getBytes("ISO-8859-1"));
+        out.close();
+        files.add(txtFile);
+        files.add(new File(dir, "missing.warc"));
+
+        final AtomicInteger callbacks = new AtomicInteger();
+        final AtomicInteger warcRecords = new AtomicInteger();
+        final AtomicInteger done = new AtomicInteger();
+        ArchiveParserCallbackFactory factory = new ArchiveParserCallbackFactory() {
+            @Override
+            public ArchiveParserCallback getCallback(File file) {
+                callbacks.incrementAndGet();
+                return new ArchiveParserCallback() {
+                    @Override
+                    public void apcFileId(File file, int fileId) {
+                    }
+                    @Override
+                    public void apcGzipEntryStart(GzipEntry gzipEntry, long startOffset) {
+                    }
+                    @Override
+                    public void apcArcRecordStart(ArcRecordBase arcRecord, long startOffset, boolean compressed) throws IOException {
+                    }
+                    @Override
+                    public void apcWarcRecordStart(WarcRecord warcRecord, long startOffset, boolean compressed) throws IOException {
+                        warcRecords.incrementAndGet();
+                    }
+                    @Override
+                    public void apcUpdateConsumed(long consumed) {
+                    }
+                    @Override
+                    public void apcRuntimeError(Throwable t, long offset, long consumed) {
+                    }
+                    @Override
+                    public void apcDone(GzipReader gzipReader, ArcReader arcReader, WarcReader warcReader) {
+                        done.incrementAndGet();
+                    }
+                };
+            }
+        };
+
+        ArchiveCollectionParser parser = new ArchiveCollectionParser();
+        parser.threads = 2;
+        ArchiveCollectionResult result = parser.parse(files, factory);
+
+        Assert.assertEquals(4, callbacks.get());
+        Assert.assertEquals(5, warcRecords.get());
+        Assert.assertEquals(3, done.get());
+
+        Assert.assertEquals(4, result.files);
+        Assert.assertEquals(4, result.fileResults.size());
+        for (int i=0; i<files.size(); ++i) {
+            Assert.assertEquals(files.get(i), result.fileResults.get(i).file);
+        }
+        ArchiveFileResult fileResult = result.fileResults.get(0);
+        Assert.assertEquals(FileIdent.FILEID_WARC, fileResult.fileId);
+        Assert.assertEquals(2, fileResult.records);
+        Assert.assertEquals(0, fileResult.gzipEntries);
+        Assert.assertEquals(files.get(0).length(), fileResult.consumed);
+        Assert.assertEquals(0, fileResult.errors);
+        Assert.assertEquals(0, fileResult.warnings);
+        Assert.assertTrue(fileResult.bIsCompliant);
+        Assert.assertNull(fileResult.runtimeError);
+
+        fileResult = result.fileResults.get(1);
+        Assert.assertEquals(FileIdent.FILEID_WARC_GZ, fileResult.fileId);
+        Assert.assertEquals(3, fileResult.records);
+        Assert.assertEquals(3, fileResult.gzipEntries);
+        Assert.assertEquals(files.get(1).length(), fileResult.consumed);
+        Assert.assertTrue(fileResult.bIsCompliant);
+        Assert.assertNull(fileResult.runtimeError);
+
+        fileResult = result.fileResults.get(2);
+        Assert.assertEquals(FileIdent.FILEID_UNKNOWN, fileResult.fileId);
+        Assert.assertEquals(0, fileResult.records);
+        Assert.assertTrue(fileResult.bIsCompliant);
+        Assert.assertNull(fileResult.runtimeError);
+
+        fileResult = result.fileResults.get(3);
+        Assert.assertEquals(0, fileResult.records);
+        Assert.assertFalse(fileResult.bIsCompliant);
+        Assert.assertNotNull(fileResult.runtimeError);
+
+        Assert.assertEquals(5, result.records);
+        Assert.assertEquals(3, result.gzipEntries);
+        Assert.assertEquals(0, result.errors);
+        Assert.assertEquals(0, result.warnings);
+        Assert.assertEquals(3, result.compliantFiles);
+        Assert.assertEquals(1, result.runtimeErrors);
+        Assert.assertEquals(1, result.getFileIdCount(FileIdent.FILEID_WARC));
+        Assert.assertEquals(1, result.getFileIdCount(FileIdent.FILEID_WARC_GZ));
+        Assert.assertEquals(2, result.getFileIdCount(FileIdent.FILEID_UNKNOWN));
+        // Unidentified files are not read.
+        Assert.assertEquals(files.get(0).length() + files.get(1).length(), result.consumed);
+
+        /*
+         * Directory walk.
+         */
+
+        FileFilter filter = new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return FileIdent.identFileName(file) != FileIdent.FILEID_UNKNOWN;
+            }
+        };
+        List<File> listed = ArchiveCollectionParser.listFiles(dir, filter);
+        Assert.assertEquals(2, listed.size());
+        Assert.assertTrue(listed.contains(files.get(0)));
+        Assert.assertTrue(listed.contains(files.get(1)));
+
+        parser.threads = 1;
+        result = parser.parse(dir, filter, null);
+        Assert.assertEquals(2, result.files);
+        Assert.assertEquals(5, result.records);
+        Assert.assertEquals(2, result.compliantFiles);
+        Assert.assertEquals(0, result.runtimeErrors);
+
+        parser.threads = 0;
+        try {
+            parser.parse(files, null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void test_archivecollectionparser_filedigests() throws Exception {
+        File dir = tmpFolder.newFolder("fixity");
+        List<File> files = new ArrayList<File>();
+        files.add(writeFile(new File(dir, "a.warc"), 2, false));
+        files.add(writeFile(new File(dir, "b.warc.gz"), 3, true));
+        File txtFile = new File(dir, "c.txt");
+        OutputStream out = new FileOutputStream(txtFile);
+        out.write("Just some text.".getBytes("ISO-8859-1"));
+        out.close();
+        files.add(txtFile);
+
+        ArchiveCollectionParser parser = new ArchiveCollectionParser();
+        ArchiveCollectionResult result = parser.parse(files, null);
+        for (int i=0; i<files.size(); ++i) {
+            Assert.assertNull(result.fileResults.get(i).fileDigests);
+        }
+
+        // The digests are also passed to the callbacks.
+        final Map<File, Map<String, byte[]>> callbackDigests = new ConcurrentHashMap<File, Map<String, byte[]>>();
+        ArchiveParserCallbackFactory factory = new ArchiveParserCallbackFactory() {
+            @Override
+            public ArchiveParserCallback getCallback(final File file) {
+                return new ArchiveParserCallback() {
+                    @Override
+                    public void apcFileId(File file, int fileId) {
+                    }
+                    @Override
+                    public void apcGzipEntryStart(GzipEntry gzipEntry, long startOffset) {
+                    }
+                    @Override
+                    public void apcArcRecordStart(ArcRecordBase arcRecord, long startOffset, boolean compressed) throws IOException {
+                    }
+                    @Override
+                    public void apcWarcRecordStart(WarcRecord warcRecord, long startOffset, boolean compressed) throws IOException {
+                    }
+                    @Override
+                    public void apcUpdateConsumed(long consumed) {
+                    }
+                    @Override
+                    public void apcRuntimeError(Throwable t, long offset, long consumed) {
+                    }
+                    @Override
+                    public void apcDone(GzipReader gzipReader, ArcReader arcReader, WarcReader warcReader) {
+                        Assert.fail("Digest callback expected!");
+                    }
+                    @Override
+                    public void apcDone(GzipReader gzipReader, ArcReader arcReader, WarcReader warcReader, Map<String, byte[]> fileDigests) {
+                        callbackDigests.put(file, fileDigests);
+                    }
+                };
+            }
+        };
+
+        parser.fileDigestAlgorithms = new String[] {"SHA-256", "MD5"};
+        result = parser.parse(files, factory);
+        Assert.assertEquals(5, result.records);
+        Assert.assertEquals(3, result.compliantFiles);
+        for (int i=0; i<files.size(); ++i) {
+            byte[] bytes = readFile(files.get(i));
+            Map<String, byte[]> fileDigests = result.fileResults.get(i).fileDigests;
+            Assert.assertNotNull(fileDigests);
+            Assert.assertEquals(2, fileDigests.size());
+            Assert.assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(bytes), fileDigests.get("SHA-256"));
+            Assert.assertArrayEquals(MessageDigest.getInstance("MD5").digest(bytes), fileDigests.get("MD5"));
+            Assert.assertSame(fileDigests, callbackDigests.get(files.get(i)));
+        }
+        // Digesting the unidentified file does not count as consumed.
+        Assert.assertEquals(files.get(0).length() + files.get(1).length(), result.consumed);
+    }
+
+    public static byte[] readFile(File file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputStream in = new FileInputStream(file);
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        in.close();
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void test_archiveparser_readerconfig() {
+        ArchiveParser parser = new ArchiveParser();
+        ReaderConfig arcConfig = parser.getArcReaderConfig();
+        ReaderConfig warcConfig = parser.getWarcReaderConfig();
+        // Built once and reused while the settings are unchanged.
+        Assert.assertSame(arcConfig, parser.getArcReaderConfig());
+        Assert.assertSame(warcConfig, parser.getWarcReaderConfig());
+        Assert.assertTrue(warcConfig.bBlockDigest);
+        Assert.assertTrue(warcConfig.bPayloadDigest);
+        // The URI profile only applies to the WARC-Target-URI of WARC records.
+        parser.uriProfile = UriProfile.RFC3986_ABS_16BIT_LAX;
+        arcConfig = parser.getArcReaderConfig();
+        warcConfig = parser.getWarcReaderConfig();
+        Assert.assertSame(UriProfile.RFC3986_ABS_16BIT_LAX, arcConfig.uriProfile);
+        Assert.assertSame(UriProfile.RFC3986_ABS_16BIT_LAX, warcConfig.warcTargetUriProfile);
+        Assert.assertSame(UriProfile.RFC3986, warcConfig.uriProfile);
+        Assert.assertSame(arcConfig, parser.getArcReaderConfig());
+        Assert.assertSame(warcConfig, parser.getWarcReaderConfig());
+        parser.recordHeaderMaxSize = 4096;
+        Assert.assertNotSame(arcConfig, parser.getArcReaderConfig());
+        Assert.assertNotSame(warcConfig, parser.getWarcReaderConfig());
+        Assert.assertEquals(4096, parser.getWarcReaderConfig().recordHeaderMaxSize);
+        // A shared configuration is used as is.
+        parser.readerConfig = ReaderConfig.DEFAULT;
+        Assert.assertSame(ReaderConfig.DEFAULT, parser.getArcReaderConfig());
+        Assert.assertSame(ReaderConfig.DEFAULT, parser.getWarcReaderConfig());
+    }
+
+}
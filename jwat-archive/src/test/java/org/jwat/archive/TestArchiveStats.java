@@ -0,0 +1,243 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.archive.common.ReaderConfig;
+
+@RunWith(JUnit4.class)
+public class TestArchiveStats {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    public static byte[] warcRecord(String type, String uri, String contentType, String block) throws IOException {
+        String record = "WARC/1.0\r\n"
+                + "WARC-Type: " + type + "\r\n"
+                + "WARC-Record-ID: <urn:uuid:" + UUID.randomUUID() + ">\r\n"
+                + "WARC-Date: 2012-05-17T00:14:47Z\r\n"
+                + (uri != null ? "WARC-Target-URI: " + uri + "\r\n" : "")
+                + "Content-Type: " + contentType + "\r\n"
+                + "Content-Length: " + block.length() + "\r\n"
+                + "\r\n"
+                + block
+                + "\r\n\r\n";
+        return record.getBytes("ISO-8859-1");
+    }
+
+    public static byte[] httpResponse(int status, String contentType, String body) {
+        return ("HTTP/1.1 " + status + " Whatever\r\n"
+                + "Content-Type: " + contentType + "\r\n"
+                + "Content-Length: " + body.length() + "\r\n"
+                + "\r\n"
+                + body).getBytes();
+    }
+
+    public static List<byte[]> records() throws IOException {
+        String http = "application/http; msgtype=response";
+        List<byte[]> records = new ArrayList<byte[]>();
+        records.add(warcRecord("warcinfo", null, "application/warc-fields", "software: jwat\r\n"));
+        records.add(warcRecord("response", "http://www.jwat.org/", http, new String(httpResponse(200, "text/html; charset=UTF-8", "<html/>"))));
+        records.add(warcRecord("request", "http://www.jwat.org/", "application/http; msgtype=request", "GET / HTTP/1.1\r\nHost: www.jwat.org\r\n\r\n"));
+        records.add(warcRecord("response", "http://user@WWW.JWAT.ORG:8080/missing", http, new String(httpResponse(404, "text/plain", "Not found"))));
+        records.add(warcRecord("response", "https://netarkivet.dk/?q=1", http, new String(httpResponse(200, "text/html", "<html></html>"))));
+        records.add(warcRecord("resource", "dns:netarkivet.dk", "text/dns", "20120517001447\r\nnetarkivet.dk. 300 IN A 1.2.3.4\r\n"));
+        return records;
+    }
+
+    public static File writeFile(File file, List<byte[]> records, boolean bCompressed) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        for (int i=0; i<records.size(); ++i) {
+            if (bCompressed) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                GZIPOutputStream gzout = new GZIPOutputStream(bytes);
+                gzout.write(records.get(i));
+                gzout.close();
+                out.write(bytes.toByteArray());
+            } else {
+                out.write(records.get(i));
+            }
+        }
+        out.close();
+        return file;
+    }
+
+    @Test
+    public void test_archivestats_collection() throws IOException, InterruptedException {
+        File dir = tmpFolder.newFolder("stats");
+        List<byte[]> records = records();
+        long uncompressed = 0;
+        for (int i=0; i<records.size(); ++i) {
+            uncompressed += records.get(i).length;
+        }
+        List<File> files = new ArrayList<File>();
+        files.add(writeFile(new File(dir, "a.warc"), records, false));
+        files.add(writeFile(new File(dir, "b.warc.gz"), records, true));
+
+        ArchiveCollectionParser parser = new ArchiveCollectionParser();
+        ArchiveCollectionResult result = parser.parse(files, null);
+        Assert.assertNull(result.stats);
+        Assert.assertNull(result.fileResults.get(0).stats);
+
+        parser.bCollectStats = true;
+        boolean[] headerOnly = {true, false};
+        for (int h=0; h<headerOnly.length; ++h) {
+            parser.readerConfig = new ReaderConfig.Builder()
+                    .setHeaderOnly(headerOnly[h])
+                    .build();
+            result = parser.parse(files, null);
+            Assert.assertEquals(2, result.compliantFiles);
+
+            ArchiveStats stats = result.fileResults.get(0).stats;
+            Assert.assertEquals(6, stats.records);
+            Assert.assertEquals(0, stats.gzipEntries);
+            Assert.assertEquals(files.get(0).length(), stats.compressedBytes);
+            Assert.assertEquals(uncompressed, stats.uncompressedBytes);
+
+            stats = result.fileResults.get(1).stats;
+            Assert.assertEquals(6, stats.records);
+            Assert.assertEquals(6, stats.gzipEntries);
+            Assert.assertEquals(files.get(1).length(), stats.compressedBytes);
+            Assert.assertEquals(uncompressed, stats.uncompressedBytes);
+
+            stats = result.stats;
+            Assert.assertEquals(12, stats.records);
+            Assert.assertEquals(6, stats.gzipEntries);
+            Assert.assertEquals(files.get(0).length() + files.get(1).length(), stats.compressedBytes);
+            Assert.assertEquals(2 * uncompressed, stats.uncompressedBytes);
+            Assert.assertEquals(4, stats.warcTypes.size());
+            Assert.assertEquals(Long.valueOf(6), stats.warcTypes.get("response"));
+            Assert.assertEquals(Long.valueOf(2), stats.warcTypes.get("request"));
+            Assert.assertEquals(Long.valueOf(2), stats.warcTypes.get("warcinfo"));
+            Assert.assertEquals(Long.valueOf(2), stats.warcTypes.get("resource"));
+            Assert.assertEquals(3, stats.httpStatuses.size());
+            Assert.assertEquals(Long.valueOf(4), stats.httpStatuses.get("200"));
+            Assert.assertEquals(Long.valueOf(2), stats.httpStatuses.get("404"));
+            Assert.assertEquals(Long.valueOf(6), stats.httpStatuses.get(ArchiveStats.NO_VALUE));
+            Assert.assertEquals(3, stats.recordMimeTypes.size());
+            Assert.assertEquals(Long.valueOf(8), stats.recordMimeTypes.get("application/http"));
+            Assert.assertEquals(Long.valueOf(2), stats.recordMimeTypes.get("application/warc-fields"));
+            Assert.assertEquals(Long.valueOf(2), stats.recordMimeTypes.get("text/dns"));
+            Assert.assertNull(stats.mimeTypes.get("application/http"));
+            Assert.assertEquals(5, stats.mimeTypes.size());
+            Assert.assertEquals(Long.valueOf(4), stats.mimeTypes.get("text/html"));
+            Assert.assertEquals(Long.valueOf(2), stats.mimeTypes.get("text/plain"));
+            Assert.assertEquals(Long.valueOf(2), stats.mimeTypes.get(ArchiveStats.NO_VALUE));
+            Assert.assertEquals(Long.valueOf(2), stats.mimeTypes.get("application/warc-fields"));
+            Assert.assertEquals(Long.valueOf(2), stats.mimeTypes.get("text/dns"));
+            Assert.assertEquals(2, stats.hosts.cardinality());
+            Assert.assertEquals(12, stats.recordSizes.getCount());
+            Assert.assertEquals(16, stats.recordSizes.getMin());
+            Assert.assertEquals(91, stats.recordSizes.getMax());
+        }
+    }
+
+    public static byte[] arcFile() throws IOException {
+        String versionBlock = "1 0 JWAT\n"
+                + "URL IP-address Archive-date Content-type Archive-length\n"
+                + "\n";
+        String block = new String(httpResponse(301, "text/html", "<html/>"));
+        String arc = "filedesc://test.arc 0.0.0.0 20120517001447 text/plain " + versionBlock.length() + "\n"
+                + versionBlock
+                + "http://www.jwat.org/ 1.2.3.4 20120517001447 text/html " + block.length() + "\n"
+                + block + "\n";
+        return arc.getBytes("ISO-8859-1");
+    }
+
+    @Test
+    public void test_archivestats_arc() throws IOException, InterruptedException {
+        File file = new File(tmpFolder.newFolder("arc"), "a.arc");
+        OutputStream out = new FileOutputStream(file);
+        out.write(arcFile());
+        out.close();
+        List<File> files = new ArrayList<File>();
+        files.add(file);
+
+        ArchiveCollectionParser parser = new ArchiveCollectionParser();
+        parser.bCollectStats = true;
+        boolean[] headerOnly = {true, false};
+        for (int h=0; h<headerOnly.length; ++h) {
+            parser.readerConfig = new ReaderConfig.Builder()
+                    .setHeaderOnly(headerOnly[h])
+                    .build();
+            ArchiveCollectionResult result = parser.parse(files, null);
+            Assert.assertEquals(FileIdent.FILEID_ARC, result.fileResults.get(0).fileId);
+            ArchiveStats stats = result.stats;
+            Assert.assertEquals(2, stats.records);
+            Assert.assertEquals(file.length(), stats.compressedBytes);
+            Assert.assertEquals(Long.valueOf(2), stats.warcTypes.get(ArchiveStats.NO_VALUE));
+            Assert.assertEquals(Long.valueOf(1), stats.httpStatuses.get("301"));
+            Assert.assertEquals(Long.valueOf(1), stats.httpStatuses.get(ArchiveStats.NO_VALUE));
+            Assert.assertEquals(Long.valueOf(1), stats.mimeTypes.get("text/html"));
+            Assert.assertEquals(Long.valueOf(1), stats.mimeTypes.get("text/plain"));
+            Assert.assertEquals(Long.valueOf(1), stats.recordMimeTypes.get("text/html"));
+            Assert.assertEquals(Long.valueOf(1), stats.recordMimeTypes.get("text/plain"));
+            Assert.assertEquals(1, stats.hosts.cardinality());
+            Assert.assertEquals(2, stats.recordSizes.getCount());
+        }
+    }
+
+    @Test
+    public void test_archivestats_helpers() {
+        Assert.assertEquals("www.jwat.org", ArchiveStats.getHost("http://www.jwat.org/"));
+        Assert.assertEquals("www.jwat.org", ArchiveStats.getHost("http://user:pw@WWW.jwat.org.:8080"));
+        Assert.assertEquals("www.jwat.org", ArchiveStats.getHost("<http://www.jwat.org>"));
+        Assert.assertEquals("jwat.org", ArchiveStats.getHost("https://jwat.org?q=1"));
+        Assert.assertEquals("jwat.org", ArchiveStats.getHost("dns:jwat.org"));
+        Assert.assertEquals("[::1]", ArchiveStats.getHost("http://[::1]:8080/"));
+        Assert.assertNull(ArchiveStats.getHost("filedesc"));
+        Assert.assertNull(ArchiveStats.getHost("http:///path"));
+        Assert.assertNull(ArchiveStats.getHost(null));
+
+        byte[] bytes = "HTTP/1.1 200 OK\r\n".getBytes();
+        Assert.assertEquals("200", ArchiveStats.getHttpStatus(bytes, 16));
+        Assert.assertEquals("200", ArchiveStats.getHttpStatus(bytes, 12));
+        Assert.assertNull(ArchiveStats.getHttpStatus(bytes, 11));
+        bytes = "HTTP/1.0 2000 OK".getBytes();
+        Assert.assertNull(ArchiveStats.getHttpStatus(bytes, bytes.length));
+        bytes = "GET / HTTP/1.1\r\n".getBytes();
+        Assert.assertNull(ArchiveStats.getHttpStatus(bytes, bytes.length));
+        Assert.assertNull(ArchiveStats.getHttpStatus(bytes, -1));
+
+        Assert.assertEquals("text/html", ArchiveStats.getMimeType(" Text/HTML ; charset=UTF-8"));
+        Assert.assertNull(ArchiveStats.getMimeType(null));
+
+        ArchiveStats stats = new ArchiveStats();
+        try {
+            stats.merge(null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
@@ -0,0 +1,345 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.arc.ArcReader;
+import org.jwat.arc.ArcReaderFactory;
+import org.jwat.arc.ArcRecordBase;
+import org.jwat.archive.common.ReaderConfig;
+import org.jwat.warc.WarcRecord;
+
+@RunWith(JUnit4.class)
+public class TestRecordFetcher {
+
+    public static final int RECORDS = 16;
+
+    /**
+     * Write the records of an uncompressed WARC file to a temporary file,
+     * optionally compressing each record as a separate GZip member.
+     * @return offsets of the records in the file
+     */
+    public static long[] writeWarcFile(File file, boolean bCompressed) throws IOException {
+        long[] offsets = new long[RECORDS];
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            long offset = 0;
+            for (int i=0; i<RECORDS; ++i) {
+                byte[] record = warcRecord(i);
+                if (bCompressed) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    GZIPOutputStream gzout = new GZIPOutputStream(bytes);
+                    gzout.write(record);
+                    gzout.close();
+                    record = bytes.toByteArray();
+                }
+                offsets[i] = offset;
+                out.write(record);
+                offset += record.length;
+            }
+        } finally {
+            out.close();
+        }
+        return offsets;
+    }
+
+    public static byte[] warcRecord(int i) throws IOException {
+        byte[] payload = payload(i);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String header = "WARC/1.0\r\n"
+                + "WARC-Type: resource\r\n"
+                + "WARC-Record-ID: <urn:uuid:0d5d5e9f-2222-4780-b5a4-bbcb3f28" + (1000 + i) + ">\r\n"
+                + "WARC-Date: 2012-05-17T00:14:47Z\r\n"
+                + "WARC-Target-URI: http://jwat.org/" + i + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Length: " + payload.length + "\r\n"
+                + "\r\n";
+        out.write(header.getBytes("ISO-8859-1"));
+        out.write(payload);
+        out.write("\r\n\r\n".getBytes("ISO-8859-1"));
+        return out.toByteArray();
+    }
+
+    public static byte[] payload(int i) {
+        byte[] payload = new byte[i * 1000];
+        for (int j=0; j<payload.length; ++j) {
+            payload[j] = (byte)('a' + (i + j) % 26);
+        }
+        return payload;
+    }
+
+    public static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    public static void assertRecord(WarcRecord record, int i) throws IOException {
+        Assert.assertNotNull(record);
+        Assert.assertEquals("<urn:uuid:0d5d5e9f-2222-4780-b5a4-bbcb3f28" + (1000 + i) + ">", record.header.warcRecordIdStr);
+        if (i == 0) {
+            Assert.assertFalse(record.hasPayload());
+        } else {
+            Assert.assertArrayEquals(payload(i), readAll(record.getPayloadContent()));
+        }
+    }
+
+    @Test
+    public void test_recordfetcher_warc() throws IOException {
+        File uncompressed = File.createTempFile("jwat-fetcher-", ".warc");
+        File compressed = File.createTempFile("jwat-fetcher-", ".warc.gz");
+        uncompressed.deleteOnExit();
+        compressed.deleteOnExit();
+        long[] uncompressedOffsets = writeWarcFile(uncompressed, false);
+        long[] compressedOffsets = writeWarcFile(compressed, true);
+        RecordFetcher fetcher = new RecordFetcher(4, 512, ReaderConfig.DEFAULT);
+        try {
+            // Random order, alternating between the files.
+            for (int n=0; n<RECORDS; ++n) {
+                int i = (n * 7) % RECORDS;
+                WarcRecord record = fetcher.fetchWarcRecord(uncompressed, uncompressedOffsets[i]);
+                Assert.assertEquals(uncompressedOffsets[i], record.getStartOffset());
+                assertRecord(record, i);
+                record = fetcher.fetchWarcRecord(compressed, compressedOffsets[i]);
+                Assert.assertEquals(compressedOffsets[i], record.getStartOffset());
+                assertRecord(record, i);
+            }
+            Assert.assertEquals(2, fetcher.getOpenFileCount());
+            // No record at the end of the file.
+            Assert.assertNull(fetcher.fetchWarcRecord(uncompressed, uncompressed.length()));
+            fetcher.release();
+        } finally {
+            fetcher.close();
+        }
+        Assert.assertEquals(0, fetcher.getOpenFileCount());
+        try {
+            fetcher.fetchWarcRecord(uncompressed, 0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    @Test
+    public void test_recordfetcher_eviction() throws IOException {
+        File[] files = new File[3];
+        long[][] offsets = new long[files.length][];
+        for (int f=0; f<files.length; ++f) {
+            files[f] = File.createTempFile("jwat-fetcher-", ".warc.gz");
+            files[f].deleteOnExit();
+            offsets[f] = writeWarcFile(files[f], (f & 1) == 0);
+        }
+        RecordFetcher fetcher = new RecordFetcher(1, RecordFetcher.DEFAULT_BUFFER_SIZE, ReaderConfig.DEFAULT);
+        try {
+            for (int n=0; n<RECORDS * files.length; ++n) {
+                int f = n % files.length;
+                int i = n % RECORDS;
+                assertRecord(fetcher.fetchWarcRecord(files[f], offsets[f][i]), i);
+                Assert.assertEquals(1, fetcher.getOpenFileCount());
+            }
+        } finally {
+            fetcher.close();
+        }
+    }
+
+    @Test
+    public void test_recordfetcher_threads() throws Exception {
+        final File file = File.createTempFile("jwat-fetcher-", ".warc.gz");
+        file.deleteOnExit();
+        final long[] offsets = writeWarcFile(file, true);
+        final RecordFetcher fetcher = new RecordFetcher();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t=0; t<4; ++t) {
+            final int seed = t;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int n=0; n<RECORDS * 4; ++n) {
+                            int i = (n * 5 + seed) % RECORDS;
+                            assertRecord(fetcher.fetchWarcRecord(file, offsets[i]), i);
+                        }
+                        fetcher.release();
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (int t=0; t<threads.size(); ++t) {
+            threads.get(t).join();
+        }
+        // The readers of all the threads are closed with the fetcher.
+        List<RecordFetcher.FetchState> states = new ArrayList<RecordFetcher.FetchState>(fetcher.fetchStates);
+        Assert.assertEquals(threads.size(), states.size());
+        fetcher.close();
+        Assert.assertTrue(fetcher.fetchStates.isEmpty());
+        for (int t=0; t<states.size(); ++t) {
+            Assert.assertNotNull(states.get(t).in);
+            Assert.assertNull(states.get(t).warcReaderCompressed);
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    @Test
+    public void test_recordfetcher_arc() throws IOException {
+        File file = new File(TestRecordFetcher.class.getClassLoader().getResource("small_BNF.arc").getFile());
+        List<Long> offsets = new ArrayList<Long>();
+        List<String> urls = new ArrayList<String>();
+        InputStream in = new java.io.FileInputStream(file);
+        ArcReader reader = ArcReaderFactory.getReader(in);
+        ArcRecordBase record;
+        while ((record = reader.getNextRecord()) != null) {
+            offsets.add(record.getStartOffset());
+            urls.add(record.header.urlStr);
+            record.close();
+        }
+        reader.close();
+        in.close();
+        Assert.assertTrue(offsets.size() > 1);
+        RecordFetcher fetcher = new RecordFetcher();
+        try {
+            for (int i=offsets.size() - 1; i>=0; --i) {
+                record = fetcher.fetchArcRecord(file, offsets.get(i));
+                Assert.assertNotNull(record);
+                Assert.assertEquals(offsets.get(i).longValue(), record.getStartOffset());
+                Assert.assertEquals(urls.get(i), record.header.urlStr);
+            }
+        } finally {
+            fetcher.close();
+        }
+    }
+
+    @Test
+    public void test_recordfetcher_batch() throws IOException {
+        File uncompressed = File.createTempFile("jwat-fetcher-", ".warc");
+        File compressed = File.createTempFile("jwat-fetcher-", ".warc.gz");
+        uncompressed.deleteOnExit();
+        compressed.deleteOnExit();
+        File[] files = new File[] {uncompressed, compressed};
+        long[][] offsets = new long[][] {writeWarcFile(uncompressed, false), writeWarcFile(compressed, true)};
+        List<FetchRequest> requests = new ArrayList<FetchRequest>();
+        for (int n=0; n<RECORDS * 2; ++n) {
+            int f = n & 1;
+            int i = (n * 7) % RECORDS;
+            long offset = offsets[f][i];
+            long end = (i + 1 < RECORDS) ? offsets[f][i + 1] : files[f].length();
+            // Every third request without a length.
+            requests.add(n % 3 == 0 ? new FetchRequest(files[f], offset) : new FetchRequest(files[f], offset, end - offset));
+        }
+        // No record at the end of the file.
+        requests.add(new FetchRequest(compressed, compressed.length()));
+        RecordFetchMapper<Integer> mapper = new RecordFetchMapper<Integer>() {
+            @Override
+            public Integer mapRecord(FetchRequest request, WarcRecord record) throws IOException {
+                Assert.assertEquals(request.offset, record.getStartOffset());
+                String id = record.header.warcRecordIdStr;
+                int i = Integer.parseInt(id.substring(id.length() - 5, id.length() - 1)) - 1000;
+                assertRecord(record, i);
+                return i;
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        RecordFetcher fetcher = new RecordFetcher();
+        try {
+            // Default settings, small reads and no coalescing at all.
+            int[][] settings = new int[][] {{fetcher.maxGap, fetcher.maxReadSize}, {100, 4096}, {0, 1}};
+            for (int s=0; s<settings.length; ++s) {
+                fetcher.maxGap = settings[s][0];
+                fetcher.maxReadSize = settings[s][1];
+                for (int e=0; e<2; ++e) {
+                    List<Integer> results = fetcher.fetchWarcRecords(requests, mapper, e == 0 ? null : executor);
+                    Assert.assertEquals(requests.size(), results.size());
+                    for (int n=0; n<RECORDS * 2; ++n) {
+                        Assert.assertEquals((n * 7) % RECORDS, results.get(n).intValue());
+                    }
+                    Assert.assertNull(results.get(RECORDS * 2));
+                }
+            }
+            Assert.assertEquals(2, fetcher.getOpenFileCount());
+        } finally {
+            fetcher.close();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void test_recordfetcher_invalid() throws IOException {
+        try {
+            new RecordFetcher(0, 1, ReaderConfig.DEFAULT);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new RecordFetcher(1, 0, ReaderConfig.DEFAULT);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new RecordFetcher(1, 1, null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        RecordFetcher fetcher = new RecordFetcher();
+        try {
+            fetcher.fetchWarcRecord(null, 0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            fetcher.fetchArcRecord(new File("x"), -1);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            fetcher.fetchWarcRecords(null, null, null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new FetchRequest(new File("x"), 0, -2);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        fetcher.close();
+    }
+
+}
@@ -0,0 +1,186 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.warc.WarcReader;
+import org.jwat.warc.WarcReaderFactory;
+
+@RunWith(JUnit4.class)
+public class TestWarcRecordPipeline {
+
+    /**
+     * Build an uncompressed WARC file alternating between resource records
+     * and response records with an HTTP header. Record i has a payload of
+     * i * 100 bytes, excluding the HTTP header.
+     */
+    public static byte[] warcFile(int records) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i=0; i<records; ++i) {
+            byte[] payload = new byte[i * 100];
+            for (int j=0; j<payload.length; ++j) {
+                payload[j] = (byte)('a' + (i + j) % 26);
+            }
+            byte[] block;
+            String contentType;
+            String type;
+            if ((i & 1) == 0) {
+                type = "resource";
+                contentType = "text/plain";
+                block = payload;
+            } else {
+                type = "response";
+                contentType = "application/http; msgtype=response";
+                ByteArrayOutputStream http = new ByteArrayOutputStream();
+                http.write(("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: " + payload.length + "\r\n\r\n").getBytes("ISO-8859-1"));
+                http.write(payload);
+                block = http.toByteArray();
+            }
+            String header = "WARC/1.0\r\n"
+                    + "WARC-Type: " + type + "\r\n"
+                    + "WARC-Record-ID: <urn:uuid:0d5d5e9f-2222-4780-b5a4-bbcb3f28" + (1000 + i) + ">\r\n"
+                    + "WARC-Date: 2012-05-17T00:14:47Z\r\n"
+                    + "WARC-Target-URI: http://jwat.org/" + i + "\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + "Content-Length: " + block.length + "\r\n"
+                    + "\r\n";
+            out.write(header.getBytes("ISO-8859-1"));
+            out.write(block);
+            out.write("\r\n\r\n".getBytes("ISO-8859-1"));
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void test_warcrecordpipeline() throws IOException, InterruptedException {
+        byte[] bytes = warcFile(60);
+        WarcRecordPipeline pipeline = new WarcRecordPipeline();
+        pipeline.slots = 4;
+        pipeline.consumers = 4;
+        // Payloads above 2000 bytes are spilled to temporary files.
+        pipeline.inMemoryBufferSize = 2000;
+
+        final Random random = new Random(42);
+        final List<String> completed = new ArrayList<String>();
+        InputStream in = new ByteArrayInputStream(bytes);
+        WarcReader reader = WarcReaderFactory.getReader(in);
+        long records = pipeline.process(reader, new WarcPipelineCallback<Long>() {
+            @Override
+            public Long processRecord(WarcPipelineRecord record) throws IOException {
+                int idx = (int)record.sequence;
+                try {
+                    // Finish out of order.
+                    Thread.sleep(random.nextInt(5));
+                } catch (InterruptedException e) {
+                }
+                Assert.assertEquals("http://jwat.org/" + idx, record.getHeader().warcTargetUriStr);
+                if ((idx & 1) == 0) {
+                    Assert.assertNull(record.getHttpHeader());
+                } else {
+                    Assert.assertNotNull(record.getHttpHeader());
+                    Assert.assertEquals(200, record.getHttpHeader().statusCode.intValue());
+                }
+                long length = 0;
+                InputStream pin = record.getPayloadStream();
+                if (pin != null) {
+                    int c;
+                    while ((c = pin.read()) != -1) {
+                        Assert.assertEquals('a' + (idx + length) % 26, c);
+                        ++length;
+                    }
+                    pin.close();
+                }
+                Assert.assertEquals(record.getPayloadLength(), length);
+                return length;
+            }
+            @Override
+            public void recordProcessed(WarcPipelineRecord record, Long value) throws IOException {
+                Assert.assertEquals(completed.size(), record.sequence);
+                Assert.assertEquals(record.sequence * 100, value.longValue());
+                completed.add(record.getHeader().warcTargetUriStr);
+            }
+        });
+        reader.close();
+        Assert.assertEquals(60, records);
+        Assert.assertEquals(60, completed.size());
+        for (int i=0; i<completed.size(); ++i) {
+            Assert.assertEquals("http://jwat.org/" + i, completed.get(i));
+        }
+    }
+
+    @Test
+    public void test_warcrecordpipeline_failure() throws IOException, InterruptedException {
+        byte[] bytes = warcFile(30);
+        WarcRecordPipeline pipeline = new WarcRecordPipeline();
+        pipeline.slots = 3;
+        pipeline.consumers = 2;
+        InputStream in = new ByteArrayInputStream(bytes);
+        WarcReader reader = WarcReaderFactory.getReader(in);
+        try {
+            pipeline.process(reader, new WarcPipelineCallback<Object>() {
+                @Override
+                public Object processRecord(WarcPipelineRecord record) throws IOException {
+                    if (record.sequence == 10) {
+                        throw new IOException("failure");
+                    }
+                    return null;
+                }
+                @Override
+                public void recordProcessed(WarcPipelineRecord record, Object value) throws IOException {
+                    Assert.assertTrue(record.sequence < 10);
+                }
+            });
+            Assert.fail("Exception expected!");
+        } catch (IOException e) {
+            Assert.assertEquals("failure", e.getMessage());
+        }
+        reader.close();
+
+        try {
+            pipeline.process(null, null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        pipeline.slots = 0;
+        try {
+            pipeline.process(WarcReaderFactory.getReader(new ByteArrayInputStream(bytes)), new WarcPipelineCallback<Object>() {
+                @Override
+                public Object processRecord(WarcPipelineRecord record) throws IOException {
+                    return null;
+                }
+                @Override
+                public void recordProcessed(WarcPipelineRecord record, Object value) throws IOException {
+                }
+            });
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
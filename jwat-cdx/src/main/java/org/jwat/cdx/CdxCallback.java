@@ -0,0 +1,37 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.cdx;
+
+import java.io.IOException;
+
+/**
+ * Callback interface used by <code>CdxIndexer</code> to deliver the entries
+ * of a single file in file order. ({@link CdxIndexer})
+ *
+ * @author nicl
+ */
+public interface CdxCallback {
+
+    /**
+     * Called for each indexed record.
+     * @param entry index entry of a record
+     * @throws IOException if an I/O error occurs while processing the entry
+     */
+    public void cdxEntry(CdxEntry entry) throws IOException;
+
+}
@@ -0,0 +1,197 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.cdx;
+
+/**
+ * A single CDX index entry, formatted as a CDX11 or CDXJ line.
+ * Missing values are stored as null and written as <code>-</code>.
+ *
+ * @author nicl
+ */
+public class CdxEntry {
+
+    /** SURT form of the URL, used as sort key. */
+    public String key;
+
+    /** 14 digit capture timestamp, <code>yyyyMMddHHmmss</code>. */
+    public String timestamp;
+
+    /** Original URL. */
+    public String url;
+
+    /** Mime type without parameters. */
+    public String mime;
+
+    /** HTTP status code. */
+    public String status;
+
+    /** Payload digest without algorithm prefix. */
+    public String digest;
+
+    /** Number of bytes occupied by the record in the file. */
+    public long length;
+
+    /** Offset of the record in the file. */
+    public long offset;
+
+    /** Name of the file containing the record. */
+    public String filename;
+
+    /**
+     * Parse a CDX11 index line as written by <code>toLine</code>. Fields
+     * written as <code>-</code> are returned as null, other fields are
+     * returned as written.
+     * @param line CDX11 index line without line terminator
+     * @return parsed entry
+     */
+    public static CdxEntry parseLine(String line) {
+        if (line == null) {
+            throw new IllegalArgumentException("'line' is null!");
+        }
+        String[] fields = line.split(" ");
+        if (fields.length != 11) {
+            throw new IllegalArgumentException("Invalid CDX11 line: '" + line + "'");
+        }
+        CdxEntry entry = new CdxEntry();
+        entry.key = getField(fields[0]);
+        entry.timestamp = getField(fields[1]);
+        entry.url = getField(fields[2]);
+        entry.mime = getField(fields[3]);
+        entry.status = getField(fields[4]);
+        entry.digest = getField(fields[5]);
+        try {
+            entry.length = Long.parseLong(fields[8]);
+            entry.offset = Long.parseLong(fields[9]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid CDX11 line: '" + line + "'", e);
+        }
+        entry.filename = getField(fields[10]);
+        return entry;
+    }
+
+    /**
+     * Returns the value of a space separated field.
+     * @param field field as written
+     * @return field value or null, if the value is missing
+     */
+    protected static String getField(String field) {
+        if ("-".equals(field)) {
+            return null;
+        }
+        return field;
+    }
+
+    /**
+     * Format the entry as an index line in the given format.
+     * @param format index line format
+     * @return index line without line terminator
+     */
+    public String toLine(CdxFormat format) {
+        StringBuilder sb = new StringBuilder(256);
+        switch (format) {
+        case CDX11:
+            appendField(sb, key).append(' ');
+            appendField(sb, timestamp).append(' ');
+            appendField(sb, url).append(' ');
+            appendField(sb, mime).append(' ');
+            appendField(sb, status).append(' ');
+            appendField(sb, digest).append(' ');
+            // Redirect and meta tags.
+            sb.append("- - ");
+            sb.append(length).append(' ');
+            sb.append(offset).append(' ');
+            appendField(sb, filename);
+            break;
+        case CDXJ:
+            appendField(sb, key).append(' ');
+            appendField(sb, timestamp).append(' ');
+            sb.append('{');
+            appendJson(sb, "url", url);
+            appendJson(sb, "mime", mime);
+            appendJson(sb, "status", status);
+            appendJson(sb, "digest", digest);
+            appendJson(sb, "length", Long.toString(length));
+            appendJson(sb, "offset", Long.toString(offset));
+            appendJson(sb, "filename", filename);
+            sb.append('}');
+            break;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Append a space separated field, escaping whitespace.
+     * @param sb string builder
+     * @param value field value or null
+     * @return the string builder
+     */
+    protected static StringBuilder appendField(StringBuilder sb, String value) {
+        if (value == null || value.length() == 0) {
+            return sb.append('-');
+        }
+        for (int i=0; i<value.length(); ++i) {
+            char c = value.charAt(i);
+            if (c <= ' ') {
+                sb.append('%');
+                sb.append(Character.forDigit(c >> 4, 16));
+                sb.append(Character.forDigit(c & 15, 16));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb;
+    }
+
+    /**
+     * Append a JSON string member, skipping missing values.
+     * @param sb string builder
+     * @param name member name
+     * @param value member value or null
+     */
+    protected static void appendJson(StringBuilder sb, String name, String value) {
+        if (value == null || value.length() == 0) {
+            return;
+        }
+        if (sb.charAt(sb.length() - 1) != '{') {
+            sb.append(", ");
+        }
+        sb.append('"').append(name).append("\": \"");
+        for (int i=0; i<value.length(); ++i) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                sb.append("\\\"");
+                break;
+            case '\\':
+                sb.append("\\\\");
+                break;
+            default:
+                if (c < ' ') {
+                    sb.append("\\u00");
+                    sb.append(Character.forDigit(c >> 4, 16));
+                    sb.append(Character.forDigit(c & 15, 16));
+                } else {
+                    sb.append(c);
+                }
+                break;
+            }
+        }
+        sb.append('"');
+    }
+
+}
@@ -0,0 +1,44 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.cdx;
+
+/**
+ * Supported CDX index line formats.
+ *
+ * @author nicl
+ */
+public enum CdxFormat {
+
+    /** Classic space separated CDX format with 11 fields. */
+    CDX11(" CDX N b a m s k r M S V g"),
+
+    /** CDXJ format, SURT key and timestamp followed by a JSON block. */
+    CDXJ(null);
+
+    /** Header line written before the sorted index lines or null. */
+    public final String header;
+
+    /**
+     * Construct a format with an optional header line.
+     * @param header header line or null
+     */
+    private CdxFormat(String header) {
+        this.header = header;
+    }
+
+}
@@ -0,0 +1,426 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.cdx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jwat.arc.ArcReader;
+import org.jwat.arc.ArcReaderFactory;
+import org.jwat.arc.ArcRecordBase;
+import org.jwat.archive.FileIdent;
+import org.jwat.common.HttpHeader;
+import org.jwat.common.RandomAccessFileInputStream;
+import org.jwat.common.SurtCanonicalizer;
+import org.jwat.common.Uri;
+import org.jwat.common.UriProfile;
+import org.jwat.common.ValidationLevel;
+import org.jwat.warc.WarcConstants;
+import org.jwat.warc.WarcHeader;
+import org.jwat.warc.WarcReader;
+import org.jwat.warc.WarcReaderFactory;
+import org.jwat.warc.WarcRecord;
+
+/**
+ * CDX index generator for ARC and WARC files, compressed or uncompressed.
+ * Files are read without validation, digest computation or payload
+ * processing. Only the HTTP header of response and revisit records is
+ * parsed, to get the status code and mime type, the payloads are skipped.
+ * Several files are indexed in parallel and the lines are sorted using an
+ * <code>ExternalSorter</code>, so the memory used is bounded regardless of
+ * the number of records.
+ * WARC response, resource and revisit records and all ARC records, except
+ * the version block, are indexed.
+ *
+ * @author nicl
+ */
+public class CdxIndexer {
+
+    /** Buffer size used to read the files. */
+    public static final int DEFAULT_READER_BUFFER_SIZE = 65536;
+
+    /** Default profile used to parse and canonicalize URLs into keys. */
+    public static final UriProfile DEFAULT_URI_PROFILE = UriProfile.RFC3986_ABS_16BIT_LAX;
+
+    /*
+     * Settings.
+     */
+
+    /** Index line format. */
+    public CdxFormat format = CdxFormat.CDX11;
+
+    /** Number of files indexed in parallel. */
+    public int threads = Runtime.getRuntime().availableProcessors();
+
+    /** Maximum memory used to buffer lines before sorting them on disk. */
+    public long maxMemory = ExternalSorter.DEFAULT_MAX_MEMORY;
+
+    /** Directory used for sort spill files or null for the default. */
+    public File tmpDir;
+
+    /** Profile used to parse the record URLs and canonicalize them into keys. */
+    public UriProfile uriProfile = DEFAULT_URI_PROFILE;
+
+    /** Per thread SURT canonicalizers used to create the index keys. */
+    protected final ThreadLocal<SurtCanonicalizer> canonicalizer = new ThreadLocal<SurtCanonicalizer>() {
+        @Override
+        protected SurtCanonicalizer initialValue() {
+            return new SurtCanonicalizer();
+        }
+    };
+
+    /**
+     * Construct instance. Modify the fields directly to customise.
+     */
+    public CdxIndexer() {
+    }
+
+    /**
+     * Index a list of files in parallel and write the sorted index, including
+     * the header line of the format if any.
+     * @param files ARC and WARC files to index
+     * @param out writer the sorted index is written to
+     * @return number of index lines written
+     * @throws IOException if an I/O error occurs while indexing a file or
+     * writing the index
+     */
+    public long index(List<File> files, Writer out) throws IOException {
+        return index(files, format, out);
+    }
+
+    /**
+     * Index a list of files in parallel and write the sorted index in the
+     * given format, including the header line of the format if any.
+     * @param files ARC and WARC files to index
+     * @param format index line format
+     * @param out writer the sorted index is written to
+     * @return number of index lines written
+     * @throws IOException if an I/O error occurs while indexing a file or
+     * writing the index
+     */
+    public long index(List<File> files, final CdxFormat format, Writer out) throws IOException {
+        if (files == null) {
+            throw new IllegalArgumentException("'files' is null!");
+        }
+        if (format == null) {
+            throw new IllegalArgumentException("'format' is null!");
+        }
+        if (out == null) {
+            throw new IllegalArgumentException("'out' is null!");
+        }
+        final ExternalSorter sorter = new ExternalSorter(maxMemory, tmpDir);
+        long lines = 0;
+        final CdxCallback callback = new CdxCallback() {
+            @Override
+            public void cdxEntry(CdxEntry entry) throws IOException {
+                sorter.add(entry.toLine(format));
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, files.size())));
+        try {
+            List<Future<Long>> futures = new ArrayList<Future<Long>>(files.size());
+            for (int i=0; i<files.size(); ++i) {
+                final File file = files.get(i);
+                futures.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws IOException {
+                        return indexFile(file, callback);
+                    }
+                }));
+            }
+            for (int i=0; i<futures.size(); ++i) {
+                lines += getResult(futures.get(i), files.get(i));
+            }
+            if (format.header != null) {
+                out.write(format.header);
+                out.write('\n');
+            }
+            sorter.merge(out);
+        } finally {
+            executor.shutdownNow();
+            sorter.close();
+        }
+        return lines;
+    }
+
+    /**
+     * Wait for an indexing task and return its result.
+     * @param future indexing task
+     * @param file file being indexed
+     * @return number of entries of the file
+     * @throws IOException if the file could not be indexed
+     */
+    protected static long getResult(Future<Long> future, File file) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IOException("Error indexing '" + file.getPath() + "'", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while indexing", e);
+        }
+    }
+
+    /**
+     * Index a single file, delivering the entries in file order.
+     * @param file ARC or WARC file, compressed or uncompressed
+     * @param callback callback receiving the entries
+     * @return number of entries delivered
+     * @throws IOException if an I/O error occurs while reading the file or
+     * the file is not an ARC or WARC file
+     */
+    public long indexFile(File file, CdxCallback callback) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("'file' is null!");
+        }
+        if (callback == null) {
+            throw new IllegalArgumentException("'callback' is null!");
+        }
+        int fileId = FileIdent.identFileStream(file);
+        long entries = 0;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            InputStream in = new RandomAccessFileInputStream(raf);
+            switch (fileId) {
+            case FileIdent.FILEID_WARC:
+            case FileIdent.FILEID_WARC_GZ:
+                entries = indexWarc(WarcReaderFactory.getReader(in, DEFAULT_READER_BUFFER_SIZE), file.getName(), callback);
+                break;
+            case FileIdent.FILEID_ARC:
+            case FileIdent.FILEID_ARC_GZ:
+                entries = indexArc(ArcReaderFactory.getReader(in, DEFAULT_READER_BUFFER_SIZE), file.getName(), callback);
+                break;
+            default:
+                throw new IOException("Not an ARC or WARC file: '" + file.getPath() + "'");
+            }
+        } finally {
+            raf.close();
+        }
+        return entries;
+    }
+
+    /**
+     * Index the records of a WARC reader.
+     * @param reader WARC reader
+     * @param filename file name written in the entries
+     * @param callback callback receiving the entries
+     * @return number of entries delivered
+     * @throws IOException if an I/O error occurs while reading
+     */
+    protected long indexWarc(WarcReader reader, String filename, CdxCallback callback) throws IOException {
+        reader.setValidationLevel(ValidationLevel.NONE);
+        reader.setWarcTargetUriProfile(uriProfile);
+        reader.setBlockDigestEnabled(false);
+        reader.setPayloadDigestEnabled(false);
+        reader.setDeferHttpHeader(true);
+        reader.setReportHttpHeaderErrors(false);
+        long entries = 0;
+        try {
+            WarcRecord record;
+            while ((record = reader.getNextRecord()) != null) {
+                CdxEntry entry = createEntry(record, filename);
+                record.close();
+                if (entry != null) {
+                    entry.length = record.getCompressedLength();
+                    callback.cdxEntry(entry);
+                    ++entries;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return entries;
+    }
+
+    /**
+     * Create the index entry of a WARC record, without the length which is
+     * only known once the record is closed.
+     * @param record WARC record
+     * @param filename file name written in the entry
+     * @return index entry or null, if the record is not indexed
+     * @throws IOException if an I/O error occurs while reading the HTTP header
+     */
+    protected CdxEntry createEntry(WarcRecord record, String filename) throws IOException {
+        WarcHeader header = record.header;
+        if (header.warcTypeIdx == null || header.warcTargetUriStr == null) {
+            return null;
+        }
+        int type = header.warcTypeIdx;
+        if (type != WarcConstants.RT_IDX_RESPONSE && type != WarcConstants.RT_IDX_RESOURCE
+                && type != WarcConstants.RT_IDX_REVISIT) {
+            return null;
+        }
+        CdxEntry entry = new CdxEntry();
+        entry.url = header.warcTargetUriStr;
+        entry.key = toKey(header.warcTargetUriUri, entry.url);
+        entry.timestamp = toTimestamp(header.warcDateStr);
+        if (header.warcPayloadDigest != null) {
+            entry.digest = header.warcPayloadDigest.digestString;
+        }
+        HttpHeader httpHeader = null;
+        if (type != WarcConstants.RT_IDX_RESOURCE) {
+            httpHeader = record.getHttpHeader();
+        }
+        if (httpHeader != null && httpHeader.isValid()) {
+            entry.status = httpHeader.statusCodeStr;
+            entry.mime = toMime(httpHeader.contentType);
+        } else {
+            entry.mime = toMime(header.contentTypeStr);
+        }
+        if (type == WarcConstants.RT_IDX_REVISIT) {
+            entry.mime = "warc/revisit";
+        }
+        entry.offset = record.getStartOffset();
+        entry.filename = filename;
+        return entry;
+    }
+
+    /**
+     * Index the records of an ARC reader.
+     * @param reader ARC reader
+     * @param filename file name written in the entries
+     * @param callback callback receiving the entries
+     * @return number of entries delivered
+     * @throws IOException if an I/O error occurs while reading
+     */
+    protected long indexArc(ArcReader reader, String filename, CdxCallback callback) throws IOException {
+        reader.setValidationLevel(ValidationLevel.NONE);
+        reader.setUriProfile(uriProfile);
+        reader.setBlockDigestEnabled(false);
+        reader.setPayloadDigestEnabled(false);
+        reader.setDeferHttpHeader(true);
+        reader.setReportHttpHeaderErrors(false);
+        long entries = 0;
+        try {
+            ArcRecordBase record;
+            while ((record = reader.getNextRecord()) != null) {
+                CdxEntry entry = createEntry(record, filename);
+                record.close();
+                if (entry != null) {
+                    entry.length = record.getCompressedLength();
+                    callback.cdxEntry(entry);
+                    ++entries;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return entries;
+    }
+
+    /**
+     * Create the index entry of an ARC record, without the length which is
+     * only known once the record is closed.
+     * @param record ARC record
+     * @param filename file name written in the entry
+     * @return index entry or null, if the record is not indexed
+     * @throws IOException if an I/O error occurs while reading the HTTP header
+     */
+    protected CdxEntry createEntry(ArcRecordBase record, String filename) throws IOException {
+        if (record.recordType != ArcRecordBase.RT_ARC_RECORD || record.header.urlStr == null) {
+            return null;
+        }
+        CdxEntry entry = new CdxEntry();
+        entry.url = record.header.urlStr;
+        entry.key = toKey(record.header.urlUri, entry.url);
+        entry.timestamp = toTimestamp(record.header.archiveDateStr);
+        HttpHeader httpHeader = record.getHttpHeader();
+        if (httpHeader != null && httpHeader.isValid()) {
+            entry.status = httpHeader.statusCodeStr;
+            entry.mime = toMime(httpHeader.contentType);
+        } else {
+            entry.mime = toMime(record.header.contentTypeStr);
+        }
+        entry.offset = record.getStartOffset();
+        entry.filename = filename;
+        return entry;
+    }
+
+    /**
+     * Returns the SURT form of a record URL used as index key. The URI
+     * already parsed by the reader is used when it was parsed with the
+     * configured <code>uriProfile</code>.
+     * @param uri parsed URL or null
+     * @param url URL string
+     * @return SURT form of the URL
+     */
+    protected String toKey(Uri uri, String url) {
+        SurtCanonicalizer surtCanonicalizer = canonicalizer.get();
+        surtCanonicalizer.uriProfile = uriProfile;
+        if (uri != null && uri.getUriProfile() == uriProfile) {
+            return surtCanonicalizer.surt(uri);
+        }
+        return surtCanonicalizer.surt(url);
+    }
+
+    /**
+     * Convert a WARC or ARC date to a 14 digit timestamp by keeping the
+     * first 14 digits.
+     * @param date date string or null
+     * @return 14 digit timestamp or null
+     */
+    public static String toTimestamp(String date) {
+        if (date == null) {
+            return null;
+        }
+        char[] digits = new char[14];
+        int len = 0;
+        for (int i=0; i<date.length() && len < digits.length; ++i) {
+            char c = date.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits[len++] = c;
+            }
+        }
+        return len > 0 ? new String(digits, 0, len) : null;
+    }
+
+    /**
+     * Strip parameters from a content type and lowercase it.
+     * @param contentType content type or null
+     * @return mime type or null
+     */
+    public static String toMime(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int idx = contentType.indexOf(';');
+        if (idx != -1) {
+            contentType = contentType.substring(0, idx);
+        }
+        contentType = contentType.trim().toLowerCase();
+        return contentType.length() > 0 ? contentType : null;
+    }
+
+}
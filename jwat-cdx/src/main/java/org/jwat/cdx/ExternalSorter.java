@@ -0,0 +1,325 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.cdx;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * External merge sort of text lines using bounded memory.
+ * Lines are added concurrently from any number of threads. When the
+ * buffered lines exceed the memory limit they are sorted and spilled to a
+ * temporary file by the adding thread, while the other threads continue
+ * filling a new buffer. The spill files are then merged with the remaining
+ * buffered lines, at most <code>maxMergeFiles</code> files at a time.
+ * Lines are compared using <code>String.compareTo</code>, which equals the
+ * byte order of the UTF-8 encoded lines for characters in the basic
+ * multilingual plane.
+ *
+ * @author nicl
+ */
+public class ExternalSorter implements Closeable {
+
+    /** Default maximum memory used to buffer lines. */
+    public static final long DEFAULT_MAX_MEMORY = 64L * 1024L * 1024L;
+
+    /** Default maximum number of files merged at a time. */
+    public static final int DEFAULT_MAX_MERGE_FILES = 64;
+
+    /** Estimated memory used by a buffered line in addition to its characters. */
+    protected static final int LINE_OVERHEAD = 56;
+
+    /** Buffer size used to read and write spill files. */
+    protected static final int IO_BUFFER_SIZE = 65536;
+
+    /** Maximum memory used to buffer lines, each spilling thread may hold
+     *  an additional full buffer while it is being written. */
+    protected final long maxMemory;
+
+    /** Directory used for spill files or null for the default. */
+    protected final File tmpDir;
+
+    /** Maximum number of files merged at a time. */
+    public int maxMergeFiles = DEFAULT_MAX_MERGE_FILES;
+
+    /** Lines buffered in memory. */
+    protected List<String> lines = new ArrayList<String>();
+
+    /** Estimated memory used by the buffered lines. */
+    protected long memory;
+
+    /** Sorted spill files. */
+    protected final List<File> spillFiles = new ArrayList<File>();
+
+    /** Has the sorter been closed. */
+    protected boolean bClosed;
+
+    /**
+     * Construct a sorter with the default memory limit.
+     */
+    public ExternalSorter() {
+        this(DEFAULT_MAX_MEMORY, null);
+    }
+
+    /**
+     * Construct a sorter using the given memory limit and spill directory.
+     * @param maxMemory maximum memory used to buffer lines
+     * @param tmpDir directory used for spill files or null for the default
+     */
+    public ExternalSorter(long maxMemory, File tmpDir) {
+        if (maxMemory <= 0) {
+            throw new IllegalArgumentException("'maxMemory' must be greater than 0!");
+        }
+        this.maxMemory = maxMemory;
+        this.tmpDir = tmpDir;
+    }
+
+    /**
+     * Add a line, spilling the buffered lines to disk if the memory limit
+     * has been reached. The line must not contain line terminators.
+     * @param line line to add
+     * @throws IOException if an I/O error occurs while spilling
+     */
+    public void add(String line) throws IOException {
+        if (line == null) {
+            throw new IllegalArgumentException("'line' is null!");
+        }
+        List<String> full = null;
+        synchronized (this) {
+            if (bClosed) {
+                throw new IllegalStateException("Sorter has been closed!");
+            }
+            lines.add(line);
+            memory += LINE_OVERHEAD + 2L * line.length();
+            if (memory >= maxMemory) {
+                full = lines;
+                lines = new ArrayList<String>();
+                memory = 0;
+            }
+        }
+        if (full != null) {
+            Collections.sort(full);
+            File file = write(full.iterator());
+            synchronized (this) {
+                spillFiles.add(file);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of spill files currently on disk.
+     * @return number of spill files
+     */
+    public synchronized int getSpillFileCount() {
+        return spillFiles.size();
+    }
+
+    /**
+     * Write all the added lines in sorted order. Must only be called once
+     * all the lines have been added.
+     * @param out writer the sorted lines are written to, one per line
+     * @throws IOException if an I/O error occurs while merging
+     */
+    public void merge(Writer out) throws IOException {
+        if (out == null) {
+            throw new IllegalArgumentException("'out' is null!");
+        }
+        List<String> remaining;
+        List<File> files;
+        synchronized (this) {
+            if (bClosed) {
+                throw new IllegalStateException("Sorter has been closed!");
+            }
+            remaining = lines;
+            lines = new ArrayList<String>();
+            memory = 0;
+            files = spillFiles;
+        }
+        Collections.sort(remaining);
+        // Reduce the number of files merged at once to bound open files.
+        int maxFiles = Math.max(2, maxMergeFiles);
+        while (files.size() > maxFiles) {
+            List<File> batch = new ArrayList<File>(files.subList(0, maxFiles));
+            File file = File.createTempFile("jwat-sort-", ".tmp", tmpDir);
+            Writer writer = openWriter(file);
+            try {
+                merge(batch, null, writer);
+            } finally {
+                writer.close();
+            }
+            synchronized (this) {
+                files.subList(0, maxFiles).clear();
+                files.add(file);
+            }
+            for (int i=0; i<batch.size(); ++i) {
+                batch.get(i).delete();
+            }
+        }
+        merge(files, remaining.iterator(), out);
+        out.flush();
+    }
+
+    /**
+     * Merge sorted files and sorted in-memory lines into a writer.
+     * @param files sorted files
+     * @param memoryLines sorted in-memory lines or null
+     * @param out writer the merged lines are written to
+     * @throws IOException if an I/O error occurs while merging
+     */
+    protected void merge(List<File> files, Iterator<String> memoryLines, Writer out) throws IOException {
+        PriorityQueue<MergeSource> queue = new PriorityQueue<MergeSource>(files.size() + 1);
+        List<BufferedReader> readers = new ArrayList<BufferedReader>(files.size());
+        try {
+            for (int i=0; i<files.size(); ++i) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new FileInputStream(files.get(i)), StandardCharsets.UTF_8), IO_BUFFER_SIZE);
+                readers.add(reader);
+                MergeSource source = new MergeSource(reader, null);
+                if (source.next()) {
+                    queue.add(source);
+                }
+            }
+            if (memoryLines != null) {
+                MergeSource source = new MergeSource(null, memoryLines);
+                if (source.next()) {
+                    queue.add(source);
+                }
+            }
+            MergeSource source;
+            while ((source = queue.poll()) != null) {
+                out.write(source.line);
+                out.write('\n');
+                if (source.next()) {
+                    queue.add(source);
+                }
+            }
+        } finally {
+            for (int i=0; i<readers.size(); ++i) {
+                try {
+                    readers.get(i).close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Write sorted lines to a new spill file.
+     * @param iter sorted lines
+     * @return spill file
+     * @throws IOException if an I/O error occurs while writing
+     */
+    protected File write(Iterator<String> iter) throws IOException {
+        File file = File.createTempFile("jwat-sort-", ".tmp", tmpDir);
+        Writer writer = openWriter(file);
+        try {
+            while (iter.hasNext()) {
+                writer.write(iter.next());
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    /**
+     * Open a buffered UTF-8 writer on a file.
+     * @param file file to write
+     * @return buffered writer
+     * @throws IOException if the file could not be opened
+     */
+    protected static Writer openWriter(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8), IO_BUFFER_SIZE);
+    }
+
+    /**
+     * Delete all spill files and discard the buffered lines.
+     */
+    @Override
+    public synchronized void close() {
+        bClosed = true;
+        for (int i=0; i<spillFiles.size(); ++i) {
+            spillFiles.get(i).delete();
+        }
+        spillFiles.clear();
+        lines = new ArrayList<String>();
+        memory = 0;
+    }
+
+    /**
+     * Current line of a sorted file or in-memory list being merged.
+     */
+    protected static class MergeSource implements Comparable<MergeSource> {
+
+        /** Reader of a sorted file or null. */
+        protected final BufferedReader reader;
+
+        /** Iterator of sorted in-memory lines or null. */
+        protected final Iterator<String> iter;
+
+        /** Current line. */
+        protected String line;
+
+        /**
+         * Construct a merge source reading from a file or an iterator.
+         * @param reader reader of a sorted file or null
+         * @param iter iterator of sorted in-memory lines or null
+         */
+        protected MergeSource(BufferedReader reader, Iterator<String> iter) {
+            this.reader = reader;
+            this.iter = iter;
+        }
+
+        /**
+         * Advance to the next line.
+         * @return boolean indicating whether a line was available
+         * @throws IOException if an I/O error occurs while reading
+         */
+        protected boolean next() throws IOException {
+            if (reader != null) {
+                line = reader.readLine();
+            } else {
+                line = iter.hasNext() ? iter.next() : null;
+            }
+            return line != null;
+        }
+
+        @Override
+        public int compareTo(MergeSource other) {
+            return line.compareTo(other.line);
+        }
+
+    }
+
+}
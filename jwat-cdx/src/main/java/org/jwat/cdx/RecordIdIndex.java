@@ -0,0 +1,310 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.cdx;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jwat.archive.FetchRequest;
+
+/**
+ * Memory-mapped index from WARC-Record-ID to record location, written by
+ * <code>RecordIdIndexWriter</code>. Used to resolve the record IDs in
+ * WARC-Refers-To, WARC-Concurrent-To, WARC-Warcinfo-ID and
+ * WARC-Segment-Origin-ID headers across a collection of files.
+ *
+ * The file starts with a 32 byte header (magic, version, file count, entry
+ * count and the offset of the file table) followed by fixed size entries
+ * sorted by the unsigned 128-bit MD5 hash of the record ID. Each entry holds
+ * the hash, offset, length and file id of a record. The file table at the
+ * end holds the UTF-8 paths of the indexed files. All values are big-endian.
+ * Lookups are binary searches directly on the mapped entries, so an index
+ * can be shared by any number of threads.
+ *
+ * @author nicl
+ */
+public class RecordIdIndex implements Closeable {
+
+    /** Magic bytes identifying an index file. */
+    public static final byte[] MAGIC = {'J', 'W', 'A', 'T', 'R', 'I', 'D', 'X'};
+
+    /** Index format version. */
+    public static final int VERSION = 1;
+
+    /** Size of the file header. */
+    public static final int HEADER_SIZE = 32;
+
+    /** Size of an entry: hash (16), offset (8), length (8) and file id (4). */
+    public static final int ENTRY_SIZE = 36;
+
+    /** Maximum number of entries mapped by a single buffer. */
+    protected static final int ENTRIES_PER_SEGMENT = Integer.MAX_VALUE / ENTRY_SIZE;
+
+    /** UTF-8 charset used for file paths and record IDs. */
+    protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** Per thread MD5 instances used to hash record IDs. */
+    protected static final ThreadLocal<MessageDigest> md5 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    /** Index file channel. */
+    protected RandomAccessFile raf;
+
+    /** Mapped entry segments. */
+    protected MappedByteBuffer[] segments;
+
+    /** Number of entries. */
+    protected long entryCount;
+
+    /** Indexed files, indexed by file id. */
+    protected File[] files;
+
+    /**
+     * Open an index file. Relative file paths in the index are resolved
+     * against the base directory, if given.
+     * @param indexFile index file
+     * @param baseDir base directory of relative file paths or null
+     * @throws IOException if an I/O error occurs or the file is not a valid
+     * index file
+     */
+    public RecordIdIndex(File indexFile, File baseDir) throws IOException {
+        if (indexFile == null) {
+            throw new IllegalArgumentException("'indexFile' is null!");
+        }
+        raf = new RandomAccessFile(indexFile, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) == -1) {
+                    throw new IOException("Truncated record ID index: '" + indexFile.getPath() + "'");
+                }
+            }
+            header.flip();
+            for (int i=0; i<MAGIC.length; ++i) {
+                if (header.get() != MAGIC[i]) {
+                    throw new IOException("Not a record ID index: '" + indexFile.getPath() + "'");
+                }
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported record ID index version: " + version);
+            }
+            int fileCount = header.getInt();
+            entryCount = header.getLong();
+            long fileTableOffset = header.getLong();
+            if (fileCount < 0 || entryCount < 0
+                    || fileTableOffset != HEADER_SIZE + entryCount * ENTRY_SIZE
+                    || fileTableOffset > channel.size()) {
+                throw new IOException("Corrupt record ID index: '" + indexFile.getPath() + "'");
+            }
+            int segmentCount = (int)((entryCount + ENTRIES_PER_SEGMENT - 1) / ENTRIES_PER_SEGMENT);
+            segments = new MappedByteBuffer[segmentCount];
+            long remaining = entryCount;
+            long position = HEADER_SIZE;
+            for (int i=0; i<segmentCount; ++i) {
+                long size = Math.min(remaining, ENTRIES_PER_SEGMENT) * ENTRY_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                position += size;
+                remaining -= size / ENTRY_SIZE;
+            }
+            ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, fileTableOffset, channel.size() - fileTableOffset);
+            files = new File[fileCount];
+            for (int i=0; i<fileCount; ++i) {
+                byte[] bytes = new byte[table.getInt()];
+                table.get(bytes);
+                File file = new File(new String(bytes, UTF8));
+                if (baseDir != null && !file.isAbsolute()) {
+                    file = new File(baseDir, file.getPath());
+                }
+                files[i] = file;
+            }
+        } catch (RuntimeException e) {
+            raf.close();
+            throw new IOException("Corrupt record ID index: '" + indexFile.getPath() + "'", e);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of entries in the index.
+     * @return number of entries in the index
+     */
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Returns the number of indexed files.
+     * @return number of indexed files
+     */
+    public int getFileCount() {
+        return files.length;
+    }
+
+    /**
+     * Returns an indexed file.
+     * @param fileId file id
+     * @return indexed file
+     */
+    public File getFile(int fileId) {
+        return files[fileId];
+    }
+
+    /**
+     * Look up the location of a record. If the ID is present more than once,
+     * e.g. because a file was indexed twice, the first location is returned.
+     * @param recordId record ID with or without the enclosing '&lt;' and '&gt;'
+     * @return location of the record or null, if the ID is not indexed
+     */
+    public FetchRequest lookup(String recordId) {
+        long[] hash = hashRecordId(recordId);
+        long idx = findFirst(hash[0], hash[1]);
+        if (idx == -1) {
+            return null;
+        }
+        return getLocation(idx);
+    }
+
+    /**
+     * Look up all locations of a record.
+     * @param recordId record ID with or without the enclosing '&lt;' and '&gt;'
+     * @return locations of the record, empty if the ID is not indexed
+     */
+    public List<FetchRequest> lookupAll(String recordId) {
+        long[] hash = hashRecordId(recordId);
+        List<FetchRequest> locations = new ArrayList<FetchRequest>();
+        long idx = findFirst(hash[0], hash[1]);
+        if (idx != -1) {
+            while (idx < entryCount && getLong(idx, 0) == hash[0] && getLong(idx, 8) == hash[1]) {
+                locations.add(getLocation(idx++));
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * Binary search for the first entry with the given hash.
+     * @param hi most significant 64 bits of the hash
+     * @param lo least significant 64 bits of the hash
+     * @return index of the first entry with the hash or -1
+     */
+    protected long findFirst(long hi, long lo) {
+        long low = 0;
+        long high = entryCount;
+        long mid;
+        int cmp;
+        while (low < high) {
+            mid = (low + high) >>> 1;
+            cmp = Long.compareUnsigned(getLong(mid, 0), hi);
+            if (cmp == 0) {
+                cmp = Long.compareUnsigned(getLong(mid, 8), lo);
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low < entryCount && getLong(low, 0) == hi && getLong(low, 8) == lo) {
+            return low;
+        }
+        return -1;
+    }
+
+    /**
+     * Create the location of an entry.
+     * @param idx entry index
+     * @return location of the entry
+     */
+    protected FetchRequest getLocation(long idx) {
+        ByteBuffer segment = segments[(int)(idx / ENTRIES_PER_SEGMENT)];
+        int pos = (int)(idx % ENTRIES_PER_SEGMENT) * ENTRY_SIZE;
+        return new FetchRequest(files[segment.getInt(pos + 32)], segment.getLong(pos + 16), segment.getLong(pos + 24));
+    }
+
+    /**
+     * Read a long value of an entry.
+     * @param idx entry index
+     * @param fieldOffset offset of the value in the entry
+     * @return long value
+     */
+    protected long getLong(long idx, int fieldOffset) {
+        ByteBuffer segment = segments[(int)(idx / ENTRIES_PER_SEGMENT)];
+        return segment.getLong((int)(idx % ENTRIES_PER_SEGMENT) * ENTRY_SIZE + fieldOffset);
+    }
+
+    /**
+     * Remove surrounding whitespace and '&lt;' '&gt;' brackets from a record
+     * ID, so the raw WARC-Record-ID and WARC-Refers-To header values are
+     * treated alike.
+     * @param recordId record ID
+     * @return record ID without brackets
+     */
+    public static String normalizeRecordId(String recordId) {
+        if (recordId == null) {
+            throw new IllegalArgumentException("'recordId' is null!");
+        }
+        String id = recordId.trim();
+        if (id.length() >= 2 && id.charAt(0) == '<' && id.charAt(id.length() - 1) == '>') {
+            id = id.substring(1, id.length() - 1).trim();
+        }
+        return id;
+    }
+
+    /**
+     * Compute the 128-bit hash of a normalized record ID.
+     * @param recordId record ID
+     * @return most and least significant 64 bits of the hash
+     */
+    public static long[] hashRecordId(String recordId) {
+        byte[] digest = md5.get().digest(normalizeRecordId(recordId).getBytes(UTF8));
+        ByteBuffer bb = ByteBuffer.wrap(digest);
+        return new long[] {bb.getLong(), bb.getLong()};
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (raf != null) {
+            segments = null;
+            raf.close();
+            raf = null;
+        }
+    }
+
+}
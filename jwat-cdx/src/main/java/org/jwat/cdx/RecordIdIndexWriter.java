@@ -0,0 +1,280 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.cdx;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jwat.common.RandomAccessFileInputStream;
+import org.jwat.common.ValidationLevel;
+import org.jwat.warc.WarcReader;
+import org.jwat.warc.WarcReaderFactory;
+import org.jwat.warc.WarcRecord;
+
+/**
+ * Builds a <code>RecordIdIndex</code> file. Record IDs are collected while
+ * scanning WARC files in header-only mode, sorted in memory and written in
+ * one go. The entries are kept in a primitive array using 40 bytes per
+ * record, no objects are created per record.
+ * Files may be scanned from several threads concurrently.
+ *
+ * @author nicl
+ */
+public class RecordIdIndexWriter {
+
+    /** Number of long values used per entry. */
+    protected static final int SLOTS = 5;
+
+    /** Sub arrays smaller than this are sorted using insertion sort. */
+    protected static final int INSERTION_SORT_THRESHOLD = 16;
+
+    /** Paths of the registered files, indexed by file id. */
+    protected List<String> paths = new ArrayList<String>();
+
+    /** Entries as (hash high, hash low, offset, length, file id) tuples. */
+    protected long[] entries = new long[1024 * SLOTS];
+
+    /** Number of entries added. */
+    protected int entryCount;
+
+    /**
+     * Construct instance.
+     */
+    public RecordIdIndexWriter() {
+    }
+
+    /**
+     * Register a file and return its id. The path is stored as given.
+     * @param path path of the file
+     * @return file id
+     */
+    public synchronized int addFile(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("'path' is null!");
+        }
+        paths.add(path);
+        return paths.size() - 1;
+    }
+
+    /**
+     * Add a record location.
+     * @param recordId record ID with or without the enclosing '&lt;' and '&gt;'
+     * @param fileId id of the file containing the record
+     * @param offset offset of the record or the GZip member containing it
+     * @param length length of the record or GZip member, -1 if unknown
+     */
+    public void add(String recordId, int fileId, long offset, long length) {
+        long[] hash = RecordIdIndex.hashRecordId(recordId);
+        synchronized (this) {
+            if (fileId < 0 || fileId >= paths.size()) {
+                throw new IllegalArgumentException("Unknown 'fileId': " + fileId);
+            }
+            if ((entryCount + 1) * SLOTS > entries.length) {
+                if (entries.length > Integer.MAX_VALUE / 2) {
+                    throw new IllegalStateException("Too many record IDs");
+                }
+                long[] tmp = new long[entries.length * 2];
+                System.arraycopy(entries, 0, tmp, 0, entryCount * SLOTS);
+                entries = tmp;
+            }
+            int idx = entryCount * SLOTS;
+            entries[idx] = hash[0];
+            entries[idx + 1] = hash[1];
+            entries[idx + 2] = offset;
+            entries[idx + 3] = length;
+            entries[idx + 4] = fileId;
+            ++entryCount;
+        }
+    }
+
+    /**
+     * Register a WARC file and add all its records with a non empty
+     * WARC-Record-ID.
+     * The records are read in header-only mode.
+     * @param file WARC file, compressed or uncompressed
+     * @param path path stored in the index for the file
+     * @return number of records added
+     * @throws IOException if an I/O error occurs while reading the file
+     */
+    public long indexFile(File file, String path) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("'file' is null!");
+        }
+        int fileId = addFile(path);
+        long records = 0;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            InputStream in = new RandomAccessFileInputStream(raf);
+            WarcReader reader = WarcReaderFactory.getReader(in, CdxIndexer.DEFAULT_READER_BUFFER_SIZE);
+            reader.setValidationLevel(ValidationLevel.NONE);
+            reader.setBlockDigestEnabled(false);
+            reader.setPayloadDigestEnabled(false);
+            reader.setHeaderOnly(true);
+            try {
+                WarcRecord record;
+                while ((record = reader.getNextRecord()) != null) {
+                    record.close();
+                    if (record.header.warcRecordIdStr != null
+                            && RecordIdIndex.normalizeRecordId(record.header.warcRecordIdStr).length() > 0) {
+                        add(record.header.warcRecordIdStr, fileId, record.getStartOffset(), record.getCompressedLength());
+                        ++records;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            raf.close();
+        }
+        return records;
+    }
+
+    /**
+     * Returns the number of entries added.
+     * @return number of entries added
+     */
+    public synchronized int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Sort the entries and write the index file.
+     * @param indexFile index file to write
+     * @throws IOException if an I/O error occurs while writing
+     */
+    public synchronized void write(File indexFile) throws IOException {
+        if (indexFile == null) {
+            throw new IllegalArgumentException("'indexFile' is null!");
+        }
+        sort(0, entryCount - 1);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile), 65536));
+        try {
+            out.write(RecordIdIndex.MAGIC);
+            out.writeInt(RecordIdIndex.VERSION);
+            out.writeInt(paths.size());
+            out.writeLong(entryCount);
+            out.writeLong(RecordIdIndex.HEADER_SIZE + (long)entryCount * RecordIdIndex.ENTRY_SIZE);
+            int idx = 0;
+            for (int i=0; i<entryCount; ++i) {
+                out.writeLong(entries[idx]);
+                out.writeLong(entries[idx + 1]);
+                out.writeLong(entries[idx + 2]);
+                out.writeLong(entries[idx + 3]);
+                out.writeInt((int)entries[idx + 4]);
+                idx += SLOTS;
+            }
+            for (int i=0; i<paths.size(); ++i) {
+                byte[] bytes = paths.get(i).getBytes(RecordIdIndex.UTF8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Quicksort the entries by unsigned hash. Entries with equal hashes are
+     * ordered by file id and offset, so the output is deterministic.
+     * @param low index of the first entry
+     * @param high index of the last entry
+     */
+    protected void sort(int low, int high) {
+        while (high - low >= INSERTION_SORT_THRESHOLD) {
+            int mid = (low + high) >>> 1;
+            // Median of three as pivot, moved to the end.
+            if (compare(mid, low) < 0) {
+                swap(mid, low);
+            }
+            if (compare(high, low) < 0) {
+                swap(high, low);
+            }
+            if (compare(mid, high) < 0) {
+                swap(mid, high);
+            }
+            int store = low;
+            for (int i=low; i<high; ++i) {
+                if (compare(i, high) < 0) {
+                    swap(i, store++);
+                }
+            }
+            swap(store, high);
+            // Recurse into the smaller part to bound the stack depth.
+            if (store - low < high - store) {
+                sort(low, store - 1);
+                low = store + 1;
+            } else {
+                sort(store + 1, high);
+                high = store - 1;
+            }
+        }
+        for (int i=low + 1; i<=high; ++i) {
+            for (int j=i; j>low && compare(j, j - 1) < 0; --j) {
+                swap(j, j - 1);
+            }
+        }
+    }
+
+    /**
+     * Compare two entries.
+     * @param a index of first entry
+     * @param b index of second entry
+     * @return negative, zero or positive
+     */
+    protected int compare(int a, int b) {
+        a *= SLOTS;
+        b *= SLOTS;
+        int cmp = Long.compareUnsigned(entries[a], entries[b]);
+        if (cmp == 0) {
+            cmp = Long.compareUnsigned(entries[a + 1], entries[b + 1]);
+            if (cmp == 0) {
+                cmp = Long.compare(entries[a + 4], entries[b + 4]);
+                if (cmp == 0) {
+                    cmp = Long.compare(entries[a + 2], entries[b + 2]);
+                }
+            }
+        }
+        return cmp;
+    }
+
+    /**
+     * Swap two entries.
+     * @param a index of first entry
+     * @param b index of second entry
+     */
+    protected void swap(int a, int b) {
+        if (a != b) {
+            a *= SLOTS;
+            b *= SLOTS;
+            long tmp;
+            for (int i=0; i<SLOTS; ++i) {
+                tmp = entries[a + i];
+                entries[a + i] = entries[b + i];
+                entries[b + i] = tmp;
+            }
+        }
+    }
+
+}
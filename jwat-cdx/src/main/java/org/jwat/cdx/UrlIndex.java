@@ -0,0 +1,573 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.cdx;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.jwat.common.SurtCanonicalizer;
+import org.jwat.common.UriProfile;
+
+/**
+ * Read-optimized on-disk URL index written by <code>UrlIndexWriter</code>.
+ * Supports exact URL lookups, closest timestamp lookups and SURT prefix
+ * range scans, e.g. all captures of <code>org,example)</code> in 2019.
+ *
+ * The file starts with a magic and a version followed by the entry blocks.
+ * Entries are sorted by SURT key and timestamp and each key only stores the
+ * suffix not shared with the previous key in the same block. The sparse
+ * block index with the first key of each block and the file name table
+ * follow the blocks. A fixed size footer holds the offsets of the two and
+ * the entry count. The sparse index is kept in memory, so a lookup reads a
+ * single block in most cases. Blocks are read with positional reads, so an
+ * index can be shared by any number of threads.
+ *
+ * Entries are returned as <code>CdxEntry</code> objects without URL and
+ * mime type. URLs are canonicalized into keys using the same
+ * <code>UriProfile</code> as the <code>CdxIndexer</code> which indexed
+ * the files, otherwise lookups may miss entries.
+ *
+ * @author nicl
+ */
+public class UrlIndex implements Closeable {
+
+    /** Magic bytes identifying an index file. */
+    public static final byte[] MAGIC = {'J', 'W', 'A', 'T', 'U', 'R', 'L', 'X'};
+
+    /** Index format version. */
+    public static final int VERSION = 1;
+
+    /** Size of the footer: two offsets, the entry count and the magic. */
+    public static final int FOOTER_SIZE = 32;
+
+    /** UTF-8 charset used for all strings. */
+    protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** Profile used to parse and canonicalize URLs into keys. */
+    protected final UriProfile uriProfile;
+
+    /** Per thread SURT canonicalizers used to create keys from URLs. */
+    protected final ThreadLocal<SurtCanonicalizer> canonicalizer = new ThreadLocal<SurtCanonicalizer>() {
+        @Override
+        protected SurtCanonicalizer initialValue() {
+            SurtCanonicalizer surtCanonicalizer = new SurtCanonicalizer();
+            surtCanonicalizer.uriProfile = uriProfile;
+            return surtCanonicalizer;
+        }
+    };
+
+    /** Index file. */
+    protected RandomAccessFile raf;
+
+    /** Index file channel. */
+    protected FileChannel channel;
+
+    /** First key of each block. */
+    protected String[] blockKeys;
+
+    /** Offset of each block. */
+    protected long[] blockOffsets;
+
+    /** Length of each block. */
+    protected int[] blockLengths;
+
+    /** File names indexed by file id. */
+    protected String[] fileNames;
+
+    /** Number of entries. */
+    protected long entryCount;
+
+    /**
+     * Open an index file written using the default <code>CdxIndexer</code>
+     * URI profile and load its sparse block index.
+     * @param indexFile index file
+     * @throws IOException if an I/O error occurs or the file is not a valid
+     * index file
+     */
+    public UrlIndex(File indexFile) throws IOException {
+        this(indexFile, CdxIndexer.DEFAULT_URI_PROFILE);
+    }
+
+    /**
+     * Open an index file and load its sparse block index.
+     * @param indexFile index file
+     * @param uriProfile profile the <code>CdxIndexer</code> used to create
+     * the keys, used to create keys from URLs
+     * @throws IOException if an I/O error occurs or the file is not a valid
+     * index file
+     */
+    public UrlIndex(File indexFile, UriProfile uriProfile) throws IOException {
+        if (indexFile == null) {
+            throw new IllegalArgumentException("'indexFile' is null!");
+        }
+        if (uriProfile == null) {
+            throw new IllegalArgumentException("'uriProfile' is null!");
+        }
+        this.uriProfile = uriProfile;
+        raf = new RandomAccessFile(indexFile, "r");
+        channel = raf.getChannel();
+        try {
+            long size = channel.size();
+            if (size < MAGIC.length + 4 + FOOTER_SIZE) {
+                throw new IOException("Not a URL index: '" + indexFile.getPath() + "'");
+            }
+            ByteBuffer header = read(0, MAGIC.length + 4);
+            ByteBuffer footer = read(size - FOOTER_SIZE, FOOTER_SIZE);
+            for (int i=0; i<MAGIC.length; ++i) {
+                if (header.get() != MAGIC[i] || footer.get(24 + i) != MAGIC[i]) {
+                    throw new IOException("Not a URL index: '" + indexFile.getPath() + "'");
+                }
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported URL index version: " + version);
+            }
+            long sparseIndexOffset = footer.getLong();
+            long fileTableOffset = footer.getLong();
+            entryCount = footer.getLong();
+            if (sparseIndexOffset < 0 || sparseIndexOffset > fileTableOffset
+                    || fileTableOffset > size - FOOTER_SIZE) {
+                throw new IOException("Corrupt URL index: '" + indexFile.getPath() + "'");
+            }
+            ByteBuffer bb = read(sparseIndexOffset, (int)(size - FOOTER_SIZE - sparseIndexOffset));
+            int blockCount = bb.getInt();
+            blockKeys = new String[blockCount];
+            blockOffsets = new long[blockCount];
+            blockLengths = new int[blockCount];
+            for (int i=0; i<blockCount; ++i) {
+                blockKeys[i] = getBytes(bb);
+                // First timestamp, only needed by tools inspecting the file.
+                getBytes(bb);
+                blockOffsets[i] = bb.getLong();
+                blockLengths[i] = bb.getInt();
+            }
+            fileNames = new String[bb.getInt()];
+            for (int i=0; i<fileNames.length; ++i) {
+                fileNames[i] = getBytes(bb);
+            }
+        } catch (RuntimeException e) {
+            raf.close();
+            throw new IOException("Corrupt URL index: '" + indexFile.getPath() + "'", e);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of entries in the index.
+     * @return number of entries in the index
+     */
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Returns the number of blocks in the index.
+     * @return number of blocks in the index
+     */
+    public int getBlockCount() {
+        return blockKeys.length;
+    }
+
+    /**
+     * Returns the profile used to create keys from URLs.
+     * @return profile used to create keys from URLs
+     */
+    public UriProfile getUriProfile() {
+        return uriProfile;
+    }
+
+    /**
+     * Returns the SURT key of a URL as used in the index.
+     * @param url URL
+     * @return SURT key of the URL
+     */
+    public String toKey(String url) {
+        return canonicalizer.get().surt(url);
+    }
+
+    /**
+     * Returns all captures of a URL in timestamp order.
+     * @param url URL to look up
+     * @return captures of the URL, empty if none are indexed
+     * @throws IOException if an I/O error occurs while reading the index
+     */
+    public List<CdxEntry> lookup(String url) throws IOException {
+        return lookupKey(toKey(url));
+    }
+
+    /**
+     * Returns all captures of a SURT key in timestamp order.
+     * @param key SURT key to look up
+     * @return captures of the key, empty if none are indexed
+     * @throws IOException if an I/O error occurs while reading the index
+     */
+    public List<CdxEntry> lookupKey(String key) throws IOException {
+        final List<CdxEntry> entries = new ArrayList<CdxEntry>();
+        scan(key, true, null, null, new CdxCallback() {
+            @Override
+            public void cdxEntry(CdxEntry entry) {
+                entries.add(entry);
+            }
+        });
+        return entries;
+    }
+
+    /**
+     * Returns the capture of a URL closest in time to a timestamp. On a tie
+     * the earlier capture is returned.
+     * @param url URL to look up
+     * @param timestamp requested timestamp, may be shortened, e.g. "2019"
+     * @return closest capture of the URL or null, if none are indexed
+     * @throws IOException if an I/O error occurs while reading the index
+     */
+    public CdxEntry closest(String url, String timestamp) throws IOException {
+        if (timestamp == null) {
+            throw new IllegalArgumentException("'timestamp' is null!");
+        }
+        long target = toSeconds(timestamp);
+        List<CdxEntry> entries = lookup(url);
+        CdxEntry closest = null;
+        long closestDiff = Long.MAX_VALUE;
+        for (int i=0; i<entries.size(); ++i) {
+            CdxEntry entry = entries.get(i);
+            long diff = Math.abs(toSeconds(entry.timestamp) - target);
+            if (diff < closestDiff) {
+                closest = entry;
+                closestDiff = diff;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Scan all entries whose SURT key starts with a prefix, in key and
+     * timestamp order. The timestamp bounds are inclusive and compared on
+     * their own length, so "2019" to "2019" selects all of 2019.
+     * @param keyPrefix SURT key prefix, e.g. <code>org,example)</code>
+     * @param fromTimestamp first timestamp or null
+     * @param toTimestamp last timestamp or null
+     * @param callback callback receiving the entries
+     * @return number of entries delivered
+     * @throws IOException if an I/O error occurs while reading the index or
+     * thrown by the callback
+     */
+    public long scanPrefix(String keyPrefix, String fromTimestamp, String toTimestamp, CdxCallback callback) throws IOException {
+        if (keyPrefix == null) {
+            throw new IllegalArgumentException("'keyPrefix' is null!");
+        }
+        if (callback == null) {
+            throw new IllegalArgumentException("'callback' is null!");
+        }
+        return scan(keyPrefix, false, fromTimestamp, toTimestamp, callback);
+    }
+
+    /**
+     * Scan the entries matching a key or key prefix.
+     * @param key key or key prefix
+     * @param bExact match the key exactly instead of as a prefix
+     * @param fromTimestamp first timestamp or null
+     * @param toTimestamp last timestamp or null
+     * @param callback callback receiving the entries
+     * @return number of entries delivered
+     * @throws IOException if an I/O error occurs while reading the index or
+     * thrown by the callback
+     */
+    protected long scan(String key, boolean bExact, String fromTimestamp, String toTimestamp, CdxCallback callback) throws IOException {
+        if (key == null) {
+            throw new IllegalArgumentException("'key' is null!");
+        }
+        if (channel == null) {
+            throw new IllegalStateException("Index has been closed!");
+        }
+        long entries = 0;
+        byte[] keyBytes = key.getBytes(UTF8);
+        byte[] prevKey = new byte[256];
+        for (int block = findBlock(key); block < blockKeys.length; ++block) {
+            ByteBuffer bb = read(blockOffsets[block], blockLengths[block]);
+            int prevKeyLen = 0;
+            while (bb.hasRemaining()) {
+                int shared = (int)getVarLong(bb);
+                int suffix = (int)getVarLong(bb);
+                int keyLen = shared + suffix;
+                if (keyLen > prevKey.length) {
+                    byte[] tmp = new byte[Math.max(keyLen, prevKey.length * 2)];
+                    System.arraycopy(prevKey, 0, tmp, 0, prevKeyLen);
+                    prevKey = tmp;
+                }
+                bb.get(prevKey, shared, suffix);
+                prevKeyLen = keyLen;
+                // Only the keys of the entries delivered are decoded.
+                int cmp = compareKey(prevKey, keyLen, keyBytes, bExact);
+                if (cmp < 0) {
+                    skipValues(bb);
+                    continue;
+                }
+                if (cmp > 0) {
+                    return entries;
+                }
+                CdxEntry entry = new CdxEntry();
+                entry.key = new String(prevKey, 0, keyLen, UTF8);
+                entry.timestamp = getString(bb);
+                int fileId = (int)getVarLong(bb) - 1;
+                entry.filename = (fileId != -1) ? fileNames[fileId] : null;
+                entry.offset = getVarLong(bb);
+                entry.length = getVarLong(bb);
+                entry.status = getString(bb);
+                entry.digest = getString(bb);
+                if (inRange(entry.timestamp, fromTimestamp, toTimestamp)) {
+                    callback.cdxEntry(entry);
+                    ++entries;
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the block to start scanning from, which is the last block
+     * starting before the key. Entries equal to the key may end the previous
+     * block.
+     * @param key key or key prefix
+     * @return index of the first block to scan
+     */
+    protected int findBlock(String key) {
+        int low = 0;
+        int high = blockKeys.length;
+        int mid;
+        while (low < high) {
+            mid = (low + high) >>> 1;
+            if (blockKeys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return Math.max(0, low - 1);
+    }
+
+    /**
+     * Compare the UTF-8 bytes of an entry key with a key or key prefix in
+     * the <code>String</code> order the entries are sorted in. Byte order
+     * only differs from <code>String</code> order when a supplementary
+     * character is compared with a character from U+E000 to U+FFFF, in which
+     * case both keys are decoded.
+     * @param entryKey UTF-8 bytes of the entry key
+     * @param entryKeyLen length of the entry key
+     * @param key UTF-8 bytes of the key or key prefix
+     * @param bExact match the key exactly instead of as a prefix
+     * @return negative if the entry is before the matching entries, zero if
+     * it matches and positive if it is after the matching entries
+     */
+    protected static int compareKey(byte[] entryKey, int entryKeyLen, byte[] key, boolean bExact) {
+        int len = Math.min(entryKeyLen, key.length);
+        int c1;
+        int c2;
+        for (int i=0; i<len; ++i) {
+            c1 = entryKey[i] & 255;
+            c2 = key[i] & 255;
+            if (c1 != c2) {
+                if (c1 >= 0xEE && c2 >= 0xEE) {
+                    return new String(entryKey, 0, entryKeyLen, UTF8).compareTo(new String(key, UTF8));
+                }
+                return c1 - c2;
+            }
+        }
+        if (entryKeyLen < key.length) {
+            return -1;
+        }
+        return (bExact && entryKeyLen > key.length) ? 1 : 0;
+    }
+
+    /**
+     * Skip the values of an entry after its key.
+     * @param bb block buffer
+     */
+    protected static void skipValues(ByteBuffer bb) {
+        skipString(bb);
+        getVarLong(bb);
+        getVarLong(bb);
+        getVarLong(bb);
+        skipString(bb);
+        skipString(bb);
+    }
+
+    /**
+     * Check whether a timestamp is within inclusive bounds compared on the
+     * length of each bound.
+     * @param timestamp timestamp or null
+     * @param from first timestamp or null
+     * @param to last timestamp or null
+     * @return boolean indicating whether the timestamp is within the bounds
+     */
+    protected static boolean inRange(String timestamp, String from, String to) {
+        if (from == null && to == null) {
+            return true;
+        }
+        if (timestamp == null) {
+            return false;
+        }
+        if (from != null && compareTruncated(timestamp, from) < 0) {
+            return false;
+        }
+        if (to != null && compareTruncated(timestamp, to) > 0) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compare a timestamp truncated to the length of a bound with the bound.
+     * @param timestamp timestamp
+     * @param bound bound
+     * @return negative, zero or positive
+     */
+    protected static int compareTruncated(String timestamp, String bound) {
+        if (timestamp.length() > bound.length()) {
+            timestamp = timestamp.substring(0, bound.length());
+        }
+        return timestamp.compareTo(bound);
+    }
+
+    /**
+     * Convert a possibly shortened 14 digit timestamp to seconds since the
+     * epoch. Missing months and days default to 1, other fields to 0.
+     * Invalid timestamps are mapped far into the future.
+     * @param timestamp timestamp
+     * @return seconds since the epoch
+     */
+    protected static long toSeconds(String timestamp) {
+        if (timestamp == null || timestamp.length() < 4) {
+            return Long.MAX_VALUE / 2;
+        }
+        int[] fields = new int[] {0, 1, 1, 0, 0, 0};
+        int len = Math.min(timestamp.length(), 14);
+        for (int i=0; i<len; ++i) {
+            char c = timestamp.charAt(i);
+            if (c < '0' || c > '9') {
+                return Long.MAX_VALUE / 2;
+            }
+        }
+        fields[0] = Integer.parseInt(timestamp.substring(0, 4));
+        for (int i=1; i<6 && 4 + i * 2 <= len; ++i) {
+            fields[i] = Integer.parseInt(timestamp.substring(2 + i * 2, 4 + i * 2));
+        }
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        cal.clear();
+        cal.set(fields[0], fields[1] - 1, fields[2], fields[3], fields[4], fields[5]);
+        return cal.getTimeInMillis() / 1000;
+    }
+
+    /**
+     * Read part of the index file.
+     * @param position file position
+     * @param length number of bytes to read
+     * @return buffer with the bytes read
+     * @throws IOException if an I/O error occurs or the file is truncated
+     */
+    protected ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(length);
+        while (bb.hasRemaining()) {
+            int read = channel.read(bb, position + bb.position());
+            if (read == -1) {
+                throw new IOException("Truncated URL index");
+            }
+        }
+        bb.flip();
+        return bb;
+    }
+
+    /**
+     * Read a length prefixed UTF-8 string, a length of -1 is null.
+     * @param bb buffer
+     * @return string or null
+     */
+    protected static String getBytes(ByteBuffer bb) {
+        int len = bb.getInt();
+        if (len == -1) {
+            return null;
+        }
+        String str = new String(bb.array(), bb.arrayOffset() + bb.position(), len, UTF8);
+        bb.position(bb.position() + len);
+        return str;
+    }
+
+    /**
+     * Read a block string, written as its UTF-8 length plus one followed by
+     * the bytes. A length of 0 is null.
+     * @param bb block buffer
+     * @return string or null
+     */
+    protected static String getString(ByteBuffer bb) {
+        int len = (int)getVarLong(bb) - 1;
+        if (len == -1) {
+            return null;
+        }
+        String str = new String(bb.array(), bb.arrayOffset() + bb.position(), len, UTF8);
+        bb.position(bb.position() + len);
+        return str;
+    }
+
+    /**
+     * Skip a block string.
+     * @param bb block buffer
+     */
+    protected static void skipString(ByteBuffer bb) {
+        int len = (int)getVarLong(bb) - 1;
+        if (len > 0) {
+            bb.position(bb.position() + len);
+        }
+    }
+
+    /**
+     * Read a non negative value written using 7 bits per byte.
+     * @param bb block buffer
+     * @return value
+     */
+    protected static long getVarLong(ByteBuffer bb) {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = bb.get();
+            value |= (long)(b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (raf != null) {
+            channel = null;
+            raf.close();
+            raf = null;
+        }
+    }
+
+}
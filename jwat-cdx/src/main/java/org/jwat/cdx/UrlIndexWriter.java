@@ -0,0 +1,353 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.cdx;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a <code>UrlIndex</code> file from entries added in (key, timestamp)
+ * order. Entries are written in prefix-compressed blocks and the first key
+ * of each block is kept for the sparse block index written at the end.
+ * See <code>UrlIndex</code> for the file layout.
+ *
+ * @author nicl
+ */
+public class UrlIndexWriter implements Closeable {
+
+    /** Default approximate uncompressed block size. */
+    public static final int DEFAULT_BLOCK_SIZE = 16384;
+
+    /** Approximate size of a block. */
+    protected final int blockSize;
+
+    /** Index output stream. */
+    protected DataOutputStream out;
+
+    /** Number of bytes written to the output stream. */
+    protected long position;
+
+    /** Current block. */
+    protected ByteArrayOutputStream block;
+
+    /** First keys of the written blocks. */
+    protected List<String> blockKeys = new ArrayList<String>();
+
+    /** First timestamps of the written blocks. */
+    protected List<String> blockTimestamps = new ArrayList<String>();
+
+    /** Offsets and lengths of the written blocks. */
+    protected List<long[]> blockExtents = new ArrayList<long[]>();
+
+    /** File name to file id map. */
+    protected Map<String, Integer> fileIds = new HashMap<String, Integer>();
+
+    /** File names indexed by file id. */
+    protected List<String> fileNames = new ArrayList<String>();
+
+    /** UTF-8 bytes of the previous key in the current block. */
+    protected byte[] prevKey;
+
+    /** Key of the previous entry. */
+    protected String lastKey;
+
+    /** Timestamp of the previous entry. */
+    protected String lastTimestamp;
+
+    /** Number of entries added. */
+    protected long entryCount;
+
+    /**
+     * Create a writer using the default block size.
+     * @param indexFile index file to write
+     * @throws IOException if an I/O error occurs creating the file
+     */
+    public UrlIndexWriter(File indexFile) throws IOException {
+        this(indexFile, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Create a writer.
+     * @param indexFile index file to write
+     * @param blockSize approximate uncompressed block size
+     * @throws IOException if an I/O error occurs creating the file
+     */
+    public UrlIndexWriter(File indexFile, int blockSize) throws IOException {
+        if (indexFile == null) {
+            throw new IllegalArgumentException("'indexFile' is null!");
+        }
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("The 'blockSize' is less than or equal to 0: " + blockSize);
+        }
+        this.blockSize = blockSize;
+        block = new ByteArrayOutputStream(blockSize + 1024);
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile), 65536));
+        out.write(UrlIndex.MAGIC);
+        out.writeInt(UrlIndex.VERSION);
+        position = UrlIndex.MAGIC.length + 4;
+    }
+
+    /**
+     * Index ARC and WARC files and write a URL index. The files are indexed
+     * into a temporary sorted CDX11 file using the settings of the given
+     * indexer, its format setting is ignored. The index must be opened with
+     * the <code>uriProfile</code> of the indexer, so URLs are looked up
+     * using the same keys.
+     * @param indexer indexer used to index the files or null for the default
+     * @param files ARC and WARC files to index
+     * @param indexFile index file to write
+     * @param blockSize approximate uncompressed block size
+     * @return number of entries written
+     * @throws IOException if an I/O error occurs while indexing or writing
+     */
+    public static long build(CdxIndexer indexer, List<File> files, File indexFile, int blockSize) throws IOException {
+        if (indexer == null) {
+            indexer = new CdxIndexer();
+        }
+        File cdxFile = File.createTempFile("jwat-urlindex-", ".cdx", indexer.tmpDir);
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(cdxFile), "UTF-8"), 65536);
+            try {
+                indexer.index(files, CdxFormat.CDX11, writer);
+            } finally {
+                writer.close();
+            }
+            UrlIndexWriter indexWriter = new UrlIndexWriter(indexFile, blockSize);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(cdxFile), "UTF-8"), 65536);
+            try {
+                // Skip the header line.
+                String line = reader.readLine();
+                while ((line = reader.readLine()) != null) {
+                    indexWriter.add(CdxEntry.parseLine(line));
+                }
+            } finally {
+                reader.close();
+                indexWriter.close();
+            }
+            return indexWriter.getEntryCount();
+        } finally {
+            cdxFile.delete();
+        }
+    }
+
+    /**
+     * Add an entry. Entries must be added in key and timestamp order.
+     * The URL and mime type are not stored.
+     * @param entry index entry with a key
+     * @throws IOException if an I/O error occurs while writing
+     */
+    public void add(CdxEntry entry) throws IOException {
+        if (entry == null || entry.key == null) {
+            throw new IllegalArgumentException("'entry' or its key is null!");
+        }
+        if (out == null) {
+            throw new IllegalStateException("Writer has been closed!");
+        }
+        if (lastKey != null) {
+            int cmp = lastKey.compareTo(entry.key);
+            if (cmp == 0) {
+                cmp = compareNullable(lastTimestamp, entry.timestamp);
+            }
+            if (cmp > 0) {
+                throw new IllegalArgumentException("Entry added out of order: '" + entry.key + "'");
+            }
+        }
+        byte[] key = entry.key.getBytes(UrlIndex.UTF8);
+        int shared = 0;
+        if (block.size() == 0) {
+            blockKeys.add(entry.key);
+            blockTimestamps.add(entry.timestamp);
+        } else {
+            int max = Math.min(key.length, prevKey.length);
+            while (shared < max && key[shared] == prevKey[shared]) {
+                ++shared;
+            }
+        }
+        writeVarLong(block, shared);
+        writeVarLong(block, key.length - shared);
+        block.write(key, shared, key.length - shared);
+        writeString(block, entry.timestamp);
+        writeVarLong(block, getFileId(entry.filename) + 1);
+        writeVarLong(block, entry.offset);
+        writeVarLong(block, entry.length);
+        writeString(block, entry.status);
+        writeString(block, entry.digest);
+        prevKey = key;
+        lastKey = entry.key;
+        lastTimestamp = entry.timestamp;
+        ++entryCount;
+        if (block.size() >= blockSize) {
+            flushBlock();
+        }
+    }
+
+    /**
+     * Returns the number of entries added.
+     * @return number of entries added
+     */
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Write the last block, the sparse block index, the file table and the
+     * footer and close the file.
+     * @throws IOException if an I/O error occurs while writing
+     */
+    @Override
+    public void close() throws IOException {
+        if (out == null) {
+            return;
+        }
+        try {
+            flushBlock();
+            long sparseIndexOffset = position;
+            out.writeInt(blockKeys.size());
+            position += 4;
+            for (int i=0; i<blockKeys.size(); ++i) {
+                writeBytes(blockKeys.get(i));
+                writeBytes(blockTimestamps.get(i));
+                out.writeLong(blockExtents.get(i)[0]);
+                out.writeInt((int)blockExtents.get(i)[1]);
+                position += 12;
+            }
+            long fileTableOffset = position;
+            out.writeInt(fileNames.size());
+            position += 4;
+            for (int i=0; i<fileNames.size(); ++i) {
+                writeBytes(fileNames.get(i));
+            }
+            out.writeLong(sparseIndexOffset);
+            out.writeLong(fileTableOffset);
+            out.writeLong(entryCount);
+            out.write(UrlIndex.MAGIC);
+        } finally {
+            out.close();
+            out = null;
+        }
+    }
+
+    /**
+     * Write the current block, if it holds any entries.
+     * @throws IOException if an I/O error occurs while writing
+     */
+    protected void flushBlock() throws IOException {
+        if (block.size() > 0) {
+            blockExtents.add(new long[] {position, block.size()});
+            block.writeTo(out);
+            position += block.size();
+            block.reset();
+        }
+    }
+
+    /**
+     * Returns the id of a file name, registering new names.
+     * @param filename file name or null
+     * @return file id or -1, if the file name is null
+     */
+    protected int getFileId(String filename) {
+        if (filename == null) {
+            return -1;
+        }
+        Integer fileId = fileIds.get(filename);
+        if (fileId == null) {
+            fileId = fileNames.size();
+            fileIds.put(filename, fileId);
+            fileNames.add(filename);
+        }
+        return fileId;
+    }
+
+    /**
+     * Write a length prefixed UTF-8 string to the output stream, null is
+     * written with length -1.
+     * @param str string or null
+     * @throws IOException if an I/O error occurs while writing
+     */
+    protected void writeBytes(String str) throws IOException {
+        if (str == null) {
+            out.writeInt(-1);
+            position += 4;
+        } else {
+            byte[] bytes = str.getBytes(UrlIndex.UTF8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            position += 4 + bytes.length;
+        }
+    }
+
+    /**
+     * Write a string to a block as its UTF-8 length plus one followed by
+     * the bytes, null is written as 0.
+     * @param block block buffer
+     * @param str string or null
+     */
+    protected static void writeString(ByteArrayOutputStream block, String str) {
+        if (str == null) {
+            block.write(0);
+        } else {
+            byte[] bytes = str.getBytes(UrlIndex.UTF8);
+            writeVarLong(block, bytes.length + 1);
+            block.write(bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Write a non negative value to a block using 7 bits per byte.
+     * @param block block buffer
+     * @param value value to write
+     */
+    protected static void writeVarLong(ByteArrayOutputStream block, long value) {
+        while ((value & ~0x7FL) != 0) {
+            block.write((int)(value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        block.write((int)value);
+    }
+
+    /**
+     * Compare two strings where null sorts first.
+     * @param s1 first string or null
+     * @param s2 second string or null
+     * @return negative, zero or positive
+     */
+    protected static int compareNullable(String s1, String s2) {
+        if (s1 == null) {
+            return (s2 == null) ? 0 : -1;
+        } else if (s2 == null) {
+            return 1;
+        }
+        return s1.compareTo(s2);
+    }
+
+}
@@ -0,0 +1,184 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.cdx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.arc.ArcRecordBase;
+import org.jwat.archive.RecordFetcher;
+import org.jwat.common.SurtCanonicalizer;
+import org.jwat.warc.WarcRecord;
+
+@RunWith(JUnit4.class)
+public class TestCdxIndexer {
+
+    public static final String[] FILES = new String[] {
+        "IAH-20080430204825-00000-blackbook.warc.gz",
+        "IAH-20080430204825-00000-blackbook.arc.gz",
+        "small_BNF.arc"
+    };
+
+    public static File getFile(String fileName) {
+        return new File(TestCdxIndexer.class.getClassLoader().getResource(fileName).getFile());
+    }
+
+    @Test
+    public void test_cdxindexer_file() throws IOException {
+        CdxIndexer indexer = new CdxIndexer();
+        RecordFetcher fetcher = new RecordFetcher();
+        SurtCanonicalizer canonicalizer = new SurtCanonicalizer();
+        try {
+            for (int f=0; f<FILES.length; ++f) {
+                final File file = getFile(FILES[f]);
+                final List<CdxEntry> entries = new ArrayList<CdxEntry>();
+                long count = indexer.indexFile(file, new CdxCallback() {
+                    @Override
+                    public void cdxEntry(CdxEntry entry) {
+                        entries.add(entry);
+                    }
+                });
+                Assert.assertEquals(entries.size(), count);
+                Assert.assertTrue(count > 0);
+                for (int i=0; i<entries.size(); ++i) {
+                    CdxEntry entry = entries.get(i);
+                    Assert.assertEquals(file.getName(), entry.filename);
+                    Assert.assertEquals(canonicalizer.surt(entry.url), entry.key);
+                    Assert.assertEquals(14, entry.timestamp.length());
+                    Assert.assertTrue(entry.length > 0);
+                    if (i + 1 < entries.size()) {
+                        Assert.assertTrue(entry.offset + entry.length <= entries.get(i + 1).offset);
+                    }
+                    // The offset must point to the indexed record.
+                    if (FILES[f].contains(".warc")) {
+                        WarcRecord record = fetcher.fetchWarcRecord(file, entry.offset);
+                        Assert.assertEquals(entry.url, record.header.warcTargetUriStr);
+                        if (record.header.warcPayloadDigest != null) {
+                            Assert.assertEquals(record.header.warcPayloadDigest.digestString, entry.digest);
+                        }
+                    } else {
+                        ArcRecordBase record = fetcher.fetchArcRecord(file, entry.offset);
+                        Assert.assertEquals(entry.url, record.header.urlStr);
+                        Assert.assertNull(entry.digest);
+                    }
+                    if (entry.status != null) {
+                        Integer.parseInt(entry.status);
+                    }
+                }
+            }
+        } finally {
+            fetcher.close();
+        }
+    }
+
+    @Test
+    public void test_cdxindexer_sorted() throws IOException {
+        List<File> files = new ArrayList<File>();
+        for (int f=0; f<FILES.length; ++f) {
+            files.add(getFile(FILES[f]));
+        }
+        CdxIndexer indexer = new CdxIndexer();
+        indexer.threads = 3;
+        // Force spill files.
+        indexer.maxMemory = 4096;
+        StringWriter out = new StringWriter();
+        long count = indexer.index(files, out);
+        String[] lines = out.toString().split("\n");
+        Assert.assertEquals(CdxFormat.CDX11.header, lines[0]);
+        Assert.assertEquals(count + 1, lines.length);
+        for (int i=2; i<lines.length; ++i) {
+            Assert.assertTrue(lines[i - 1].compareTo(lines[i]) <= 0);
+        }
+        for (int i=1; i<lines.length; ++i) {
+            Assert.assertEquals(11, lines[i].split(" ").length);
+        }
+
+        indexer.format = CdxFormat.CDXJ;
+        indexer.maxMemory = ExternalSorter.DEFAULT_MAX_MEMORY;
+        out = new StringWriter();
+        Assert.assertEquals(count, indexer.index(files, out));
+        lines = out.toString().split("\n");
+        Assert.assertEquals(count, lines.length);
+        for (int i=0; i<lines.length; ++i) {
+            int idx = lines[i].indexOf(" {\"url\": \"");
+            Assert.assertTrue(idx > 0);
+            Assert.assertTrue(lines[i].endsWith("}"));
+            Assert.assertTrue(lines[i].contains("\"filename\": \""));
+            if (i > 0) {
+                Assert.assertTrue(lines[i - 1].compareTo(lines[i]) <= 0);
+            }
+        }
+    }
+
+    @Test
+    public void test_cdxentry_format() {
+        CdxEntry entry = new CdxEntry();
+        entry.key = "org,example)/";
+        entry.timestamp = "20080430204825";
+        entry.url = "http://example.org/a b";
+        entry.mime = "text/html";
+        entry.status = "200";
+        entry.length = 123;
+        entry.offset = 456;
+        entry.filename = "a.warc.gz";
+        Assert.assertEquals("org,example)/ 20080430204825 http://example.org/a%20b text/html 200 - - - 123 456 a.warc.gz",
+                entry.toLine(CdxFormat.CDX11));
+        CdxEntry parsed = CdxEntry.parseLine(entry.toLine(CdxFormat.CDX11));
+        Assert.assertEquals(entry.key, parsed.key);
+        Assert.assertEquals(entry.timestamp, parsed.timestamp);
+        Assert.assertEquals("http://example.org/a%20b", parsed.url);
+        Assert.assertEquals(entry.mime, parsed.mime);
+        Assert.assertEquals(entry.status, parsed.status);
+        Assert.assertNull(parsed.digest);
+        Assert.assertEquals(entry.length, parsed.length);
+        Assert.assertEquals(entry.offset, parsed.offset);
+        Assert.assertEquals(entry.filename, parsed.filename);
+        try {
+            CdxEntry.parseLine("a b c");
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            CdxEntry.parseLine("a b c d e f g h x 1 k");
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        entry.url = "http://example.org/\"\\";
+        Assert.assertEquals("org,example)/ 20080430204825 {\"url\": \"http://example.org/\\\"\\\\\", \"mime\": \"text/html\", "
+                + "\"status\": \"200\", \"length\": \"123\", \"offset\": \"456\", \"filename\": \"a.warc.gz\"}",
+                entry.toLine(CdxFormat.CDXJ));
+    }
+
+    @Test
+    public void test_cdxindexer_helpers() {
+        Assert.assertEquals("20080430204825", CdxIndexer.toTimestamp("2008-04-30T20:48:25Z"));
+        Assert.assertEquals("20080430204825", CdxIndexer.toTimestamp("20080430204825"));
+        Assert.assertNull(CdxIndexer.toTimestamp(null));
+        Assert.assertEquals("text/html", CdxIndexer.toMime("Text/HTML; charset=UTF-8"));
+        Assert.assertNull(CdxIndexer.toMime(" ;x"));
+        Assert.assertNull(CdxIndexer.toMime(null));
+    }
+
+}
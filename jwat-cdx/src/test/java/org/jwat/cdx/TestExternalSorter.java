@@ -0,0 +1,116 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.cdx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestExternalSorter {
+
+    @Test
+    public void test_externalsorter() throws Exception {
+        final Random random = new Random(42);
+        final List<String> expected = Collections.synchronizedList(new ArrayList<String>());
+        for (int i=0; i<20000; ++i) {
+            StringBuilder sb = new StringBuilder();
+            int len = random.nextInt(40);
+            for (int j=0; j<len; ++j) {
+                sb.append((char)(' ' + random.nextInt(95)));
+            }
+            expected.add(sb.toString());
+        }
+        final ExternalSorter sorter = new ExternalSorter(16 * 1024, null);
+        sorter.maxMergeFiles = 4;
+        // Add concurrently from several threads.
+        List<Thread> threads = new ArrayList<Thread>();
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        for (int t=0; t<4; ++t) {
+            final int from = t * expected.size() / 4;
+            final int to = (t + 1) * expected.size() / 4;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i=from; i<to; ++i) {
+                            sorter.add(expected.get(i));
+                        }
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (int t=0; t<threads.size(); ++t) {
+            threads.get(t).join();
+        }
+        Assert.assertEquals(0, failures.size());
+        Assert.assertTrue(sorter.getSpillFileCount() > 4);
+        List<File> spillFiles = new ArrayList<File>(sorter.spillFiles);
+        StringWriter out = new StringWriter();
+        sorter.merge(out);
+        sorter.close();
+        Assert.assertEquals(0, sorter.getSpillFileCount());
+        for (int i=0; i<spillFiles.size(); ++i) {
+            Assert.assertFalse(spillFiles.get(i).exists());
+        }
+        List<String> sorted = new ArrayList<String>(expected);
+        Collections.sort(sorted);
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<sorted.size(); ++i) {
+            sb.append(sorted.get(i)).append('\n');
+        }
+        Assert.assertEquals(sb.toString(), out.toString());
+    }
+
+    @Test
+    public void test_externalsorter_memory_only() throws IOException {
+        ExternalSorter sorter = new ExternalSorter();
+        sorter.add("b");
+        sorter.add("c");
+        sorter.add("a");
+        StringWriter out = new StringWriter();
+        sorter.merge(out);
+        Assert.assertEquals(0, sorter.getSpillFileCount());
+        Assert.assertEquals("a\nb\nc\n", out.toString());
+        sorter.close();
+        try {
+            sorter.add("d");
+            Assert.fail("Exception expected!");
+        } catch (IllegalStateException e) {
+        }
+        try {
+            new ExternalSorter(0, null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
@@ -0,0 +1,190 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.cdx;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.archive.FetchRequest;
+import org.jwat.archive.RecordFetcher;
+import org.jwat.warc.WarcReader;
+import org.jwat.warc.WarcReaderFactory;
+import org.jwat.warc.WarcRecord;
+
+@RunWith(JUnit4.class)
+public class TestRecordIdIndex {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    public static final String[] FILES = new String[] {
+        "IAH-20080430204825-00000-blackbook.warc.gz",
+        "valid-warcfile-duplicate-concurrentto.warc"
+    };
+
+    public static List<String> readRecordIds(File file) throws IOException {
+        List<String> ids = new ArrayList<String>();
+        InputStream in = new FileInputStream(file);
+        try {
+            WarcReader reader = WarcReaderFactory.getReader(in);
+            WarcRecord record;
+            while ((record = reader.getNextRecord()) != null) {
+                if (record.header.warcRecordIdStr != null
+                        && RecordIdIndex.normalizeRecordId(record.header.warcRecordIdStr).length() > 0) {
+                    ids.add(record.header.warcRecordIdStr);
+                }
+                record.close();
+            }
+            reader.close();
+        } finally {
+            in.close();
+        }
+        return ids;
+    }
+
+    public static int count(List<String> ids, String id) {
+        int count = 0;
+        for (int i=0; i<ids.size(); ++i) {
+            if (ids.get(i).equals(id)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void test_recordidindex() throws IOException {
+        File dir = TestCdxIndexer.getFile(FILES[0]).getParentFile();
+        RecordIdIndexWriter writer = new RecordIdIndexWriter();
+        List<List<String>> ids = new ArrayList<List<String>>();
+        long total = 0;
+        for (int i=0; i<FILES.length; ++i) {
+            File file = TestCdxIndexer.getFile(FILES[i]);
+            ids.add(readRecordIds(file));
+            Assert.assertEquals(ids.get(i).size(), writer.indexFile(file, FILES[i]));
+            total += ids.get(i).size();
+        }
+        Assert.assertTrue(total > 10);
+        // Index the first file twice.
+        File file = TestCdxIndexer.getFile(FILES[0]);
+        writer.indexFile(file, file.getAbsolutePath());
+        Assert.assertEquals(total + ids.get(0).size(), writer.getEntryCount());
+        File indexFile = tmpFolder.newFile("ids.idx");
+        writer.write(indexFile);
+        long tableSize = 3 * 4 + FILES[0].length() + FILES[1].length() + file.getAbsolutePath().getBytes("UTF-8").length;
+        Assert.assertEquals(RecordIdIndex.HEADER_SIZE + writer.getEntryCount() * RecordIdIndex.ENTRY_SIZE + tableSize, indexFile.length());
+
+        RecordIdIndex index = new RecordIdIndex(indexFile, dir);
+        RecordFetcher fetcher = new RecordFetcher();
+        try {
+            Assert.assertEquals(writer.getEntryCount(), index.getEntryCount());
+            Assert.assertEquals(3, index.getFileCount());
+            Assert.assertEquals(new File(dir, FILES[1]), index.getFile(1));
+            Assert.assertEquals(file.getAbsoluteFile(), index.getFile(2));
+            for (int f=0; f<FILES.length; ++f) {
+                for (int i=0; i<ids.get(f).size(); ++i) {
+                    String id = ids.get(f).get(i);
+                    FetchRequest location = index.lookup(id);
+                    Assert.assertNotNull(location);
+                    Assert.assertEquals(index.getFile(f), location.file);
+                    Assert.assertTrue(location.length > 0);
+                    WarcRecord record = fetcher.fetchWarcRecord(location.file, location.offset);
+                    Assert.assertEquals(id, record.header.warcRecordIdStr);
+                    fetcher.release();
+                    // Lookups ignore the enclosing brackets.
+                    String bare = id.trim().substring(1, id.trim().length() - 1);
+                    FetchRequest location2 = index.lookup(" " + bare);
+                    Assert.assertEquals(location.file, location2.file);
+                    Assert.assertEquals(location.offset, location2.offset);
+                    List<FetchRequest> locations = index.lookupAll(id);
+                    int expected = 2 * count(ids.get(0), id) + count(ids.get(1), id);
+                    Assert.assertEquals(expected, locations.size());
+                }
+            }
+            Assert.assertNull(index.lookup("<urn:uuid:00000000-0000-0000-0000-000000000000>"));
+            Assert.assertEquals(0, index.lookupAll("<urn:uuid:00000000-0000-0000-0000-000000000000>").size());
+        } finally {
+            fetcher.close();
+            index.close();
+        }
+    }
+
+    @Test
+    public void test_recordidindex_sort() throws IOException {
+        RecordIdIndexWriter writer = new RecordIdIndexWriter();
+        int fileId = writer.addFile("a.warc");
+        for (int i=0; i<5000; ++i) {
+            writer.add("<urn:uuid:" + i + ">", fileId, i * 10L, 10);
+        }
+        File indexFile = tmpFolder.newFile("sort.idx");
+        writer.write(indexFile);
+        RecordIdIndex index = new RecordIdIndex(indexFile, null);
+        try {
+            Assert.assertEquals(5000, index.getEntryCount());
+            for (int i=1; i<index.getEntryCount(); ++i) {
+                int cmp = Long.compareUnsigned(index.getLong(i - 1, 0), index.getLong(i, 0));
+                Assert.assertTrue(cmp < 0 || (cmp == 0 && Long.compareUnsigned(index.getLong(i - 1, 8), index.getLong(i, 8)) < 0));
+            }
+            for (int i=0; i<5000; ++i) {
+                FetchRequest location = index.lookup("urn:uuid:" + i);
+                Assert.assertEquals(new File("a.warc"), location.file);
+                Assert.assertEquals(i * 10L, location.offset);
+                Assert.assertEquals(10, location.length);
+            }
+        } finally {
+            index.close();
+        }
+        try {
+            writer.add("<urn:uuid:x>", 1, 0, 0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void test_recordidindex_invalid() throws IOException {
+        File indexFile = tmpFolder.newFile("invalid.idx");
+        RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+        raf.write(new byte[40]);
+        raf.close();
+        try {
+            new RecordIdIndex(indexFile, null);
+            Assert.fail("Exception expected!");
+        } catch (IOException e) {
+        }
+        File emptyFile = tmpFolder.newFile("empty.idx");
+        new RecordIdIndexWriter().write(emptyFile);
+        RecordIdIndex index = new RecordIdIndex(emptyFile, null);
+        Assert.assertEquals(0, index.getEntryCount());
+        Assert.assertEquals(0, index.getFileCount());
+        Assert.assertNull(index.lookup("<urn:uuid:1>"));
+        index.close();
+    }
+
+}
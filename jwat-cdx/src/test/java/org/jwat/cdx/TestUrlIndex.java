@@ -0,0 +1,280 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.cdx;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.common.UriProfile;
+
+@RunWith(JUnit4.class)
+public class TestUrlIndex {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    public static void assertEntry(CdxEntry expected, CdxEntry entry) {
+        Assert.assertEquals(expected.key, entry.key);
+        Assert.assertEquals(expected.timestamp, entry.timestamp);
+        Assert.assertEquals(expected.status, entry.status);
+        Assert.assertEquals(expected.digest, entry.digest);
+        Assert.assertEquals(expected.length, entry.length);
+        Assert.assertEquals(expected.offset, entry.offset);
+        Assert.assertEquals(expected.filename, entry.filename);
+        Assert.assertNull(entry.url);
+        Assert.assertNull(entry.mime);
+    }
+
+    public static List<CdxEntry> collect(UrlIndex index, String prefix, String from, String to) throws IOException {
+        final List<CdxEntry> entries = new ArrayList<CdxEntry>();
+        long count = index.scanPrefix(prefix, from, to, new CdxCallback() {
+            @Override
+            public void cdxEntry(CdxEntry entry) {
+                entries.add(entry);
+            }
+        });
+        Assert.assertEquals(entries.size(), count);
+        return entries;
+    }
+
+    @Test
+    public void test_urlindex_build() throws IOException {
+        List<File> files = new ArrayList<File>();
+        for (int i=0; i<TestCdxIndexer.FILES.length; ++i) {
+            files.add(TestCdxIndexer.getFile(TestCdxIndexer.FILES[i]));
+        }
+        CdxIndexer indexer = new CdxIndexer();
+        StringWriter out = new StringWriter();
+        indexer.index(files, CdxFormat.CDX11, out);
+        String[] lines = out.toString().split("\n");
+        List<CdxEntry> expected = new ArrayList<CdxEntry>();
+        for (int i=1; i<lines.length; ++i) {
+            expected.add(CdxEntry.parseLine(lines[i]));
+        }
+        File indexFile = tmpFolder.newFile("urls.idx");
+        Assert.assertEquals(expected.size(), UrlIndexWriter.build(indexer, files, indexFile, 512));
+
+        UrlIndex index = new UrlIndex(indexFile);
+        try {
+            Assert.assertEquals(expected.size(), index.getEntryCount());
+            Assert.assertTrue(index.getBlockCount() > 10);
+            // Exact lookups.
+            for (int i=0; i<expected.size(); ++i) {
+                CdxEntry entry = expected.get(i);
+                List<CdxEntry> entries = index.lookupKey(entry.key);
+                List<CdxEntry> matches = new ArrayList<CdxEntry>();
+                for (int j=0; j<expected.size(); ++j) {
+                    if (expected.get(j).key.equals(entry.key)) {
+                        matches.add(expected.get(j));
+                    }
+                }
+                Assert.assertEquals(matches.size(), entries.size());
+                for (int j=0; j<matches.size(); ++j) {
+                    assertEntry(matches.get(j), entries.get(j));
+                }
+                if (entry.url != null) {
+                    Assert.assertEquals(entries.size(), index.lookup(entry.url).size());
+                }
+            }
+            Assert.assertEquals(0, index.lookupKey("zzz,missing)/").size());
+            Assert.assertEquals(0, index.lookupKey("").size());
+            // Prefix scans.
+            Assert.assertEquals(expected.size(), collect(index, "", null, null).size());
+            String[] prefixes = {"com,", "org,", "dk,", expected.get(expected.size() / 2).key.substring(0, 6), "zzz"};
+            for (int p=0; p<prefixes.length; ++p) {
+                List<CdxEntry> entries = collect(index, prefixes[p], null, null);
+                int idx = 0;
+                for (int j=0; j<expected.size(); ++j) {
+                    if (expected.get(j).key.startsWith(prefixes[p])) {
+                        assertEntry(expected.get(j), entries.get(idx++));
+                    }
+                }
+                Assert.assertEquals(idx, entries.size());
+            }
+            // Timestamp bounds.
+            String from = expected.get(0).timestamp.substring(0, 10);
+            String to = expected.get(0).timestamp.substring(0, 12);
+            List<CdxEntry> entries = collect(index, "", from, to);
+            int idx = 0;
+            for (int j=0; j<expected.size(); ++j) {
+                String ts = expected.get(j).timestamp;
+                if (ts.substring(0, 10).compareTo(from) >= 0 && ts.substring(0, 12).compareTo(to) <= 0) {
+                    assertEntry(expected.get(j), entries.get(idx++));
+                }
+            }
+            Assert.assertEquals(idx, entries.size());
+            Assert.assertTrue(idx > 0);
+            Assert.assertEquals(0, collect(index, "", "2099", null).size());
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    public void test_urlindex_blocks() throws IOException {
+        File indexFile = tmpFolder.newFile("blocks.idx");
+        UrlIndexWriter writer = new UrlIndexWriter(indexFile, 64);
+        for (int i=0; i<100; ++i) {
+            for (int j=0; j<10; ++j) {
+                CdxEntry entry = new CdxEntry();
+                entry.key = String.format("org,example,host%02d)/page", i);
+                entry.timestamp = String.format("20%02d0615120000", 10 + j);
+                entry.filename = (j % 2 == 0) ? "a.warc.gz" : null;
+                entry.offset = i * 1000 + j;
+                entry.length = j;
+                entry.status = (j % 3 == 0) ? null : "200";
+                entry.digest = "SHA1" + i;
+                writer.add(entry);
+            }
+        }
+        CdxEntry entry = new CdxEntry();
+        entry.key = "org,example,host00)/page";
+        try {
+            writer.add(entry);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        Assert.assertEquals(1000, writer.getEntryCount());
+        writer.close();
+        writer.close();
+
+        UrlIndex index = new UrlIndex(indexFile);
+        try {
+            Assert.assertTrue(index.getBlockCount() > 100);
+            List<CdxEntry> entries = index.lookup("http://HOST42.example.org/page#x");
+            Assert.assertEquals(10, entries.size());
+            for (int j=0; j<10; ++j) {
+                Assert.assertEquals(42 * 1000 + j, entries.get(j).offset);
+                Assert.assertEquals(j % 2 == 0 ? "a.warc.gz" : null, entries.get(j).filename);
+                Assert.assertEquals(j % 3 == 0 ? null : "200", entries.get(j).status);
+            }
+            Assert.assertEquals(10 * 10, collect(index, "org,example,host4", null, null).size());
+            Assert.assertEquals(10 * 2, collect(index, "org,example,host4", "2013", "2014").size());
+            Assert.assertEquals(10 * 7, collect(index, "org,example,host4", "2013", null).size());
+            Assert.assertEquals(10, collect(index, "org,example,host4", null, "2010").size());
+            Assert.assertEquals("20130615120000", index.closest("http://host07.example.org/page", "2013").timestamp);
+            Assert.assertEquals("20130615120000", index.closest("http://host07.example.org/page", "20130905").timestamp);
+            Assert.assertEquals("20140615120000", index.closest("http://host07.example.org/page", "20140101").timestamp);
+            Assert.assertEquals("20190615120000", index.closest("http://host07.example.org/page", "2030").timestamp);
+            Assert.assertNull(index.closest("http://host07.example.org/other", "2013"));
+        } finally {
+            index.close();
+        }
+        try {
+            new UrlIndex(tmpFolder.newFile("empty.idx"));
+            Assert.fail("Exception expected!");
+        } catch (IOException e) {
+        }
+    }
+
+    @Test
+    public void test_urlindex_keyorder() throws IOException {
+        // String order, which differs from UTF-8 byte order for the last two.
+        String[] keys = {
+                "org,example)/a",
+                "org,example)/\u00e6",
+                "org,example)/\ud83d\ude00",
+                "org,example)/\ue000",
+                "org,example)/\ue000/b"
+        };
+        File indexFile = tmpFolder.newFile("keyorder.idx");
+        UrlIndexWriter writer = new UrlIndexWriter(indexFile, 16);
+        for (int i=0; i<keys.length; ++i) {
+            CdxEntry entry = new CdxEntry();
+            entry.key = keys[i];
+            entry.timestamp = "20190615120000";
+            entry.offset = i;
+            writer.add(entry);
+        }
+        writer.close();
+        UrlIndex index = new UrlIndex(indexFile);
+        try {
+            for (int i=0; i<keys.length; ++i) {
+                List<CdxEntry> entries = index.lookupKey(keys[i]);
+                Assert.assertEquals(1, entries.size());
+                Assert.assertEquals(keys[i], entries.get(0).key);
+                Assert.assertEquals(i, entries.get(0).offset);
+            }
+            Assert.assertEquals(2, collect(index, "org,example)/\ue000", null, null).size());
+            Assert.assertEquals(1, collect(index, "org,example)/\ud83d\ude00", null, null).size());
+            Assert.assertEquals(5, collect(index, "org,example)/", null, null).size());
+            Assert.assertEquals(0, index.lookupKey("org,example)/\ue000/").size());
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    public void test_urlindex_uriprofile() throws IOException {
+        // Not a valid RFC3986 URI, but valid in the default lax profile.
+        String url = "http://example.org/a|b";
+        File warcFile = tmpFolder.newFile("profile.warc");
+        OutputStream out = new FileOutputStream(warcFile);
+        String header = "WARC/1.0\r\n"
+                + "WARC-Type: resource\r\n"
+                + "WARC-Record-ID: <urn:uuid:0d5d5e9f-2222-4780-b5a4-bbcb3f281000>\r\n"
+                + "WARC-Date: 2019-06-15T12:00:00Z\r\n"
+                + "WARC-Target-URI: " + url + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Length: 5\r\n"
+                + "\r\n"
+                + "hello\r\n\r\n";
+        out.write(header.getBytes("ISO-8859-1"));
+        out.close();
+        List<File> files = new ArrayList<File>();
+        files.add(warcFile);
+
+        UriProfile[] profiles = {CdxIndexer.DEFAULT_URI_PROFILE, UriProfile.RFC3986};
+        String[] keys = new String[profiles.length];
+        for (int i=0; i<profiles.length; ++i) {
+            CdxIndexer indexer = new CdxIndexer();
+            indexer.uriProfile = profiles[i];
+            File indexFile = tmpFolder.newFile("profile" + i + ".idx");
+            Assert.assertEquals(1, UrlIndexWriter.build(indexer, files, indexFile, 512));
+            UrlIndex index = new UrlIndex(indexFile, profiles[i]);
+            try {
+                Assert.assertSame(profiles[i], index.getUriProfile());
+                List<CdxEntry> entries = index.lookup(url);
+                Assert.assertEquals(1, entries.size());
+                keys[i] = entries.get(0).key;
+                Assert.assertEquals(keys[i], index.toKey(url));
+            } finally {
+                index.close();
+            }
+        }
+        Assert.assertEquals("org,example)/a|b", keys[0]);
+        Assert.assertFalse(keys[0].equals(keys[1]));
+        try {
+            new UrlIndex(warcFile, null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
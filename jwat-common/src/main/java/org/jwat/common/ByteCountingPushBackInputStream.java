@@ -52,6 +52,25 @@ public class ByteCountingPushBackInputStream extends PushbackInputStream {
         pushback_size = size;
     }
 
+    /**
+     * Replace the wrapped input stream, discarding any pushed back bytes and
+     * resetting the byte counters, so the object and its pushback buffer can
+     * be reused for another stream.
+     * @param in <code>InputStream</code> to wrap
+     */
+    public void setInputStream(InputStream in) {
+        if (in == null) {
+            throw new IllegalArgumentException("'in' is null!");
+        }
+        if (buf == null) {
+            throw new IllegalStateException("Stream closed");
+        }
+        this.in = in;
+        pos = buf.length;
+        consumed = 0;
+        counter = 0;
+    }
+
     /**
      * Get the pushback buffer size.
      * @return pushback buffer size
@@ -68,6 +87,15 @@ public class ByteCountingPushBackInputStream extends PushbackInputStream {
         return consumed;
     }
 
+    /**
+     * Change the current byte offset.
+     * Useful for streams starting somewhere inside a file.
+     * @param bytes new byte offset
+     */
+    public void setConsumed(long bytes) {
+        consumed = bytes;
+    }
+
     /**
      * Change the counter value.
      * Useful for reading zero indexed relative data.
@@ -137,6 +165,30 @@ public class ByteCountingPushBackInputStream extends PushbackInputStream {
         return bytesSkipped;
     }
 
+    /**
+     * Skip the given number of bytes, only stopping early at the end of the
+     * stream. Uses skip on the underlying stream, so seekable streams are not
+     * read.
+     * @param n number of bytes to skip
+     * @return number of bytes skipped
+     * @throws IOException if an I/O error occurs while skipping
+     */
+    public long skipFully(long n) throws IOException {
+        long remaining = n;
+        while (remaining > 0) {
+            long skipped = skip(remaining);
+            if (skipped <= 0) {
+                // skip() may return 0 without the end of the stream being reached.
+                if (read() == -1) {
+                    break;
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+        return n - remaining;
+    }
+
     @Override
     public void unread(int b) throws IOException {
         super.unread(b);
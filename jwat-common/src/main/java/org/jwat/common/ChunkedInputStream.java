@@ -0,0 +1,276 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <code>InputStream</code> which removes HTTP chunked transfer-encoding
+ * (RFC 2616, section 3.6.1) while reading. Chunk extensions and trailer
+ * fields are read and discarded. Only a single chunk header line is ever
+ * buffered, so memory usage is independent of the entity size.
+ * Malformed or truncated chunked data is reported on the supplied
+ * diagnostics object and the stream then behaves as if EOF was reached.
+ * The wrapped stream is never closed by this stream.
+ *
+ * @author nicl
+ */
+public class ChunkedInputStream extends FilterInputStream {
+
+    /** Entity name used when reporting diagnoses. */
+    public static final String ENTITY = "Chunked transfer-encoding";
+
+    /** Maximum length of a chunk header or trailer line. */
+    public static final int MAX_LINE_LENGTH = 4096;
+
+    /** Diagnostics used to report decoding errors. */
+    protected Diagnostics diagnostics;
+
+    /** Buffer used to read chunk header and trailer lines. */
+    protected byte[] lineBuf = new byte[MAX_LINE_LENGTH];
+
+    /** Length of the line currently in the line buffer. */
+    protected int lineLen;
+
+    /** Remaining bytes in the current chunk. */
+    protected long remaining;
+
+    /** Has at least one chunk header been read. */
+    protected boolean bChunkRead;
+
+    /** Has the last chunk, an error or EOF been encountered. */
+    protected boolean bEof;
+
+    /** Number of decoded bytes returned. */
+    protected long decoded;
+
+    /**
+     * Construct a chunked decoding stream.
+     * @param in chunked input stream
+     * @param diagnostics diagnostics used to report decoding errors
+     */
+    public ChunkedInputStream(InputStream in, Diagnostics diagnostics) {
+        super(in);
+        if (in == null) {
+            throw new IllegalArgumentException("'in' is null!");
+        }
+        if (diagnostics == null) {
+            throw new IllegalArgumentException("'diagnostics' is null!");
+        }
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * Get the number of decoded bytes returned so far.
+     * @return number of decoded bytes returned so far
+     */
+    public long getDecoded() {
+        return decoded;
+    }
+
+    /**
+     * Read a CRLF or LF terminated line into the line buffer.
+     * @return 1 if a line was read, 0 on EOF before any data, -1 on EOF
+     * inside the line or if the line is too long
+     * @throws IOException if an I/O error occurs while reading
+     */
+    protected int readLine() throws IOException {
+        int c;
+        lineLen = 0;
+        while (true) {
+            c = in.read();
+            if (c == -1) {
+                return (lineLen == 0) ? 0 : -1;
+            }
+            if (c == '\n') {
+                if (lineLen > 0 && lineBuf[lineLen - 1] == '\r') {
+                    --lineLen;
+                }
+                return 1;
+            }
+            if (lineLen == lineBuf.length) {
+                return -1;
+            }
+            lineBuf[lineLen++] = (byte)c;
+        }
+    }
+
+    /**
+     * Read the next chunk header. Reading the last chunk also reads and
+     * discards any trailer fields.
+     * @return true if a chunk with data is available
+     * @throws IOException if an I/O error occurs while reading
+     */
+    protected boolean nextChunk() throws IOException {
+        if (bChunkRead) {
+            // CRLF terminating the previous chunk data.
+            if (readLine() != 1 || lineLen != 0) {
+                diagnostics.addError(DiagnosisType.ERROR_EXPECTED,
+                        ENTITY, "CRLF after chunk data");
+                bEof = true;
+                return false;
+            }
+        }
+        int res = readLine();
+        if (res == 0 && !bChunkRead) {
+            // Empty entity, nothing to decode.
+            bEof = true;
+            return false;
+        }
+        if (res != 1) {
+            diagnostics.addError(DiagnosisType.INVALID_DATA,
+                    ENTITY, "Truncated or invalid chunk header");
+            bEof = true;
+            return false;
+        }
+        bChunkRead = true;
+        long size = 0;
+        int idx = 0;
+        int digit;
+        while (idx < lineLen && (digit = hexDigit(lineBuf[idx])) != -1) {
+            if (idx >= 15) {
+                idx = -1;
+                break;
+            }
+            size = (size << 4) | digit;
+            ++idx;
+        }
+        if (idx <= 0 || (idx < lineLen && lineBuf[idx] != ';' && lineBuf[idx] != ' ' && lineBuf[idx] != '\t')) {
+            diagnostics.addError(DiagnosisType.INVALID_EXPECTED,
+                    ENTITY, new String(lineBuf, 0, lineLen, "ISO-8859-1"), "Hexadecimal chunk size");
+            bEof = true;
+            return false;
+        }
+        if (size == 0) {
+            // Last chunk, skip trailer fields up to and including the empty line.
+            // A missing empty line is tolerated since it is commonly left out.
+            while ((res = readLine()) == 1 && lineLen > 0) {
+            }
+            if (res == -1) {
+                diagnostics.addError(DiagnosisType.INVALID_DATA,
+                        ENTITY, "Truncated or invalid trailer");
+            }
+            bEof = true;
+            return false;
+        }
+        remaining = size;
+        return true;
+    }
+
+    /**
+     * Convert an ASCII hexadecimal digit to its value.
+     * @param c character
+     * @return value of the digit or -1 if not a hexadecimal digit
+     */
+    protected static int hexDigit(int c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n;
+        while ((n = read(b, 0, 1)) == 0) {
+        }
+        return (n == -1) ? -1 : (b[0] & 255);
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (remaining == 0) {
+            if (bEof || !nextChunk()) {
+                return -1;
+            }
+        }
+        int n = in.read(b, off, (int)Math.min(len, remaining));
+        if (n == -1) {
+            diagnostics.addError(DiagnosisType.INVALID_DATA,
+                    ENTITY, "Truncated chunk data");
+            remaining = 0;
+            bEof = true;
+            return -1;
+        }
+        remaining -= n;
+        decoded += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        byte[] skipBuf = new byte[(int)Math.min(n, 8192)];
+        long skipped = 0;
+        int read;
+        while (skipped < n && (read = read(skipBuf, 0, (int)Math.min(n - skipped, skipBuf.length))) != -1) {
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (bEof && remaining == 0) {
+            return 0;
+        }
+        return (int)Math.min(remaining, in.available());
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Closing does not close the wrapped stream.
+     * @throws IOException never
+     */
+    @Override
+    public void close() throws IOException {
+        bEof = true;
+        remaining = 0;
+    }
+
+}
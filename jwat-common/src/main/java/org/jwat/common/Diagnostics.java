@@ -19,6 +19,8 @@ package org.jwat.common;
 
 /**
  * Class used to keep track of a collection of error and warning diagnosis objects.
+ * Unless the validation level is <code>FULL</code> the convenience methods
+ * do not allocate any diagnosis objects.
  *
  * @author nicl
  */
@@ -33,7 +35,11 @@ public class Diagnostics extends DiagnosticsGeneric<Diagnosis> {
      * @param information optional extra information
      */
     public void addError(DiagnosisType type, String entity, String... information) {
-        addError(new Diagnosis(type, entity, information));
+        if (validationLevel == ValidationLevel.FULL) {
+            errors.add(new Diagnosis(type, entity, information));
+        } else {
+            countErrors(1);
+        }
     }
 
     /**
@@ -45,7 +51,11 @@ public class Diagnostics extends DiagnosticsGeneric<Diagnosis> {
      * @param information optional extra information
      */
     public void addWarning(DiagnosisType type, String entity, String... information) {
-        addWarning(new Diagnosis(type, entity, information));
+        if (validationLevel == ValidationLevel.FULL) {
+            warnings.add(new Diagnosis(type, entity, information));
+        } else {
+            countWarnings(1);
+        }
     }
 
 }
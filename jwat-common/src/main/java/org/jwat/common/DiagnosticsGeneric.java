@@ -36,12 +36,43 @@ public class DiagnosticsGeneric<T> {
     /** List of warning diagnoses. */
     protected List<T> warnings = new LinkedList<T>();
 
+    /** Level of validation information collected. */
+    protected ValidationLevel validationLevel = ValidationLevel.FULL;
+
+    /** Number of errors counted but not collected as diagnoses. */
+    protected int errorCount;
+
+    /** Number of warnings counted but not collected as diagnoses. */
+    protected int warningCount;
+
+    /**
+     * Set the level of validation information collected. Only errors and
+     * warnings added after this call are affected.
+     * @param validationLevel level of validation information collected
+     */
+    public void setValidationLevel(ValidationLevel validationLevel) {
+        if (validationLevel == null) {
+            throw new IllegalArgumentException("'validationLevel' is null!");
+        }
+        this.validationLevel = validationLevel;
+    }
+
+    /**
+     * Returns the level of validation information collected.
+     * @return level of validation information collected
+     */
+    public ValidationLevel getValidationLevel() {
+        return validationLevel;
+    }
+
     /**
      * Resets the collection of errors and warnings. Use with care.
      */
     public void reset() {
         errors.clear();
         warnings.clear();
+        errorCount = 0;
+        warningCount = 0;
     }
 
     /**
@@ -49,7 +80,7 @@ public class DiagnosticsGeneric<T> {
      * @return boolean indicating the presence of an error diagnosis
      */
     public boolean hasErrors() {
-        return !errors.isEmpty();
+        return errorCount > 0 || !errors.isEmpty();
     }
 
     /**
@@ -57,7 +88,23 @@ public class DiagnosticsGeneric<T> {
      * @return boolean indicating the presence of a warning diagnosis
      */
     public boolean hasWarnings() {
-        return !warnings.isEmpty();
+        return warningCount > 0 || !warnings.isEmpty();
+    }
+
+    /**
+     * Returns the number of errors, collected or only counted.
+     * @return number of errors
+     */
+    public int getErrorCount() {
+        return errorCount + errors.size();
+    }
+
+    /**
+     * Returns the number of warnings, collected or only counted.
+     * @return number of warnings
+     */
+    public int getWarningCount() {
+        return warningCount + warnings.size();
     }
 
     /**
@@ -66,8 +113,21 @@ public class DiagnosticsGeneric<T> {
      */
     public void addAll(DiagnosticsGeneric<T> diagnostics) {
         if (diagnostics != null && diagnostics != this) {
-            errors.addAll(diagnostics.errors);
-            warnings.addAll(diagnostics.warnings);
+            switch (validationLevel) {
+            case FULL:
+                errors.addAll(diagnostics.errors);
+                warnings.addAll(diagnostics.warnings);
+                errorCount += diagnostics.errorCount;
+                warningCount += diagnostics.warningCount;
+                break;
+            case COUNT_ONLY:
+                errorCount += diagnostics.getErrorCount();
+                warningCount += diagnostics.getWarningCount();
+                break;
+            case NONE:
+            default:
+                break;
+            }
         }
     }
 
@@ -76,7 +136,17 @@ public class DiagnosticsGeneric<T> {
      * @param d error diagnosis
      */
     public void addError(T d) {
-        errors.add(d);
+        switch (validationLevel) {
+        case FULL:
+            errors.add(d);
+            break;
+        case COUNT_ONLY:
+            ++errorCount;
+            break;
+        case NONE:
+        default:
+            break;
+        }
     }
 
     /**
@@ -84,7 +154,39 @@ public class DiagnosticsGeneric<T> {
      * @param d warning diagnosis
      */
     public void addWarning(T d) {
-        warnings.add(d);
+        switch (validationLevel) {
+        case FULL:
+            warnings.add(d);
+            break;
+        case COUNT_ONLY:
+            ++warningCount;
+            break;
+        case NONE:
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Count a number of errors without adding any diagnoses.
+     * Used when the validation level is not <code>FULL</code>.
+     * @param count number of errors
+     */
+    public void countErrors(int count) {
+        if (validationLevel != ValidationLevel.NONE) {
+            errorCount += count;
+        }
+    }
+
+    /**
+     * Count a number of warnings without adding any diagnoses.
+     * Used when the validation level is not <code>FULL</code>.
+     * @param count number of warnings
+     */
+    public void countWarnings(int count) {
+        if (validationLevel != ValidationLevel.NONE) {
+            warningCount += count;
+        }
     }
 
     /**
@@ -0,0 +1,323 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Buffered <code>InputStream</code> reading from a <code>FileChannel</code>
+ * using positional reads. (@see FileChannel#read(ByteBuffer, long))
+ * The stream keeps its own position and never modifies the position of the
+ * channel, so any number of streams, used by different threads, can read from
+ * the same open file without locking. Closing the stream does not close the
+ * channel.
+ * The stream can be repositioned and reused, and it can start out reading
+ * from data already read from the channel, without modifying it, before
+ * continuing with positional reads.
+ *
+ * @author nicl
+ */
+public class FileChannelInputStream extends InputStream {
+
+    /** Default size of the read buffer. */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /** Channel to read from. */
+    protected FileChannel channel;
+
+    /** Channel position of the end of the buffered data. */
+    protected long position;
+
+    /** Size of the private read buffer. */
+    protected final int bufferSize;
+
+    /** Private read buffer, allocated on first use. */
+    protected byte[] privateBuffer;
+
+    /** Read buffer, either the private buffer or shared read data. */
+    protected byte[] buffer;
+
+    /** Position of the next byte in the read buffer. */
+    protected int bufferPos;
+
+    /** Number of bytes in the read buffer. */
+    protected int bufferLimit;
+
+    /** Current mark position in file. */
+    protected long mark_position = -1;
+
+    /**
+     * Create an unpositioned stream, <code>setChannel</code> must be called
+     * before reading.
+     * @param bufferSize read buffer size
+     */
+    public FileChannelInputStream(int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("'bufferSize' must be greater than 0!");
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Create a stream reading from the given channel position.
+     * @param channel channel to read from
+     * @param position channel position to read from
+     */
+    public FileChannelInputStream(FileChannel channel, long position) {
+        this(DEFAULT_BUFFER_SIZE);
+        setChannel(channel, position);
+    }
+
+    /**
+     * Position the stream at an offset in a channel.
+     * @param channel channel to read from
+     * @param position channel position to read from
+     */
+    public void setChannel(FileChannel channel, long position) {
+        if (channel == null) {
+            throw new IllegalArgumentException("'channel' is null!");
+        }
+        if (position < 0) {
+            throw new IllegalArgumentException("The 'position' is less than 0: " + position);
+        }
+        this.channel = channel;
+        this.position = position;
+        buffer = privateBuffer;
+        bufferPos = 0;
+        bufferLimit = 0;
+        mark_position = -1;
+    }
+
+    /**
+     * Position the stream in data already read from a channel. The data
+     * is not modified and may be shared by several streams.
+     * @param channel channel the data was read from
+     * @param data data read from the channel
+     * @param pos position of the first byte to read in the data
+     * @param limit number of bytes in the data
+     * @param position channel position of the end of the data
+     */
+    public void setChannel(FileChannel channel, byte[] data, int pos, int limit, long position) {
+        if (channel == null) {
+            throw new IllegalArgumentException("'channel' is null!");
+        }
+        if (data == null) {
+            throw new IllegalArgumentException("'data' is null!");
+        }
+        if (pos < 0 || limit < pos || limit > data.length || position < limit) {
+            throw new IllegalArgumentException("Invalid data range!");
+        }
+        this.channel = channel;
+        this.position = position;
+        buffer = data;
+        bufferPos = pos;
+        bufferLimit = limit;
+        mark_position = -1;
+    }
+
+    /**
+     * Returns the channel position of the next byte to be read.
+     * @return channel position of the next byte to be read
+     */
+    public long getPosition() {
+        return position - (bufferLimit - bufferPos);
+    }
+
+    /**
+     * Move the stream to another position in the same channel.
+     * @param position channel position to read from
+     */
+    public void seek(long position) {
+        if (position < 0) {
+            throw new IllegalArgumentException("The 'position' is less than 0: " + position);
+        }
+        long bufferStart = this.position - bufferLimit;
+        if (position >= bufferStart && position <= this.position) {
+            bufferPos = (int)(position - bufferStart);
+        } else {
+            this.position = position;
+            buffer = privateBuffer;
+            bufferPos = 0;
+            bufferLimit = 0;
+        }
+    }
+
+    /**
+     * Refill the read buffer, keeping any unread bytes, until it holds at
+     * least the given number of bytes or the end of the channel is
+     * reached.
+     * @param n number of bytes required, at most the buffer size
+     * @return boolean indicating whether the requested bytes are available
+     * @throws IOException if an I/O error occurs while reading
+     */
+    protected boolean fill(int n) throws IOException {
+        int remaining = bufferLimit - bufferPos;
+        if (remaining >= n) {
+            return true;
+        }
+        if (channel == null) {
+            throw new IOException("Stream not positioned");
+        }
+        if (privateBuffer == null) {
+            privateBuffer = new byte[bufferSize];
+        }
+        if (remaining > 0) {
+            System.arraycopy(buffer, bufferPos, privateBuffer, 0, remaining);
+        }
+        buffer = privateBuffer;
+        bufferPos = 0;
+        bufferLimit = remaining;
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        while (bufferLimit < n) {
+            byteBuffer.limit(buffer.length).position(bufferLimit);
+            int read = channel.read(byteBuffer, position);
+            if (read <= 0) {
+                break;
+            }
+            position += read;
+            bufferLimit += read;
+        }
+        return bufferLimit >= n;
+    }
+
+    /**
+     * Check whether the next bytes of the stream match the given prefix,
+     * without consuming any data.
+     * @param prefix prefix to compare with, at most the buffer size
+     * @return boolean indicating whether the stream starts with the prefix
+     * @throws IOException if an I/O error occurs while reading
+     */
+    public boolean startsWith(byte[] prefix) throws IOException {
+        if (prefix == null) {
+            throw new IllegalArgumentException("'prefix' is null!");
+        }
+        if (prefix.length > bufferSize) {
+            throw new IllegalArgumentException("'prefix' is longer than the buffer!");
+        }
+        if (!fill(prefix.length)) {
+            return false;
+        }
+        for (int i=0; i<prefix.length; ++i) {
+            if (buffer[bufferPos + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (bufferPos == bufferLimit && !fill(1)) {
+            return -1;
+        }
+        return buffer[bufferPos++] & 255;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (bufferPos == bufferLimit) {
+            if (len >= bufferSize) {
+                // Large reads bypass the buffer.
+                if (channel == null) {
+                    throw new IOException("Stream not positioned");
+                }
+                int read = channel.read(ByteBuffer.wrap(b, off, len), position);
+                if (read <= 0) {
+                    return -1;
+                }
+                position += read;
+                // The buffer no longer ends at the channel position.
+                buffer = privateBuffer;
+                bufferPos = 0;
+                bufferLimit = 0;
+                return read;
+            }
+            if (!fill(1)) {
+                return -1;
+            }
+        }
+        int read = Math.min(len, bufferLimit - bufferPos);
+        System.arraycopy(buffer, bufferPos, b, off, read);
+        bufferPos += read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        long skipped = Math.min(n, bufferLimit - bufferPos);
+        bufferPos += skipped;
+        if (skipped < n) {
+            if (channel == null) {
+                throw new IOException("Stream not positioned");
+            }
+            long remaining = Math.max(0, channel.size() - position);
+            long skip = Math.min(n - skipped, remaining);
+            position += skip;
+            skipped += skip;
+            // The buffer no longer ends at the channel position.
+            buffer = privateBuffer;
+            bufferPos = 0;
+            bufferLimit = 0;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (channel == null) {
+            return 0;
+        }
+        long avail = Math.max(channel.size() - position, 0) + (bufferLimit - bufferPos);
+        return (int) (Math.min(avail, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+        mark_position = getPosition();
+    }
+
+    @Override
+    public void reset() throws IOException {
+        if (mark_position == -1) {
+            throw new IOException("Mark not set or is invalid");
+        }
+        seek(mark_position);
+    }
+
+    /**
+     * Closing this stream does not close the channel, which may be shared.
+     */
+    @Override
+    public void close() {
+    }
+
+}
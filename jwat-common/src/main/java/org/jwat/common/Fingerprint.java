@@ -0,0 +1,160 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+/**
+ * Non-cryptographic payload fingerprint of 64 or 128 bits.
+ * A 64-bit fingerprint is the xxHash64 value of the data. A 128-bit
+ * fingerprint appends a second, differently seeded, xxHash64 value, which
+ * keeps the expected number of collisions negligible even for collections
+ * with billions of payloads. The first 8 bytes of a 128-bit fingerprint are
+ * therefore identical to the 64-bit fingerprint of the same data.
+ * Fingerprints are meant for finding duplicate candidates cheaply, they are
+ * not a replacement for a cryptographic digest.
+ *
+ * @author nicl
+ */
+public class Fingerprint {
+
+    /** 64-bit fingerprint. */
+    public static final int BITS_64 = 64;
+
+    /** 128-bit fingerprint. */
+    public static final int BITS_128 = 128;
+
+    /** Seed of the second 64 bits of a 128-bit fingerprint. */
+    protected static final long SEED_HIGH = 0x9E3779B97F4A7C15L;
+
+    /** Number of bits in the fingerprint. */
+    protected final int bits;
+
+    /** First 64 bits. */
+    protected final XxHash64 xxh1;
+
+    /** Second 64 bits, if a 128-bit fingerprint. */
+    protected final XxHash64 xxh2;
+
+    /**
+     * Construct a fingerprint of the given size.
+     * @param bits fingerprint size, 64 or 128
+     */
+    public Fingerprint(int bits) {
+        checkBits(bits);
+        this.bits = bits;
+        xxh1 = new XxHash64(0L);
+        if (bits == BITS_128) {
+            xxh2 = new XxHash64(SEED_HIGH);
+        } else {
+            xxh2 = null;
+        }
+    }
+
+    /**
+     * Check that a fingerprint size is supported.
+     * @param bits fingerprint size
+     * @throws IllegalArgumentException if the size is not 64 or 128
+     */
+    public static void checkBits(int bits) {
+        if (bits != BITS_64 && bits != BITS_128) {
+            throw new IllegalArgumentException("Fingerprint size must be 64 or 128 bits: " + bits);
+        }
+    }
+
+    /**
+     * Compute the fingerprint of a byte array in one go.
+     * @param b byte array
+     * @param off offset of the first byte
+     * @param len number of bytes
+     * @param bits fingerprint size, 64 or 128
+     * @return fingerprint bytes
+     */
+    public static byte[] fingerprint(byte[] b, int off, int len, int bits) {
+        Fingerprint fp = new Fingerprint(bits);
+        fp.update(b, off, len);
+        return fp.getBytes();
+    }
+
+    /**
+     * Returns the fingerprint size in bits.
+     * @return fingerprint size in bits
+     */
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * Updates the fingerprint with one byte.
+     * @param b byte to add
+     */
+    public void update(int b) {
+        xxh1.update(b);
+        if (xxh2 != null) {
+            xxh2.update(b);
+        }
+    }
+
+    /**
+     * Updates the fingerprint with an array of bytes.
+     * @param b byte array
+     * @param off offset of the first byte
+     * @param len number of bytes
+     */
+    public void update(byte[] b, int off, int len) {
+        xxh1.update(b, off, len);
+        if (xxh2 != null) {
+            xxh2.update(b, off, len);
+        }
+    }
+
+    /**
+     * Returns the fingerprint of the data so far as big endian bytes.
+     * @return 8 or 16 fingerprint bytes
+     */
+    public byte[] getBytes() {
+        byte[] bytes = new byte[bits >> 3];
+        putLong(bytes, 0, xxh1.getValue());
+        if (xxh2 != null) {
+            putLong(bytes, 8, xxh2.getValue());
+        }
+        return bytes;
+    }
+
+    /**
+     * Reset the fingerprint for reuse.
+     */
+    public void reset() {
+        xxh1.reset();
+        if (xxh2 != null) {
+            xxh2.reset();
+        }
+    }
+
+    /**
+     * Write a big endian long into a byte array.
+     * @param b byte array
+     * @param off offset of the first byte
+     * @param value value to write
+     */
+    protected static void putLong(byte[] b, int off, long value) {
+        for (int i=7; i>=0; --i) {
+            b[off + i] = (byte)value;
+            value >>>= 8;
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream updating a <code>Fingerprint</code> with all data passing
+ * through it. Like <code>DigestInputStreamNoSkip</code> skipped data is
+ * read, so the fingerprint always covers the complete stream.
+ *
+ * @author nicl
+ */
+public class FingerprintInputStream extends FilterInputStream {
+
+    /** Buffer size to use when read skipping. */
+    public static final int SKIP_READ_BUFFER_SIZE = 8192;
+
+    /** Fingerprint updated by this stream. */
+    protected final Fingerprint fingerprint;
+
+    /** Read buffer used by the skip method. */
+    protected byte[] skip_read_buffer;
+
+    /**
+     * Construct a fingerprinting input stream.
+     * @param in input stream to fingerprint
+     * @param fingerprint fingerprint to update
+     */
+    public FingerprintInputStream(InputStream in, Fingerprint fingerprint) {
+        super(in);
+        if (fingerprint == null) {
+            throw new IllegalArgumentException("'fingerprint' is null!");
+        }
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Returns the fingerprint updated by this stream.
+     * @return fingerprint updated by this stream
+     */
+    public Fingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b != -1) {
+            fingerprint.update(b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read > 0) {
+            fingerprint.update(b, off, read);
+        }
+        return read;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (skip_read_buffer == null) {
+            skip_read_buffer = new byte[SKIP_READ_BUFFER_SIZE];
+        }
+        long skipped = 0;
+        int read = 0;
+        while (skipped < n && read != -1) {
+            read = read(skip_read_buffer, 0, (int)Math.min(n - skipped, SKIP_READ_BUFFER_SIZE));
+            if (read > 0) {
+                skipped += read;
+            }
+        }
+        return skipped;
+    }
+
+}
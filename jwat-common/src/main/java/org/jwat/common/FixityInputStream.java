@@ -0,0 +1,237 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Input stream computing one or more whole-stream digests of the bytes
+ * read through it, e.g. the SHA-256 and MD5 fixity values of an archive
+ * file. Placed directly on top of the raw file stream, below any gzip or
+ * record readers, the digests cover the on-disk bytes and are computed in
+ * the same pass as the parsing.
+ * The stream can also be handed to the reader factories, after which the
+ * digests are available once the reader has been closed and the remaining
+ * bytes, if any, have been drained.
+ * Skipping reads the data so the digests are always updated.
+ *
+ * @author nicl
+ */
+public class FixityInputStream extends FilterInputStream {
+
+    /** Buffer size to use when read skipping or draining. */
+    public static final int SKIP_READ_BUFFER_SIZE = 8192;
+
+    /** Digest algorithms in the order they were requested. */
+    protected final String[] algorithms;
+
+    /** Digest implementations, one per algorithm. */
+    protected final MessageDigest[] mds;
+
+    /** Digests, computed when first requested. */
+    protected byte[][] digests;
+
+    /** Number of bytes digested. */
+    protected long consumed;
+
+    /** Read buffer used by the skip and drain methods. */
+    protected byte[] skip_read_buffer;
+
+    /**
+     * Construct a digesting input stream using the given digest algorithms.
+     * @param in input stream to digest
+     * @param algorithms digest algorithms, e.g. "SHA-256" and "MD5"
+     * @throws IllegalArgumentException if an algorithm is not supported
+     */
+    public FixityInputStream(InputStream in, String... algorithms) {
+        super(in);
+        if (in == null) {
+            throw new IllegalArgumentException("'in' is null!");
+        }
+        if (algorithms == null || algorithms.length == 0) {
+            throw new IllegalArgumentException("'algorithms' is null or empty!");
+        }
+        this.algorithms = algorithms.clone();
+        this.mds = new MessageDigest[algorithms.length];
+        for (int i=0; i<algorithms.length; ++i) {
+            try {
+                mds[i] = MessageDigest.getInstance(algorithms[i]);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalArgumentException("Unsupported digest algorithm: " + algorithms[i], e);
+            }
+        }
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b != -1) {
+            checkOpenDigests();
+            for (int i=0; i<mds.length; ++i) {
+                mds[i].update((byte)b);
+            }
+            ++consumed;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read > 0) {
+            checkOpenDigests();
+            for (int i=0; i<mds.length; ++i) {
+                mds[i].update(b, off, read);
+            }
+            consumed += read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (skip_read_buffer == null) {
+            skip_read_buffer = new byte[SKIP_READ_BUFFER_SIZE];
+        }
+        long remaining = n;
+        long skipped = 0;
+        int read = 0;
+        while (remaining > 0 && read != -1) {
+            read = read(skip_read_buffer, 0, (int)Math.min(remaining, SKIP_READ_BUFFER_SIZE));
+            if (read > 0) {
+                remaining -= read;
+                skipped += read;
+            }
+        }
+        return skipped;
+    }
+
+    /**
+     * Read and digest the rest of the stream, so the digests cover every
+     * byte and not just the bytes the consumer needed.
+     * @return number of bytes drained
+     * @throws IOException if an I/O error occurs while reading
+     */
+    public long drain() throws IOException {
+        if (skip_read_buffer == null) {
+            skip_read_buffer = new byte[SKIP_READ_BUFFER_SIZE];
+        }
+        long drained = 0;
+        int read;
+        while ((read = read(skip_read_buffer, 0, SKIP_READ_BUFFER_SIZE)) != -1) {
+            drained += read;
+        }
+        return drained;
+    }
+
+    /**
+     * Make sure the stream is not read after the digests have been computed.
+     */
+    protected void checkOpenDigests() {
+        if (digests != null) {
+            throw new IllegalStateException("Digests have already been computed!");
+        }
+    }
+
+    /**
+     * Returns the number of bytes digested so far.
+     * @return number of bytes digested so far
+     */
+    public long getConsumed() {
+        return consumed;
+    }
+
+    /**
+     * Returns the digest algorithms in the order they were requested.
+     * @return digest algorithms
+     */
+    public String[] getAlgorithms() {
+        return algorithms.clone();
+    }
+
+    /**
+     * Computes the digests, if not already done. Any further reads will
+     * throw an <code>IllegalStateException</code>.
+     */
+    protected void computeDigests() {
+        if (digests == null) {
+            digests = new byte[mds.length][];
+            for (int i=0; i<mds.length; ++i) {
+                digests[i] = mds[i].digest();
+            }
+        }
+    }
+
+    /**
+     * Returns the digest computed by the given algorithm. The first call
+     * finishes all the digests, so the stream must have been read to the
+     * end, see <code>drain()</code>.
+     * @param algorithm digest algorithm, as given to the constructor
+     * @return digest bytes or null, if the algorithm was not requested
+     */
+    public byte[] getDigest(String algorithm) {
+        for (int i=0; i<algorithms.length; ++i) {
+            if (algorithms[i].equalsIgnoreCase(algorithm)) {
+                computeDigests();
+                return digests[i].clone();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns all the digests keyed by algorithm, in the order they were
+     * requested. The first call finishes all the digests, so the stream
+     * must have been read to the end, see <code>drain()</code>.
+     * @return map of algorithm to digest bytes
+     */
+    public Map<String, byte[]> getDigests() {
+        computeDigests();
+        Map<String, byte[]> map = new LinkedHashMap<String, byte[]>();
+        for (int i=0; i<algorithms.length; ++i) {
+            map.put(algorithms[i], digests[i].clone());
+        }
+        return map;
+    }
+
+}
@@ -741,40 +741,40 @@ public class HeaderLineReader {
             throw new IllegalArgumentException("'diagnostics' argument is null");
         }
         if ((bfErrors & E_BIT_EOF) != 0) {
-            diagnostics.addError(new Diagnosis(DiagnosisType.ERROR, "header/line", "Unexpected EOF"));
+            diagnostics.addError(DiagnosisType.ERROR, "header/line", "Unexpected EOF");
         }
         if ((bfErrors & E_BIT_MISPLACED_CR) != 0) {
-            diagnostics.addError(new Diagnosis(DiagnosisType.ERROR, "header/line", "Misplaced CR"));
+            diagnostics.addError(DiagnosisType.ERROR, "header/line", "Misplaced CR");
         }
         if ((bfErrors & E_BIT_MISSING_CR) != 0) {
-            diagnostics.addError(new Diagnosis(DiagnosisType.ERROR, "header/line", "Missing CR"));
+            diagnostics.addError(DiagnosisType.ERROR, "header/line", "Missing CR");
         }
         if ((bfErrors & E_BIT_UNEXPECTED_CR) != 0) {
-            diagnostics.addError(new Diagnosis(DiagnosisType.ERROR, "header/line", "Unexpected CR"));
+            diagnostics.addError(DiagnosisType.ERROR, "header/line", "Unexpected CR");
         }
         if ((bfErrors & E_BIT_INVALID_UTF8_ENCODING) != 0) {
-            diagnostics.addError(new Diagnosis(DiagnosisType.ERROR, "header/line", "Invalid UTF-8 encoded character"));
+            diagnostics.addError(DiagnosisType.ERROR, "header/line", "Invalid UTF-8 encoded character");
         }
         if ((bfErrors & E_BIT_INVALID_US_ASCII_CHAR) != 0) {
-            diagnostics.addError(new Diagnosis(DiagnosisType.ERROR, "header/line", "Invalid US-ASCII character"));
+            diagnostics.addError(DiagnosisType.ERROR, "header/line", "Invalid US-ASCII character");
         }
         if ((bfErrors & E_BIT_INVALID_CONTROL_CHAR) != 0) {
-            diagnostics.addError(new Diagnosis(DiagnosisType.ERROR, "header/line", "Invalid control character"));
+            diagnostics.addError(DiagnosisType.ERROR, "header/line", "Invalid control character");
         }
         if ((bfErrors & E_BIT_INVALID_SEPARATOR_CHAR) != 0) {
-            diagnostics.addError(new Diagnosis(DiagnosisType.ERROR, "header/line", "Invalid separator character"));
+            diagnostics.addError(DiagnosisType.ERROR, "header/line", "Invalid separator character");
         }
         if ((bfErrors & E_BIT_MISSING_QUOTE) != 0) {
-            diagnostics.addError(new Diagnosis(DiagnosisType.ERROR, "header/line", "Missing quote character"));
+            diagnostics.addError(DiagnosisType.ERROR, "header/line", "Missing quote character");
         }
         if ((bfErrors & E_BIT_MISSING_QUOTED_PAIR_CHAR) != 0) {
-            diagnostics.addError(new Diagnosis(DiagnosisType.ERROR, "header/line", "Missing quoted pair character"));
+            diagnostics.addError(DiagnosisType.ERROR, "header/line", "Missing quoted pair character");
         }
         if ((bfErrors & E_BIT_INVALID_QUOTED_PAIR_CHAR) != 0) {
-            diagnostics.addError(new Diagnosis(DiagnosisType.ERROR, "header/line", "Invalid quoted pair character"));
+            diagnostics.addError(DiagnosisType.ERROR, "header/line", "Invalid quoted pair character");
         }
         if ((bfErrors & E_BIT_INVALID_CHARSET) != 0) {
-            diagnostics.addError(new Diagnosis(DiagnosisType.ERROR, "header/line", "Invalid charset"));
+            diagnostics.addError(DiagnosisType.ERROR, "header/line", "Invalid charset");
         }
     }
 
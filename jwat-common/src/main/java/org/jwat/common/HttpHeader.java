@@ -18,7 +18,9 @@
 package org.jwat.common;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PushbackInputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -50,6 +52,12 @@ public class HttpHeader extends PayloadWithHeaderAbstract {
     /** Content-type header name. */
     protected static final String CONTENT_TYPE = "Content-Type".toUpperCase();
 
+    /** Transfer-Encoding header name. */
+    protected static final String TRANSFER_ENCODING = "Transfer-Encoding";
+
+    /** Content-Encoding header name. */
+    protected static final String CONTENT_ENCODING = "Content-Encoding";
+
     /** Header type of this object. */
     public int headerType;
 
@@ -102,6 +110,16 @@ public class HttpHeader extends PayloadWithHeaderAbstract {
     /** HTTP content Content-type. */
     public String contentType;
 
+    /*
+     * Entity decoding.
+     */
+
+    /** Decoded entity stream, created on request. */
+    protected InputStream in_entity;
+
+    /** Decoding streams used by the decoded entity stream. */
+    protected List<InputStream> entityDecoders;
+
     /**
      * Non public constructor.
      */
@@ -133,6 +151,24 @@ public class HttpHeader extends PayloadWithHeaderAbstract {
      */
     public static HttpHeader processPayload(int headerType, ByteCountingPushBackInputStream pbin,
                     long length, String digestAlgorithm) throws IOException {
+        return processPayload(headerType, pbin, length, digestAlgorithm, 0);
+    }
+
+    /**
+     * Reads the HTTP protocol response or request and returns it as an object,
+     * optionally computing a non-cryptographic fingerprint of the payload in
+     * the same pass as the digest.
+     * @param headerType HTTP header type to parse, request or response
+     * @param pbin payload input stream
+     * @param length payload length
+     * @param digestAlgorithm digest algorithm to use on payload or null if we
+     * don't want a digest of the payload
+     * @param fingerprintBits fingerprint size, 64 or 128, or 0 for none
+     * @return <code>HttpResponse</code> based on the http headers
+     * @throws IOException if an error occur while processing http header.
+     */
+    public static HttpHeader processPayload(int headerType, ByteCountingPushBackInputStream pbin,
+                    long length, String digestAlgorithm, int fingerprintBits) throws IOException {
         if (headerType != HT_RESPONSE && headerType != HT_REQUEST) {
             throw new IllegalArgumentException(
                     "Invalid 'headerType' argument: " + headerType);
@@ -145,11 +181,15 @@ public class HttpHeader extends PayloadWithHeaderAbstract {
             throw new IllegalArgumentException(
                     "The 'length' is less than zero: " + length);
         }
+        if (fingerprintBits != 0) {
+            Fingerprint.checkBits(fingerprintBits);
+        }
         HttpHeader hh = new HttpHeader();
         hh.headerType = headerType;
         hh.in_pb = pbin;
         hh.totalLength = length;
         hh.digestAlgorithm = digestAlgorithm;
+        hh.fingerprintBits = fingerprintBits;
         hh.diagnostics = new Diagnostics();
         hh.initProcess();
         return hh;
@@ -376,6 +416,126 @@ public class HttpHeader extends PayloadWithHeaderAbstract {
         }
     }
 
+    /**
+     * Get the comma separated codings of all the headers with the given name
+     * in the order they are applied.
+     * @param field header name
+     * @return list of lower case codings, possibly empty
+     */
+    protected List<String> getCodings(String field) {
+        List<String> codings = new ArrayList<String>();
+        HeaderLine headerLine = headerMap.get(field.toLowerCase());
+        if (headerLine != null) {
+            addCodings(headerLine.value, codings);
+            for (HeaderLine line : headerLine.lines) {
+                addCodings(line.value, codings);
+            }
+        }
+        return codings;
+    }
+
+    /**
+     * Split a comma separated coding header value and add the codings to
+     * a list.
+     * @param value header value
+     * @param codings list of codings
+     */
+    protected static void addCodings(String value, List<String> codings) {
+        if (value != null) {
+            String[] tokens = value.split(",");
+            String coding;
+            for (int i=0; i<tokens.length; ++i) {
+                coding = tokens[i].trim().toLowerCase();
+                // Ignore any parameters.
+                int idx = coding.indexOf(';');
+                if (idx != -1) {
+                    coding = coding.substring(0, idx).trim();
+                }
+                if (coding.length() > 0) {
+                    codings.add(coding);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get an <code>InputStream</code> containing the decoded entity, that is
+     * the payload with any chunked transfer-encoding removed and any gzip or
+     * deflate content-encoding decompressed. Decoding is done incrementally
+     * while reading so memory usage does not depend on the entity size.
+     * Unsupported codings are reported as warnings and decoding stops at
+     * that coding. Malformed or truncated encoded data is reported as errors
+     * and ends the stream. Both are added to this header's diagnostics.
+     * This stream and the payload stream share the same underlying data,
+     * so only one of them should be read.
+     * @return <code>InputStream</code> containing the decoded entity
+     */
+    public InputStream getEntityInputStream() {
+        if (!bIsValid) {
+            throw new IllegalStateException("HttpHeader not valid");
+        }
+        if (in_entity == null) {
+            List<String> contentCodings = getCodings(CONTENT_ENCODING);
+            List<String> transferCodings = getCodings(TRANSFER_ENCODING);
+            entityDecoders = new ArrayList<InputStream>(2);
+            InputStream in = in_pb_exposed;
+            // Transfer-codings are applied after content-codings, so they
+            // are removed first. Both in the reverse order they were applied.
+            in = decodeEntity(in, transferCodings, TRANSFER_ENCODING);
+            if (in != null) {
+                in = decodeEntity(in, contentCodings, CONTENT_ENCODING);
+            }
+            if (in == null) {
+                // Stopped at an unsupported coding.
+                in = entityDecoders.isEmpty() ? in_pb_exposed : entityDecoders.get(entityDecoders.size() - 1);
+            }
+            in_entity = in;
+        }
+        return in_entity;
+    }
+
+    /**
+     * Wrap an <code>InputStream</code> with decoding streams for a list of
+     * codings, removing the last coding applied first.
+     * @param in encoded <code>InputStream</code>
+     * @param codings list of codings in the order they were applied
+     * @param entity header name used when reporting unsupported codings
+     * @return decoding <code>InputStream</code> or null, if an unsupported
+     * coding was encountered
+     */
+    protected InputStream decodeEntity(InputStream in, List<String> codings, String entity) {
+        String coding;
+        for (int i=codings.size() - 1; i>=0; --i) {
+            coding = codings.get(i);
+            if ("chunked".equals(coding)) {
+                in = new ChunkedInputStream(in, diagnostics);
+            } else if ("gzip".equals(coding) || "x-gzip".equals(coding)) {
+                in = new InflatingInputStream(in, InflatingInputStream.CE_GZIP, diagnostics);
+            } else if ("deflate".equals(coding)) {
+                in = new InflatingInputStream(in, InflatingInputStream.CE_DEFLATE, diagnostics);
+            } else if ("identity".equals(coding)) {
+                continue;
+            } else {
+                diagnostics.addWarning(DiagnosisType.UNKNOWN, entity, coding);
+                return null;
+            }
+            entityDecoders.add(in);
+        }
+        return in;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (entityDecoders != null) {
+            // Return any pooled inflaters.
+            for (int i=0; i<entityDecoders.size(); ++i) {
+                entityDecoders.get(i).close();
+            }
+            entityDecoders = null;
+        }
+        super.close();
+    }
+
     /**
      * Result-Code string getter
      * @return the ResultCode
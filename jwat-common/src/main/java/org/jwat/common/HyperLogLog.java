@@ -0,0 +1,177 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * HyperLogLog sketch estimating the number of distinct values added.
+ * Values are hashed with xxHash64, the top <code>precision</code> bits select
+ * one of 2^precision registers and each register keeps the longest run of
+ * leading zeros seen in the remaining bits. The standard error is about
+ * 1.04/sqrt(2^precision), e.g. 0.8% for the default precision of 14 using
+ * 16KB of registers.
+ * Two sketches with the same precision can be merged, the result is the
+ * sketch of the union of the values added to both.
+ * Instances are not thread-safe, use one sketch per thread and merge.
+ *
+ * @author nicl
+ */
+public class HyperLogLog {
+
+    /** Minimum precision. */
+    public static final int MIN_PRECISION = 4;
+
+    /** Maximum precision. */
+    public static final int MAX_PRECISION = 18;
+
+    /** Default precision. */
+    public static final int DEFAULT_PRECISION = 14;
+
+    /** Number of index bits. */
+    public final int precision;
+
+    /** Registers, one per index. */
+    protected final byte[] registers;
+
+    /**
+     * Construct a sketch with the default precision.
+     */
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Construct a sketch with the given precision.
+     * @param precision number of index bits, between 4 and 18
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("'precision' must be between " + MIN_PRECISION + " and " + MAX_PRECISION + "!");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Add a 64-bit hash value to the sketch.
+     * @param hash well distributed 64-bit hash value
+     */
+    public void addHash(long hash) {
+        int idx = (int)(hash >>> (64 - precision));
+        // The sentinel bit caps the rank at 64 - precision + 1.
+        long w = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte)(Long.numberOfLeadingZeros(w) + 1);
+        if (rank > registers[idx]) {
+            registers[idx] = rank;
+        }
+    }
+
+    /**
+     * Add a value given as an array of bytes to the sketch.
+     * @param b byte array
+     * @param off offset of the first byte
+     * @param len number of bytes
+     */
+    public void add(byte[] b, int off, int len) {
+        addHash(XxHash64.hash(b, off, len, 0L));
+    }
+
+    /**
+     * Add a string value, using its UTF-8 encoding, to the sketch.
+     * @param str string value
+     */
+    public void add(String str) {
+        if (str == null) {
+            throw new IllegalArgumentException("'str' is null!");
+        }
+        byte[] bytes;
+        try {
+            bytes = str.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        add(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Merge another sketch into this sketch.
+     * @param other sketch with the same precision
+     */
+    public void merge(HyperLogLog other) {
+        if (other == null) {
+            throw new IllegalArgumentException("'other' is null!");
+        }
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Precision mismatch: " + other.precision + " != " + precision);
+        }
+        for (int i=0; i<registers.length; ++i) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the estimated number of distinct values added.
+     * Small cardinalities are estimated using linear counting of the empty
+     * registers, which is more accurate in that range.
+     * @return estimated number of distinct values
+     */
+    public long cardinality() {
+        int m = registers.length;
+        double sum = 0.0;
+        int zeros = 0;
+        for (int i=0; i<m; ++i) {
+            sum += 1.0 / (1L << registers[i]);
+            if (registers[i] == 0) {
+                ++zeros;
+            }
+        }
+        double alpha;
+        switch (m) {
+        case 16:
+            alpha = 0.673;
+            break;
+        case 32:
+            alpha = 0.697;
+            break;
+        case 64:
+            alpha = 0.709;
+            break;
+        default:
+            alpha = 0.7213 / (1.0 + 1.079 / m);
+            break;
+        }
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double)m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Reset the sketch to its empty state.
+     */
+    public void reset() {
+        for (int i=0; i<registers.length; ++i) {
+            registers[i] = 0;
+        }
+    }
+
+}
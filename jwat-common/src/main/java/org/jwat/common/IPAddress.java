@@ -0,0 +1,217 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Compact numeric representation of an IPv4 or IPv6 address.
+ * An IPv4 address is stored in a single int and an IPv6 address in two longs.
+ * The corresponding <code>InetAddress</code> is only created when it is
+ * requested and is created from the numeric address directly, so no name
+ * resolution is ever attempted.
+ *
+ * @author nicl
+ */
+public final class IPAddress {
+
+    /** Is this an IPv6 address. */
+    public final boolean bIPv6;
+
+    /** IPv4 address in network byte order, if not an IPv6 address. */
+    public final int ipv4;
+
+    /** Most significant 64 bits of the IPv6 address, if an IPv6 address. */
+    public final long ipv6High;
+
+    /** Least significant 64 bits of the IPv6 address, if an IPv6 address. */
+    public final long ipv6Low;
+
+    /** Cached <code>InetAddress</code>, created on first request. */
+    private InetAddress inetAddress;
+
+    /**
+     * Construct an IPv4 address.
+     * @param ipv4 IPv4 address in network byte order
+     */
+    public IPAddress(int ipv4) {
+        this.bIPv6 = false;
+        this.ipv4 = ipv4;
+        this.ipv6High = 0L;
+        this.ipv6Low = 0L;
+    }
+
+    /**
+     * Construct an IPv6 address.
+     * @param ipv6High most significant 64 bits of the IPv6 address
+     * @param ipv6Low least significant 64 bits of the IPv6 address
+     */
+    public IPAddress(long ipv6High, long ipv6Low) {
+        this.bIPv6 = true;
+        this.ipv4 = 0;
+        this.ipv6High = ipv6High;
+        this.ipv6Low = ipv6Low;
+    }
+
+    /**
+     * Create an <code>IPAddress</code> from the raw address bytes.
+     * @param addr 4 or 16 address bytes in network byte order
+     * @return <code>IPAddress</code> or null, if the array has an invalid length
+     */
+    public static IPAddress getIPAddress(byte[] addr) {
+        if (addr == null) {
+            return null;
+        }
+        if (addr.length == 4) {
+            return new IPAddress((int)getLong(addr, 0, 4));
+        } else if (addr.length == 16) {
+            return new IPAddress(getLong(addr, 0, 8), getLong(addr, 8, 8));
+        }
+        return null;
+    }
+
+    /**
+     * Create an <code>IPAddress</code> from an existing <code>InetAddress</code>.
+     * @param inetAddress <code>InetAddress</code> object
+     * @return <code>IPAddress</code> or null, if the parameter is null
+     */
+    public static IPAddress getIPAddress(InetAddress inetAddress) {
+        if (inetAddress == null) {
+            return null;
+        }
+        IPAddress ipAddress = getIPAddress(inetAddress.getAddress());
+        if (ipAddress != null) {
+            ipAddress.inetAddress = inetAddress;
+        }
+        return ipAddress;
+    }
+
+    /**
+     * Read a big endian value from a byte array.
+     * @param addr byte array
+     * @param offset offset of first byte
+     * @param len number of bytes to read
+     * @return big endian value
+     */
+    private static long getLong(byte[] addr, int offset, int len) {
+        long value = 0L;
+        while (len > 0) {
+            value = (value << 8) | (addr[offset++] & 255);
+            --len;
+        }
+        return value;
+    }
+
+    /**
+     * Write a big endian value into a byte array.
+     * @param addr byte array
+     * @param offset offset of first byte
+     * @param len number of bytes to write
+     * @param value value to write
+     */
+    private static void putLong(byte[] addr, int offset, int len, long value) {
+        int idx = offset + len;
+        while (idx > offset) {
+            addr[--idx] = (byte)value;
+            value >>>= 8;
+        }
+    }
+
+    /**
+     * Return the raw address bytes in network byte order.
+     * @return 4 or 16 address bytes
+     */
+    public byte[] getAddress() {
+        byte[] addr;
+        if (!bIPv6) {
+            addr = new byte[4];
+            putLong(addr, 0, 4, ipv4);
+        } else {
+            addr = new byte[16];
+            putLong(addr, 0, 8, ipv6High);
+            putLong(addr, 8, 8, ipv6Low);
+        }
+        return addr;
+    }
+
+    /**
+     * Return the <code>InetAddress</code> for this address. The object is
+     * created on the first call and cached. IPv4-mapped IPv6 addresses are
+     * returned as <code>Inet4Address</code> objects just like
+     * <code>InetAddress</code> itself does.
+     * @return <code>InetAddress</code> for this address
+     */
+    public InetAddress getInetAddress() {
+        if (inetAddress == null) {
+            try {
+                inetAddress = InetAddress.getByAddress(getAddress());
+            } catch (UnknownHostException e) {
+                // Only thrown on an illegal array length.
+                throw new IllegalStateException(e);
+            }
+        }
+        return inetAddress;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof IPAddress)) {
+            return false;
+        }
+        IPAddress other = (IPAddress)obj;
+        return bIPv6 == other.bIPv6 && ipv4 == other.ipv4
+                && ipv6High == other.ipv6High && ipv6Low == other.ipv6Low;
+    }
+
+    @Override
+    public int hashCode() {
+        if (!bIPv6) {
+            return ipv4;
+        }
+        long h = ipv6High ^ ipv6Low;
+        return (int)(h ^ (h >>> 32));
+    }
+
+    /**
+     * Returns the address in textual form. IPv4 addresses use the dotted
+     * decimal form and IPv6 addresses the full, uncompressed, hexadecimal
+     * form also used by <code>Inet6Address.getHostAddress()</code>.
+     * @return address in textual form
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(39);
+        if (!bIPv6) {
+            sb.append((ipv4 >>> 24) & 255).append('.');
+            sb.append((ipv4 >>> 16) & 255).append('.');
+            sb.append((ipv4 >>> 8) & 255).append('.');
+            sb.append(ipv4 & 255);
+        } else {
+            for (int i=0; i<8; ++i) {
+                long word = (i < 4) ? ipv6High >>> ((3 - i) << 4) : ipv6Low >>> ((7 - i) << 4);
+                if (i > 0) {
+                    sb.append(':');
+                }
+                sb.append(Integer.toHexString((int)word & 0xffff));
+            }
+        }
+        return sb.toString();
+    }
+
+}
@@ -18,25 +18,19 @@
 package org.jwat.common;
 
 import java.net.InetAddress;
-import java.net.UnknownHostException;
-import java.util.regex.Pattern;
 
 /**
  * IP address parser and format validator for Ipv4 and Ipv6.
+ * Addresses are parsed directly into their numeric form without using any
+ * regular expressions or the <code>InetAddress</code> text parsing which
+ * may fall back to name resolution.
  *
  * @author lbihanic, selghissassi
  */
 public final class IPAddressParser {
 
-    /** Regular expression for Ipv4 or Ipv6 address. */
-    private static final String IP_ADDRESS_REG_EXP =
-        "([0-9a-fA-F]{0,4}:){0,6}("                 // Optional IPv6 start
-        + "([0-9a-fA-F]{0,4}:[0-9a-fA-F]{1,4})|"    // True IPv6 address or
-        + "(([0-9]{1,3}\\.){3}[0-9]{1,3}))";        // Standalone or mixed IPv4 address
-
-    /** IpAddress compiled regex pattern. */
-    private static final Pattern IP_ADDRESS_PATTERN
-                                        = Pattern.compile(IP_ADDRESS_REG_EXP);
+    /** Maximum length of a textual IPv6 address with an embedded IPv4 address. */
+    protected static final int MAX_ADDRESS_LENGTH = 45;
 
     /**
      * Checks the validity of an IP address.
@@ -45,17 +39,169 @@ public final class IPAddressParser {
      * @return the inetAddress of the IP address if valid, if not, null is returned
      */
     public static InetAddress getAddress(String ipAddress){
-        boolean isValid = (ipAddress == null) ? false
-                            : IP_ADDRESS_PATTERN.matcher(ipAddress).matches();
-        InetAddress inetAddress = null;
-        if(isValid){
-            try {
-                inetAddress = InetAddress.getByName(ipAddress);
-            } catch (UnknownHostException e) {
-                isValid = false;
+        IPAddress ip = parse(ipAddress);
+        return (ip != null) ? ip.getInetAddress() : null;
+    }
+
+    /**
+     * Parse and validate an IPv4 address in dotted decimal form or an IPv6
+     * address in any of the RFC 4291 text forms, including compressed zeros
+     * and an embedded IPv4 address. Zone identifiers and host names are not
+     * accepted.
+     * @param ipAddress the IP address
+     * @return the numeric IP address if valid, if not, null is returned
+     */
+    public static IPAddress parse(String ipAddress) {
+        if (ipAddress == null) {
+            return null;
+        }
+        int len = ipAddress.length();
+        if (len == 0 || len > MAX_ADDRESS_LENGTH) {
+            return null;
+        }
+        if (ipAddress.indexOf(':') == -1) {
+            long ipv4 = parseIPv4(ipAddress, 0, len);
+            return (ipv4 != -1) ? new IPAddress((int)ipv4) : null;
+        }
+        return parseIPv6(ipAddress, len);
+    }
+
+    /**
+     * Parse a dotted decimal IPv4 address in the given range of a string.
+     * @param str string containing the address
+     * @param idx start index of the address
+     * @param len end index of the address
+     * @return IPv4 address as an unsigned int value or -1 if invalid
+     */
+    protected static long parseIPv4(String str, int idx, int len) {
+        long addr = 0;
+        int parts = 0;
+        int value = 0;
+        int digits = 0;
+        char c;
+        while (idx < len) {
+            c = str.charAt(idx++);
+            if (c >= '0' && c <= '9') {
+                if (digits == 3) {
+                    return -1;
+                }
+                value = value * 10 + (c - '0');
+                ++digits;
+            } else if (c == '.') {
+                if (digits == 0 || parts == 3 || value > 255) {
+                    return -1;
+                }
+                addr = (addr << 8) | value;
+                ++parts;
+                value = 0;
+                digits = 0;
+            } else {
+                return -1;
             }
         }
-        return (isValid) ? inetAddress : null;
+        if (digits == 0 || parts != 3 || value > 255) {
+            return -1;
+        }
+        return (addr << 8) | value;
+    }
+
+    /**
+     * Return the value of an ASCII hexadecimal digit.
+     * @param c character
+     * @return value of hexadecimal digit or -1 if not a hexadecimal digit
+     */
+    protected static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * Parse an IPv6 address.
+     * @param str string containing the address
+     * @param len length of the string
+     * @return the numeric IP address if valid, if not, null is returned
+     */
+    protected static IPAddress parseIPv6(String str, int len) {
+        int[] words = new int[8];
+        int wordCount = 0;
+        int gapIdx = -1;
+        int idx = 0;
+        int start;
+        int value;
+        int digit;
+        if (str.charAt(0) == ':') {
+            if (len < 2 || str.charAt(1) != ':') {
+                return null;
+            }
+            gapIdx = 0;
+            idx = 2;
+        }
+        while (idx < len) {
+            start = idx;
+            value = 0;
+            while (idx < len && idx - start < 4 && (digit = hexDigit(str.charAt(idx))) != -1) {
+                value = (value << 4) | digit;
+                ++idx;
+            }
+            if (idx < len && str.charAt(idx) == '.') {
+                // Embedded IPv4 address, only allowed as the last two words.
+                if (wordCount > 6) {
+                    return null;
+                }
+                long ipv4 = parseIPv4(str, start, len);
+                if (ipv4 == -1) {
+                    return null;
+                }
+                words[wordCount++] = (int)(ipv4 >>> 16);
+                words[wordCount++] = (int)(ipv4 & 0xffff);
+                idx = len;
+                break;
+            }
+            if (idx == start || wordCount == 8) {
+                return null;
+            }
+            words[wordCount++] = value;
+            if (idx < len) {
+                if (str.charAt(idx++) != ':' || idx == len) {
+                    return null;
+                }
+                if (str.charAt(idx) == ':') {
+                    if (gapIdx != -1) {
+                        return null;
+                    }
+                    gapIdx = wordCount;
+                    ++idx;
+                }
+            }
+        }
+        if (gapIdx == -1) {
+            if (wordCount != 8) {
+                return null;
+            }
+        } else {
+            // "::" must replace at least one word.
+            if (wordCount == 8) {
+                return null;
+            }
+            int shift = 8 - wordCount;
+            for (int i=wordCount - 1; i>=gapIdx; --i) {
+                words[i + shift] = words[i];
+                words[i] = 0;
+            }
+        }
+        long high = 0;
+        long low = 0;
+        for (int i=0; i<4; ++i) {
+            high = (high << 16) | words[i];
+            low = (low << 16) | words[i + 4];
+        }
+        return new IPAddress(high, low);
     }
 
     /**
@@ -0,0 +1,86 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Inflater;
+
+/**
+ * Pool of raw (nowrap) <code>Inflater</code> objects shared by all threads.
+ * Creating an <code>Inflater</code> allocates native memory which is only
+ * released when <code>end()</code> is called or the object is finalized, so
+ * reusing them is considerably cheaper than creating one per stream.
+ * Returned inflaters are reset before being reused. At most
+ * <code>MAX_POOLED_INFLATERS</code> idle inflaters are kept, surplus
+ * inflaters are ended when returned.
+ *
+ * @author nicl
+ */
+public class InflaterPool {
+
+    /** Maximum number of idle inflaters kept in the pool. */
+    public static final int MAX_POOLED_INFLATERS = 32;
+
+    /** Idle inflaters. */
+    protected static ConcurrentLinkedQueue<Inflater> inflaterQueue = new ConcurrentLinkedQueue<Inflater>();
+
+    /** Number of idle inflaters, the queue size is not a constant time operation. */
+    protected static AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * Static class.
+     */
+    protected InflaterPool() {
+    }
+
+    /**
+     * Get a raw <code>Inflater</code> from the pool or create a new one if
+     * the pool is empty.
+     * @return raw <code>Inflater</code> ready for use
+     */
+    public static Inflater checkout() {
+        Inflater inf = inflaterQueue.poll();
+        if (inf != null) {
+            pooled.decrementAndGet();
+        } else {
+            inf = new Inflater(true);
+        }
+        return inf;
+    }
+
+    /**
+     * Return an <code>Inflater</code> obtained by calling
+     * <code>checkout()</code> to the pool. The inflater must not be used
+     * after being returned.
+     * @param inf <code>Inflater</code> to return to the pool
+     */
+    public static void checkin(Inflater inf) {
+        if (inf == null) {
+            throw new IllegalArgumentException("'inf' is null!");
+        }
+        if (pooled.incrementAndGet() <= MAX_POOLED_INFLATERS) {
+            inf.reset();
+            inflaterQueue.add(inf);
+        } else {
+            pooled.decrementAndGet();
+            inf.end();
+        }
+    }
+
+}
@@ -0,0 +1,452 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * <code>InputStream</code> which decompresses HTTP gzip or deflate
+ * content-encoded data while reading. Concatenated gzip members are
+ * decompressed as one stream. Deflate data is accepted both with a zlib
+ * wrapper (RFC 1950) and as raw deflate data (RFC 1951), since both are
+ * found in the wild. Only a fixed size input buffer is used and the
+ * <code>Inflater</code> is taken from the <code>InflaterPool</code> and
+ * returned as soon as EOF is reached or the stream is closed.
+ * Corrupt or truncated data is reported on the supplied diagnostics object
+ * and the stream then behaves as if EOF was reached.
+ * The wrapped stream is never closed by this stream.
+ *
+ * @author nicl
+ */
+public class InflatingInputStream extends FilterInputStream {
+
+    /** Gzip content-encoding. */
+    public static final int CE_GZIP = 1;
+
+    /** Deflate content-encoding. */
+    public static final int CE_DEFLATE = 2;
+
+    /** Input buffer size. */
+    public static final int DEFAULT_INPUT_BUFFER_SIZE = 8192;
+
+    /** Entity name used when reporting diagnoses. */
+    public static final String ENTITY = "Content-Encoding";
+
+    /** Gzip FLG.FHCRC bit. */
+    protected static final int FLG_FHCRC = 2;
+
+    /** Gzip FLG.FEXTRA bit. */
+    protected static final int FLG_FEXTRA = 4;
+
+    /** Gzip FLG.FNAME bit. */
+    protected static final int FLG_FNAME = 8;
+
+    /** Gzip FLG.FCOMMENT bit. */
+    protected static final int FLG_FCOMMENT = 16;
+
+    /** Zlib FLG.FDICT bit. */
+    protected static final int FLG_FDICT = 32;
+
+    /** State, expecting the first member header. */
+    protected static final int S_START = 0;
+
+    /** State, expecting an optional next gzip member header. */
+    protected static final int S_NEXT = 1;
+
+    /** State, inflating data. */
+    protected static final int S_DATA = 2;
+
+    /** State, EOF or error. */
+    protected static final int S_EOF = 3;
+
+    /** Content-encoding, gzip or deflate. */
+    protected int contentEncoding;
+
+    /** Diagnostics used to report decoding errors. */
+    protected Diagnostics diagnostics;
+
+    /** Pooled inflater, null when returned to the pool. */
+    protected Inflater inf;
+
+    /** CRC32 of the current gzip member. */
+    protected CRC32 crc = new CRC32();
+
+    /** Is the current deflate stream zlib wrapped. */
+    protected boolean bZlib;
+
+    /** Input buffer. */
+    protected byte[] buf;
+
+    /** Input buffer position. */
+    protected int bufPos;
+
+    /** Input buffer limit. */
+    protected int bufLimit;
+
+    /** Current state. */
+    protected int state = S_START;
+
+    /** Number of decoded bytes returned. */
+    protected long decoded;
+
+    /**
+     * Construct a decompressing stream.
+     * @param in compressed input stream
+     * @param contentEncoding <code>CE_GZIP</code> or <code>CE_DEFLATE</code>
+     * @param diagnostics diagnostics used to report decoding errors
+     */
+    public InflatingInputStream(InputStream in, int contentEncoding, Diagnostics diagnostics) {
+        super(in);
+        if (in == null) {
+            throw new IllegalArgumentException("'in' is null!");
+        }
+        if (contentEncoding != CE_GZIP && contentEncoding != CE_DEFLATE) {
+            throw new IllegalArgumentException("Invalid 'contentEncoding' argument: " + contentEncoding);
+        }
+        if (diagnostics == null) {
+            throw new IllegalArgumentException("'diagnostics' is null!");
+        }
+        this.contentEncoding = contentEncoding;
+        this.diagnostics = diagnostics;
+        this.buf = new byte[DEFAULT_INPUT_BUFFER_SIZE];
+    }
+
+    /**
+     * Get the number of decoded bytes returned so far.
+     * @return number of decoded bytes returned so far
+     */
+    public long getDecoded() {
+        return decoded;
+    }
+
+    /**
+     * Make sure the input buffer contains at least one byte.
+     * @return false on EOF
+     * @throws IOException if an I/O error occurs while reading
+     */
+    protected boolean fill() throws IOException {
+        if (bufPos < bufLimit) {
+            return true;
+        }
+        bufPos = 0;
+        bufLimit = 0;
+        int n;
+        while ((n = in.read(buf, 0, buf.length)) == 0) {
+        }
+        if (n == -1) {
+            return false;
+        }
+        bufLimit = n;
+        return true;
+    }
+
+    /**
+     * Read a single byte through the input buffer.
+     * @return byte value or -1 on EOF
+     * @throws IOException if an I/O error occurs while reading
+     */
+    protected int readByte() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return buf[bufPos++] & 255;
+    }
+
+    /**
+     * Read a little endian value through the input buffer.
+     * @param len number of bytes
+     * @return value or -1 on EOF
+     * @throws IOException if an I/O error occurs while reading
+     */
+    protected long readLE(int len) throws IOException {
+        long value = 0;
+        int c;
+        for (int i=0; i<len; ++i) {
+            c = readByte();
+            if (c == -1) {
+                return -1;
+            }
+            value |= ((long)c) << (i << 3);
+        }
+        return value;
+    }
+
+    /**
+     * Skip a zero terminated string through the input buffer.
+     * @return false on EOF
+     * @throws IOException if an I/O error occurs while reading
+     */
+    protected boolean skipZeroTerminated() throws IOException {
+        int c;
+        while ((c = readByte()) > 0) {
+        }
+        return c == 0;
+    }
+
+    /**
+     * Report an error and enter the EOF state.
+     * @param information information describing the error
+     */
+    protected void error(String information) {
+        diagnostics.addError(DiagnosisType.INVALID_DATA, ENTITY, information);
+        eof();
+    }
+
+    /**
+     * Enter the EOF state and return the inflater to the pool.
+     */
+    protected void eof() {
+        state = S_EOF;
+        if (inf != null) {
+            InflaterPool.checkin(inf);
+            inf = null;
+        }
+    }
+
+    /**
+     * Read a gzip member header or a zlib header and prepare for inflating.
+     * @return true if compressed data follows
+     * @throws IOException if an I/O error occurs while reading
+     */
+    protected boolean readHeader() throws IOException {
+        boolean bFirst = (state == S_START);
+        if (!fill()) {
+            // No more data, or an empty entity.
+            eof();
+            return false;
+        }
+        if (inf == null) {
+            inf = InflaterPool.checkout();
+        } else {
+            inf.reset();
+        }
+        if (contentEncoding == CE_GZIP) {
+            int id1 = readByte();
+            int id2 = readByte();
+            if (id1 != 0x1f || id2 != 0x8b) {
+                if (bFirst) {
+                    error("Invalid gzip magic");
+                } else {
+                    diagnostics.addWarning(DiagnosisType.UNDESIRED_DATA,
+                            ENTITY, "Trailing data after gzip data");
+                    eof();
+                }
+                return false;
+            }
+            int cm = readByte();
+            int flg = readByte();
+            if (cm == -1 || flg == -1) {
+                error("Truncated gzip header");
+                return false;
+            }
+            if (cm != 8) {
+                error("Unsupported gzip compression method");
+                return false;
+            }
+            // MTIME, XFL, OS.
+            if (readLE(4) == -1 || readLE(2) == -1) {
+                error("Truncated gzip header");
+                return false;
+            }
+            if ((flg & FLG_FEXTRA) != 0) {
+                long xlen = readLE(2);
+                while (xlen > 0 && readByte() != -1) {
+                    --xlen;
+                }
+                if (xlen != 0) {
+                    error("Truncated gzip header");
+                    return false;
+                }
+            }
+            if (((flg & FLG_FNAME) != 0 && !skipZeroTerminated())
+                    || ((flg & FLG_FCOMMENT) != 0 && !skipZeroTerminated())
+                    || ((flg & FLG_FHCRC) != 0 && readLE(2) == -1)) {
+                error("Truncated gzip header");
+                return false;
+            }
+            crc.reset();
+        } else {
+            // Use the zlib wrapper if the first two bytes form a valid zlib header.
+            int cmf = readByte();
+            boolean bRefill = (bufPos == bufLimit);
+            int flg = fill() ? buf[bufPos] & 255 : -1;
+            bZlib = flg != -1 && (cmf & 0x0f) == 8 && (cmf >> 4) <= 7
+                    && ((cmf << 8) | flg) % 31 == 0;
+            if (bZlib) {
+                ++bufPos;
+                if ((flg & FLG_FDICT) != 0) {
+                    error("Unsupported zlib preset dictionary");
+                    return false;
+                }
+            } else if (!bRefill) {
+                // Raw deflate, give the byte back.
+                --bufPos;
+            } else {
+                // Raw deflate, the byte is no longer in the buffer.
+                inf.setInput(new byte[] {(byte)cmf});
+            }
+        }
+        state = S_DATA;
+        return true;
+    }
+
+    /**
+     * Read and check a gzip member trailer or skip a zlib trailer.
+     * @return true if another gzip member may follow
+     * @throws IOException if an I/O error occurs while reading
+     */
+    protected boolean readTrailer() throws IOException {
+        bufPos = bufLimit - inf.getRemaining();
+        if (contentEncoding == CE_GZIP) {
+            long crc32 = readLE(4);
+            long isize = readLE(4);
+            if (crc32 == -1 || isize == -1) {
+                error("Truncated gzip trailer");
+                return false;
+            }
+            if (crc32 != crc.getValue()) {
+                diagnostics.addError(DiagnosisType.INVALID_EXPECTED,
+                        "gzip CRC32", Long.toHexString(crc32), Long.toHexString(crc.getValue()));
+            }
+            if (isize != (inf.getBytesWritten() & 0xffffffffL)) {
+                diagnostics.addError(DiagnosisType.INVALID_EXPECTED,
+                        "gzip ISIZE", Long.toString(isize), Long.toString(inf.getBytesWritten() & 0xffffffffL));
+            }
+            state = S_NEXT;
+            return true;
+        } else {
+            if (bZlib && readLE(4) == -1) {
+                error("Truncated zlib trailer");
+            } else {
+                eof();
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n;
+        while ((n = read(b, 0, 1)) == 0) {
+        }
+        return (n == -1) ? -1 : (b[0] & 255);
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int n;
+        while (true) {
+            switch (state) {
+            case S_START:
+            case S_NEXT:
+                if (!readHeader()) {
+                    return -1;
+                }
+                break;
+            case S_DATA:
+                try {
+                    n = inf.inflate(b, off, len);
+                } catch (DataFormatException e) {
+                    error("Corrupt compressed data: " + e.getMessage());
+                    return -1;
+                }
+                if (n > 0) {
+                    if (contentEncoding == CE_GZIP) {
+                        crc.update(b, off, n);
+                    }
+                    decoded += n;
+                    return n;
+                }
+                if (inf.finished()) {
+                    readTrailer();
+                } else if (inf.needsDictionary()) {
+                    error("Unsupported zlib preset dictionary");
+                    return -1;
+                } else if (inf.needsInput()) {
+                    if (!fill()) {
+                        error("Truncated compressed data");
+                        return -1;
+                    }
+                    inf.setInput(buf, bufPos, bufLimit - bufPos);
+                    bufPos = bufLimit;
+                }
+                break;
+            default:
+                return -1;
+            }
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        byte[] skipBuf = new byte[(int)Math.min(n, 8192)];
+        long skipped = 0;
+        int read;
+        while (skipped < n && (read = read(skipBuf, 0, (int)Math.min(n - skipped, skipBuf.length))) != -1) {
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (state == S_EOF) ? 0 : 1;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Closing returns the inflater to the pool but does not close the
+     * wrapped stream.
+     * @throws IOException never
+     */
+    @Override
+    public void close() throws IOException {
+        eof();
+    }
+
+}
@@ -109,16 +109,16 @@ public class NewlineParser {
         }
         if (diagnostics != null) {
             if (bMissingLf) {
-                diagnostics.addWarning(new Diagnosis(DiagnosisType.ERROR_EXPECTED,
-                        "Missing LF", "Sequence of LFs"));
+                diagnostics.addWarning(DiagnosisType.ERROR_EXPECTED,
+                        "Missing LF", "Sequence of LFs");
             }
             if (bMisplacedCr) {
-                diagnostics.addWarning(new Diagnosis(DiagnosisType.ERROR_EXPECTED,
-                        "Misplaced CR", "Sequence of LFs"));
+                diagnostics.addWarning(DiagnosisType.ERROR_EXPECTED,
+                        "Misplaced CR", "Sequence of LFs");
             }
             if (bMisplacedLf) {
-                diagnostics.addWarning(new Diagnosis(DiagnosisType.ERROR_EXPECTED,
-                        "Misplaced LF", "Sequence of LFs"));
+                diagnostics.addWarning(DiagnosisType.ERROR_EXPECTED,
+                        "Misplaced LF", "Sequence of LFs");
             }
         }
         return newlines;
@@ -187,20 +187,20 @@ public class NewlineParser {
         }
         if (diagnostics != null) {
             if (bMissingCr) {
-                diagnostics.addWarning(new Diagnosis(DiagnosisType.ERROR_EXPECTED,
-                        "Missing CR", "Sequence of CRLFs"));
+                diagnostics.addWarning(DiagnosisType.ERROR_EXPECTED,
+                        "Missing CR", "Sequence of CRLFs");
             }
             if (bMissingLf) {
-                diagnostics.addWarning(new Diagnosis(DiagnosisType.ERROR_EXPECTED,
-                        "Missing LF", "Sequence of CRLFs"));
+                diagnostics.addWarning(DiagnosisType.ERROR_EXPECTED,
+                        "Missing LF", "Sequence of CRLFs");
             }
             if (bMisplacedCr) {
-                diagnostics.addWarning(new Diagnosis(DiagnosisType.ERROR_EXPECTED,
-                        "Misplaced CR", "Sequence of CRLFs"));
+                diagnostics.addWarning(DiagnosisType.ERROR_EXPECTED,
+                        "Misplaced CR", "Sequence of CRLFs");
             }
             if (bMisplacedLf) {
-                diagnostics.addWarning(new Diagnosis(DiagnosisType.ERROR_EXPECTED,
-                        "Misplaced LF", "Sequence of CRLFs"));
+                diagnostics.addWarning(DiagnosisType.ERROR_EXPECTED,
+                        "Misplaced LF", "Sequence of CRLFs");
             }
         }
         return newlines;
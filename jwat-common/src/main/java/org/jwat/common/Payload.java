@@ -59,6 +59,15 @@ public class Payload implements Closeable {
     /** Boolean indicating no such algorithm exception under initialization. */
     protected boolean bNoSuchAlgorithmException;
 
+    /** Fingerprint object, if a fingerprint was requested. */
+    protected Fingerprint fingerprint;
+
+    /** Fingerprint bytes. */
+    protected byte[] fingerprintBytes;
+
+    /** Automatic fingerprinting of payload input stream. */
+    protected FingerprintInputStream in_fingerprint;
+
     /** Payload content. */
     protected BufferedInputStream in_buffered;
 
@@ -74,6 +83,9 @@ public class Payload implements Closeable {
     /** Handler called when this payloads stream has been fully consumed. */
     protected PayloadOnClosedHandler onClosedHandler;
 
+    /** Handler called the first time this payloads data is requested. */
+    protected PayloadOnAccessHandler onAccessHandler;
+
     /**
      * Non public constructor.
      */
@@ -91,6 +103,22 @@ public class Payload implements Closeable {
      */
     public static Payload processPayload(InputStream in, long length,
             int pushback_size, String digestAlgorithm) throws IOException {
+        return processPayload(in, length, pushback_size, digestAlgorithm, 0);
+    }
+
+    /**
+     * Creates new <code>ArcPayload</code> instance, optionally computing a
+     * non-cryptographic fingerprint in the same pass as the digest.
+     * @param in the input stream to parse.
+     * @param length payload length.
+     * @param pushback_size   pushback size
+     * @param digestAlgorithm digest algorithm to use on payload or null
+     * @param fingerprintBits fingerprint size, 64 or 128, or 0 for none
+     * @return the payload
+     * @throws IOException if an I/O error occurs while initializing
+     */
+    public static Payload processPayload(InputStream in, long length,
+            int pushback_size, String digestAlgorithm, int fingerprintBits) throws IOException {
         if (in == null) {
             throw new IllegalArgumentException(
                     "The inputstream 'in' is null");
@@ -104,6 +132,9 @@ public class Payload implements Closeable {
                     "The 'pushback_size' is less than or equal to zero: " +
                             pushback_size);
         }
+        if (fingerprintBits != 0) {
+            Fingerprint.checkBits(fingerprintBits);
+        }
         Payload pl = new Payload();
         pl.length = length;
         pl.pushback_size = pushback_size;
@@ -118,12 +149,20 @@ public class Payload implements Closeable {
                 pl.bNoSuchAlgorithmException = true;
             }
         }
+        InputStream in_payload = pl.in_fl;
         if (pl.md != null) {
-            pl.in_digest = new DigestInputStreamNoSkip(pl.in_fl, pl.md);
-            pl.in_buffered = new BufferedInputStream(pl.in_digest, BUFFER_SIZE);
-        } else {
-            pl.in_buffered = new BufferedInputStream(pl.in_fl, BUFFER_SIZE);
+            pl.in_digest = new DigestInputStreamNoSkip(in_payload, pl.md);
+            in_payload = pl.in_digest;
+        }
+        /*
+         * Block Fingerprint.
+         */
+        if (fingerprintBits != 0) {
+            pl.fingerprint = new Fingerprint(fingerprintBits);
+            pl.in_fingerprint = new FingerprintInputStream(in_payload, pl.fingerprint);
+            in_payload = pl.in_fingerprint;
         }
+        pl.in_buffered = new BufferedInputStream(in_payload, BUFFER_SIZE);
         /*
          * Ensure close() is not called on the payload stream!
          */
@@ -144,6 +183,28 @@ public class Payload implements Closeable {
         this.onClosedHandler = onClosedHandler;
     }
 
+    /**
+     * Set optional handler to be called the first time the payload data or
+     * the header wrapped payload is requested. The handler is not called if
+     * the payload is closed without being accessed.
+     * This method should not be called by the payload consumer.
+     * @param onAccessHandler on access handler implementation
+     */
+    public void setOnAccessHandler(PayloadOnAccessHandler onAccessHandler) {
+        this.onAccessHandler = onAccessHandler;
+    }
+
+    /**
+     * Call and remove the on access handler, if one is still pending.
+     */
+    protected void accessed() {
+        if (onAccessHandler != null) {
+            PayloadOnAccessHandler handler = onAccessHandler;
+            onAccessHandler = null;
+            handler.payloadAccessed(this);
+        }
+    }
+
     /**
      * Returns the calculated digest.
      * @return the calculated digest
@@ -155,6 +216,18 @@ public class Payload implements Closeable {
         return digest;
     }
 
+    /**
+     * Returns the calculated fingerprint. The fingerprint is only complete
+     * once the payload has been closed.
+     * @return the calculated fingerprint or null, if none was requested
+     */
+    public byte[] getFingerprint() {
+        if (fingerprintBytes == null && fingerprint != null) {
+            fingerprintBytes = fingerprint.getBytes();
+        }
+        return fingerprintBytes;
+    }
+
     /**
      * Get payload total length.
      * @return payload total length
@@ -195,6 +268,7 @@ public class Payload implements Closeable {
      * @return <code>PayloadHeaderWrapper</code> object or null
      */
     public PayloadWithHeaderAbstract getPayloadHeaderWrapped() {
+        accessed();
         return payloadHeaderWrapped;
     }
 
@@ -204,6 +278,7 @@ public class Payload implements Closeable {
      * @return <code>InputStream</code> to read payload data (in)directly.
      */
     public InputStream getInputStreamComplete() {
+        accessed();
         if (payloadHeaderWrapped != null) {
             return payloadHeaderWrapped.getInputStreamComplete();
         } else {
@@ -219,6 +294,7 @@ public class Payload implements Closeable {
      * @return <code>InputStream</code> to read payload data.
      */
     public ByteCountingPushBackInputStream getInputStream() {
+        accessed();
         if (payloadHeaderWrapped != null) {
             return payloadHeaderWrapped.getPayloadInputStream();
         } else {
@@ -232,6 +308,7 @@ public class Payload implements Closeable {
      * @throws IOException if an I/O error occurs calling available method on stream
      */
     public long getRemaining() throws IOException {
+        accessed();
         if (payloadHeaderWrapped != null) {
             return payloadHeaderWrapped.getPayloadInputStream().available();
         } else {
@@ -253,10 +330,18 @@ public class Payload implements Closeable {
      */
     public void close() throws IOException {
         if (!bClosed) {
+            // Nothing has been requested, so there is no reason to process
+            // the payload data now.
+            onAccessHandler = null;
             if (payloadHeaderWrapped != null) {
                 payloadHeaderWrapped.close();
             }
-            if (md != null) {
+            if (in_fingerprint != null) {
+                // The fingerprint stream reads when skipping and wraps the
+                // digest stream, if present, so both are completed.
+                while (in_fingerprint.skip(length) > 0) {
+                }
+            } else if (md != null) {
                 // Skip remaining unread bytes to ensure payload is completely
                 // digested. Skipping because the DigestInputStreamNoSkip
                 // has been altered to read when skipping.
@@ -0,0 +1,38 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+/**
+ * Callback handler used by the payload implementation to notify the initiating
+ * caller the first time the payload data is requested. This allows work which
+ * depends on the payload data, like parsing a wrapped header, to be postponed
+ * until it is actually needed.
+ *
+ * @author nicl
+ */
+public interface PayloadOnAccessHandler {
+
+    /**
+     * Method called once, before any payload data is returned to the caller.
+     * The handler is removed before this method is called, so the
+     * implementation is free to access the payload streams.
+     * @param payload payload object being accessed
+     */
+    void payloadAccessed(Payload payload);
+
+}
@@ -53,6 +53,9 @@ public abstract class PayloadWithHeaderAbstract implements Closeable {
 
     protected String digestAlgorithm;
 
+    /** Fingerprint size, 64 or 128, or 0 for none. */
+    protected int fingerprintBits;
+
     /** Could the header be validated. */
     protected boolean bIsValid;
 
@@ -75,6 +78,15 @@ public abstract class PayloadWithHeaderAbstract implements Closeable {
     /** Boolean indicating no such algorithm exception under initialization. */
     protected boolean bNoSuchAlgorithmException;
 
+    /** Fingerprint object, if a fingerprint was requested. */
+    protected Fingerprint fingerprint;
+
+    /** Fingerprint bytes. */
+    protected byte[] fingerprintBytes;
+
+    /** Automatic fingerprinting of payload input stream. */
+    protected FingerprintInputStream in_fingerprint;
+
     /** Payload stream returned to user. */
     protected InputStream in_payload;
 
@@ -111,6 +123,14 @@ public abstract class PayloadWithHeaderAbstract implements Closeable {
             } else {
                 in_payload = in_pb;
             }
+            /*
+             * Payload Fingerprint.
+             */
+            if (fingerprintBits != 0) {
+                fingerprint = new Fingerprint(fingerprintBits);
+                in_fingerprint = new FingerprintInputStream(in_payload, fingerprint);
+                in_payload = in_fingerprint;
+            }
             /*
              * Ensure close() is not called on the payload stream!
              */
@@ -187,6 +207,18 @@ public abstract class PayloadWithHeaderAbstract implements Closeable {
         return digest;
     }
 
+    /**
+     * Returns the fingerprint of the payload stream. The fingerprint is only
+     * complete once the payload has been closed.
+     * @return fingerprint of the payload stream or null, if none was requested
+     */
+    public byte[] getFingerprint() {
+        if (fingerprintBytes == null && fingerprint != null) {
+            fingerprintBytes = fingerprint.getBytes();
+        }
+        return fingerprintBytes;
+    }
+
     /**
      * Get HTTP payload length.
      * @return HTTP payload length
@@ -272,7 +304,12 @@ public abstract class PayloadWithHeaderAbstract implements Closeable {
      */
     public void close() throws IOException {
         if (!bClosed) {
-            if (md != null) {
+            if (in_fingerprint != null) {
+                // The fingerprint stream reads when skipping and wraps the
+                // digest stream, if present, so both are completed.
+                while (in_fingerprint.skip(totalLength) > 0) {
+                }
+            } else if (md != null) {
                 // Skip remaining unread bytes to ensure payload is completely
                 // digested. Skipping because the DigestInputStreamNoSkip
                 // has been altered to read when skipping.
@@ -0,0 +1,226 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+/**
+ * Mergeable sketch estimating quantiles of non-negative values, such as
+ * record sizes, with a bounded relative error.
+ * Values are counted in logarithmically sized buckets, bucket i covering
+ * the values in (gamma^(i-1), gamma^i] where gamma = (1+a)/(1-a) for a
+ * relative accuracy a. Any quantile is estimated to within a relative
+ * error of a, using about 2200 buckets at most for the default accuracy of
+ * 1% and the full range of long values.
+ * Unlike most quantile sketches the buckets are independent of the order
+ * the values are added in, so merging sketches is exact.
+ * Instances are not thread-safe, use one sketch per thread and merge.
+ *
+ * @author nicl
+ */
+public class QuantileSketch {
+
+    /** Default relative accuracy. */
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    /** Relative accuracy of the quantile estimates. */
+    public final double relativeAccuracy;
+
+    /** Bucket growth factor. */
+    protected final double gamma;
+
+    /** Natural logarithm of the bucket growth factor. */
+    protected final double logGamma;
+
+    /** Counts per bucket, grown as needed. */
+    protected long[] counts = new long[64];
+
+    /** Number of zero values. */
+    protected long zeroCount;
+
+    /** Number of values added. */
+    protected long count;
+
+    /** Sum of the values added. */
+    protected long sum;
+
+    /** Smallest value added. */
+    protected long min = Long.MAX_VALUE;
+
+    /** Largest value added. */
+    protected long max = Long.MIN_VALUE;
+
+    /**
+     * Construct a sketch with the default relative accuracy.
+     */
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * Construct a sketch with the given relative accuracy.
+     * @param relativeAccuracy relative accuracy, between 0 and 1 exclusive
+     */
+    public QuantileSketch(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0.0 && relativeAccuracy < 1.0)) {
+            throw new IllegalArgumentException("'relativeAccuracy' must be between 0 and 1!");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1.0 + relativeAccuracy) / (1.0 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    /**
+     * Returns the bucket index of a positive value.
+     * @param value positive value
+     * @return bucket index
+     */
+    protected int getIndex(long value) {
+        return (int)Math.ceil(Math.log(value) / logGamma);
+    }
+
+    /**
+     * Make sure the bucket array can hold the given index.
+     * @param index bucket index
+     */
+    protected void ensureCapacity(int index) {
+        if (index >= counts.length) {
+            int len = counts.length;
+            while (index >= len) {
+                len <<= 1;
+            }
+            long[] tmp = new long[len];
+            System.arraycopy(counts, 0, tmp, 0, counts.length);
+            counts = tmp;
+        }
+    }
+
+    /**
+     * Add a value to the sketch.
+     * @param value non-negative value
+     */
+    public void add(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("'value' is negative!");
+        }
+        if (value == 0) {
+            ++zeroCount;
+        } else {
+            int index = getIndex(value);
+            ensureCapacity(index);
+            ++counts[index];
+        }
+        ++count;
+        sum += value;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Merge another sketch into this sketch.
+     * @param other sketch with the same relative accuracy
+     */
+    public void merge(QuantileSketch other) {
+        if (other == null) {
+            throw new IllegalArgumentException("'other' is null!");
+        }
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Relative accuracy mismatch: " + other.relativeAccuracy + " != " + relativeAccuracy);
+        }
+        if (other.count == 0) {
+            return;
+        }
+        ensureCapacity(other.counts.length - 1);
+        for (int i=0; i<other.counts.length; ++i) {
+            counts[i] += other.counts[i];
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        if (other.min < min) {
+            min = other.min;
+        }
+        if (other.max > max) {
+            max = other.max;
+        }
+    }
+
+    /**
+     * Returns the estimated value at the given quantile.
+     * @param quantile quantile between 0 and 1, e.g. 0.5 for the median
+     * @return estimated value or -1, if the sketch is empty
+     */
+    public long getQuantile(double quantile) {
+        if (!(quantile >= 0.0 && quantile <= 1.0)) {
+            throw new IllegalArgumentException("'quantile' must be between 0 and 1!");
+        }
+        if (count == 0) {
+            return -1;
+        }
+        long rank = (long)(quantile * (count - 1));
+        long seen = zeroCount;
+        if (rank < seen) {
+            return 0;
+        }
+        long value = max;
+        for (int i=0; i<counts.length; ++i) {
+            seen += counts[i];
+            if (rank < seen) {
+                // Midpoint, in relative terms, of the bucket.
+                value = Math.round(2.0 * Math.pow(gamma, i) / (gamma + 1.0));
+                break;
+            }
+        }
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Returns the number of values added.
+     * @return number of values added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the sum of the values added.
+     * @return sum of the values added
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns the smallest value added.
+     * @return smallest value added or -1, if the sketch is empty
+     */
+    public long getMin() {
+        return (count > 0) ? min : -1;
+    }
+
+    /**
+     * Returns the largest value added.
+     * @return largest value added or -1, if the sketch is empty
+     */
+    public long getMax() {
+        return (count > 0) ? max : -1;
+    }
+
+}
@@ -0,0 +1,493 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.net.URISyntaxException;
+import java.util.Arrays;
+
+/**
+ * Creates the SURT form (Sort-friendly URI Reordering Transform) of URIs,
+ * e.g. <code>http://www.example.org/a?b=1&amp;a=2</code> becomes
+ * <code>org,example)/a?a=2&amp;b=1</code>.
+ * The transformation works directly on the components of an already parsed
+ * <code>Uri</code>. The result is lowercased, the http(s) scheme, user info,
+ * default ports, fragments and a <code>www</code> host label are removed,
+ * the host labels are reversed and the query parameters are sorted.
+ * Percent-encoding is normalized using the character categories of the
+ * <code>UriProfile</code> the URI was parsed with. Escaped unreserved
+ * characters are decoded and characters not allowed in a component are
+ * escaped.
+ *
+ * The result is built in a reusable character buffer, so instances are
+ * cheap to use repeatedly but are not thread-safe.
+ *
+ * @author nicl
+ */
+public class SurtCanonicalizer {
+
+    /** Lowercase integer to hex char conversion table. */
+    protected static final char[] hexTabLower = "0123456789abcdef".toCharArray();
+
+    /** Profile used to parse URI strings. */
+    public UriProfile uriProfile = UriProfile.RFC3986_ABS_16BIT_LAX;
+
+    /** Remove a leading <code>www</code> or <code>wwwN</code> host label. */
+    public boolean bStripWww = true;
+
+    /** Sort the query parameters. */
+    public boolean bSortQuery = true;
+
+    /** Buffer used to build the result. */
+    protected char[] buf = new char[256];
+
+    /** Number of characters used in the buffer. */
+    protected int len;
+
+    /** Scratch buffer used when reordering host labels and query parameters. */
+    protected char[] scratch = new char[256];
+
+    /** Start and end indexes of the query parameters in the scratch buffer. */
+    protected int[] params = new int[32];
+
+    /**
+     * Returns the SURT form of a URI string. Whitespace and control
+     * characters are escaped if the string can not be parsed as is.
+     * Strings which can not be parsed at all are only lowercased.
+     * @param url URI string to transform
+     * @return SURT form of the URI
+     */
+    public String surt(String url) {
+        if (url == null) {
+            throw new IllegalArgumentException("'url' is null!");
+        }
+        url = url.trim();
+        Uri uri;
+        try {
+            uri = new Uri(url, uriProfile);
+        } catch (URISyntaxException e) {
+            try {
+                uri = new Uri(escapeControl(url), uriProfile);
+            } catch (URISyntaxException e2) {
+                len = 0;
+                appendLower(url, 0, url.length());
+                return new String(buf, 0, len);
+            }
+        }
+        return surt(uri);
+    }
+
+    /**
+     * Returns the SURT form of a parsed URI. URIs without an authority,
+     * e.g. <code>dns:</code> URIs, are returned as
+     * <code>scheme:path?query</code>.
+     * @param uri parsed URI to transform
+     * @return SURT form of the URI
+     */
+    public String surt(Uri uri) {
+        if (uri == null) {
+            throw new IllegalArgumentException("'uri' is null!");
+        }
+        UriProfile profile = uri.uriProfile;
+        String scheme = uri.scheme;
+        len = 0;
+        int defaultPort = -1;
+        if (scheme != null) {
+            appendLower(scheme, 0, scheme.length());
+            if (len == 4 && regionEquals("http")) {
+                defaultPort = 80;
+            } else if (len == 5 && regionEquals("https")) {
+                defaultPort = 443;
+            }
+        }
+        if (uri.authorityRaw != null) {
+            if (defaultPort != -1) {
+                len = 0;
+            } else if (scheme != null) {
+                append("://(");
+            }
+            appendHost(profile, uri.hostRaw);
+            if (uri.port != -1 && uri.port != defaultPort) {
+                append(':');
+                append(Integer.toString(uri.port));
+            }
+            append(')');
+            if (uri.pathRaw.length() == 0) {
+                append('/');
+            }
+        } else if (scheme != null) {
+            append(':');
+        }
+        appendNormalized(profile, UriProfile.B_PATH, uri.pathRaw, 0, uri.pathRaw.length());
+        if (uri.queryRaw != null) {
+            appendQuery(profile, uri.queryRaw);
+        }
+        return new String(buf, 0, len);
+    }
+
+    /**
+     * Append the host with its labels in reverse order. IP addresses are
+     * not reversed.
+     * @param profile profile the URI was parsed with
+     * @param hostRaw raw host component
+     */
+    protected void appendHost(UriProfile profile, String hostRaw) {
+        int start = len;
+        if (hostRaw.startsWith("[")) {
+            appendLower(hostRaw, 0, hostRaw.length());
+            return;
+        }
+        appendNormalized(profile, UriProfile.B_REGNAME, hostRaw, 0, hostRaw.length());
+        while (len > start && buf[len - 1] == '.') {
+            --len;
+        }
+        int hostLen = len - start;
+        if (hostLen == 0) {
+            return;
+        }
+        boolean bIp = true;
+        int labels = 1;
+        char c;
+        for (int i=start; i<len; ++i) {
+            c = buf[i];
+            if (c == '.') {
+                ++labels;
+            } else if (c < '0' || c > '9') {
+                bIp = false;
+            }
+        }
+        if (bIp) {
+            return;
+        }
+        ensureScratch(hostLen);
+        System.arraycopy(buf, start, scratch, 0, hostLen);
+        int first = 0;
+        if (bStripWww && labels > 2 && hostLen > 3 && scratch[0] == 'w' && scratch[1] == 'w' && scratch[2] == 'w') {
+            int idx = 3;
+            while (scratch[idx] >= '0' && scratch[idx] <= '9') {
+                ++idx;
+            }
+            if (scratch[idx] == '.') {
+                first = idx + 1;
+            }
+        }
+        len = start;
+        int end = hostLen;
+        int idx = hostLen;
+        while (idx > first) {
+            --idx;
+            if (scratch[idx] == '.') {
+                append(scratch, idx + 1, end);
+                append(',');
+                end = idx;
+            }
+        }
+        append(scratch, first, end);
+    }
+
+    /**
+     * Append the query with normalized and, optionally, sorted parameters.
+     * Empty parameters are removed.
+     * @param profile profile the URI was parsed with
+     * @param queryRaw raw query component
+     */
+    protected void appendQuery(UriProfile profile, String queryRaw) {
+        int start = len;
+        int count = 0;
+        int pos = 0;
+        int limit = queryRaw.length();
+        int idx;
+        while (pos <= limit) {
+            idx = queryRaw.indexOf('&', pos);
+            if (idx == -1) {
+                idx = limit;
+            }
+            if (idx > pos) {
+                if (count * 2 == params.length) {
+                    params = Arrays.copyOf(params, params.length * 2);
+                }
+                params[count * 2] = len - start;
+                appendNormalized(profile, UriProfile.B_QUERY, queryRaw, pos, idx);
+                params[count * 2 + 1] = len - start;
+                ++count;
+            }
+            pos = idx + 1;
+        }
+        int queryLen = len - start;
+        len = start;
+        if (count == 0) {
+            return;
+        }
+        ensureScratch(queryLen);
+        System.arraycopy(buf, start, scratch, 0, queryLen);
+        if (bSortQuery) {
+            sortParams(count);
+        }
+        append('?');
+        for (int i=0; i<count; ++i) {
+            if (i > 0) {
+                append('&');
+            }
+            append(scratch, params[i * 2], params[i * 2 + 1]);
+        }
+    }
+
+    /**
+     * Sort the query parameter ranges in the scratch buffer. Short queries
+     * are sorted in place, longer ones via strings.
+     * @param count number of query parameters
+     */
+    protected void sortParams(int count) {
+        if (count <= 16) {
+            int s;
+            int e;
+            int j;
+            for (int i=1; i<count; ++i) {
+                s = params[i * 2];
+                e = params[i * 2 + 1];
+                j = i - 1;
+                while (j >= 0 && compare(params[j * 2], params[j * 2 + 1], s, e) > 0) {
+                    params[(j + 1) * 2] = params[j * 2];
+                    params[(j + 1) * 2 + 1] = params[j * 2 + 1];
+                    --j;
+                }
+                params[(j + 1) * 2] = s;
+                params[(j + 1) * 2 + 1] = e;
+            }
+        } else {
+            String[] strs = new String[count];
+            for (int i=0; i<count; ++i) {
+                strs[i] = new String(scratch, params[i * 2], params[i * 2 + 1] - params[i * 2]);
+            }
+            Arrays.sort(strs);
+            int pos = 0;
+            for (int i=0; i<count; ++i) {
+                strs[i].getChars(0, strs[i].length(), scratch, pos);
+                params[i * 2] = pos;
+                pos += strs[i].length();
+                params[i * 2 + 1] = pos;
+            }
+        }
+    }
+
+    /**
+     * Compare two ranges of the scratch buffer lexicographically.
+     * @param s1 start of first range
+     * @param e1 end of first range
+     * @param s2 start of second range
+     * @param e2 end of second range
+     * @return negative, zero or positive like <code>String.compareTo</code>
+     */
+    protected int compare(int s1, int e1, int s2, int e2) {
+        int diff;
+        while (s1 < e1 && s2 < e2) {
+            diff = scratch[s1++] - scratch[s2++];
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return (e1 - s1) - (e2 - s2);
+    }
+
+    /**
+     * Append a lowercased URI component with normalized percent-encoding.
+     * Escaped unreserved characters are decoded, other escapes are kept
+     * and characters not allowed in the component are escaped.
+     * @param profile profile the URI was parsed with
+     * @param bw_and character categories allowed in the component
+     * @param str raw component
+     * @param pos start index in the component
+     * @param limit end index in the component
+     */
+    protected void appendNormalized(UriProfile profile, int bw_and, String str, int pos, int limit) {
+        ensureCapacity(len + (limit - pos) * 6);
+        int[] charTypeMap = profile.charTypeMap;
+        char c;
+        int decoded;
+        int digits;
+        int idx;
+        int tmp;
+        while (pos < limit) {
+            c = str.charAt(pos++);
+            if (c == '%') {
+                idx = pos;
+                digits = 2;
+                if (idx < limit && (str.charAt(idx) == 'u' || str.charAt(idx) == 'U')
+                        && profile.bAllow16bitPercentEncoding) {
+                    ++idx;
+                    digits = 4;
+                }
+                decoded = 0;
+                while (digits > 0 && idx < limit) {
+                    c = str.charAt(idx);
+                    tmp = (c < 256) ? UriProfile.asciiHexTab[c] : -1;
+                    if (tmp == -1) {
+                        break;
+                    }
+                    decoded = (decoded << 4) | tmp;
+                    ++idx;
+                    --digits;
+                }
+                if (digits > 0) {
+                    // Invalid percent-encoding, escape the '%'.
+                    appendEscaped('%');
+                } else if (decoded < 256 && (charTypeMap[decoded] & UriProfile.B_UNRESERVED) != 0) {
+                    buf[len++] = toLower((char)decoded);
+                    pos = idx;
+                } else {
+                    buf[len++] = '%';
+                    while (pos < idx) {
+                        buf[len++] = toLower(str.charAt(pos++));
+                    }
+                }
+            } else if (c < 256 && (charTypeMap[c] & bw_and) == 0) {
+                appendEscaped(c);
+            } else {
+                buf[len++] = toLower(c);
+            }
+        }
+    }
+
+    /**
+     * Append a lowercase percent-encoded character.
+     * @param c character to escape
+     */
+    protected void appendEscaped(char c) {
+        buf[len++] = '%';
+        if (c > 255) {
+            buf[len++] = 'u';
+            buf[len++] = hexTabLower[(c >> 12) & 15];
+            buf[len++] = hexTabLower[(c >> 8) & 15];
+        }
+        buf[len++] = hexTabLower[(c >> 4) & 15];
+        buf[len++] = hexTabLower[c & 15];
+    }
+
+    /**
+     * Escape whitespace and control characters which prevent a string from
+     * being parsed as an URI.
+     * @param str URI string
+     * @return URI string with whitespace and control characters escaped
+     */
+    protected String escapeControl(String str) {
+        len = 0;
+        ensureCapacity(str.length() * 3);
+        char c;
+        for (int i=0; i<str.length(); ++i) {
+            c = str.charAt(i);
+            if (c <= ' ' || c == 127) {
+                appendEscaped(c);
+            } else {
+                buf[len++] = c;
+            }
+        }
+        return new String(buf, 0, len);
+    }
+
+    /**
+     * Lowercase a single character.
+     * @param c character
+     * @return lowercased character
+     */
+    protected static char toLower(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return (char)(c + ('a' - 'A'));
+        } else if (c < 128) {
+            return c;
+        }
+        return Character.toLowerCase(c);
+    }
+
+    /**
+     * Check whether the buffer content equals a string.
+     * @param str string to compare with
+     * @return boolean indicating whether the buffer content equals the string
+     */
+    protected boolean regionEquals(String str) {
+        for (int i=0; i<len; ++i) {
+            if (buf[i] != str.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Append a lowercased part of a string.
+     * @param str string
+     * @param pos start index
+     * @param limit end index
+     */
+    protected void appendLower(String str, int pos, int limit) {
+        ensureCapacity(len + limit - pos);
+        while (pos < limit) {
+            buf[len++] = toLower(str.charAt(pos++));
+        }
+    }
+
+    /**
+     * Append a string.
+     * @param str string
+     */
+    protected void append(String str) {
+        ensureCapacity(len + str.length());
+        str.getChars(0, str.length(), buf, len);
+        len += str.length();
+    }
+
+    /**
+     * Append a character.
+     * @param c character
+     */
+    protected void append(char c) {
+        ensureCapacity(len + 1);
+        buf[len++] = c;
+    }
+
+    /**
+     * Append a range of a character array.
+     * @param chars character array
+     * @param pos start index
+     * @param limit end index
+     */
+    protected void append(char[] chars, int pos, int limit) {
+        ensureCapacity(len + limit - pos);
+        System.arraycopy(chars, pos, buf, len, limit - pos);
+        len += limit - pos;
+    }
+
+    /**
+     * Make sure the buffer can hold the requested number of characters.
+     * @param capacity required capacity
+     */
+    protected void ensureCapacity(int capacity) {
+        if (capacity > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(capacity, buf.length * 2));
+        }
+    }
+
+    /**
+     * Make sure the scratch buffer can hold the requested number of characters.
+     * @param capacity required capacity
+     */
+    protected void ensureScratch(int capacity) {
+        if (capacity > scratch.length) {
+            scratch = new char[Math.max(capacity, scratch.length * 2)];
+        }
+    }
+
+}
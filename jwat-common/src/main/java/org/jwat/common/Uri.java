@@ -339,6 +339,14 @@ public class Uri implements Comparable<Uri> {
         return bOpaque;
     }
 
+    /**
+     * Returns the profile this URI was parsed with.
+     * @return the profile this URI was parsed with
+     */
+    public UriProfile getUriProfile() {
+        return uriProfile;
+    }
+
     /**
      * Returns the scheme component of this URI.
      * The scheme component of a URI, if defined, only contains characters in
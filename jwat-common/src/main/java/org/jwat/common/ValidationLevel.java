@@ -0,0 +1,36 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+/**
+ * Class defining how much validation information is collected while reading.
+ *
+ * @author nicl
+ */
+public enum ValidationLevel {
+
+    /** No validation information is collected, everything is reported as compliant. */
+    NONE,
+
+    /** Only the number of errors and warnings is collected, no diagnosis objects are kept. */
+    COUNT_ONLY,
+
+    /** All errors and warnings are collected as diagnosis objects. */
+    FULL
+
+}
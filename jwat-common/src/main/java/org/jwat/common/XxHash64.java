@@ -0,0 +1,243 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.util.zip.Checksum;
+
+/**
+ * Streaming implementation of the 64-bit xxHash (XXH64) algorithm.
+ * xxHash is a fast non-cryptographic hash, well suited for fingerprinting
+ * payloads where a collision only leads to a more expensive check.
+ * The input is consumed in 32 byte stripes by four independent lanes, any
+ * partial stripe is buffered until more input arrives or the value is
+ * requested.
+ *
+ * @author nicl
+ */
+public class XxHash64 implements Checksum {
+
+    /* xxHash64 prime constants. */
+    protected static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    protected static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    protected static final long PRIME64_3 = 0x165667B19E3779F9L;
+    protected static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    protected static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+    /** Seed used to initialize the lanes. */
+    protected final long seed;
+
+    /** Lane accumulators. */
+    protected long v1, v2, v3, v4;
+
+    /** Partial stripe not yet consumed by the lanes. */
+    protected final byte[] buffer = new byte[32];
+
+    /** Number of bytes in the partial stripe buffer. */
+    protected int bufferLen;
+
+    /** Total number of bytes hashed. */
+    protected long totalLen;
+
+    /**
+     * Construct an xxHash64 instance with a seed of 0.
+     */
+    public XxHash64() {
+        this(0L);
+    }
+
+    /**
+     * Construct an xxHash64 instance with the given seed.
+     * @param seed hash seed
+     */
+    public XxHash64(long seed) {
+        this.seed = seed;
+        reset();
+    }
+
+    /**
+     * Compute the xxHash64 value of a byte array in one go.
+     * @param b byte array
+     * @param off offset of the first byte
+     * @param len number of bytes to hash
+     * @param seed hash seed
+     * @return xxHash64 value
+     */
+    public static long hash(byte[] b, int off, int len, long seed) {
+        XxHash64 xxh = new XxHash64(seed);
+        xxh.update(b, off, len);
+        return xxh.getValue();
+    }
+
+    @Override
+    public void reset() {
+        v1 = seed + PRIME64_1 + PRIME64_2;
+        v2 = seed + PRIME64_2;
+        v3 = seed;
+        v4 = seed - PRIME64_1;
+        bufferLen = 0;
+        totalLen = 0;
+    }
+
+    @Override
+    public void update(int b) {
+        buffer[bufferLen++] = (byte)b;
+        ++totalLen;
+        if (bufferLen == 32) {
+            processStripe(buffer, 0);
+            bufferLen = 0;
+        }
+    }
+
+    /**
+     * Updates the hash with the given array of bytes.
+     * @param b byte array
+     */
+    public void update(byte[] b) {
+        update(b, 0, b.length);
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        totalLen += len;
+        if (bufferLen > 0) {
+            int fill = Math.min(32 - bufferLen, len);
+            System.arraycopy(b, off, buffer, bufferLen, fill);
+            bufferLen += fill;
+            off += fill;
+            len -= fill;
+            if (bufferLen < 32) {
+                return;
+            }
+            processStripe(buffer, 0);
+            bufferLen = 0;
+        }
+        while (len >= 32) {
+            processStripe(b, off);
+            off += 32;
+            len -= 32;
+        }
+        if (len > 0) {
+            System.arraycopy(b, off, buffer, 0, len);
+            bufferLen = len;
+        }
+    }
+
+    /**
+     * Feed one 32 byte stripe to the four lanes.
+     * @param b byte array
+     * @param off offset of the stripe
+     */
+    protected void processStripe(byte[] b, int off) {
+        v1 = round(v1, getLong(b, off));
+        v2 = round(v2, getLong(b, off + 8));
+        v3 = round(v3, getLong(b, off + 16));
+        v4 = round(v4, getLong(b, off + 24));
+    }
+
+    @Override
+    public long getValue() {
+        long h;
+        if (totalLen >= 32) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+                    + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = seed + PRIME64_5;
+        }
+        h += totalLen;
+        int idx = 0;
+        while (idx + 8 <= bufferLen) {
+            h ^= round(0, getLong(buffer, idx));
+            h = Long.rotateLeft(h, 27) * PRIME64_1 + PRIME64_4;
+            idx += 8;
+        }
+        if (idx + 4 <= bufferLen) {
+            h ^= (getInt(buffer, idx) & 0xffffffffL) * PRIME64_1;
+            h = Long.rotateLeft(h, 23) * PRIME64_2 + PRIME64_3;
+            idx += 4;
+        }
+        while (idx < bufferLen) {
+            h ^= (buffer[idx] & 255) * PRIME64_5;
+            h = Long.rotateLeft(h, 11) * PRIME64_1;
+            ++idx;
+        }
+        h ^= h >>> 33;
+        h *= PRIME64_2;
+        h ^= h >>> 29;
+        h *= PRIME64_3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    /**
+     * Mix one 8 byte input value into a lane accumulator.
+     * @param acc lane accumulator
+     * @param input input value
+     * @return new accumulator value
+     */
+    protected static long round(long acc, long input) {
+        acc += input * PRIME64_2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME64_1;
+    }
+
+    /**
+     * Merge a lane accumulator into the final hash.
+     * @param acc hash value
+     * @param val lane accumulator
+     * @return new hash value
+     */
+    protected static long mergeRound(long acc, long val) {
+        acc ^= round(0, val);
+        return acc * PRIME64_1 + PRIME64_4;
+    }
+
+    /**
+     * Read a little endian long from a byte array.
+     * @param b byte array
+     * @param off offset of the first byte
+     * @return little endian long value
+     */
+    protected static long getLong(byte[] b, int off) {
+        return (b[off] & 255L)
+                | (b[off + 1] & 255L) << 8
+                | (b[off + 2] & 255L) << 16
+                | (b[off + 3] & 255L) << 24
+                | (b[off + 4] & 255L) << 32
+                | (b[off + 5] & 255L) << 40
+                | (b[off + 6] & 255L) << 48
+                | (b[off + 7] & 255L) << 56;
+    }
+
+    /**
+     * Read a little endian int from a byte array.
+     * @param b byte array
+     * @param off offset of the first byte
+     * @return little endian int value
+     */
+    protected static int getInt(byte[] b, int off) {
+        return (b[off] & 255)
+                | (b[off + 1] & 255) << 8
+                | (b[off + 2] & 255) << 16
+                | (b[off + 3] & 255) << 24;
+    }
+
+}
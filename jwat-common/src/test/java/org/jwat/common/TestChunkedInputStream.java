@@ -0,0 +1,155 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestChunkedInputStream {
+
+    public static byte[] chunk(byte[] data, int chunkSize, String lastChunk) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int idx = 0;
+        int len;
+        try {
+            while (idx < data.length) {
+                len = Math.min(chunkSize, data.length - idx);
+                out.write((Integer.toHexString(len) + "\r\n").getBytes("ISO-8859-1"));
+                out.write(data, idx, len);
+                out.write("\r\n".getBytes("ISO-8859-1"));
+                idx += len;
+            }
+            out.write(lastChunk.getBytes("ISO-8859-1"));
+        } catch (IOException e) {
+            Assert.fail("Unexpected exception!");
+        }
+        return out.toByteArray();
+    }
+
+    public static byte[] readAll(InputStream in, int bufSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] tmpBuf = new byte[bufSize];
+        int read;
+        while ((read = in.read(tmpBuf)) != -1) {
+            out.write(tmpBuf, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void test_chunkedinputstream() throws IOException {
+        Random random = new Random(42);
+        Diagnostics diagnostics;
+        ChunkedInputStream in;
+        byte[] data;
+        byte[] chunked;
+
+        int[] sizes = {1, 7, 1000, 100000};
+        int[] chunkSizes = {1, 3, 512, 65536};
+        for (int i=0; i<sizes.length; ++i) {
+            data = new byte[sizes[i]];
+            random.nextBytes(data);
+            for (int j=0; j<chunkSizes.length; ++j) {
+                chunked = chunk(data, chunkSizes[j], "0\r\n\r\n");
+                diagnostics = new Diagnostics();
+                in = new ChunkedInputStream(new ByteArrayInputStream(chunked), diagnostics);
+                Assert.assertArrayEquals(data, readAll(in, 17));
+                Assert.assertEquals(-1, in.read());
+                Assert.assertEquals(data.length, in.getDecoded());
+                Assert.assertFalse(diagnostics.hasErrors());
+                Assert.assertFalse(diagnostics.hasWarnings());
+                in.close();
+            }
+        }
+
+        // Chunk extensions, upper case hex, trailers and bare LF.
+        chunked = "A;name=value\r\n0123456789\r\n5 \n abcd\n0\r\nTrailer: x\r\n\r\nNot read".getBytes("ISO-8859-1");
+        diagnostics = new Diagnostics();
+        ByteArrayInputStream src = new ByteArrayInputStream(chunked);
+        in = new ChunkedInputStream(src, diagnostics);
+        Assert.assertEquals("0123456789 abcd", new String(readAll(in, 4), "ISO-8859-1"));
+        Assert.assertFalse(diagnostics.hasErrors());
+        Assert.assertEquals("Not read".length(), src.available());
+
+        // Skip.
+        data = new byte[1000];
+        random.nextBytes(data);
+        diagnostics = new Diagnostics();
+        in = new ChunkedInputStream(new ByteArrayInputStream(chunk(data, 100, "0\r\n\r\n")), diagnostics);
+        Assert.assertEquals(0, in.skip(0));
+        Assert.assertEquals(250, in.skip(250));
+        Assert.assertEquals(data[250] & 255, in.read());
+        Assert.assertEquals(749, in.skip(10000));
+        Assert.assertEquals(-1, in.read());
+        Assert.assertFalse(diagnostics.hasErrors());
+
+        // Empty entity.
+        diagnostics = new Diagnostics();
+        in = new ChunkedInputStream(new ByteArrayInputStream(new byte[0]), diagnostics);
+        Assert.assertEquals(-1, in.read());
+        Assert.assertFalse(diagnostics.hasErrors());
+
+        // Missing trailer CRLF is tolerated.
+        diagnostics = new Diagnostics();
+        in = new ChunkedInputStream(new ByteArrayInputStream("3\r\nabc\r\n0\r\n".getBytes("ISO-8859-1")), diagnostics);
+        Assert.assertEquals("abc", new String(readAll(in, 16), "ISO-8859-1"));
+        Assert.assertFalse(diagnostics.hasErrors());
+
+        /*
+         * Errors.
+         */
+        Object[][] cases = {
+                {"3\r\nab", "ab", DiagnosisType.INVALID_DATA},
+                {"3\r\nabcX\r\n0\r\n\r\n", "abc", DiagnosisType.ERROR_EXPECTED},
+                {"zz\r\nabc\r\n", "", DiagnosisType.INVALID_EXPECTED},
+                {"3x\r\nabc\r\n", "", DiagnosisType.INVALID_EXPECTED},
+                {"1234567890abcdef\r\nabc\r\n", "", DiagnosisType.INVALID_EXPECTED},
+                {"3\r\nabc\r\n", "abc", DiagnosisType.INVALID_DATA},
+                {"3\r\nabc\r\n0\r\nTrailer", "abc", DiagnosisType.INVALID_DATA}
+        };
+        for (int i=0; i<cases.length; ++i) {
+            diagnostics = new Diagnostics();
+            in = new ChunkedInputStream(new ByteArrayInputStream(((String)cases[i][0]).getBytes("ISO-8859-1")), diagnostics);
+            Assert.assertEquals(cases[i][1], new String(readAll(in, 16), "ISO-8859-1"));
+            Assert.assertEquals(-1, in.read());
+            Assert.assertEquals(1, diagnostics.getErrors().size());
+            Assert.assertEquals(cases[i][2], diagnostics.getErrors().get(0).type);
+        }
+
+        try {
+            new ChunkedInputStream(null, new Diagnostics());
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new ChunkedInputStream(new ByteArrayInputStream(new byte[0]), null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestDiagnostics {
+
+    @Test
+    public void test_diagnostics_validationlevel() {
+        Diagnostics full = new Diagnostics();
+        Assert.assertEquals(ValidationLevel.FULL, full.getValidationLevel());
+        Assert.assertFalse(full.hasErrors());
+        Assert.assertFalse(full.hasWarnings());
+        full.addError(DiagnosisType.ERROR, "entity", "error");
+        full.addError(new Diagnosis(DiagnosisType.INVALID, "entity"));
+        full.addWarning(DiagnosisType.UNKNOWN, "entity", "warning");
+        Assert.assertTrue(full.hasErrors());
+        Assert.assertTrue(full.hasWarnings());
+        Assert.assertEquals(2, full.getErrors().size());
+        Assert.assertEquals(1, full.getWarnings().size());
+        Assert.assertEquals(2, full.getErrorCount());
+        Assert.assertEquals(1, full.getWarningCount());
+
+        Diagnostics countOnly = new Diagnostics();
+        countOnly.setValidationLevel(ValidationLevel.COUNT_ONLY);
+        Assert.assertEquals(ValidationLevel.COUNT_ONLY, countOnly.getValidationLevel());
+        countOnly.addError(DiagnosisType.ERROR, "entity", "error");
+        countOnly.addWarning(new Diagnosis(DiagnosisType.UNKNOWN, "entity", "warning"));
+        countOnly.countErrors(2);
+        countOnly.countWarnings(1);
+        Assert.assertTrue(countOnly.hasErrors());
+        Assert.assertTrue(countOnly.hasWarnings());
+        Assert.assertEquals(0, countOnly.getErrors().size());
+        Assert.assertEquals(0, countOnly.getWarnings().size());
+        Assert.assertEquals(3, countOnly.getErrorCount());
+        Assert.assertEquals(2, countOnly.getWarningCount());
+        // Collected diagnoses are counted.
+        countOnly.addAll(full);
+        Assert.assertEquals(0, countOnly.getErrors().size());
+        Assert.assertEquals(5, countOnly.getErrorCount());
+        Assert.assertEquals(3, countOnly.getWarningCount());
+        // Counted errors and warnings are carried over.
+        full.addAll(countOnly);
+        Assert.assertEquals(2, full.getErrors().size());
+        Assert.assertEquals(1, full.getWarnings().size());
+        Assert.assertEquals(7, full.getErrorCount());
+        Assert.assertEquals(4, full.getWarningCount());
+
+        Diagnostics none = new Diagnostics();
+        none.setValidationLevel(ValidationLevel.NONE);
+        none.addError(DiagnosisType.ERROR, "entity", "error");
+        none.addWarning(new Diagnosis(DiagnosisType.UNKNOWN, "entity", "warning"));
+        none.countErrors(1);
+        none.countWarnings(1);
+        none.addAll(full);
+        Assert.assertFalse(none.hasErrors());
+        Assert.assertFalse(none.hasWarnings());
+        Assert.assertEquals(0, none.getErrorCount());
+        Assert.assertEquals(0, none.getWarningCount());
+
+        countOnly.reset();
+        Assert.assertFalse(countOnly.hasErrors());
+        Assert.assertFalse(countOnly.hasWarnings());
+        Assert.assertEquals(0, countOnly.getErrorCount());
+        Assert.assertEquals(0, countOnly.getWarningCount());
+
+        try {
+            none.setValidationLevel(null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
@@ -0,0 +1,257 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestFileChannelInputStream {
+
+    public static byte[] readAll(FileChannelInputStream in, int chunk) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] tmpArr = new byte[chunk];
+        int read;
+        while ((read = in.read(tmpArr)) != -1) {
+            out.write(tmpArr, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    public static File createFile(byte[] srcArr) throws IOException {
+        File file = File.createTempFile("jwat-", ".dat");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(srcArr);
+        out.close();
+        return file;
+    }
+
+    @Test
+    public void test_filechannelinputstream() throws IOException {
+        Random random = new Random(42);
+        byte[] srcArr = new byte[100000];
+        random.nextBytes(srcArr);
+        File file = createFile(srcArr);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            int[] chunks = new int[] {1, 16, 1000, 8192, 50000};
+            for (int i=0; i<chunks.length; ++i) {
+                FileChannelInputStream in = new FileChannelInputStream(channel, 1234);
+                Assert.assertEquals(srcArr.length - 1234, in.available());
+                Assert.assertArrayEquals(Arrays.copyOfRange(srcArr, 1234, srcArr.length), readAll(in, chunks[i]));
+                Assert.assertEquals(srcArr.length, in.getPosition());
+                Assert.assertEquals(0, in.available());
+                Assert.assertEquals(-1, in.read());
+            }
+            // The channel position is never used.
+            Assert.assertEquals(0, channel.position());
+
+            FileChannelInputStream in = new FileChannelInputStream(16);
+            in.setChannel(channel, 10);
+            Assert.assertEquals(srcArr[10] & 255, in.read());
+            Assert.assertTrue(in.markSupported());
+            in.mark(0);
+            Assert.assertEquals(100, in.skip(100));
+            Assert.assertEquals(111, in.getPosition());
+            Assert.assertEquals(srcArr[111] & 255, in.read());
+            in.reset();
+            Assert.assertEquals(11, in.getPosition());
+            Assert.assertEquals(srcArr[11] & 255, in.read());
+            in.seek(99990);
+            Assert.assertEquals(10, in.skip(100));
+            Assert.assertEquals(-1, in.read());
+            in.seek(5);
+            Assert.assertTrue(in.startsWith(Arrays.copyOfRange(srcArr, 5, 9)));
+            Assert.assertFalse(in.startsWith(new byte[] {(byte)(srcArr[5] + 1)}));
+            Assert.assertEquals(5, in.getPosition());
+            in.seek(srcArr.length - 1);
+            Assert.assertFalse(in.startsWith(new byte[2]));
+            in.close();
+            in.setChannel(channel, 0);
+            Assert.assertEquals(srcArr[0] & 255, in.read());
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Test
+    public void test_filechannelinputstream_skip_seek() throws IOException {
+        Random random = new Random(44);
+        byte[] srcArr = new byte[100000];
+        random.nextBytes(srcArr);
+        File file = createFile(srcArr);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            // Skip past the buffer, then seek back into the old buffer range.
+            FileChannelInputStream in = new FileChannelInputStream(channel, 0);
+            Assert.assertEquals(srcArr[0] & 255, in.read());
+            Assert.assertEquals(20000, in.skip(20000));
+            Assert.assertEquals(20001, in.getPosition());
+            in.seek(15000);
+            Assert.assertEquals(15000, in.getPosition());
+            Assert.assertEquals(srcArr[15000] & 255, in.read());
+            in.seek(5);
+            Assert.assertEquals(srcArr[5] & 255, in.read());
+            // Large reads bypass the buffer, then seek back.
+            in.setChannel(channel, 0);
+            Assert.assertEquals(srcArr[0] & 255, in.read());
+            Assert.assertEquals(FileChannelInputStream.DEFAULT_BUFFER_SIZE - 1, in.skip(FileChannelInputStream.DEFAULT_BUFFER_SIZE - 1));
+            byte[] tmpArr = new byte[20000];
+            Assert.assertEquals(tmpArr.length, in.read(tmpArr));
+            Assert.assertArrayEquals(Arrays.copyOfRange(srcArr, 8192, 28192), tmpArr);
+            Assert.assertEquals(28192, in.getPosition());
+            in.seek(15000);
+            Assert.assertEquals(srcArr[15000] & 255, in.read());
+            in.seek(100);
+            Assert.assertEquals(srcArr[100] & 255, in.read());
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Test
+    public void test_filechannelinputstream_shared_data() throws IOException {
+        Random random = new Random(43);
+        byte[] srcArr = new byte[10000];
+        random.nextBytes(srcArr);
+        File file = createFile(srcArr);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            byte[] data = Arrays.copyOfRange(srcArr, 1000, 1100);
+            byte[] copy = data.clone();
+            FileChannelInputStream in = new FileChannelInputStream(64);
+            in.setChannel(channel, data, 50, data.length, 1100);
+            Assert.assertEquals(1050, in.getPosition());
+            Assert.assertTrue(in.startsWith(Arrays.copyOfRange(srcArr, 1050, 1060)));
+            Assert.assertArrayEquals(Arrays.copyOfRange(srcArr, 1050, srcArr.length), readAll(in, 7));
+            // Shared data must never be modified.
+            Assert.assertArrayEquals(copy, data);
+            // Prefix spanning the shared data and the channel.
+            in.setChannel(channel, data, 99, data.length, 1100);
+            Assert.assertTrue(in.startsWith(Arrays.copyOfRange(srcArr, 1099, 1110)));
+            Assert.assertEquals(1099, in.getPosition());
+            Assert.assertArrayEquals(copy, data);
+            try {
+                in.setChannel(channel, data, 0, data.length, 10);
+                Assert.fail("Exception expected!");
+            } catch (IllegalArgumentException e) {
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Test
+    public void test_filechannelinputstream_threads() throws Exception {
+        Random random = new Random(44);
+        final byte[] srcArr = new byte[1 << 20];
+        random.nextBytes(srcArr);
+        File file = createFile(srcArr);
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t=0; t<8; ++t) {
+            final int seed = t;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Random random = new Random(seed);
+                        FileChannelInputStream in = new FileChannelInputStream(4096);
+                        byte[] tmpArr = new byte[10000];
+                        for (int n=0; n<200; ++n) {
+                            int offset = random.nextInt(srcArr.length - tmpArr.length);
+                            in.setChannel(channel, offset);
+                            int pos = 0;
+                            int read;
+                            while (pos < tmpArr.length
+                                    && (read = in.read(tmpArr, pos, Math.min(tmpArr.length - pos, 1 + random.nextInt(5000)))) != -1) {
+                                pos += read;
+                            }
+                            Assert.assertArrayEquals(Arrays.copyOfRange(srcArr, offset, offset + tmpArr.length), tmpArr);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (int t=0; t<threads.size(); ++t) {
+            threads.get(t).join();
+        }
+        channel.close();
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    @Test
+    public void test_filechannelinputstream_invalid() throws IOException {
+        try {
+            new FileChannelInputStream(0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        FileChannelInputStream in = new FileChannelInputStream(16);
+        try {
+            in.setChannel(null, 0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            in.read();
+            Assert.fail("Exception expected!");
+        } catch (IOException e) {
+        }
+        try {
+            in.skip(1);
+            Assert.fail("Exception expected!");
+        } catch (IOException e) {
+        }
+        Assert.assertEquals(0, in.skip(0));
+        try {
+            in.reset();
+            Assert.fail("Exception expected!");
+        } catch (IOException e) {
+        }
+        try {
+            in.startsWith(new byte[17]);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        Assert.assertEquals(0, in.available());
+    }
+
+}
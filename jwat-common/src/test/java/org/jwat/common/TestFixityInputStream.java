@@ -0,0 +1,101 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestFixityInputStream {
+
+    @Test
+    public void test_fixityinputstream() throws IOException, NoSuchAlgorithmException {
+        byte[] srcArr = new byte[100000];
+        new Random(42).nextBytes(srcArr);
+        byte[] sha256 = MessageDigest.getInstance("SHA-256").digest(srcArr);
+        byte[] md5 = MessageDigest.getInstance("MD5").digest(srcArr);
+
+        FixityInputStream in = new FixityInputStream(new ByteArrayInputStream(srcArr), "SHA-256", "MD5");
+        Assert.assertFalse(in.markSupported());
+        Assert.assertArrayEquals(new String[] {"SHA-256", "MD5"}, in.getAlgorithms());
+        byte[] tmpBuf = new byte[1000];
+        // Mix single byte reads, array reads and skips.
+        Assert.assertEquals(srcArr[0] & 255, in.read());
+        Assert.assertEquals(1000, in.read(tmpBuf));
+        Assert.assertEquals(500, in.read(tmpBuf, 0, 500));
+        Assert.assertEquals(20000, in.skip(20000));
+        Assert.assertEquals(21501, in.getConsumed());
+        Assert.assertEquals(srcArr.length - 21501, in.drain());
+        Assert.assertEquals(0, in.drain());
+        Assert.assertEquals(-1, in.read());
+        Assert.assertEquals(0, in.skip(10));
+        Assert.assertEquals(srcArr.length, in.getConsumed());
+
+        Assert.assertArrayEquals(sha256, in.getDigest("sha-256"));
+        Assert.assertArrayEquals(md5, in.getDigest("MD5"));
+        Assert.assertNull(in.getDigest("SHA-1"));
+        Map<String, byte[]> digests = in.getDigests();
+        Assert.assertEquals(2, digests.size());
+        Assert.assertArrayEquals(sha256, digests.get("SHA-256"));
+        Assert.assertArrayEquals(md5, digests.get("MD5"));
+        in.close();
+
+        // Reading after the digests have been computed.
+        in = new FixityInputStream(new ByteArrayInputStream(srcArr), "MD5");
+        Assert.assertEquals(1000, in.read(tmpBuf));
+        Assert.assertNotNull(in.getDigest("MD5"));
+        try {
+            in.read(tmpBuf);
+            Assert.fail("Exception expected!");
+        } catch (IllegalStateException e) {
+        }
+        in.close();
+
+        // Empty stream.
+        in = new FixityInputStream(new ByteArrayInputStream(new byte[0]), "MD5");
+        Assert.assertEquals(0, in.drain());
+        Assert.assertArrayEquals(MessageDigest.getInstance("MD5").digest(), in.getDigest("MD5"));
+        in.close();
+
+        try {
+            new FixityInputStream(null, "MD5");
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new FixityInputStream(new ByteArrayInputStream(srcArr));
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new FixityInputStream(new ByteArrayInputStream(srcArr), "shaft1");
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestHttpHeader_Entity {
+
+    public static HttpHeader processResponse(String header, byte[] entity) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(header.getBytes("ISO-8859-1"));
+        out.write(entity);
+        byte[] bytes = out.toByteArray();
+        ByteCountingPushBackInputStream pbin = new ByteCountingPushBackInputStream(new ByteArrayInputStream(bytes), 8192);
+        HttpHeader httpHeader = HttpHeader.processPayload(HttpHeader.HT_RESPONSE, pbin, bytes.length, null);
+        Assert.assertTrue(httpHeader.isValid());
+        return httpHeader;
+    }
+
+    @Test
+    public void test_httpheader_entity() throws IOException {
+        Random random = new Random(42);
+        byte[] data = TestInflatingInputStream.testData(random, 50000);
+        HttpHeader httpHeader;
+
+        String statusLine = "HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\n";
+
+        // Plain.
+        httpHeader = processResponse(statusLine + "\r\n", data);
+        Assert.assertArrayEquals(data, TestChunkedInputStream.readAll(httpHeader.getEntityInputStream(), 1000));
+        Assert.assertSame(httpHeader.getEntityInputStream(), httpHeader.getEntityInputStream());
+        httpHeader.close();
+
+        // Chunked.
+        httpHeader = processResponse(statusLine + "Transfer-Encoding: chunked\r\n\r\n",
+                TestChunkedInputStream.chunk(data, 4096, "0\r\n\r\n"));
+        Assert.assertArrayEquals(data, TestChunkedInputStream.readAll(httpHeader.getEntityInputStream(), 1000));
+        Assert.assertFalse(httpHeader.diagnostics.hasErrors());
+        httpHeader.close();
+
+        // Gzip.
+        httpHeader = processResponse(statusLine + "Content-Encoding: gzip\r\n\r\n",
+                TestInflatingInputStream.gzip(data));
+        Assert.assertArrayEquals(data, TestChunkedInputStream.readAll(httpHeader.getEntityInputStream(), 1000));
+        httpHeader.close();
+
+        // Chunked and gzip, case insensitive.
+        httpHeader = processResponse(statusLine + "Content-Encoding: X-GZIP\r\nTransfer-Encoding: Chunked\r\n\r\n",
+                TestChunkedInputStream.chunk(TestInflatingInputStream.gzip(data), 1000, "0\r\n\r\n"));
+        Assert.assertArrayEquals(data, TestChunkedInputStream.readAll(httpHeader.getEntityInputStream(), 1000));
+        Assert.assertFalse(httpHeader.diagnostics.hasErrors());
+        Assert.assertFalse(httpHeader.diagnostics.hasWarnings());
+        httpHeader.close();
+        Assert.assertNull(httpHeader.entityDecoders);
+
+        // Multiple codings, applied in order.
+        httpHeader = processResponse(statusLine + "Content-Encoding: deflate, identity\r\nContent-Encoding: gzip\r\n\r\n",
+                TestInflatingInputStream.gzip(TestInflatingInputStream.deflate(data, false)));
+        Assert.assertArrayEquals(data, TestChunkedInputStream.readAll(httpHeader.getEntityInputStream(), 1000));
+        Assert.assertFalse(httpHeader.diagnostics.hasErrors());
+        httpHeader.close();
+
+        // Unsupported content-coding, only the transfer-coding is removed.
+        byte[] encoded = TestInflatingInputStream.gzip(data);
+        httpHeader = processResponse(statusLine + "Content-Encoding: br\r\nTransfer-Encoding: chunked\r\n\r\n",
+                TestChunkedInputStream.chunk(encoded, 1000, "0\r\n\r\n"));
+        Assert.assertArrayEquals(encoded, TestChunkedInputStream.readAll(httpHeader.getEntityInputStream(), 1000));
+        Assert.assertEquals(1, httpHeader.diagnostics.getWarnings().size());
+        Assert.assertEquals(DiagnosisType.UNKNOWN, httpHeader.diagnostics.getWarnings().get(0).type);
+        httpHeader.close();
+
+        // Decoding errors are reported as diagnoses.
+        httpHeader = processResponse(statusLine + "Content-Encoding: gzip\r\n\r\n", data);
+        Assert.assertEquals(0, TestChunkedInputStream.readAll(httpHeader.getEntityInputStream(), 1000).length);
+        Assert.assertEquals(1, httpHeader.diagnostics.getErrors().size());
+        httpHeader.close();
+
+        // Invalid header.
+        ByteCountingPushBackInputStream pbin = new ByteCountingPushBackInputStream(new ByteArrayInputStream(data), 8192);
+        httpHeader = HttpHeader.processPayload(HttpHeader.HT_RESPONSE, pbin, data.length, null);
+        Assert.assertFalse(httpHeader.isValid());
+        try {
+            httpHeader.getEntityInputStream();
+            Assert.fail("Exception expected!");
+        } catch (IllegalStateException e) {
+        }
+    }
+
+}
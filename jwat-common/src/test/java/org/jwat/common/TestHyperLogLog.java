@@ -0,0 +1,98 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestHyperLogLog {
+
+    @Test
+    public void test_hyperloglog() {
+        HyperLogLog hll = new HyperLogLog();
+        Assert.assertEquals(HyperLogLog.DEFAULT_PRECISION, hll.precision);
+        Assert.assertEquals(0, hll.cardinality());
+        hll.add("jwat.org");
+        hll.add("jwat.org");
+        Assert.assertEquals(1, hll.cardinality());
+
+        // Small cardinalities are counted almost exactly.
+        hll.reset();
+        for (int i=0; i<1000; ++i) {
+            hll.add("host" + i + ".dk");
+            hll.add("host" + i + ".dk");
+        }
+        Assert.assertEquals(1000, hll.cardinality(), 10);
+
+        int[] cardinalities = {10000, 100000, 1000000};
+        for (int c=0; c<cardinalities.length; ++c) {
+            hll = new HyperLogLog();
+            for (int i=0; i<cardinalities[c]; ++i) {
+                hll.add("host" + i + ".dk");
+            }
+            // Well within 5 standard errors of 0.8%.
+            Assert.assertEquals(cardinalities[c], hll.cardinality(), cardinalities[c] * 0.04);
+        }
+
+        // Merging gives the sketch of the union.
+        HyperLogLog hll1 = new HyperLogLog(12);
+        HyperLogLog hll2 = new HyperLogLog(12);
+        HyperLogLog hllAll = new HyperLogLog(12);
+        for (int i=0; i<50000; ++i) {
+            hll1.add("a" + i);
+            hllAll.add("a" + i);
+        }
+        for (int i=25000; i<75000; ++i) {
+            hll2.add("a" + i);
+            hllAll.add("a" + i);
+        }
+        hll1.merge(hll2);
+        Assert.assertEquals(hllAll.cardinality(), hll1.cardinality());
+        Assert.assertEquals(75000, hll1.cardinality(), 75000 * 0.08);
+
+        try {
+            hll1.merge(new HyperLogLog(13));
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            hll1.merge(null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            hll1.add(null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new HyperLogLog(HyperLogLog.MIN_PRECISION - 1);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new HyperLogLog(HyperLogLog.MAX_PRECISION + 1);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
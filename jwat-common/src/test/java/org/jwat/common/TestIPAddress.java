@@ -0,0 +1,75 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestIPAddress {
+
+    @Test
+    public void test_ipaddress() throws IOException {
+        IPAddress ip;
+        IPAddress ip2;
+        InetAddress ia;
+
+        ip = new IPAddress(0xc0a80102);
+        Assert.assertFalse(ip.bIPv6);
+        Assert.assertArrayEquals(new byte[] {(byte)192, (byte)168, 1, 2}, ip.getAddress());
+        Assert.assertEquals("192.168.1.2", ip.toString());
+        ia = ip.getInetAddress();
+        Assert.assertTrue(ia instanceof Inet4Address);
+        Assert.assertEquals(InetAddress.getByName("192.168.1.2"), ia);
+        // Cached.
+        Assert.assertTrue(ia == ip.getInetAddress());
+
+        ip2 = IPAddress.getIPAddress(new byte[] {(byte)192, (byte)168, 1, 2});
+        Assert.assertEquals(ip, ip2);
+        Assert.assertEquals(ip.hashCode(), ip2.hashCode());
+
+        ip = new IPAddress(0xdead000000000000L, 0x0000beefcafef800L);
+        Assert.assertTrue(ip.bIPv6);
+        Assert.assertEquals("dead:0:0:0:0:beef:cafe:f800", ip.toString());
+        ia = ip.getInetAddress();
+        Assert.assertTrue(ia instanceof Inet6Address);
+        Assert.assertEquals(ia.getHostAddress(), ip.toString());
+
+        ip2 = IPAddress.getIPAddress(ia);
+        Assert.assertEquals(ip, ip2);
+        Assert.assertTrue(ia == ip2.getInetAddress());
+        Assert.assertFalse(ip.equals(new IPAddress(0)));
+        Assert.assertFalse(ip.equals(null));
+
+        // IPv4-mapped IPv6 addresses are returned as Inet4Address objects.
+        ip = new IPAddress(0L, 0x0000ffff0a000001L);
+        Assert.assertTrue(ip.getInetAddress() instanceof Inet4Address);
+
+        Assert.assertNull(IPAddress.getIPAddress((byte[])null));
+        Assert.assertNull(IPAddress.getIPAddress((InetAddress)null));
+        Assert.assertNull(IPAddress.getIPAddress(new byte[5]));
+    }
+
+}
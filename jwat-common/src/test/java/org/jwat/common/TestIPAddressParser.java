@@ -77,4 +77,86 @@ public class TestIPAddressParser {
         Assert.assertNull(ia);
     }
 
+    @Test
+    public void test_ipaddressparser_parse() throws IOException {
+        String[] valid = {
+                "0.0.0.0",
+                "192.168.1.1",
+                "255.255.255.255",
+                "dead::beef:cafe:f800:0000",
+                "::",
+                "::1",
+                "1::",
+                "fe80::1:2",
+                "1:2:3:4:5:6:7:8",
+                "1:2:3:4:5:6::8",
+                "1::3:4:5:6:7:8",
+                "::ffff:192.168.1.2",
+                "::192.168.1.2",
+                "1:2:3:4:5:6:192.168.1.2",
+                "FFFF:ffff:FfFf:ffff:ffff:ffff:ffff:ffff"
+        };
+        String[] invalid = {
+                null,
+                "",
+                "fail",
+                "localhost",
+                "0.0.0",
+                "0.0.0.0.0",
+                "a.b.c.d",
+                "999.999.999.999",
+                "256.1.1.1",
+                "1.2.3.",
+                ".1.2.3",
+                "1..2.3",
+                "1234.1.1.1",
+                " 1.2.3.4",
+                "1.2.3.4 ",
+                ":",
+                ":::",
+                ":1:2:3:4:5:6:7",
+                "1:2:3:4:5:6:7:",
+                "1:2:3:4:5:6:7",
+                "1:2:3:4:5:6:7:8:9",
+                "1::2::3",
+                "1:2:3:4:5:6:7::8",
+                "12345::",
+                "g::",
+                "1:2:3:4:5:6:7:1.2.3.4",
+                "::1.2.3",
+                "::1.2.3.4:1",
+                "fe80::1%eth0",
+                "[::1]",
+                "\u0661.1.1.1"
+        };
+        IPAddress ip;
+        InetAddress ia;
+        for (int i=0; i<valid.length; ++i) {
+            ip = IPAddressParser.parse(valid[i]);
+            Assert.assertNotNull(valid[i], ip);
+            ia = InetAddress.getByName(valid[i]);
+            Assert.assertEquals(valid[i], ia, ip.getInetAddress());
+            Assert.assertEquals(valid[i], ia, IPAddressParser.getAddress(valid[i]));
+            Assert.assertArrayEquals(valid[i], ia.getAddress(), IPAddress.getIPAddress(ia).getAddress());
+        }
+        for (int i=0; i<invalid.length; ++i) {
+            Assert.assertNull(invalid[i], IPAddressParser.parse(invalid[i]));
+            Assert.assertNull(invalid[i], IPAddressParser.getAddress(invalid[i]));
+        }
+
+        ip = IPAddressParser.parse("192.168.1.2");
+        Assert.assertFalse(ip.bIPv6);
+        Assert.assertEquals(0xc0a80102, ip.ipv4);
+
+        ip = IPAddressParser.parse("1:2:3:4::8");
+        Assert.assertTrue(ip.bIPv6);
+        Assert.assertEquals(0x0001000200030004L, ip.ipv6High);
+        Assert.assertEquals(0x0000000000000008L, ip.ipv6Low);
+
+        ip = IPAddressParser.parse("::ffff:10.0.0.1");
+        Assert.assertTrue(ip.bIPv6);
+        Assert.assertEquals(0L, ip.ipv6High);
+        Assert.assertEquals(0x0000ffff0a000001L, ip.ipv6Low);
+    }
+
 }
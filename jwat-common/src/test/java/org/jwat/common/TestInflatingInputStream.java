@@ -0,0 +1,182 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestInflatingInputStream {
+
+    public static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzout = new GZIPOutputStream(out);
+        gzout.write(data);
+        gzout.close();
+        return out.toByteArray();
+    }
+
+    public static byte[] deflate(byte[] data, boolean nowrap) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DeflaterOutputStream defout = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap));
+        defout.write(data);
+        defout.close();
+        return out.toByteArray();
+    }
+
+    public static byte[] testData(Random random, int len) {
+        // Compressible but not trivial data.
+        byte[] data = new byte[len];
+        for (int i=0; i<len; ++i) {
+            data[i] = (byte)('a' + random.nextInt(8));
+        }
+        return data;
+    }
+
+    @Test
+    public void test_inflatinginputstream() throws IOException {
+        Random random = new Random(42);
+        Diagnostics diagnostics;
+        InflatingInputStream in;
+        byte[] data;
+        byte[] encoded;
+
+        int[] sizes = {0, 1, 1000, 200000};
+        for (int i=0; i<sizes.length; ++i) {
+            data = testData(random, sizes[i]);
+            // gzip
+            diagnostics = new Diagnostics();
+            in = new InflatingInputStream(new ByteArrayInputStream(gzip(data)), InflatingInputStream.CE_GZIP, diagnostics);
+            Assert.assertArrayEquals(data, TestChunkedInputStream.readAll(in, 1000));
+            Assert.assertEquals(data.length, in.getDecoded());
+            Assert.assertFalse(diagnostics.hasErrors());
+            Assert.assertFalse(diagnostics.hasWarnings());
+            Assert.assertNull(in.inf);
+            // zlib wrapped deflate
+            diagnostics = new Diagnostics();
+            in = new InflatingInputStream(new ByteArrayInputStream(deflate(data, false)), InflatingInputStream.CE_DEFLATE, diagnostics);
+            Assert.assertArrayEquals(data, TestChunkedInputStream.readAll(in, 1000));
+            Assert.assertFalse(diagnostics.hasErrors());
+            // raw deflate
+            diagnostics = new Diagnostics();
+            in = new InflatingInputStream(new ByteArrayInputStream(deflate(data, true)), InflatingInputStream.CE_DEFLATE, diagnostics);
+            Assert.assertArrayEquals(data, TestChunkedInputStream.readAll(in, 1000));
+            Assert.assertFalse(diagnostics.hasErrors());
+        }
+
+        // Concatenated gzip members.
+        byte[] data1 = testData(random, 5000);
+        byte[] data2 = testData(random, 7000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(gzip(data1));
+        out.write(gzip(data2));
+        diagnostics = new Diagnostics();
+        in = new InflatingInputStream(new ByteArrayInputStream(out.toByteArray()), InflatingInputStream.CE_GZIP, diagnostics);
+        out.reset();
+        out.write(data1);
+        out.write(data2);
+        Assert.assertArrayEquals(out.toByteArray(), TestChunkedInputStream.readAll(in, 333));
+        Assert.assertFalse(diagnostics.hasErrors());
+        Assert.assertFalse(diagnostics.hasWarnings());
+
+        // Empty entity.
+        diagnostics = new Diagnostics();
+        in = new InflatingInputStream(new ByteArrayInputStream(new byte[0]), InflatingInputStream.CE_GZIP, diagnostics);
+        Assert.assertEquals(-1, in.read());
+        Assert.assertFalse(diagnostics.hasErrors());
+
+        /*
+         * Errors.
+         */
+        data = testData(random, 10000);
+        encoded = gzip(data);
+
+        // Trailing garbage.
+        out.reset();
+        out.write(encoded);
+        out.write("garbage".getBytes());
+        diagnostics = new Diagnostics();
+        in = new InflatingInputStream(new ByteArrayInputStream(out.toByteArray()), InflatingInputStream.CE_GZIP, diagnostics);
+        Assert.assertArrayEquals(data, TestChunkedInputStream.readAll(in, 1000));
+        Assert.assertFalse(diagnostics.hasErrors());
+        Assert.assertEquals(1, diagnostics.getWarnings().size());
+
+        // Truncated data.
+        diagnostics = new Diagnostics();
+        in = new InflatingInputStream(new ByteArrayInputStream(Arrays.copyOf(encoded, encoded.length / 2)), InflatingInputStream.CE_GZIP, diagnostics);
+        TestChunkedInputStream.readAll(in, 1000);
+        Assert.assertEquals(-1, in.read());
+        Assert.assertEquals(1, diagnostics.getErrors().size());
+        Assert.assertNull(in.inf);
+
+        // Truncated trailer.
+        diagnostics = new Diagnostics();
+        in = new InflatingInputStream(new ByteArrayInputStream(Arrays.copyOf(encoded, encoded.length - 3)), InflatingInputStream.CE_GZIP, diagnostics);
+        Assert.assertArrayEquals(data, TestChunkedInputStream.readAll(in, 1000));
+        Assert.assertEquals(1, diagnostics.getErrors().size());
+
+        // Invalid CRC32.
+        byte[] corrupt = encoded.clone();
+        corrupt[corrupt.length - 8] ^= 1;
+        diagnostics = new Diagnostics();
+        in = new InflatingInputStream(new ByteArrayInputStream(corrupt), InflatingInputStream.CE_GZIP, diagnostics);
+        Assert.assertArrayEquals(data, TestChunkedInputStream.readAll(in, 1000));
+        Assert.assertEquals(1, diagnostics.getErrors().size());
+        Assert.assertEquals(DiagnosisType.INVALID_EXPECTED, diagnostics.getErrors().get(0).type);
+
+        // Invalid magic.
+        diagnostics = new Diagnostics();
+        in = new InflatingInputStream(new ByteArrayInputStream(data), InflatingInputStream.CE_GZIP, diagnostics);
+        Assert.assertEquals(-1, in.read());
+        Assert.assertEquals(1, diagnostics.getErrors().size());
+
+        // Corrupt deflate data.
+        diagnostics = new Diagnostics();
+        in = new InflatingInputStream(new ByteArrayInputStream(new byte[] {(byte)0xff, (byte)0xff, (byte)0xff, (byte)0xff}), InflatingInputStream.CE_DEFLATE, diagnostics);
+        Assert.assertEquals(-1, in.read());
+        Assert.assertEquals(1, diagnostics.getErrors().size());
+
+        // Close returns the inflater.
+        diagnostics = new Diagnostics();
+        in = new InflatingInputStream(new ByteArrayInputStream(encoded), InflatingInputStream.CE_GZIP, diagnostics);
+        Assert.assertTrue(in.read() != -1);
+        Assert.assertNotNull(in.inf);
+        in.close();
+        Assert.assertNull(in.inf);
+        Assert.assertEquals(-1, in.read());
+        Assert.assertFalse(diagnostics.hasErrors());
+
+        try {
+            new InflatingInputStream(new ByteArrayInputStream(encoded), 0, new Diagnostics());
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
@@ -33,10 +33,11 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
 import org.jwat.common.Payload;
+import org.jwat.common.PayloadOnAccessHandler;
 import org.jwat.common.PayloadOnClosedHandler;
 
 @RunWith(Parameterized.class)
-public class TestPayload implements PayloadOnClosedHandler {
+public class TestPayload implements PayloadOnClosedHandler, PayloadOnAccessHandler {
 
     private int min;
     private int max;
@@ -213,6 +214,62 @@ public class TestPayload implements PayloadOnClosedHandler {
         ++closed;
     }
 
+    public int accessed = 0;
+
+    @Override
+    public void payloadAccessed(Payload payload) {
+        ++accessed;
+        // Must not call the handler recursively.
+        Assert.assertNull(payload.onAccessHandler);
+        payload.getInputStream();
+    }
+
+    @Test
+    public void test_payload_on_access() throws IOException {
+        byte[] srcArr = new byte[ 64 ];
+        Payload payload;
+
+        accessed = 0;
+        payload = Payload.processPayload( new ByteArrayInputStream( srcArr ), srcArr.length, 16, digestAlgorithm );
+        payload.setOnAccessHandler( this );
+        Assert.assertEquals(this, payload.onAccessHandler);
+        Assert.assertEquals( srcArr.length, payload.getTotalLength() );
+        Assert.assertEquals( 0, accessed );
+        payload.getInputStream();
+        Assert.assertEquals( 1, accessed );
+        Assert.assertNull(payload.onAccessHandler);
+        payload.getInputStreamComplete();
+        payload.getPayloadHeaderWrapped();
+        payload.getRemaining();
+        Assert.assertEquals( 1, accessed );
+        payload.close();
+
+        Object[] accessors = {"getInputStreamComplete", "getPayloadHeaderWrapped", "getRemaining"};
+        for (int i=0; i<accessors.length; ++i) {
+            accessed = 0;
+            payload = Payload.processPayload( new ByteArrayInputStream( srcArr ), srcArr.length, 16, digestAlgorithm );
+            payload.setOnAccessHandler( this );
+            if (i == 0) {
+                payload.getInputStreamComplete();
+            } else if (i == 1) {
+                payload.getPayloadHeaderWrapped();
+            } else {
+                payload.getRemaining();
+            }
+            Assert.assertEquals( 1, accessed );
+            payload.close();
+        }
+
+        // Closing without access does not call the handler.
+        accessed = 0;
+        payload = Payload.processPayload( new ByteArrayInputStream( srcArr ), srcArr.length, 16, digestAlgorithm );
+        payload.setOnAccessHandler( this );
+        payload.close();
+        Assert.assertTrue(payload.isClosed());
+        Assert.assertNull(payload.onAccessHandler);
+        Assert.assertEquals( 0, accessed );
+    }
+
     @Test
     public void test_payload_close_skip() {
         SecureRandom random = new SecureRandom();
@@ -0,0 +1,108 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestQuantileSketch {
+
+    @Test
+    public void test_quantilesketch() {
+        QuantileSketch sketch = new QuantileSketch();
+        Assert.assertEquals(0, sketch.getCount());
+        Assert.assertEquals(-1, sketch.getQuantile(0.5));
+        Assert.assertEquals(-1, sketch.getMin());
+        Assert.assertEquals(-1, sketch.getMax());
+
+        sketch.add(0);
+        sketch.add(1);
+        sketch.add(Long.MAX_VALUE);
+        Assert.assertEquals(3, sketch.getCount());
+        Assert.assertEquals(0, sketch.getQuantile(0.0));
+        Assert.assertEquals(1, sketch.getQuantile(0.5));
+        Assert.assertEquals(Long.MAX_VALUE, sketch.getQuantile(1.0));
+
+        // Log-normal like record sizes.
+        Random random = new Random(42);
+        long[] values = new long[100000];
+        QuantileSketch sketch1 = new QuantileSketch();
+        QuantileSketch sketch2 = new QuantileSketch();
+        QuantileSketch sketchAll = new QuantileSketch();
+        long sum = 0;
+        for (int i=0; i<values.length; ++i) {
+            values[i] = (long)Math.exp(8.0 + 2.0 * random.nextGaussian());
+            sum += values[i];
+            if ((i & 1) == 0) {
+                sketch1.add(values[i]);
+            } else {
+                sketch2.add(values[i]);
+            }
+            sketchAll.add(values[i]);
+        }
+        sketch1.merge(sketch2);
+        sketch1.merge(new QuantileSketch());
+        Arrays.sort(values);
+        Assert.assertEquals(values.length, sketch1.getCount());
+        Assert.assertEquals(sum, sketch1.getSum());
+        Assert.assertEquals(values[0], sketch1.getMin());
+        Assert.assertEquals(values[values.length - 1], sketch1.getMax());
+        double[] quantiles = {0.0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999, 1.0};
+        long expected;
+        for (int i=0; i<quantiles.length; ++i) {
+            expected = values[(int)(quantiles[i] * (values.length - 1))];
+            // Merging is exact.
+            Assert.assertEquals(sketchAll.getQuantile(quantiles[i]), sketch1.getQuantile(quantiles[i]));
+            // Allow for rounding of small values.
+            Assert.assertEquals(expected, sketch1.getQuantile(quantiles[i]), expected * 0.01 + 1.0);
+        }
+
+        try {
+            sketch.add(-1);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            sketch.getQuantile(1.5);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            sketch.merge(new QuantileSketch(0.02));
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            sketch.merge(null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new QuantileSketch(0.0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
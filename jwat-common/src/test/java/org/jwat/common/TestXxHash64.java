@@ -0,0 +1,144 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestXxHash64 {
+
+    @Test
+    public void test_xxhash64_vectors() {
+        Assert.assertEquals(0xEF46DB3751D8E999L, XxHash64.hash(new byte[0], 0, 0, 0L));
+        Assert.assertEquals(0xD24EC4F1A98C6E5BL, XxHash64.hash("a".getBytes(), 0, 1, 0L));
+        Assert.assertEquals(0x44BC2CF5AD770999L, XxHash64.hash("abc".getBytes(), 0, 3, 0L));
+        byte[] b = "Nobody inspects the spammish repetition".getBytes();
+        Assert.assertEquals(0xFBCEA83C8A378BF1L, XxHash64.hash(b, 0, b.length, 0L));
+        // Seed changes the hash.
+        Assert.assertTrue(XxHash64.hash(b, 0, b.length, 0L) != XxHash64.hash(b, 0, b.length, 1L));
+    }
+
+    @Test
+    public void test_xxhash64_streaming() {
+        Random random = new Random(42);
+        byte[] data = new byte[1000];
+        random.nextBytes(data);
+        for (int len=0; len<=data.length; len+=37) {
+            long expected = XxHash64.hash(data, 0, len, 7L);
+            // Random chunk sizes.
+            XxHash64 xxh = new XxHash64(7L);
+            int pos = 0;
+            while (pos < len) {
+                int chunk = Math.min(len - pos, random.nextInt(70));
+                xxh.update(data, pos, chunk);
+                pos += chunk;
+            }
+            Assert.assertEquals(expected, xxh.getValue());
+            // Single bytes.
+            xxh.reset();
+            for (int i=0; i<len; ++i) {
+                xxh.update(data[i]);
+            }
+            Assert.assertEquals(expected, xxh.getValue());
+            // getValue() does not change the state.
+            Assert.assertEquals(expected, xxh.getValue());
+        }
+        XxHash64 xxh = new XxHash64();
+        xxh.update(data);
+        Assert.assertEquals(XxHash64.hash(data, 0, data.length, 0L), xxh.getValue());
+    }
+
+    @Test
+    public void test_fingerprint() throws IOException {
+        Random random = new Random(1);
+        byte[] data = new byte[20000];
+        random.nextBytes(data);
+        byte[] fp64 = Fingerprint.fingerprint(data, 0, data.length, Fingerprint.BITS_64);
+        byte[] fp128 = Fingerprint.fingerprint(data, 0, data.length, Fingerprint.BITS_128);
+        Assert.assertEquals(8, fp64.length);
+        Assert.assertEquals(16, fp128.length);
+        long value = 0;
+        for (int i=0; i<8; ++i) {
+            value = (value << 8) | (fp64[i] & 255);
+            Assert.assertEquals(fp64[i], fp128[i]);
+        }
+        Assert.assertEquals(XxHash64.hash(data, 0, data.length, 0L), value);
+        try {
+            new Fingerprint(32);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        // Stream, including skipped data.
+        Fingerprint fingerprint = new Fingerprint(Fingerprint.BITS_128);
+        FingerprintInputStream in = new FingerprintInputStream(new ByteArrayInputStream(data), fingerprint);
+        Assert.assertFalse(in.markSupported());
+        Assert.assertEquals(data[0] & 255, in.read());
+        byte[] tmpBuf = new byte[100];
+        Assert.assertEquals(100, in.read(tmpBuf));
+        Assert.assertEquals(10000, in.skip(10000));
+        Assert.assertEquals(data.length - 10101, in.skip(data.length));
+        Assert.assertEquals(-1, in.read());
+        in.close();
+        Assert.assertSame(fingerprint, in.getFingerprint());
+        Assert.assertArrayEquals(fp128, fingerprint.getBytes());
+        fingerprint.reset();
+        Assert.assertArrayEquals(Fingerprint.fingerprint(data, 0, 0, Fingerprint.BITS_128), fingerprint.getBytes());
+    }
+
+    @Test
+    public void test_payload_fingerprint() throws IOException {
+        byte[] httpHeader = "HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\n\r\n".getBytes();
+        byte[] body = new byte[5000];
+        new Random(2).nextBytes(body);
+        byte[] block = new byte[httpHeader.length + body.length];
+        System.arraycopy(httpHeader, 0, block, 0, httpHeader.length);
+        System.arraycopy(body, 0, block, httpHeader.length, body.length);
+        // Block fingerprint, together with a digest, payload closed unread.
+        Payload payload = Payload.processPayload(new ByteArrayInputStream(block), block.length, 8192, "SHA1", Fingerprint.BITS_64);
+        payload.close();
+        Assert.assertArrayEquals(Fingerprint.fingerprint(block, 0, block.length, 64), payload.getFingerprint());
+        Assert.assertNotNull(payload.getDigest());
+        // No fingerprint requested.
+        payload = Payload.processPayload(new ByteArrayInputStream(block), block.length, 8192, null);
+        payload.close();
+        Assert.assertNull(payload.getFingerprint());
+        // HTTP payload fingerprint, payload partially read.
+        payload = Payload.processPayload(new ByteArrayInputStream(block), block.length, 8192, null);
+        HttpHeader hh = HttpHeader.processPayload(HttpHeader.HT_RESPONSE, payload.getInputStream(), block.length, null, Fingerprint.BITS_128);
+        Assert.assertTrue(hh.isValid());
+        payload.setPayloadHeaderWrapped(hh);
+        InputStream in = payload.getInputStream();
+        Assert.assertEquals(body[0] & 255, in.read());
+        payload.close();
+        Assert.assertArrayEquals(Fingerprint.fingerprint(body, 0, body.length, 128), hh.getFingerprint());
+        try {
+            Payload.processPayload(new ByteArrayInputStream(block), block.length, 8192, null, 100);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
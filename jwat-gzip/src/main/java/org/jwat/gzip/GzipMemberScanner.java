@@ -0,0 +1,221 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.gzip;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Locate the start of GZip members at arbitrary positions in a multi-member
+ * GZip file. Candidates are found by scanning for the magic number followed
+ * by a plausible header and are then verified by inflating the beginning of
+ * the member, optionally comparing it to an expected prefix. Used to split
+ * large multi-member GZip files into ranges which can be read independently.
+ *
+ * @author nicl
+ */
+public class GzipMemberScanner {
+
+    /** Buffer size used when scanning for members. */
+    public static final int DEFAULT_SCAN_BUFFER_SIZE = 65536;
+
+    /** Maximum number of compressed bytes inflated when verifying a member. */
+    public static final int DEFAULT_MAX_VERIFY_INPUT = 1024 * 1024;
+
+    /** Minimum number of header bytes validated before verifying a member. */
+    protected static final int HEADER_LENGTH = 10;
+
+    /**
+     * Check whether the bytes at the given index look like a GZip member
+     * header. The magic number, compression method, reserved flags,
+     * extra flags and operating system fields are validated.
+     * @param b byte array with at least 10 bytes from the given index
+     * @param idx index of the candidate header
+     * @return boolean indicating whether the bytes look like a member header
+     */
+    public static boolean isMemberHeader(byte[] b, int idx) {
+        if ((b[idx] & 255) != (GzipConstants.GZIP_MAGIC & 255)
+                || (b[idx + 1] & 255) != (GzipConstants.GZIP_MAGIC >> 8)
+                || (b[idx + 2] & 255) != GzipConstants.CM_DEFLATE) {
+            return false;
+        }
+        if ((b[idx + 3] & GzipConstants.FLG_FRESERVED) != 0) {
+            return false;
+        }
+        int xfl = b[idx + 8] & 255;
+        if ((xfl & ~GzipConstants.DEFLATE_XFL_COMPRESSION_MASK) != 0
+                || xfl == GzipConstants.DEFLATE_XFL_COMPRESSION_MASK) {
+            return false;
+        }
+        int os = b[idx + 9] & 255;
+        return os <= GzipConstants.OS_ACORN || os == GzipConstants.OS_UNKNOWN;
+    }
+
+    /**
+     * Verify that a GZip member starts at the given offset by parsing its
+     * header and inflating the beginning of the compressed data.
+     * @param raf random access file, the file pointer is modified
+     * @param offset offset of the candidate member
+     * @param prefix expected beginning of the uncompressed data or null
+     * @return boolean indicating whether a member starts at the given offset
+     * @throws IOException if an I/O error occurs while reading the file
+     */
+    public static boolean verifyMember(RandomAccessFile raf, long offset, byte[] prefix) throws IOException {
+        int required = (prefix != null && prefix.length > 0) ? prefix.length : 1;
+        byte[] out = new byte[required];
+        int outLen = inflateMember(raf, offset, out);
+        if (outLen == -1) {
+            return false;
+        }
+        if (prefix == null || prefix.length == 0) {
+            return true;
+        }
+        if (outLen < prefix.length) {
+            return false;
+        }
+        for (int i=0; i<prefix.length; ++i) {
+            if (out[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse the header of the GZip member at the given offset and inflate
+     * the beginning of its compressed data.
+     * @param raf random access file, the file pointer is modified
+     * @param offset offset of the candidate member
+     * @param out buffer for the beginning of the uncompressed data
+     * @return number of bytes inflated, less than the length of the buffer
+     * only if the member is shorter, or -1 if no valid member starts at the
+     * given offset
+     * @throws IOException if an I/O error occurs while reading the file
+     */
+    public static int inflateMember(RandomAccessFile raf, long offset, byte[] out) throws IOException {
+        byte[] buffer = new byte[8192];
+        raf.seek(offset);
+        int read = raf.read(buffer, 0, buffer.length);
+        if (read < HEADER_LENGTH || !isMemberHeader(buffer, 0)) {
+            return -1;
+        }
+        int flg = buffer[3] & 255;
+        int pos = HEADER_LENGTH;
+        if ((flg & GzipConstants.FLG_FEXTRA) != 0) {
+            if (pos + 2 > read) {
+                return -1;
+            }
+            pos += 2 + ((buffer[pos] & 255) | ((buffer[pos + 1] & 255) << 8));
+        }
+        if ((flg & GzipConstants.FLG_FNAME) != 0) {
+            while (pos < read && buffer[pos] != 0) {
+                ++pos;
+            }
+            ++pos;
+        }
+        if ((flg & GzipConstants.FLG_FCOMMENT) != 0) {
+            while (pos < read && buffer[pos] != 0) {
+                ++pos;
+            }
+            ++pos;
+        }
+        if ((flg & GzipConstants.FLG_FHCRC) != 0) {
+            pos += 2;
+        }
+        if (pos >= read) {
+            // Header extends beyond the buffer, not something we expect.
+            return -1;
+        }
+        int required = out.length;
+        int outLen = 0;
+        long inputLeft = DEFAULT_MAX_VERIFY_INPUT;
+        Inflater inf = new Inflater(true);
+        try {
+            inf.setInput(buffer, pos, read - pos);
+            inputLeft -= read - pos;
+            while (outLen < required) {
+                int inflated = inf.inflate(out, outLen, required - outLen);
+                outLen += inflated;
+                if (inf.finished()) {
+                    break;
+                }
+                if (inflated == 0) {
+                    if (inf.needsDictionary() || !inf.needsInput() || inputLeft <= 0) {
+                        return -1;
+                    }
+                    read = raf.read(buffer, 0, buffer.length);
+                    if (read == -1) {
+                        return -1;
+                    }
+                    inf.setInput(buffer, 0, read);
+                    inputLeft -= read;
+                }
+            }
+        } catch (DataFormatException e) {
+            return -1;
+        } finally {
+            inf.end();
+        }
+        return outLen;
+    }
+
+    /**
+     * Find the first verified GZip member starting in the given range.
+     * @param raf random access file, the file pointer is modified
+     * @param from offset to start scanning from, inclusive
+     * @param to offset to stop scanning at, exclusive
+     * @param prefix expected beginning of the uncompressed data or null
+     * @return offset of the first verified member or -1 if none was found
+     * @throws IOException if an I/O error occurs while reading the file
+     */
+    public static long findMemberStart(RandomAccessFile raf, long from, long to, byte[] prefix) throws IOException {
+        if (raf == null) {
+            throw new IllegalArgumentException("'raf' is null!");
+        }
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("Invalid range: " + from + "-" + to);
+        }
+        to = Math.min(to, raf.length());
+        byte[] buffer = new byte[DEFAULT_SCAN_BUFFER_SIZE];
+        long bufferOffset = from;
+        int read;
+        int limit;
+        while (bufferOffset < to) {
+            raf.seek(bufferOffset);
+            read = raf.read(buffer, 0, buffer.length);
+            if (read < HEADER_LENGTH) {
+                break;
+            }
+            // Only candidates with a complete header in the buffer.
+            limit = read - HEADER_LENGTH;
+            for (int i=0; i<=limit && bufferOffset + i < to; ++i) {
+                if (buffer[i] == (byte)0x1f && isMemberHeader(buffer, i)) {
+                    if (verifyMember(raf, bufferOffset + i, prefix)) {
+                        return bufferOffset + i;
+                    }
+                }
+            }
+            // Overlap so candidates spanning two buffers are not missed.
+            bufferOffset += limit + 1;
+        }
+        return -1;
+    }
+
+}
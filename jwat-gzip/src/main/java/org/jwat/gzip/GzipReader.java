@@ -29,7 +29,6 @@ import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 
 import org.jwat.common.ByteCountingPushBackInputStream;
-import org.jwat.common.Diagnosis;
 import org.jwat.common.DiagnosisType;
 import org.jwat.common.Diagnostics;
 import org.jwat.common.ISO8859_1;
@@ -157,6 +156,33 @@ public class GzipReader implements Closeable {
         inputBytes = new byte[DEFAULT_INPUT_BUFFER_SIZE];
     }
 
+    /**
+     * Switch this reader to another input stream, reusing the inflater and
+     * buffers instead of constructing a new reader. Any entry read from the
+     * previous input stream is no longer usable and the reader statistics
+     * are reset. The previous input stream is not closed.
+     * @param in input stream of GZip file
+     */
+    public void setInputStream(InputStream in) {
+        if (in == null) {
+            throw new IllegalArgumentException("in is null!");
+        }
+        if (pbin == null || inf == null) {
+            throw new IllegalStateException("Reader has been closed!");
+        }
+        pbin.setInputStream(in);
+        inf.reset();
+        crc.reset();
+        lastInput = 0;
+        bIsCompliant = true;
+        diagnostics.reset();
+        entries = 0;
+        startOffset = -1;
+        consumed = 0;
+        gzipEntry = null;
+        partialEntry = null;
+    }
+
     /**
      * Release resources associated with this reader.
      * Also closes the <code>InputStream</code> supplied to the constructor.
@@ -207,6 +233,19 @@ public class GzipReader implements Closeable {
         }
     }
 
+    /**
+     * Change the current offset in the input stream, for input streams
+     * starting somewhere inside a (multi-part) GZip file. The offsets of the
+     * entries read afterwards are relative to the same position.
+     * @param offset current offset in the input stream
+     */
+    public void setOffset(long offset) {
+        if (pbin == null) {
+            throw new IllegalStateException("Reader has been closed!");
+        }
+        pbin.setConsumed(offset);
+    }
+
     /**
      * Get number of bytes consumed by this reader.
      * Updated after each record has been read.
@@ -248,66 +287,42 @@ public class GzipReader implements Closeable {
                 gzipEntry.os = (short)(headerBytes[9] & 255);
                 crc.update(headerBytes);
                 if (gzipEntry.magic != GzipConstants.GZIP_MAGIC) {
-                    gzipEntry.diagnostics.addError(
-                            new Diagnosis(
-                                    DiagnosisType.INVALID_EXPECTED,
-                                    "Magic Value",
-                                    Integer.toHexString(gzipEntry.magic),
-                                    Integer.toHexString(GzipConstants.GZIP_MAGIC)
-                                )
-                            );
+                    gzipEntry.diagnostics.addError(DiagnosisType.INVALID_EXPECTED,
+                            "Magic Value",
+                            Integer.toHexString(gzipEntry.magic),
+                            Integer.toHexString(GzipConstants.GZIP_MAGIC));
                 }
                 if (gzipEntry.cm != GzipConstants.CM_DEFLATE) {
                     // Currently only the deflate compression method is supported in GZip.
-                    gzipEntry.diagnostics.addError(
-                            new Diagnosis(
-                                    DiagnosisType.INVALID_EXPECTED,
-                                    "Compression Method",
-                                    Integer.toHexString(gzipEntry.cm),
-                                    Integer.toHexString(GzipConstants.CM_DEFLATE)
-                                )
-                            );
+                    gzipEntry.diagnostics.addError(DiagnosisType.INVALID_EXPECTED,
+                            "Compression Method",
+                            Integer.toHexString(gzipEntry.cm),
+                            Integer.toHexString(GzipConstants.CM_DEFLATE));
                 } else {
                     // Currently only the deflate compression method is supported in GZip.
                     // Check to see whether some xfl reserved bits have been used.
                     if ((gzipEntry.xfl & GzipConstants.DEFLATE_XLF_RESERVED) != 0) {
-                        gzipEntry.diagnostics.addWarning(
-                                new Diagnosis(
-                                        DiagnosisType.RESERVED,
-                                        "eXtra FLags",
-                                        Integer.toHexString(gzipEntry.xfl & GzipConstants.DEFLATE_XLF_RESERVED)
-                                    )
-                                );
+                        gzipEntry.diagnostics.addWarning(DiagnosisType.RESERVED,
+                                "eXtra FLags",
+                                Integer.toHexString(gzipEntry.xfl & GzipConstants.DEFLATE_XLF_RESERVED));
                     }
                     if ((gzipEntry.xfl & GzipConstants.DEFLATE_XFL_COMPRESSION_MASK) == GzipConstants.DEFLATE_XFL_COMPRESSION_MASK) {
-                        gzipEntry.diagnostics.addError(
-                                new Diagnosis(
-                                        DiagnosisType.INVALID_DATA,
-                                        "eXtra FLags",
-                                        Integer.toHexString(gzipEntry.xfl & GzipConstants.DEFLATE_XFL_COMPRESSION_MASK)
-                                    )
-                                );
+                        gzipEntry.diagnostics.addError(DiagnosisType.INVALID_DATA,
+                                "eXtra FLags",
+                                Integer.toHexString(gzipEntry.xfl & GzipConstants.DEFLATE_XFL_COMPRESSION_MASK));
                     }
                 }
                 if ((gzipEntry.flg & GzipConstants.FLG_FRESERVED) != 0) {
-                    gzipEntry.diagnostics.addWarning(
-                            new Diagnosis(
-                                    DiagnosisType.RESERVED,
-                                    "FLaGs",
-                                    Integer.toHexString(gzipEntry.flg & GzipConstants.FLG_FRESERVED)
-                                )
-                            );
+                    gzipEntry.diagnostics.addWarning(DiagnosisType.RESERVED,
+                            "FLaGs",
+                            Integer.toHexString(gzipEntry.flg & GzipConstants.FLG_FRESERVED));
                 }
                 // TODO Do not worry about unknown OS'es.
                 /*
                 if (!GzipConstants.osIdxStr.containsKey((int)gzipEntry.os)) {
-                    gzipEntry.diagnostics.addWarning(
-                            new Diagnosis(
-                                    DiagnosisType.UNKNOWN,
-                                    "Operating System",
-                                    Integer.toString(gzipEntry.os)
-                        )
-                    );
+                    gzipEntry.diagnostics.addWarning(DiagnosisType.UNKNOWN,
+                            "Operating System",
+                            Integer.toString(gzipEntry.os));
                 }
                 */
                 /*
@@ -353,14 +368,10 @@ public class GzipReader implements Closeable {
                                 }
                             }
                             if (idx != gzipEntry.extraBytes.length) {
-                                gzipEntry.diagnostics.addError(
-                                        new Diagnosis(
-                                                DiagnosisType.INVALID_DATA,
-                                                "FEXTRA",
-                                                "Invalid structure",
-                                                "Data truncated"
-                                            )
-                                        );
+                                gzipEntry.diagnostics.addError(DiagnosisType.INVALID_DATA,
+                                        "FEXTRA",
+                                        "Invalid structure",
+                                        "Data truncated");
                             }
                         } else {
                             gzipEntry.extraBytes = new byte[0];
@@ -380,14 +391,10 @@ public class GzipReader implements Closeable {
                         throw new EOFException("Unexpected EOF!");
                     }
                     if (!iso8859_1.decode(fnameBytes, "")) {
-                        gzipEntry.diagnostics.addWarning(
-                                new Diagnosis(
-                                        DiagnosisType.INVALID_ENCODING,
-                                        "FName",
-                                        iso8859_1.decoded,
-                                        "ISO-8859-1"
-                                    )
-                                );
+                        gzipEntry.diagnostics.addWarning(DiagnosisType.INVALID_ENCODING,
+                                "FName",
+                                iso8859_1.decoded,
+                                "ISO-8859-1");
                     }
                     gzipEntry.fname = iso8859_1.decoded;
                     crc.update(fnameBytes);
@@ -402,14 +409,10 @@ public class GzipReader implements Closeable {
                         throw new EOFException("Unexpected EOF!");
                     }
                     if (!iso8859_1.decode(fcommentBytes, "\n")) {
-                        gzipEntry.diagnostics.addWarning(
-                                new Diagnosis(
-                                        DiagnosisType.INVALID_ENCODING,
-                                        "FComment",
-                                        iso8859_1.decoded,
-                                        "ISO-8859-1"
-                                    )
-                                );
+                        gzipEntry.diagnostics.addWarning(DiagnosisType.INVALID_ENCODING,
+                                "FComment",
+                                iso8859_1.decoded,
+                                "ISO-8859-1");
                     }
                     gzipEntry.fcomment = iso8859_1.decoded;
                     crc.update(fcommentBytes);
@@ -433,14 +436,10 @@ public class GzipReader implements Closeable {
                 gzipEntry.comp_crc16 = ((int)crc.getValue()) & 0x0000ffff;
                 crc.reset();
                 if (gzipEntry.crc16 != null && gzipEntry.crc16 != gzipEntry.comp_crc16) {
-                    gzipEntry.diagnostics.addError(
-                            new Diagnosis(
-                                    DiagnosisType.INVALID_EXPECTED,
-                                    "CRC16",
-                                    Integer.toHexString(gzipEntry.crc16),
-                                    Integer.toHexString(gzipEntry.comp_crc16)
-                                )
-                            );
+                    gzipEntry.diagnostics.addError(DiagnosisType.INVALID_EXPECTED,
+                            "CRC16",
+                            Integer.toHexString(gzipEntry.crc16),
+                            Integer.toHexString(gzipEntry.comp_crc16));
                 }
                 /*
                  * Prepare Entry InputStream.
@@ -457,18 +456,18 @@ public class GzipReader implements Closeable {
                 ++entries;
             } catch (EOFException e) {
                 partialEntry = gzipEntry;
-                diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_DATA, "GZip file", "Unexpected EOF!"));
+                diagnostics.addError(DiagnosisType.INVALID_DATA, "GZip file", "Unexpected EOF!");
                 bIsCompliant = false;
                 gzipEntry = null;
             }
         } else {
             // Require one or more entries to be present.
             if (entries == 0) {
-                diagnostics.addError(new Diagnosis(DiagnosisType.ERROR_EXPECTED, "GZip file", "One or more entries"));
+                diagnostics.addError(DiagnosisType.ERROR_EXPECTED, "GZip file", "One or more entries");
                 bIsCompliant = false;
             }
             if (pbin.read() != -1) {
-                diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_DATA, "GZip file", "Unexpected trailing data!"));
+                diagnostics.addError(DiagnosisType.INVALID_DATA, "GZip file", "Unexpected trailing data!");
                 bIsCompliant = false;
             }
         }
@@ -507,27 +506,19 @@ public class GzipReader implements Closeable {
             entry.comp_crc32 = (int)(crc.getValue() & 0xffffffff);
             entry.comp_isize = (int)(inf.getBytesWritten() & 0xffffffff);
             if (entry.comp_crc32 != entry.crc32) {
-                entry.diagnostics.addError(
-                        new Diagnosis(
-                                DiagnosisType.INVALID_EXPECTED,
-                                "CRC32",
-                                Integer.toHexString(entry.crc32),
-                                Integer.toHexString(entry.comp_crc32)
-                            )
-                        );
+                entry.diagnostics.addError(DiagnosisType.INVALID_EXPECTED,
+                        "CRC32",
+                        Integer.toHexString(entry.crc32),
+                        Integer.toHexString(entry.comp_crc32));
             }
             if (entry.comp_isize != entry.isize) {
-                entry.diagnostics.addError(
-                        new Diagnosis(
-                                DiagnosisType.INVALID_EXPECTED,
-                                "ISize",
-                                Long.toString(entry.isize),
-                                Long.toString(entry.comp_isize)
-                            )
-                        );
+                entry.diagnostics.addError(DiagnosisType.INVALID_EXPECTED,
+                        "ISize",
+                        Long.toString(entry.isize),
+                        Long.toString(entry.comp_isize));
             }
         } else {
-            gzipEntry.diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_DATA, "GZip file", "Unexpected EOF!"));
+            gzipEntry.diagnostics.addError(DiagnosisType.INVALID_DATA, "GZip file", "Unexpected EOF!");
             bIsCompliant = false;
         }
         // Compliance
@@ -555,19 +546,19 @@ public class GzipReader implements Closeable {
             if (inf.finished()) {
                 return -1;
             } else if (inf.needsDictionary()) {
-                gzipEntry.diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_DATA, "GZip file", "Unexpected EOF!"));
+                gzipEntry.diagnostics.addError(DiagnosisType.INVALID_DATA, "GZip file", "Unexpected EOF!");
                 bIsCompliant = false;
                 throw new DataFormatException("Dictionary needed!");
             } else if (inf.needsInput()) {
                 lastInput = pbin.read(inputBytes, 0, inputBytes.length);
                 if (lastInput == -1) {
-                    gzipEntry.diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_DATA, "GZip file", "Unexpected EOF!"));
+                    gzipEntry.diagnostics.addError(DiagnosisType.INVALID_DATA, "GZip file", "Unexpected EOF!");
                     bIsCompliant = false;
                     throw new DataFormatException("Data missing!");
                 }
                 inf.setInput(inputBytes, 0, lastInput);
             } else {
-                gzipEntry.diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_DATA, "GZip file", "Unexpected EOF!"));
+                gzipEntry.diagnostics.addError(DiagnosisType.INVALID_DATA, "GZip file", "Unexpected EOF!");
                 bIsCompliant = false;
                 throw new DataFormatException("Inflater malfunction!");
             }
@@ -640,7 +631,7 @@ public class GzipReader implements Closeable {
             try {
                 read = reader.readInflated(b, off, len);
             } catch (DataFormatException e) {
-                gzipEntry.diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_DATA, "GZip file", "Unexpected EOF!"));
+                gzipEntry.diagnostics.addError(DiagnosisType.INVALID_DATA, "GZip file", "Unexpected EOF!");
                 reader.bIsCompliant = false;
                 throw new IOException(e);
             }
@@ -17,7 +17,6 @@
  */
 package org.jwat.gzip;
 
-import org.jwat.common.Diagnosis;
 import org.jwat.common.DiagnosisType;
 import org.jwat.common.ISO8859_1;
 
@@ -194,13 +193,9 @@ public class GzipWriter implements Closeable {
         }
         entry.flg = 0;
         if (!GzipConstants.osIdxStr.containsKey((int)entry.os)) {
-            entry.diagnostics.addWarning(
-                    new Diagnosis(
-                            DiagnosisType.UNKNOWN,
-                            "Operating System",
-                            Integer.toString(entry.os)
-                )
-            );
+            entry.diagnostics.addWarning(DiagnosisType.UNKNOWN,
+                    "Operating System",
+                    Integer.toString(entry.os));
         }
         /*
          * FTEXT.
@@ -249,14 +244,10 @@ public class GzipWriter implements Closeable {
                 }
             }
             if (idx != gzipEntry.extraBytes.length) {
-                gzipEntry.diagnostics.addError(
-                        new Diagnosis(
-                                DiagnosisType.INVALID_DATA,
-                                "FEXTRA",
-                                "Invalid structure",
-                                "Data truncated"
-                            )
-                        );
+                gzipEntry.diagnostics.addError(DiagnosisType.INVALID_DATA,
+                        "FEXTRA",
+                        "Invalid structure",
+                        "Data truncated");
             }
         }
         if (entry.extraBytes != null) {
@@ -271,14 +262,10 @@ public class GzipWriter implements Closeable {
         if (entry.fname != null) {
             entry.flg |= GzipConstants.FLG_FNAME;
             if (!iso8859_1.encode(entry.fname, "")) {
-                entry.diagnostics.addWarning(
-                        new Diagnosis(
-                                DiagnosisType.INVALID_ENCODING,
-                                "FName",
-                                entry.fname,
-                                "ISO-8859-1"
-                            )
-                        );
+                entry.diagnostics.addWarning(DiagnosisType.INVALID_ENCODING,
+                        "FName",
+                        entry.fname,
+                        "ISO-8859-1");
             }
             entry.fname = iso8859_1.decoded;
             fnameBytes = iso8859_1.encoded;
@@ -289,14 +276,10 @@ public class GzipWriter implements Closeable {
         if (entry.fcomment != null) {
             entry.flg |= GzipConstants.FLG_FCOMMENT;
             if (!iso8859_1.encode(entry.fcomment, "\n")) {
-                entry.diagnostics.addWarning(
-                        new Diagnosis(
-                                DiagnosisType.INVALID_ENCODING,
-                                "FComment",
-                                entry.fcomment,
-                                "ISO-8859-1"
-                            )
-                        );
+                entry.diagnostics.addWarning(DiagnosisType.INVALID_ENCODING,
+                        "FComment",
+                        entry.fcomment,
+                        "ISO-8859-1");
             }
             entry.fcomment = iso8859_1.decoded;
             fcommentBytes = iso8859_1.encoded;
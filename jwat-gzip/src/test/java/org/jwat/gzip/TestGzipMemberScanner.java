@@ -0,0 +1,128 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.gzip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestGzipMemberScanner {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    /**
+     * GZip compress data, optionally without compression so the data is
+     * stored verbatim in the compressed member.
+     */
+    public static byte[] gzip(byte[] data, boolean bStored) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzout;
+        if (bStored) {
+            gzout = new GZIPOutputStream(out) {
+                {
+                    def.setLevel(Deflater.NO_COMPRESSION);
+                }
+            };
+        } else {
+            gzout = new GZIPOutputStream(out);
+        }
+        gzout.write(data);
+        gzout.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void test_gzipmemberscanner() throws IOException {
+        byte[] member1 = gzip("WARC/1.0 first member".getBytes("ISO-8859-1"), false);
+        // A stored member containing a complete GZip stream which is not a WARC record.
+        byte[] inner = gzip("not a warc record".getBytes("ISO-8859-1"), false);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write("WARC/1.0 second member ".getBytes("ISO-8859-1"));
+        bytes.write(inner);
+        byte[] member2 = gzip(bytes.toByteArray(), true);
+        byte[] member3 = gzip("WARC/1.0 third member".getBytes("ISO-8859-1"), false);
+
+        Assert.assertTrue(GzipMemberScanner.isMemberHeader(member1, 0));
+        Assert.assertFalse(GzipMemberScanner.isMemberHeader(member1, 1));
+        byte[] header = new byte[10];
+        System.arraycopy(member1, 0, header, 0, header.length);
+        header[3] = (byte)0x80;
+        Assert.assertFalse(GzipMemberScanner.isMemberHeader(header, 0));
+        System.arraycopy(member1, 0, header, 0, header.length);
+        header[8] = 6;
+        Assert.assertFalse(GzipMemberScanner.isMemberHeader(header, 0));
+        System.arraycopy(member1, 0, header, 0, header.length);
+        header[9] = 100;
+        Assert.assertFalse(GzipMemberScanner.isMemberHeader(header, 0));
+
+        File file = tmpFolder.newFile("members.gz");
+        OutputStream out = new FileOutputStream(file);
+        out.write(member1);
+        out.write(member2);
+        out.write(member3);
+        out.close();
+        long offset2 = member1.length;
+        long offset3 = member1.length + member2.length;
+        long length = file.length();
+        byte[] prefix = "WARC/".getBytes("ISO-8859-1");
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            Assert.assertTrue(GzipMemberScanner.verifyMember(raf, 0, prefix));
+            Assert.assertTrue(GzipMemberScanner.verifyMember(raf, offset2, prefix));
+            Assert.assertFalse(GzipMemberScanner.verifyMember(raf, 1, prefix));
+
+            Assert.assertEquals(0, GzipMemberScanner.findMemberStart(raf, 0, length, prefix));
+            Assert.assertEquals(offset2, GzipMemberScanner.findMemberStart(raf, 1, length, prefix));
+            // The embedded GZip stream is a valid member but lacks the prefix.
+            Assert.assertEquals(offset3, GzipMemberScanner.findMemberStart(raf, offset2 + 1, length, prefix));
+            long innerOffset = GzipMemberScanner.findMemberStart(raf, offset2 + 1, length, null);
+            Assert.assertTrue(innerOffset > offset2 && innerOffset < offset3);
+            Assert.assertEquals(-1, GzipMemberScanner.findMemberStart(raf, offset3 + 1, length, prefix));
+            Assert.assertEquals(-1, GzipMemberScanner.findMemberStart(raf, 1, offset2, prefix));
+
+            try {
+                GzipMemberScanner.findMemberStart(null, 0, length, prefix);
+                Assert.fail("Exception expected!");
+            } catch (IllegalArgumentException e) {
+            }
+            try {
+                GzipMemberScanner.findMemberStart(raf, 10, 5, prefix);
+                Assert.fail("Exception expected!");
+            } catch (IllegalArgumentException e) {
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+}
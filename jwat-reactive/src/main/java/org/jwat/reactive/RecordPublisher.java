@@ -0,0 +1,279 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.reactive;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base class for <code>Flow.Publisher</code> adapters of the blocking record
+ * readers. Records are only read when the subscriber has signalled demand,
+ * and reading is done in bounded batches on the supplied executor, so many
+ * publishers can share a small thread pool. Each record is closed, releasing
+ * its payload resources, as soon as <code>onNext</code> returns or throws,
+ * so the payload must be consumed inside <code>onNext</code>. A subscriber
+ * throwing from <code>onNext</code> is treated as cancelled, while a failure
+ * to close a record is signalled with <code>onError</code>.
+ * A reader can only be read once, so only one subscriber is supported.
+ * The reader is closed on completion, error and cancellation.
+ *
+ * @param <T> record type
+ *
+ * @author nicl
+ */
+public abstract class RecordPublisher<T> implements Flow.Publisher<T> {
+
+    /** Default maximum number of records emitted before yielding the thread. */
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    /** Executor used to read and emit the records. */
+    protected final Executor executor;
+
+    /** Maximum number of records emitted before yielding the thread. */
+    public int batchSize = DEFAULT_BATCH_SIZE;
+
+    /** Has a subscriber been accepted. */
+    protected final AtomicBoolean bSubscribed = new AtomicBoolean();
+
+    /**
+     * Construct a publisher emitting records using the given executor.
+     * @param executor executor used to read and emit the records
+     */
+    protected RecordPublisher(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("'executor' is null!");
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * Read the next record.
+     * @return next record or null, if there are no more records
+     * @throws IOException if an I/O error occurs while reading the record
+     */
+    protected abstract T nextRecord() throws IOException;
+
+    /**
+     * Close a record after it has been emitted.
+     * @param record record to close
+     * @throws IOException if an I/O error occurs while closing the record
+     */
+    protected abstract void closeRecord(T record) throws IOException;
+
+    /**
+     * Close the reader.
+     */
+    protected abstract void closeReader();
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("'subscriber' is null!");
+        }
+        RecordSubscription subscription = new RecordSubscription(subscriber);
+        if (bSubscribed.compareAndSet(false, true)) {
+            subscription.bOwner = true;
+        } else {
+            subscription.error = new IllegalStateException("Only one subscriber is supported!");
+        }
+        subscription.schedule();
+    }
+
+    /**
+     * Subscription emitting the records to a subscriber. All signals are
+     * emitted serially from the drain loop.
+     */
+    protected class RecordSubscription implements Flow.Subscription, Runnable {
+
+        /** Subscriber receiving the records. */
+        protected final Flow.Subscriber<? super T> subscriber;
+
+        /** Outstanding demand. */
+        protected final AtomicLong demand = new AtomicLong();
+
+        /** Work-in-progress counter serializing the drain loop. */
+        protected final AtomicInteger wip = new AtomicInteger();
+
+        /** Has the subscription been cancelled. */
+        protected volatile boolean bCancelled;
+
+        /** Error to signal instead of reading more records. */
+        protected volatile Throwable error;
+
+        /** Does this subscription own the reader. */
+        protected boolean bOwner;
+
+        /** Has <code>onSubscribe</code> been signalled. */
+        protected boolean bStarted;
+
+        /** Has a terminal signal been emitted or the reader been closed. */
+        protected boolean bDone;
+
+        /**
+         * Construct a subscription for the given subscriber.
+         * @param subscriber subscriber receiving the records
+         */
+        protected RecordSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                if (error == null) {
+                    error = new IllegalArgumentException("Non-positive request: " + n);
+                }
+            } else {
+                long current;
+                long next;
+                do {
+                    current = demand.get();
+                    next = current + n;
+                    if (next < 0) {
+                        next = Long.MAX_VALUE;
+                    }
+                } while (!demand.compareAndSet(current, next));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            bCancelled = true;
+            schedule();
+        }
+
+        /**
+         * Run the drain loop on the executor unless it is already running.
+         */
+        protected void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    if (error == null) {
+                        error = e;
+                    }
+                    // Drain on the calling thread to report the failure.
+                    run();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            int emitted = 0;
+            T record;
+            while (true) {
+                if (!bDone) {
+                    if (!bStarted) {
+                        bStarted = true;
+                        subscriber.onSubscribe(this);
+                    }
+                    while (!bDone) {
+                        if (bCancelled) {
+                            finish();
+                            break;
+                        }
+                        if (error != null) {
+                            finish();
+                            subscriber.onError(error);
+                            break;
+                        }
+                        if (demand.get() == 0) {
+                            break;
+                        }
+                        if (emitted == batchSize) {
+                            // Yield so other publishers sharing the executor
+                            // get a chance to run, wip is still held.
+                            try {
+                                executor.execute(this);
+                                return;
+                            } catch (RejectedExecutionException e) {
+                                emitted = 0;
+                            }
+                        }
+                        try {
+                            record = nextRecord();
+                        } catch (Throwable t) {
+                            finish();
+                            subscriber.onError(t);
+                            break;
+                        }
+                        if (record == null) {
+                            finish();
+                            subscriber.onComplete();
+                            break;
+                        }
+                        Throwable subscriberFailure = null;
+                        try {
+                            subscriber.onNext(record);
+                        } catch (Throwable t) {
+                            subscriberFailure = t;
+                        }
+                        // The record is closed even if the subscriber failed.
+                        Throwable closeFailure = null;
+                        try {
+                            closeRecord(record);
+                        } catch (Throwable t) {
+                            closeFailure = t;
+                        }
+                        if (subscriberFailure != null) {
+                            // A failing subscriber is considered cancelled.
+                            bCancelled = true;
+                            finish();
+                            break;
+                        }
+                        if (closeFailure != null) {
+                            // A failing close is reported.
+                            finish();
+                            subscriber.onError(closeFailure);
+                            break;
+                        }
+                        ++emitted;
+                        if (demand.get() != Long.MAX_VALUE) {
+                            demand.decrementAndGet();
+                        }
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Close the reader and stop emitting records.
+         */
+        protected void finish() {
+            bDone = true;
+            if (bOwner) {
+                closeReader();
+            }
+        }
+
+    }
+
+}
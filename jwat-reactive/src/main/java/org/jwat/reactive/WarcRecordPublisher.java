@@ -0,0 +1,65 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.reactive;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import org.jwat.warc.WarcReader;
+import org.jwat.warc.WarcRecord;
+
+/**
+ * <code>Flow.Publisher</code> emitting the records of a WARC reader with
+ * demand-driven back-pressure. ({@link RecordPublisher})
+ *
+ * @author nicl
+ */
+public class WarcRecordPublisher extends RecordPublisher<WarcRecord> {
+
+    /** WARC reader. */
+    protected final WarcReader reader;
+
+    /**
+     * Construct a publisher emitting the records of the given reader.
+     * @param reader WARC reader, closed when the subscription ends
+     * @param executor executor used to read and emit the records
+     */
+    public WarcRecordPublisher(WarcReader reader, Executor executor) {
+        super(executor);
+        if (reader == null) {
+            throw new IllegalArgumentException("'reader' is null!");
+        }
+        this.reader = reader;
+    }
+
+    @Override
+    protected WarcRecord nextRecord() throws IOException {
+        return reader.getNextRecord();
+    }
+
+    @Override
+    protected void closeRecord(WarcRecord record) throws IOException {
+        record.close();
+    }
+
+    @Override
+    protected void closeReader() {
+        reader.close();
+    }
+
+}
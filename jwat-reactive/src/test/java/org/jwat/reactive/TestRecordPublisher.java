@@ -0,0 +1,310 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.reactive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.arc.ArcReader;
+import org.jwat.arc.ArcReaderFactory;
+import org.jwat.arc.ArcRecordBase;
+import org.jwat.warc.WarcReader;
+import org.jwat.warc.WarcReaderFactory;
+import org.jwat.warc.WarcRecord;
+
+@RunWith(JUnit4.class)
+public class TestRecordPublisher {
+
+    protected ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    public static byte[] warcFile(int records) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i=0; i<records; ++i) {
+            String payload = "payload " + i;
+            String record = "WARC/1.0\r\n"
+                    + "WARC-Type: resource\r\n"
+                    + "WARC-Record-ID: <urn:uuid:0d5d5e9f-2222-4780-b5a4-bbcb3f28" + (1000 + i) + ">\r\n"
+                    + "WARC-Date: 2012-05-17T00:14:47Z\r\n"
+                    + "WARC-Target-URI: http://jwat.org/" + i + "\r\n"
+                    + "Content-Type: text/plain\r\n"
+                    + "Content-Length: " + payload.length() + "\r\n"
+                    + "\r\n"
+                    + payload
+                    + "\r\n\r\n";
+            out.write(record.getBytes("ISO-8859-1"));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Subscriber requesting a fixed number of records at a time and reading
+     * each payload inside <code>onNext</code>.
+     */
+    public static class TestSubscriber<T> implements Flow.Subscriber<T> {
+        public final long initial;
+        public final long perRecord;
+        public Flow.Subscription subscription;
+        public final List<String> payloads = Collections.synchronizedList(new ArrayList<String>());
+        public volatile Throwable error;
+        public volatile boolean bCompleted;
+        public final CountDownLatch terminated = new CountDownLatch(1);
+        public final CountDownLatch received;
+        public TestSubscriber(long initial, long perRecord, int expected) {
+            this.initial = initial;
+            this.perRecord = perRecord;
+            this.received = new CountDownLatch(expected);
+        }
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initial != 0) {
+                subscription.request(initial);
+            }
+        }
+        @Override
+        public void onNext(T item) {
+            try {
+                InputStream in;
+                if (item instanceof WarcRecord) {
+                    in = ((WarcRecord)item).getPayloadContent();
+                } else {
+                    in = ((ArcRecordBase)item).getPayloadContent();
+                }
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                if (in != null) {
+                    int c;
+                    while ((c = in.read()) != -1) {
+                        out.write(c);
+                    }
+                }
+                payloads.add(new String(out.toByteArray(), "ISO-8859-1"));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            received.countDown();
+            if (perRecord != 0) {
+                subscription.request(perRecord);
+            }
+        }
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            terminated.countDown();
+        }
+        @Override
+        public void onComplete() {
+            bCompleted = true;
+            terminated.countDown();
+        }
+    }
+
+    @Test
+    public void test_warcrecordpublisher() throws IOException, InterruptedException {
+        // One record requested at a time.
+        WarcReader reader = WarcReaderFactory.getReader(new ByteArrayInputStream(warcFile(20)));
+        WarcRecordPublisher publisher = new WarcRecordPublisher(reader, executor);
+        TestSubscriber<WarcRecord> subscriber = new TestSubscriber<WarcRecord>(1, 1, 20);
+        publisher.subscribe(subscriber);
+        Assert.assertTrue(subscriber.terminated.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(subscriber.bCompleted);
+        Assert.assertNull(subscriber.error);
+        Assert.assertEquals(20, subscriber.payloads.size());
+        for (int i=0; i<20; ++i) {
+            Assert.assertEquals("payload " + i, subscriber.payloads.get(i));
+        }
+
+        // A second subscriber is rejected.
+        TestSubscriber<WarcRecord> subscriber2 = new TestSubscriber<WarcRecord>(1, 0, 0);
+        publisher.subscribe(subscriber2);
+        Assert.assertTrue(subscriber2.terminated.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(subscriber2.error instanceof IllegalStateException);
+        Assert.assertNotNull(subscriber2.subscription);
+
+        // Unbounded demand, yielding every other record.
+        reader = WarcReaderFactory.getReader(new ByteArrayInputStream(warcFile(25)));
+        publisher = new WarcRecordPublisher(reader, executor);
+        publisher.batchSize = 2;
+        subscriber = new TestSubscriber<WarcRecord>(Long.MAX_VALUE, 0, 25);
+        publisher.subscribe(subscriber);
+        Assert.assertTrue(subscriber.terminated.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(subscriber.bCompleted);
+        Assert.assertEquals(25, subscriber.payloads.size());
+        Assert.assertEquals(25, reader.getRecordCount());
+
+        try {
+            publisher.subscribe(null);
+            Assert.fail("Exception expected!");
+        } catch (NullPointerException e) {
+        }
+        try {
+            new WarcRecordPublisher(null, executor);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new WarcRecordPublisher(reader, null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void test_warcrecordpublisher_demand() throws IOException, InterruptedException {
+        WarcReader reader = WarcReaderFactory.getReader(new ByteArrayInputStream(warcFile(20)));
+        WarcRecordPublisher publisher = new WarcRecordPublisher(reader, executor);
+        TestSubscriber<WarcRecord> subscriber = new TestSubscriber<WarcRecord>(3, 0, 3);
+        publisher.subscribe(subscriber);
+        Assert.assertTrue(subscriber.received.await(10, TimeUnit.SECONDS));
+        // Only the requested records are read.
+        Thread.sleep(50);
+        Assert.assertEquals(3, subscriber.payloads.size());
+        Assert.assertEquals(3, reader.getRecordCount());
+        subscriber.subscription.request(2);
+        Thread.sleep(50);
+        Assert.assertEquals(5, subscriber.payloads.size());
+        Assert.assertEquals(5, reader.getRecordCount());
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(10);
+        Thread.sleep(50);
+        Assert.assertEquals(5, subscriber.payloads.size());
+        Assert.assertEquals(1, subscriber.terminated.getCount());
+
+        // Non-positive requests are signalled as errors.
+        reader = WarcReaderFactory.getReader(new ByteArrayInputStream(warcFile(20)));
+        publisher = new WarcRecordPublisher(reader, executor);
+        subscriber = new TestSubscriber<WarcRecord>(0, 0, 0);
+        publisher.subscribe(subscriber);
+        while (subscriber.subscription == null) {
+            Thread.sleep(5);
+        }
+        subscriber.subscription.request(0);
+        Assert.assertTrue(subscriber.terminated.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(subscriber.error instanceof IllegalArgumentException);
+        Assert.assertEquals(0, subscriber.payloads.size());
+    }
+
+    /**
+     * Publisher of numbered strings, counting the closed records.
+     */
+    public static class CountingPublisher extends RecordPublisher<String> {
+        public final int records;
+        public final int failClose;
+        public int next;
+        public final AtomicInteger closed = new AtomicInteger();
+        public final CountDownLatch readerClosed = new CountDownLatch(1);
+        public CountingPublisher(int records, int failClose, ExecutorService executor) {
+            super(executor);
+            this.records = records;
+            this.failClose = failClose;
+        }
+        @Override
+        protected String nextRecord() {
+            return (next < records) ? "record " + next++ : null;
+        }
+        @Override
+        protected void closeRecord(String record) throws IOException {
+            closed.incrementAndGet();
+            if (record.equals("record " + failClose)) {
+                throw new IOException("close failed");
+            }
+        }
+        @Override
+        protected void closeReader() {
+            readerClosed.countDown();
+        }
+    }
+
+    @Test
+    public void test_recordpublisher_failures() throws InterruptedException {
+        // A failing subscriber cancels, the record is still closed.
+        CountingPublisher publisher = new CountingPublisher(10, -1, executor);
+        TestSubscriber<String> subscriber = new TestSubscriber<String>(Long.MAX_VALUE, 0, 0) {
+            @Override
+            public void onNext(String item) {
+                if (item.equals("record 2")) {
+                    throw new IllegalStateException("subscriber failed");
+                }
+                payloads.add(item);
+            }
+        };
+        publisher.subscribe(subscriber);
+        Assert.assertTrue(publisher.readerClosed.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(2, subscriber.payloads.size());
+        Assert.assertEquals(3, publisher.closed.get());
+        Assert.assertNull(subscriber.error);
+        Assert.assertFalse(subscriber.bCompleted);
+
+        // A failing close is reported to the subscriber.
+        publisher = new CountingPublisher(10, 1, executor);
+        subscriber = new TestSubscriber<String>(Long.MAX_VALUE, 0, 0) {
+            @Override
+            public void onNext(String item) {
+                payloads.add(item);
+            }
+        };
+        publisher.subscribe(subscriber);
+        Assert.assertTrue(subscriber.terminated.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(subscriber.error instanceof IOException);
+        Assert.assertEquals(2, subscriber.payloads.size());
+        Assert.assertEquals(2, publisher.closed.get());
+        Assert.assertEquals(0, publisher.readerClosed.getCount());
+    }
+
+    @Test
+    public void test_arcrecordpublisher() throws IOException, InterruptedException {
+        InputStream in = TestRecordPublisher.class.getClassLoader().getResourceAsStream("small_BNF.arc");
+        ArcReader reader = ArcReaderFactory.getReader(in);
+        ArcRecordPublisher publisher = new ArcRecordPublisher(reader, executor);
+        TestSubscriber<ArcRecordBase> subscriber = new TestSubscriber<ArcRecordBase>(2, 1, 6);
+        publisher.subscribe(subscriber);
+        Assert.assertTrue(subscriber.terminated.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(subscriber.bCompleted);
+        Assert.assertNull(subscriber.error);
+        Assert.assertEquals(6, subscriber.payloads.size());
+        Assert.assertEquals(6, reader.getRecordCount());
+        in.close();
+    }
+
+}
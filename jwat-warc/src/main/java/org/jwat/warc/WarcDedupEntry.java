@@ -0,0 +1,90 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+/**
+ * Location and identity of an archived capture, as stored by the
+ * <code>WarcDedupStore</code> for each payload digest.
+ *
+ * @author nicl
+ */
+public class WarcDedupEntry {
+
+    /** WARC-Record-ID of the original record. */
+    public String recordId;
+
+    /** Hash of the original target URI, see <code>WarcDedupStore.hashUri</code>. */
+    public long targetUriHash;
+
+    /** WARC-Date of the original record. */
+    public WarcDate date;
+
+    /** Name of the file containing the original record, if known. */
+    public String filename;
+
+    /** Offset of the original record in the file, -1 if unknown. */
+    public long offset = -1;
+
+    /**
+     * Construct an empty entry.
+     */
+    public WarcDedupEntry() {
+    }
+
+    /**
+     * Construct an entry from the header of an archived record.
+     * @param header header of the original record
+     * @param filename name of the file containing the record or null
+     * @param offset offset of the record in the file or -1
+     * @return entry describing the record
+     */
+    public static WarcDedupEntry fromHeader(WarcHeader header, String filename, long offset) {
+        if (header == null) {
+            throw new IllegalArgumentException("'header' is null!");
+        }
+        WarcDedupEntry entry = new WarcDedupEntry();
+        entry.recordId = header.warcRecordIdStr;
+        if (entry.recordId == null && header.warcRecordIdUri != null) {
+            entry.recordId = "<" + header.warcRecordIdUri.toString() + ">";
+        }
+        String targetUri = getTargetUri(header);
+        if (targetUri != null) {
+            entry.targetUriHash = WarcDedupStore.hashUri(targetUri);
+        }
+        entry.date = header.warcDate;
+        entry.filename = filename;
+        entry.offset = offset;
+        return entry;
+    }
+
+    /**
+     * Return the target URI of a header, either as read or as set by a writer.
+     * @param header WARC header
+     * @return target URI or null
+     */
+    public static String getTargetUri(WarcHeader header) {
+        if (header.warcTargetUriStr != null) {
+            return header.warcTargetUriStr;
+        }
+        if (header.warcTargetUriUri != null) {
+            return header.warcTargetUriUri.toString();
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,617 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Persistent payload digest store used for duplicate detection while writing
+ * WARC files. Maps payload digest bytes, as parsed into
+ * <code>WarcDigest.digestBytes</code>, to the capture which first archived
+ * the payload.
+ *
+ * The store is an open-addressing hash table with linear probing in a
+ * memory-mapped file, so it uses no heap per entry and survives restarts.
+ * The table is split into independently locked shards to allow concurrent
+ * lookups and inserts from many threads. The capacity is fixed when the
+ * store is created and the table is never resized. Slots have a fixed size,
+ * record IDs and file names are appended to a separate
+ * <code>.strings</code> file and referenced by offset.
+ * The store must not be closed while other threads are using it.
+ *
+ * @author nicl
+ */
+public class WarcDedupStore implements Closeable, WarcDigestLookup {
+
+    /** Magic bytes identifying a store file. */
+    public static final byte[] MAGIC = {'J', 'W', 'A', 'T', 'D', 'D', 'U', 'P'};
+
+    /** Store format version. */
+    public static final int VERSION = 1;
+
+    /** Maximum number of shards. */
+    public static final int MAX_SHARDS = 64;
+
+    /** Minimum number of slots per shard before the table is split. */
+    protected static final int MIN_SHARD_SLOTS = 1024;
+
+    /** Fixed part of the header, followed by the entry count of each shard. */
+    protected static final int HEADER_FIXED_SIZE = 32;
+
+    /** Size of a slot excluding the digest. */
+    protected static final int SLOT_OVERHEAD = 47;
+
+    /** Maximum load factor used to size the table from the capacity. */
+    protected static final double LOAD_FACTOR = 0.75;
+
+    /** UTF-8 charset used for strings. */
+    protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** Table file. */
+    protected RandomAccessFile raf;
+
+    /** Strings file. */
+    protected RandomAccessFile stringsRaf;
+
+    /** Strings file channel. */
+    protected FileChannel stringsChannel;
+
+    /** End of the strings file. */
+    protected AtomicLong stringsEnd;
+
+    /** File name to strings file offset cache. */
+    protected ConcurrentHashMap<String, Long> fileNameRefs = new ConcurrentHashMap<String, Long>();
+
+    /** Mapped header. */
+    protected MappedByteBuffer header;
+
+    /** Mapped table chunks. */
+    protected MappedByteBuffer[] chunks;
+
+    /** Number of slots in each chunk. */
+    protected int slotsPerChunk;
+
+    /** Length of the digests. */
+    protected int digestLength;
+
+    /** Size of a slot. */
+    protected int slotSize;
+
+    /** Number of shards, a power of two. */
+    protected int shardCount;
+
+    /** Number of bits used to select the shard. */
+    protected int shardBits;
+
+    /** Number of slots in each shard. */
+    protected long shardSlots;
+
+    /** Shard locks. */
+    protected ReentrantReadWriteLock[] locks;
+
+    /**
+     * Create a new, empty store, replacing any existing store.
+     * @param file table file, the strings are written to a sibling file
+     * with a <code>.strings</code> suffix
+     * @param capacity number of digests the store must hold
+     * @param digestLength length of the digests in bytes, e.g. 20 for SHA-1
+     * @return new store
+     * @throws IOException if an I/O error occurs while creating the files
+     */
+    public static WarcDedupStore create(File file, long capacity, int digestLength) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("'file' is null!");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The 'capacity' is less than or equal to 0: " + capacity);
+        }
+        if (digestLength < 8 || digestLength > 64) {
+            throw new IllegalArgumentException("The 'digestLength' is not within [8-64]: " + digestLength);
+        }
+        long slots = (long)Math.ceil(capacity / LOAD_FACTOR) + 1;
+        int shards = 1;
+        while (shards < MAX_SHARDS && slots / (shards * 2) >= MIN_SHARD_SLOTS) {
+            shards *= 2;
+        }
+        long shardSlots = (slots + shards - 1) / shards;
+        long headerSize = HEADER_FIXED_SIZE + shards * 8L;
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            // Truncate first, so the table is zero filled.
+            raf.setLength(0);
+            raf.setLength(headerSize + shards * shardSlots * (digestLength + SLOT_OVERHEAD));
+            raf.write(MAGIC);
+            raf.writeInt(VERSION);
+            raf.writeInt(digestLength);
+            raf.writeInt(shards);
+            raf.writeInt(0);
+            raf.writeLong(shardSlots);
+        } finally {
+            raf.close();
+        }
+        RandomAccessFile stringsRaf = new RandomAccessFile(getStringsFile(file), "rw");
+        try {
+            stringsRaf.setLength(0);
+            stringsRaf.write(MAGIC);
+        } finally {
+            stringsRaf.close();
+        }
+        return open(file);
+    }
+
+    /**
+     * Open an existing store.
+     * @param file table file
+     * @return opened store
+     * @throws IOException if an I/O error occurs or the file is not a valid
+     * store
+     */
+    public static WarcDedupStore open(File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("'file' is null!");
+        }
+        WarcDedupStore store = new WarcDedupStore();
+        try {
+            store.init(file);
+        } catch (IOException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Use the static factory methods.
+     */
+    protected WarcDedupStore() {
+    }
+
+    /**
+     * Map the table and open the strings file.
+     * @param file table file
+     * @throws IOException if an I/O error occurs or the file is not a valid
+     * store
+     */
+    protected void init(File file) throws IOException {
+        raf = new RandomAccessFile(file, "rw");
+        FileChannel channel = raf.getChannel();
+        if (channel.size() < HEADER_FIXED_SIZE) {
+            throw new IOException("Not a dedup store: '" + file.getPath() + "'");
+        }
+        ByteBuffer bb = ByteBuffer.allocate(HEADER_FIXED_SIZE);
+        while (bb.hasRemaining()) {
+            channel.read(bb, bb.position());
+        }
+        bb.flip();
+        for (int i=0; i<MAGIC.length; ++i) {
+            if (bb.get() != MAGIC[i]) {
+                throw new IOException("Not a dedup store: '" + file.getPath() + "'");
+            }
+        }
+        int version = bb.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported dedup store version: " + version);
+        }
+        digestLength = bb.getInt();
+        shardCount = bb.getInt();
+        bb.getInt();
+        shardSlots = bb.getLong();
+        slotSize = digestLength + SLOT_OVERHEAD;
+        long headerSize = HEADER_FIXED_SIZE + shardCount * 8L;
+        long totalSlots = shardCount * shardSlots;
+        if (Integer.bitCount(shardCount) != 1 || shardSlots < 2
+                || channel.size() != headerSize + totalSlots * slotSize) {
+            throw new IOException("Corrupt dedup store: '" + file.getPath() + "'");
+        }
+        shardBits = Integer.numberOfTrailingZeros(shardCount);
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, headerSize);
+        slotsPerChunk = Integer.MAX_VALUE / slotSize;
+        int chunkCount = (int)((totalSlots + slotsPerChunk - 1) / slotsPerChunk);
+        chunks = new MappedByteBuffer[chunkCount];
+        long position = headerSize;
+        long remaining = totalSlots;
+        for (int i=0; i<chunkCount; ++i) {
+            long slots = Math.min(remaining, slotsPerChunk);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, slots * slotSize);
+            position += slots * slotSize;
+            remaining -= slots;
+        }
+        locks = new ReentrantReadWriteLock[shardCount];
+        for (int i=0; i<shardCount; ++i) {
+            locks[i] = new ReentrantReadWriteLock();
+        }
+        stringsRaf = new RandomAccessFile(getStringsFile(file), "rw");
+        stringsChannel = stringsRaf.getChannel();
+        if (stringsChannel.size() < MAGIC.length) {
+            throw new IOException("Missing or corrupt dedup store strings file");
+        }
+        stringsEnd = new AtomicLong(stringsChannel.size());
+    }
+
+    /**
+     * Returns the strings file belonging to a table file.
+     * @param file table file
+     * @return strings file
+     */
+    protected static File getStringsFile(File file) {
+        return new File(file.getPath() + ".strings");
+    }
+
+    /**
+     * Compute the 64-bit hash of a target URI stored with the entries.
+     * This is the FNV-1a hash of the UTF-16 characters.
+     * @param uri target URI
+     * @return 64-bit hash
+     */
+    public static long hashUri(String uri) {
+        long h = 0xcbf29ce484222325L;
+        for (int i=0; i<uri.length(); ++i) {
+            h ^= uri.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * Returns the digest length of the store.
+     * @return digest length in bytes
+     */
+    public int getDigestLength() {
+        return digestLength;
+    }
+
+    /**
+     * Returns the maximum number of entries the table can hold. Inserts may
+     * fail before this when the digests are unevenly distributed.
+     * @return number of slots in the table
+     */
+    public long getCapacity() {
+        return shardCount * shardSlots;
+    }
+
+    /**
+     * Returns the number of entries in the store.
+     * @return number of entries in the store
+     */
+    public long size() {
+        long size = 0;
+        for (int i=0; i<shardCount; ++i) {
+            locks[i].readLock().lock();
+            try {
+                size += header.getLong(HEADER_FIXED_SIZE + i * 8);
+            } finally {
+                locks[i].readLock().unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Look up the capture of a payload digest.
+     * @param digest payload digest bytes
+     * @return capture archived with the digest or null
+     * @throws IOException if an I/O error occurs while reading the strings
+     */
+    @Override
+    public WarcDedupEntry lookup(byte[] digest) throws IOException {
+        long h = checkDigest(digest);
+        int shard = getShard(h);
+        locks[shard].readLock().lock();
+        try {
+            long slot = findSlot(shard, h, digest);
+            if (isUsed(slot)) {
+                return readEntry(slot);
+            }
+            return null;
+        } finally {
+            locks[shard].readLock().unlock();
+        }
+    }
+
+    /**
+     * Store the capture of a payload digest unless the digest is already
+     * present, in which case the existing capture is returned.
+     * @param digest payload digest bytes
+     * @param entry capture to store
+     * @return existing capture or null, if the entry was stored
+     * @throws IOException if an I/O error occurs while accessing the strings
+     * @throws IllegalStateException if the shard of the digest is full
+     */
+    @Override
+    public WarcDedupEntry putIfAbsent(byte[] digest, WarcDedupEntry entry) throws IOException {
+        long h = checkDigest(digest);
+        if (entry == null) {
+            throw new IllegalArgumentException("'entry' is null!");
+        }
+        int shard = getShard(h);
+        // Look up first, so duplicates, the common case, only take a read lock.
+        locks[shard].readLock().lock();
+        try {
+            long slot = findSlot(shard, h, digest);
+            if (isUsed(slot)) {
+                return readEntry(slot);
+            }
+        } finally {
+            locks[shard].readLock().unlock();
+        }
+        long recordIdRef = writeString(entry.recordId);
+        long fileRef = getFileNameRef(entry.filename);
+        locks[shard].writeLock().lock();
+        try {
+            long slot = findSlot(shard, h, digest);
+            if (isUsed(slot)) {
+                // Inserted by another thread, the appended record ID is wasted.
+                return readEntry(slot);
+            }
+            int countPos = HEADER_FIXED_SIZE + shard * 8;
+            long count = header.getLong(countPos);
+            if (count >= shardSlots - 1) {
+                throw new IllegalStateException("Dedup store is full");
+            }
+            ByteBuffer chunk = chunks[(int)(slot / slotsPerChunk)];
+            int pos = (int)(slot % slotsPerChunk) * slotSize;
+            for (int i=0; i<digestLength; ++i) {
+                chunk.put(pos + 1 + i, digest[i]);
+            }
+            pos += 1 + digestLength;
+            if (entry.date != null) {
+                chunk.putLong(pos, entry.date.ldt.toEpochSecond(ZoneOffset.UTC));
+                chunk.putInt(pos + 8, entry.date.ldt.getNano());
+                chunk.put(pos + 12, (byte)entry.date.precision);
+                chunk.put(pos + 13, (byte)Math.min(entry.date.fractionLen, 9));
+            } else {
+                chunk.putLong(pos, Long.MIN_VALUE);
+            }
+            chunk.putLong(pos + 14, entry.targetUriHash);
+            chunk.putLong(pos + 22, entry.offset);
+            chunk.putLong(pos + 30, fileRef);
+            chunk.putLong(pos + 38, recordIdRef);
+            // Mark the slot as used once it has been filled.
+            chunk.put(pos - 1 - digestLength, (byte)1);
+            header.putLong(countPos, count + 1);
+            return null;
+        } finally {
+            locks[shard].writeLock().unlock();
+        }
+    }
+
+    /**
+     * Validate a digest and return its hash.
+     * @param digest payload digest bytes
+     * @return hash of the digest
+     */
+    protected long checkDigest(byte[] digest) {
+        if (digest == null) {
+            throw new IllegalArgumentException("'digest' is null!");
+        }
+        if (digest.length != digestLength) {
+            throw new IllegalArgumentException("Expected a digest of " + digestLength + " bytes, got " + digest.length);
+        }
+        if (chunks == null) {
+            throw new IllegalStateException("Dedup store has been closed!");
+        }
+        // Digests are uniformly distributed, so the first bytes are the hash.
+        long h = 0;
+        for (int i=0; i<8; ++i) {
+            h = (h << 8) | (digest[i] & 255);
+        }
+        return h;
+    }
+
+    /**
+     * Returns the shard of a digest hash.
+     * @param h digest hash
+     * @return shard index
+     */
+    protected int getShard(long h) {
+        return (shardBits == 0) ? 0 : (int)(h >>> (64 - shardBits));
+    }
+
+    /**
+     * Probe a shard for a digest. Must be called with the shard lock held.
+     * @param shard shard index
+     * @param h digest hash
+     * @param digest payload digest bytes
+     * @return the slot holding the digest or the empty slot ending the probe
+     */
+    protected long findSlot(int shard, long h, byte[] digest) {
+        long first = shard * shardSlots;
+        long idx = (h & Long.MAX_VALUE) % shardSlots;
+        while (true) {
+            long slot = first + idx;
+            ByteBuffer chunk = chunks[(int)(slot / slotsPerChunk)];
+            int pos = (int)(slot % slotsPerChunk) * slotSize;
+            if (chunk.get(pos) == 0) {
+                return slot;
+            }
+            int i = 0;
+            while (i < digestLength && chunk.get(pos + 1 + i) == digest[i]) {
+                ++i;
+            }
+            if (i == digestLength) {
+                return slot;
+            }
+            if (++idx == shardSlots) {
+                idx = 0;
+            }
+        }
+    }
+
+    /**
+     * Check whether a slot is in use.
+     * @param slot slot index
+     * @return boolean indicating whether the slot is in use
+     */
+    protected boolean isUsed(long slot) {
+        return chunks[(int)(slot / slotsPerChunk)].get((int)(slot % slotsPerChunk) * slotSize) != 0;
+    }
+
+    /**
+     * Read the entry stored in a slot.
+     * @param slot slot index
+     * @return entry stored in the slot
+     * @throws IOException if an I/O error occurs while reading the strings
+     */
+    protected WarcDedupEntry readEntry(long slot) throws IOException {
+        ByteBuffer chunk = chunks[(int)(slot / slotsPerChunk)];
+        int pos = (int)(slot % slotsPerChunk) * slotSize + 1 + digestLength;
+        WarcDedupEntry entry = new WarcDedupEntry();
+        long seconds = chunk.getLong(pos);
+        if (seconds != Long.MIN_VALUE) {
+            LocalDateTime ldt = LocalDateTime.ofEpochSecond(seconds, chunk.getInt(pos + 8), ZoneOffset.UTC);
+            int fractionLen = chunk.get(pos + 13);
+            long fraction = ldt.getNano();
+            for (int i=fractionLen; i<9; ++i) {
+                fraction /= 10;
+            }
+            entry.date = new WarcDate(ldt.getYear(), ldt.getMonthValue(), ldt.getDayOfMonth(),
+                    ldt.getHour(), ldt.getMinute(), ldt.getSecond(), ldt.getNano(), fraction, fractionLen);
+            entry.date.precision = chunk.get(pos + 12);
+        }
+        entry.targetUriHash = chunk.getLong(pos + 14);
+        entry.offset = chunk.getLong(pos + 22);
+        entry.filename = readString(chunk.getLong(pos + 30));
+        entry.recordId = readString(chunk.getLong(pos + 38));
+        return entry;
+    }
+
+    /**
+     * Returns the strings file offset of a file name, appending it the first
+     * time it is seen by this instance.
+     * @param filename file name or null
+     * @return strings file offset or 0 for null
+     * @throws IOException if an I/O error occurs while writing
+     */
+    protected long getFileNameRef(String filename) throws IOException {
+        if (filename == null) {
+            return 0;
+        }
+        Long ref = fileNameRefs.get(filename);
+        if (ref == null) {
+            ref = writeString(filename);
+            Long existing = fileNameRefs.putIfAbsent(filename, ref);
+            if (existing != null) {
+                ref = existing;
+            }
+        }
+        return ref;
+    }
+
+    /**
+     * Append a length prefixed UTF-8 string to the strings file.
+     * @param str string or null
+     * @return strings file offset or 0 for null
+     * @throws IOException if an I/O error occurs while writing
+     */
+    protected long writeString(String str) throws IOException {
+        if (str == null) {
+            return 0;
+        }
+        byte[] bytes = str.getBytes(UTF8);
+        ByteBuffer bb = ByteBuffer.allocate(4 + bytes.length);
+        bb.putInt(bytes.length);
+        bb.put(bytes);
+        bb.flip();
+        long ref = stringsEnd.getAndAdd(bb.remaining());
+        long position = ref;
+        while (bb.hasRemaining()) {
+            position += stringsChannel.write(bb, position);
+        }
+        return ref;
+    }
+
+    /**
+     * Read a string from the strings file.
+     * @param ref strings file offset or 0 for null
+     * @return string or null
+     * @throws IOException if an I/O error occurs while reading
+     */
+    protected String readString(long ref) throws IOException {
+        if (ref == 0) {
+            return null;
+        }
+        ByteBuffer bb = ByteBuffer.allocate(4);
+        readFully(bb, ref);
+        bb = ByteBuffer.allocate(bb.getInt(0));
+        readFully(bb, ref + 4);
+        return new String(bb.array(), UTF8);
+    }
+
+    /**
+     * Fill a buffer from the strings file.
+     * @param bb buffer to fill
+     * @param position strings file position
+     * @throws IOException if an I/O error occurs or the file is truncated
+     */
+    protected void readFully(ByteBuffer bb, long position) throws IOException {
+        while (bb.hasRemaining()) {
+            int read = stringsChannel.read(bb, position + bb.position());
+            if (read == -1) {
+                throw new IOException("Truncated dedup store strings file");
+            }
+        }
+    }
+
+    /**
+     * Write all changes to the disk.
+     * @throws IOException if an I/O error occurs while writing
+     */
+    public void force() throws IOException {
+        if (chunks != null) {
+            for (int i=0; i<chunks.length; ++i) {
+                chunks[i].force();
+            }
+            header.force();
+        }
+        if (stringsChannel != null && stringsChannel.isOpen()) {
+            stringsChannel.force(false);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            force();
+        } finally {
+            chunks = null;
+            header = null;
+            if (stringsRaf != null) {
+                stringsRaf.close();
+                stringsRaf = null;
+                stringsChannel = null;
+            }
+            if (raf != null) {
+                raf.close();
+                raf = null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.IOException;
+
+/**
+ * Source of previously archived captures, keyed by payload digest.
+ * Used by <code>WarcWriter</code> to replace duplicate responses with
+ * revisit records. <code>WarcDedupStore</code> is the default
+ * implementation, but the captures may just as well come from an
+ * existing CDX index or an external service.
+ *
+ * @author nicl
+ */
+public interface WarcDigestLookup {
+
+    /**
+     * Return the earlier capture with the same payload digest.
+     * @param digest payload digest bytes
+     * @return earlier capture or null, if the payload has not been seen before
+     * @throws IOException if an I/O error occurs while accessing the captures
+     */
+    WarcDedupEntry lookup(byte[] digest) throws IOException;
+
+    /**
+     * Remember a capture which has been written for later lookups, unless
+     * a capture with the same payload digest is already known.
+     * Implementations shared by several writers must do this atomically.
+     * @param digest payload digest bytes
+     * @param entry capture written with its file name and offset
+     * @return earlier capture or null, if the supplied capture was stored
+     * @throws IOException if an I/O error occurs while accessing the captures
+     */
+    WarcDedupEntry putIfAbsent(byte[] digest, WarcDedupEntry entry) throws IOException;
+
+}
@@ -21,9 +21,9 @@ import java.net.InetAddress;
 import java.util.Date;
 
 import org.jwat.common.ContentType;
-import org.jwat.common.Diagnosis;
 import org.jwat.common.DiagnosisType;
 import org.jwat.common.Diagnostics;
+import org.jwat.common.IPAddress;
 import org.jwat.common.IPAddressParser;
 import org.jwat.common.Uri;
 import org.jwat.common.UriProfile;
@@ -49,7 +49,7 @@ public class WarcFieldParsers {
      * @param information optional extra information
      */
     public void addInvalidExpectedError(String entity, String... information) {
-        diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_EXPECTED, entity, information));
+        diagnostics.addError(DiagnosisType.INVALID_EXPECTED, entity, information);
     }
 
     /**
@@ -57,7 +57,7 @@ public class WarcFieldParsers {
      * @param entity entity examined
      */
     public void addEmptyWarning(String entity) {
-        diagnostics.addWarning(new Diagnosis(DiagnosisType.EMPTY, entity));
+        diagnostics.addWarning(DiagnosisType.EMPTY, entity);
     }
 
     /**
@@ -149,10 +149,22 @@ public class WarcFieldParsers {
      * IP-address
      */
     public InetAddress parseIpAddress(String ipAddress, String field) {
-        InetAddress inetAddr = null;
+        IPAddress ipAddr = parseIPAddress(ipAddress, field);
+        return (ipAddr != null) ? ipAddr.getInetAddress() : null;
+    }
+
+    /**
+     * Parse and validate an IP address into its numeric form.
+     * @param ipAddress the IP address to parse
+     * @param field field name
+     * @return the numeric IP address or null, if unable to parse the value
+     * as an IP-address
+     */
+    public IPAddress parseIPAddress(String ipAddress, String field) {
+        IPAddress ipAddr = null;
         if (ipAddress != null && ipAddress.length() > 0) {
-            inetAddr = IPAddressParser.getAddress(ipAddress);
-            if (inetAddr == null) {
+            ipAddr = IPAddressParser.parse(ipAddress);
+            if (ipAddr == null) {
                 // Invalid ip address.
                 addInvalidExpectedError("'" + field + "' value", ipAddress, "IPv4 or IPv6 format");
             }
@@ -160,7 +172,7 @@ public class WarcFieldParsers {
             // Missing ip address.
             addEmptyWarning("'" + field + "' field");
         }
-        return inetAddr;
+        return ipAddr;
     }
 
     /**
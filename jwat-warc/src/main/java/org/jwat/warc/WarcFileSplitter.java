@@ -0,0 +1,362 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jwat.common.ByteCountingPushBackInputStream;
+import org.jwat.common.Diagnostics;
+import org.jwat.common.RandomAccessFileInputStream;
+import org.jwat.common.ValidationLevel;
+import org.jwat.gzip.GzipMemberScanner;
+
+/**
+ * Split WARC files into ranges aligned to record boundaries so each range
+ * can be parsed independently, and in parallel, by <code>WarcRangeParser</code>.
+ * ({@link WarcRangeParser})
+ *
+ * @author nicl
+ */
+public class WarcFileSplitter {
+
+    /** Beginning of every WARC record. */
+    protected static final byte[] WARC_MAGIC_BYTES = WarcConstants.WARC_MAGIC_HEADER.getBytes();
+
+    /** Buffer size used when scanning for records. */
+    public static final int DEFAULT_SCAN_BUFFER_SIZE = 65536;
+
+    /** Buffer size used when parsing candidate record headers. */
+    protected static final int HEADER_BUFFER_SIZE = 8192;
+
+    /** Maximum number of newline characters accepted after a record block. */
+    protected static final int MAX_TRAILING_NEWLINE_BYTES = WarcConstants.WARC_RECORD_TRAILING_NEWLINES * 2;
+
+    /**
+     * Split a GZip compressed WARC file into approximately equally sized
+     * ranges. Each range starts at a verified GZip member containing the
+     * beginning of a WARC record. Files with fewer members than requested
+     * splits return fewer ranges.
+     * @param file GZip compressed WARC file, one record per GZip member
+     * @param splits requested number of ranges
+     * @return list of ranges covering the whole file in offset order
+     * @throws IOException if an I/O error occurs while scanning the file
+     */
+    public static List<WarcFileRange> splitCompressed(File file, int splits) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("'file' is null!");
+        }
+        if (splits <= 0) {
+            throw new IllegalArgumentException("'splits' must be greater than 0!");
+        }
+        long length = file.length();
+        List<Long> boundaries = new ArrayList<Long>();
+        boundaries.add(0L);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long last = 0;
+            long nominal;
+            long start;
+            for (int i=1; i<splits; ++i) {
+                nominal = length / splits * i;
+                if (nominal <= last) {
+                    continue;
+                }
+                start = GzipMemberScanner.findMemberStart(raf, nominal, length, WARC_MAGIC_BYTES);
+                if (start == -1) {
+                    break;
+                }
+                if (start > last) {
+                    boundaries.add(start);
+                    last = start;
+                }
+            }
+        } finally {
+            raf.close();
+        }
+        return toRanges(file, boundaries, length, true);
+    }
+
+    /**
+     * Split an uncompressed WARC file into approximately equally sized
+     * ranges. Each range starts at a verified record boundary, see
+     * <code>findRecordStart</code>. Files with fewer records than requested
+     * splits return fewer ranges.
+     * @param file uncompressed WARC file
+     * @param splits requested number of ranges
+     * @return list of ranges covering the whole file in offset order
+     * @throws IOException if an I/O error occurs while scanning the file
+     */
+    public static List<WarcFileRange> splitUncompressed(File file, int splits) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("'file' is null!");
+        }
+        if (splits <= 0) {
+            throw new IllegalArgumentException("'splits' must be greater than 0!");
+        }
+        long length = file.length();
+        List<Long> boundaries = new ArrayList<Long>();
+        boundaries.add(0L);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long last = 0;
+            long nominal;
+            long start;
+            for (int i=1; i<splits; ++i) {
+                nominal = length / splits * i;
+                if (nominal <= last) {
+                    continue;
+                }
+                start = findRecordStart(raf, nominal, length);
+                if (start == -1) {
+                    break;
+                }
+                if (start > last) {
+                    boundaries.add(start);
+                    last = start;
+                }
+            }
+        } finally {
+            raf.close();
+        }
+        return toRanges(file, boundaries, length, false);
+    }
+
+    /**
+     * Find the first record boundary in an uncompressed WARC file at or after
+     * the given offset. Candidates are <code>WARC/</code> version lines at the
+     * beginning of a line. A candidate is only accepted if its header parses
+     * and its <code>Content-Length</code> leads to the end of the file or to
+     * another parsable record header, separated only by newlines. This rejects
+     * version lines embedded in payloads, for instance in archived WARC files.
+     * @param raf random access file, the file pointer is modified
+     * @param from offset to start scanning from
+     * @param to offset where candidates are no longer considered
+     * @return offset of the first verified record or -1, if none was found
+     * @throws IOException if an I/O error occurs while reading the file
+     */
+    public static long findRecordStart(RandomAccessFile raf, long from, long to) throws IOException {
+        if (raf == null) {
+            throw new IllegalArgumentException("'raf' is null!");
+        }
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("Invalid range: " + from + "-" + to);
+        }
+        long length = raf.length();
+        to = Math.min(to, length);
+        WarcReader reader = newHeaderReader();
+        byte[] buffer = new byte[DEFAULT_SCAN_BUFFER_SIZE];
+        // Include the preceding byte so line starts can be checked.
+        long bufferOffset = (from > 0) ? from - 1 : 0;
+        int first = (from > 0) ? 1 : 0;
+        int read;
+        int limit;
+        int i;
+        while (bufferOffset < to) {
+            raf.seek(bufferOffset);
+            read = raf.read(buffer, 0, buffer.length);
+            if (read < WARC_MAGIC_BYTES.length) {
+                break;
+            }
+            // Only candidates with a complete magic in the buffer.
+            limit = read - WARC_MAGIC_BYTES.length;
+            i = first;
+            while (i <= limit && bufferOffset + i < to) {
+                if (buffer[i] == 'W' && startsWith(buffer, i, WARC_MAGIC_BYTES)
+                        && (bufferOffset + i == 0 || (i > 0 && buffer[i - 1] == '\n'))) {
+                    if (verifyRecord(raf, reader, bufferOffset + i, length)) {
+                        return bufferOffset + i;
+                    }
+                }
+                ++i;
+            }
+            // Overlap so candidates spanning two buffers are not missed and
+            // the byte preceding the next candidate is available.
+            if (limit == 0) {
+                break;
+            }
+            bufferOffset += limit;
+            first = 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Verify that a record starts at the given offset. The record header is
+     * parsed and the <code>Content-Length</code> used to locate the end of the
+     * record which must be followed by newlines and the end of the file or
+     * another record header.
+     * @param raf random access file, the file pointer is modified
+     * @param reader reader used to parse record headers
+     * @param offset offset of the candidate record
+     * @param length length of the file
+     * @return boolean indicating whether a record starts at the given offset
+     * @throws IOException if an I/O error occurs while reading the file
+     */
+    protected static boolean verifyRecord(RandomAccessFile raf, WarcReader reader, long offset, long length) throws IOException {
+        WarcHeader header = parseRecordHeader(raf, reader, offset);
+        if (header == null) {
+            return false;
+        }
+        long next = offset + header.headerBytes.length + header.contentLength;
+        if (next > length) {
+            return false;
+        }
+        raf.seek(next);
+        int newlines = 0;
+        int c;
+        while (newlines < MAX_TRAILING_NEWLINE_BYTES && (c = raf.read()) != -1) {
+            if (c != '\r' && c != '\n') {
+                break;
+            }
+            ++newlines;
+        }
+        next += newlines;
+        if (next == length) {
+            return true;
+        }
+        return parseRecordHeader(raf, reader, next) != null;
+    }
+
+    /**
+     * Parse a record header starting exactly at the given offset.
+     * @param raf random access file, the file pointer is modified
+     * @param reader reader used to parse record headers
+     * @param offset offset of the record header
+     * @return parsed header or null, if no valid header with a
+     * <code>Content-Length</code> starts at the offset
+     * @throws IOException if an I/O error occurs while reading the file
+     */
+    protected static WarcHeader parseRecordHeader(RandomAccessFile raf, WarcReader reader, long offset) throws IOException {
+        byte[] magic = new byte[WARC_MAGIC_BYTES.length];
+        raf.seek(offset);
+        if (raf.read(magic) != magic.length || !startsWith(magic, 0, WARC_MAGIC_BYTES)) {
+            return null;
+        }
+        raf.seek(offset);
+        ByteCountingPushBackInputStream pbin = new ByteCountingPushBackInputStream(
+                new BufferedInputStream(new RandomAccessFileInputStream(raf), HEADER_BUFFER_SIZE),
+                WarcReaderUncompressed.PUSHBACK_BUFFER_SIZE);
+        Diagnostics diagnostics = new Diagnostics();
+        diagnostics.setValidationLevel(ValidationLevel.NONE);
+        reader.fieldParsers.diagnostics = diagnostics;
+        WarcHeader header = WarcHeader.initHeader(reader, 0, diagnostics);
+        if (!header.parseHeader(pbin) || header.startOffset != 0
+                || !header.bVersionParsed || header.contentLength == null
+                || header.contentLength < 0) {
+            return null;
+        }
+        return header;
+    }
+
+    /**
+     * Create a reader used only for parsing candidate record headers.
+     * @return reader used only for parsing candidate record headers
+     */
+    protected static WarcReader newHeaderReader() {
+        WarcReader reader = new WarcReaderUncompressed();
+        reader.setValidationLevel(ValidationLevel.NONE);
+        return reader;
+    }
+
+    /**
+     * Check whether a byte array contains the given bytes at an index.
+     * @param b byte array
+     * @param idx index in the byte array
+     * @param prefix bytes to look for
+     * @return boolean indicating whether the bytes are present at the index
+     */
+    protected static boolean startsWith(byte[] b, int idx, byte[] prefix) {
+        if (idx + prefix.length > b.length) {
+            return false;
+        }
+        for (int i=0; i<prefix.length; ++i) {
+            if (b[idx + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Split a WARC file into approximately equally sized ranges using known
+     * record offsets, for instance from a CDX index. No file data is read.
+     * @param file WARC file
+     * @param recordOffsets offsets of the records in the file
+     * @param splits requested number of ranges
+     * @param bCompressed is the WARC file GZip compressed
+     * @return list of ranges covering the whole file in offset order
+     */
+    public static List<WarcFileRange> split(File file, long[] recordOffsets, int splits, boolean bCompressed) {
+        if (file == null) {
+            throw new IllegalArgumentException("'file' is null!");
+        }
+        if (recordOffsets == null) {
+            throw new IllegalArgumentException("'recordOffsets' is null!");
+        }
+        if (splits <= 0) {
+            throw new IllegalArgumentException("'splits' must be greater than 0!");
+        }
+        long length = file.length();
+        long[] offsets = recordOffsets.clone();
+        Arrays.sort(offsets);
+        List<Long> boundaries = new ArrayList<Long>();
+        boundaries.add(0L);
+        long last = 0;
+        long nominal;
+        int idx = 0;
+        for (int i=1; i<splits; ++i) {
+            nominal = length / splits * i;
+            while (idx < offsets.length && offsets[idx] < nominal) {
+                ++idx;
+            }
+            if (idx == offsets.length) {
+                break;
+            }
+            if (offsets[idx] > last && offsets[idx] < length) {
+                boundaries.add(offsets[idx]);
+                last = offsets[idx];
+            }
+        }
+        return toRanges(file, boundaries, length, bCompressed);
+    }
+
+    /**
+     * Convert a list of range start offsets into a list of ranges.
+     * @param file WARC file
+     * @param boundaries increasing list of range start offsets
+     * @param length length of the file
+     * @param bCompressed is the WARC file GZip compressed
+     * @return list of ranges covering the whole file in offset order
+     */
+    protected static List<WarcFileRange> toRanges(File file, List<Long> boundaries, long length, boolean bCompressed) {
+        List<WarcFileRange> ranges = new ArrayList<WarcFileRange>(boundaries.size());
+        long end;
+        for (int i=0; i<boundaries.size(); ++i) {
+            end = (i + 1 < boundaries.size()) ? boundaries.get(i + 1) : length;
+            ranges.add(new WarcFileRange(file, boundaries.get(i), end, bCompressed));
+        }
+        return ranges;
+    }
+
+}
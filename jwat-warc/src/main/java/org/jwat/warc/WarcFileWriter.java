@@ -19,6 +19,7 @@ package org.jwat.warc;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.util.UUID;
 
@@ -163,6 +164,33 @@ public class WarcFileWriter {
         return bNewWriter;
     }
 
+    /**
+     * Write a complete response record or, if its payload digest is known
+     * by the digest lookup of the current writer, a revisit record.
+     * The capture is registered with the finished file name and the offset
+     * of the record, so later revisits can refer to it.
+     * @param record response record with a WARC-Payload-Digest
+     * @param httpHeader raw HTTP response header
+     * @param payload HTTP response payload
+     * @return boolean indicating whether a revisit record was written
+     * @throws IOException if an I/O exception occurs while writing the record
+     * @see WarcWriter#writeResponse(WarcRecord, byte[], InputStream, String, long)
+     */
+    public boolean writeResponse(WarcRecord record, byte[] httpHeader, InputStream payload) throws IOException {
+        if (writer == null) {
+            throw new IllegalStateException("Open a WARC file before writing records!");
+        }
+        // Close the previous record so the file pointer is the record offset.
+        if (writer.state == WarcWriter.S_HEADER_WRITTEN || writer.state == WarcWriter.S_PAYLOAD_WRITTEN) {
+            writer.closeRecord();
+        }
+        String filename = writerFile.getName();
+        if (filename.endsWith(ACTIVE_SUFFIX)) {
+            filename = filename.substring(0, filename.length() - ACTIVE_SUFFIX.length());
+        }
+        return writer.writeResponse(record, httpHeader, payload, filename, writer_raf.getFilePointer());
+    }
+
     /**
      * Close writer and release all resources.
      * @throws IOException in an I/O exception occurs while closing resources
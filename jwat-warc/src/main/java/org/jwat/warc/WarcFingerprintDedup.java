@@ -0,0 +1,304 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Two-tier payload deduplication. Payloads are first compared by their
+ * non-cryptographic fingerprint, see <code>org.jwat.common.Fingerprint</code>,
+ * and a cryptographic digest is only requested when two fingerprints match.
+ * Since nearly all fingerprints are unique, the expensive digest is only
+ * computed, or decoded from a WARC-Payload-Digest header, for the actual
+ * duplicates and the rare fingerprint collisions.
+ * Digests are requested through a <code>DigestSource</code>, which is kept
+ * until the digest is needed and should therefore be lightweight.
+ * Digests are requested outside the lock of this class, so a slow source
+ * does not hold up other threads.
+ *
+ * @author nicl
+ */
+public class WarcFingerprintDedup {
+
+    /**
+     * Lazily supplies the cryptographic digest of a payload.
+     */
+    public interface DigestSource {
+
+        /**
+         * Return the payload digest computed with the given algorithm.
+         * @param algorithm digest algorithm
+         * @return digest bytes or null, if the digest is unavailable
+         * @throws IOException if an I/O error occurs while computing the digest
+         */
+        byte[] getDigest(String algorithm) throws IOException;
+
+    }
+
+    /**
+     * Capture stored for a fingerprint, chained in case of collisions.
+     */
+    protected static class Candidate {
+
+        /** Capture of the payload. */
+        protected final WarcDedupEntry capture;
+
+        /** Digest source, released once the digest has been requested. */
+        protected DigestSource source;
+
+        /** Digest of the payload, once requested. */
+        protected byte[] digest;
+
+        /** Next capture with the same fingerprint but another digest. */
+        protected Candidate next;
+
+        /**
+         * Construct a candidate.
+         * @param capture capture of the payload
+         * @param source digest source or null
+         */
+        protected Candidate(WarcDedupEntry capture, DigestSource source) {
+            this.capture = capture;
+            this.source = source;
+        }
+
+        /**
+         * Return the digest, requesting it from the source the first time.
+         * @param algorithm digest algorithm
+         * @return digest bytes or null, if unavailable
+         * @throws IOException if an I/O error occurs while computing the digest
+         */
+        protected synchronized byte[] getDigest(String algorithm) throws IOException {
+            if (source != null) {
+                digest = source.getDigest(algorithm);
+                source = null;
+            }
+            return digest;
+        }
+
+    }
+
+    /** Digest algorithm used to verify fingerprint matches. */
+    protected final String digestAlgorithm;
+
+    /** Candidates by fingerprint. */
+    protected final Map<ByteBuffer, Candidate> candidates = new HashMap<ByteBuffer, Candidate>();
+
+    /** Number of fingerprint matches. */
+    protected long fingerprintMatches;
+
+    /** Number of fingerprint matches with different digests. */
+    protected long collisions;
+
+    /**
+     * Construct a deduplicator verifying fingerprint matches with the given
+     * digest algorithm.
+     * @param digestAlgorithm digest algorithm, e.g. "SHA-1" or "SHA-256"
+     */
+    public WarcFingerprintDedup(String digestAlgorithm) {
+        if (digestAlgorithm == null) {
+            throw new IllegalArgumentException("'digestAlgorithm' is null!");
+        }
+        try {
+            MessageDigest.getInstance(digestAlgorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unsupported digest algorithm: " + digestAlgorithm);
+        }
+        this.digestAlgorithm = digestAlgorithm;
+    }
+
+    /**
+     * Returns a digest source for a byte array. The digest is computed
+     * immediately with the digest algorithm of this deduplicator, so the
+     * source does not keep a reference to the array.
+     * @param b byte array
+     * @param off offset of the payload
+     * @param len payload length
+     * @return digest source holding the computed digest
+     */
+    public DigestSource digestOf(byte[] b, int off, int len) {
+        if (b == null) {
+            throw new IllegalArgumentException("'b' is null!");
+        }
+        final byte[] digest;
+        try {
+            MessageDigest md = MessageDigest.getInstance(digestAlgorithm);
+            md.update(b, off, len);
+            digest = md.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Unsupported digest algorithm: " + digestAlgorithm);
+        }
+        return new DigestSource() {
+            @Override
+            public byte[] getDigest(String algorithm) {
+                return isAlgorithm(digestAlgorithm, algorithm) ? digest : null;
+            }
+        };
+    }
+
+    /**
+     * Returns the digest algorithm used to verify fingerprint matches.
+     * @return digest algorithm
+     */
+    public String getDigestAlgorithm() {
+        return digestAlgorithm;
+    }
+
+    /**
+     * Returns the number of distinct fingerprints seen.
+     * @return number of distinct fingerprints seen
+     */
+    public synchronized int size() {
+        return candidates.size();
+    }
+
+    /**
+     * Returns the number of fingerprint matches, duplicates and collisions.
+     * @return number of fingerprint matches
+     */
+    public synchronized long getFingerprintMatches() {
+        return fingerprintMatches;
+    }
+
+    /**
+     * Returns the number of fingerprint matches where the digests differed.
+     * @return number of fingerprint collisions
+     */
+    public synchronized long getCollisions() {
+        return collisions;
+    }
+
+    /**
+     * Check whether a payload duplicates an earlier one. A payload with a new
+     * fingerprint is remembered without requesting its digest. On a
+     * fingerprint match the digests of both payloads are requested and
+     * compared. Payloads whose digest is unavailable are never reported as
+     * duplicates.
+     * @param fingerprint payload fingerprint
+     * @param capture capture of the payload
+     * @param source source of the payload digest
+     * @return capture of the earlier payload or null, if not a duplicate
+     * @throws IOException if an I/O error occurs while requesting a digest
+     */
+    public WarcDedupEntry check(byte[] fingerprint, WarcDedupEntry capture, DigestSource source) throws IOException {
+        if (fingerprint == null) {
+            throw new IllegalArgumentException("'fingerprint' is null!");
+        }
+        if (capture == null) {
+            throw new IllegalArgumentException("'capture' is null!");
+        }
+        if (source == null) {
+            throw new IllegalArgumentException("'source' is null!");
+        }
+        ByteBuffer key = ByteBuffer.wrap(fingerprint.clone());
+        Candidate head;
+        synchronized (this) {
+            head = candidates.get(key);
+            if (head == null) {
+                candidates.put(key, new Candidate(capture, source));
+                return null;
+            }
+            ++fingerprintMatches;
+        }
+        // Digests are requested without holding the lock.
+        byte[] digest = source.getDigest(digestAlgorithm);
+        if (digest == null) {
+            return null;
+        }
+        if (Arrays.equals(digest, head.getDigest(digestAlgorithm))) {
+            return head.capture;
+        }
+        // Chained candidates always have their digest.
+        synchronized (this) {
+            Candidate last = head;
+            Candidate candidate = head.next;
+            while (candidate != null) {
+                if (Arrays.equals(digest, candidate.digest)) {
+                    return candidate.capture;
+                }
+                last = candidate;
+                candidate = candidate.next;
+            }
+            ++collisions;
+            last.next = new Candidate(capture, null);
+            last.next.digest = digest;
+        }
+        return null;
+    }
+
+    /**
+     * Check whether the payload of a closed WARC record, read with payload
+     * fingerprints enabled, duplicates an earlier one. The digest is taken
+     * from the WARC-Payload-Digest header or the computed payload digest,
+     * if either uses the digest algorithm of this deduplicator.
+     * Revisit and continuation records are never duplicates.
+     * @param record closed WARC record
+     * @param filename name of the file containing the record or null
+     * @param offset offset of the record in the file or -1
+     * @return capture of the earlier payload or null, if not a duplicate
+     * @throws IOException if an I/O error occurs while requesting a digest
+     */
+    public WarcDedupEntry check(WarcRecord record, String filename, long offset) throws IOException {
+        if (record == null) {
+            throw new IllegalArgumentException("'record' is null!");
+        }
+        WarcHeader header = record.header;
+        if (header.warcTypeIdx != null && (header.warcTypeIdx == WarcConstants.RT_IDX_REVISIT
+                || header.warcTypeIdx == WarcConstants.RT_IDX_CONTINUATION)) {
+            return null;
+        }
+        if (record.computedPayloadFingerprint == null) {
+            throw new IllegalArgumentException("The record has no computed payload fingerprint!");
+        }
+        final WarcDigest headerDigest = header.warcPayloadDigest;
+        final WarcDigest computedDigest = record.computedPayloadDigest;
+        return check(record.computedPayloadFingerprint, WarcDedupEntry.fromHeader(header, filename, offset), new DigestSource() {
+            @Override
+            public byte[] getDigest(String algorithm) throws IOException {
+                if (headerDigest != null && isAlgorithm(headerDigest.algorithm, algorithm)) {
+                    return WarcWriter.getDigestBytes(headerDigest);
+                }
+                if (computedDigest != null && isAlgorithm(computedDigest.algorithm, algorithm)) {
+                    return computedDigest.digestBytes;
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Compare digest algorithm names, ignoring case and dashes, so "sha1"
+     * from a WARC header matches "SHA-1".
+     * @param name1 first algorithm name or null
+     * @param name2 second algorithm name
+     * @return boolean indicating whether the names denote the same algorithm
+     */
+    protected static boolean isAlgorithm(String name1, String name2) {
+        if (name1 == null) {
+            return false;
+        }
+        return name1.replace("-", "").equalsIgnoreCase(name2.replace("-", ""));
+    }
+
+}
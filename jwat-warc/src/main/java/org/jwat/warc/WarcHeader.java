@@ -28,11 +28,11 @@ import java.util.Map;
 
 import org.jwat.common.ByteCountingPushBackInputStream;
 import org.jwat.common.ContentType;
-import org.jwat.common.Diagnosis;
 import org.jwat.common.DiagnosisType;
 import org.jwat.common.Diagnostics;
 import org.jwat.common.HeaderLine;
 import org.jwat.common.HeaderLineReader;
+import org.jwat.common.IPAddress;
 import org.jwat.common.MaxLengthRecordingInputStream;
 import org.jwat.common.Uri;
 import org.jwat.common.UriProfile;
@@ -155,7 +155,11 @@ public class WarcHeader {
 
     /** WARC-IP-Address field string value. */
     public String warcIpAddress;
-    /** WARC-IP-Address converted to an <code>InetAddress</code> object, if valid. */
+    /** WARC-IP-Address converted to its numeric form, if valid. */
+    public IPAddress warcIpAddressObj;
+    /** WARC-IP-Address as an <code>InetAddress</code> object supplied by the
+     *  caller, e.g. for the writer. Not filled in by the parser, use
+     *  <code>getWarcInetAddress()</code> to read it from a parsed header. */
     public InetAddress warcInetAddress;
 
     /** List of WARC-Concurrent-To field string values and converted <code>URI</code> objects,  if valid. */
@@ -320,7 +324,7 @@ public class WarcHeader {
      * @param information optional extra information
      */
     protected void addWarningDiagnosis(DiagnosisType type, String entity, String... information) {
-        diagnostics.addWarning(new Diagnosis(type, entity, information));
+        diagnostics.addWarning(type, entity, information);
     }
 
     /**
@@ -331,6 +335,19 @@ public class WarcHeader {
         return startOffset;
     }
 
+    /**
+     * Returns the WARC-IP-Address as an <code>InetAddress</code> object, if
+     * valid. The object is created from the numeric form on the first call
+     * without any name resolution.
+     * @return WARC-IP-Address as an <code>InetAddress</code> or null
+     */
+    public InetAddress getWarcInetAddress() {
+        if (warcInetAddress != null) {
+            return warcInetAddress;
+        }
+        return (warcIpAddressObj != null) ? warcIpAddressObj.getInetAddress() : null;
+    }
+
     /**
      * Try to parse a WARC header and return a boolean indicating the success or
      * failure of this.
@@ -541,7 +558,7 @@ public class WarcHeader {
                     break;
                 case WarcConstants.FN_IDX_WARC_IP_ADDRESS:
                     warcIpAddress = fieldValue;
-                    warcInetAddress = fieldParsers.parseIpAddress(fieldValue, WarcConstants.FN_WARC_IP_ADDRESS);
+                    warcIpAddressObj = fieldParsers.parseIPAddress(fieldValue, WarcConstants.FN_WARC_IP_ADDRESS);
                     break;
                 case WarcConstants.FN_IDX_WARC_REFERS_TO:
                     warcRefersToStr = fieldValue;
@@ -933,6 +950,7 @@ public class WarcHeader {
                  */
                 case WarcConstants.FN_IDX_WARC_IP_ADDRESS:
                     warcIpAddress = fieldValueStr;
+                    warcIpAddressObj = IPAddress.getIPAddress(inetAddrFieldValue);
                     warcInetAddress = inetAddrFieldValue;
                     break;
                 /*
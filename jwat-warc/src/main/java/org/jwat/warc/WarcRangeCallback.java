@@ -0,0 +1,40 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.IOException;
+
+/**
+ * Callback handler invoked for each record parsed by <code>WarcRangeParser</code>.
+ * ({@link WarcRangeParser})
+ *
+ * @author nicl
+ */
+public interface WarcRangeCallback {
+
+    /**
+     * Called for each record in a range. The record is closed when this
+     * method returns. When ranges are parsed in parallel this method is
+     * called concurrently from several threads.
+     * @param range range the record belongs to
+     * @param record WARC record
+     * @throws IOException if an I/O error occurs while processing the record
+     */
+    public void warcRangeRecord(WarcFileRange range, WarcRecord record) throws IOException;
+
+}
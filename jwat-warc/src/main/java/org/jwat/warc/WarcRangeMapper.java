@@ -0,0 +1,52 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.IOException;
+
+/**
+ * Mapper used by <code>WarcRangeParser</code> to deliver results in record
+ * offset order while the ranges are parsed in parallel. Records are mapped
+ * to values on the worker threads, the values are delivered in order on the
+ * calling thread. ({@link WarcRangeParser})
+ *
+ * @param <T> type of value each record is mapped to
+ *
+ * @author nicl
+ */
+public interface WarcRangeMapper<T> {
+
+    /**
+     * Map a record to a value, called concurrently from several threads.
+     * The record is closed when this method returns.
+     * @param range range the record belongs to
+     * @param record WARC record
+     * @return value of the record, null values are not delivered
+     * @throws IOException if an I/O error occurs while processing the record
+     */
+    public T mapRecord(WarcFileRange range, WarcRecord record) throws IOException;
+
+    /**
+     * Deliver a mapped value, called in record offset order on the thread
+     * which called the parse method.
+     * @param value value of a record
+     * @throws IOException if an I/O error occurs while processing the value
+     */
+    public void recordMapped(T value) throws IOException;
+
+}
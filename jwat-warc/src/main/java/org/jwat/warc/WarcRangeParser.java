@@ -0,0 +1,351 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.jwat.archive.common.ReaderConfig;
+import org.jwat.common.ByteCountingPushBackInputStream;
+import org.jwat.common.RandomAccessFileInputStream;
+import org.jwat.gzip.GzipReader;
+
+/**
+ * Parse ranges of WARC files, as returned by <code>WarcFileSplitter</code>,
+ * each with its own reader. Ranges can be parsed one at a time, for instance
+ * by distributed jobs, or in parallel with the records delivered either
+ * unordered or in offset order. ({@link WarcFileSplitter})
+ *
+ * @author nicl
+ */
+public class WarcRangeParser {
+
+    /** Buffer size used to read the input stream. */
+    public static final int DEFAULT_READER_BUFFER_SIZE = 8192;
+
+    /*
+     * Settings.
+     */
+
+    /** Reader configuration used by all the readers. */
+    public ReaderConfig readerConfig = ReaderConfig.DEFAULT;
+
+    /** Number of ranges parsed concurrently. */
+    public int threads = Runtime.getRuntime().availableProcessors();
+
+    /** Buffer size used by the readers. */
+    public int bufferSize = DEFAULT_READER_BUFFER_SIZE;
+
+    /**
+     * Construct instance. Modify the fields directly to customise.
+     */
+    public WarcRangeParser() {
+    }
+
+    /**
+     * Parse the records of a single range on the calling thread.
+     * @param range range to parse
+     * @param callback callback handler invoked for each record
+     * @return number of records parsed
+     * @throws IOException if an I/O error occurs while parsing the range
+     */
+    public int parseRange(WarcFileRange range, WarcRangeCallback callback) throws IOException {
+        if (range == null) {
+            throw new IllegalArgumentException("'range' is null!");
+        }
+        if (callback == null) {
+            throw new IllegalArgumentException("'callback' is null!");
+        }
+        int records = 0;
+        RandomAccessFile raf = new RandomAccessFile(range.file, "r");
+        WarcReader reader = null;
+        try {
+            reader = openReader(raf, range);
+            WarcRecord record;
+            while ((record = nextRecord(reader, range)) != null) {
+                callback.warcRangeRecord(range, record);
+                record.close();
+                ++records;
+            }
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+            raf.close();
+        }
+        return records;
+    }
+
+    /**
+     * Create a reader positioned at the start of a range. The offsets of the
+     * reader and its records are relative to the beginning of the file.
+     * @param raf random access file of the range, the file pointer is modified
+     * @param range range to read
+     * @return reader positioned at the start of the range
+     * @throws IOException if an I/O error occurs while opening the reader
+     */
+    protected WarcReader openReader(RandomAccessFile raf, WarcFileRange range) throws IOException {
+        WarcReader reader;
+        raf.seek(range.start);
+        RandomAccessFileInputStream rafin = new RandomAccessFileInputStream(raf);
+        if (range.bCompressed) {
+            GzipReader gzipReader = new GzipReader(rafin, bufferSize);
+            gzipReader.setOffset(range.start);
+            reader = new WarcReaderCompressed(gzipReader, bufferSize, readerConfig);
+        } else {
+            ByteCountingPushBackInputStream pbin = new ByteCountingPushBackInputStream(
+                    new BufferedInputStream(rafin, bufferSize), WarcReaderUncompressed.PUSHBACK_BUFFER_SIZE);
+            pbin.setConsumed(range.start);
+            reader = new WarcReaderUncompressed(pbin, readerConfig);
+        }
+        return reader;
+    }
+
+    /**
+     * Read the next record of a range using a reader returned by
+     * <code>openReader</code>.
+     * @param reader reader positioned in the range
+     * @param range range being read
+     * @return next record in the range or null, if the end of the range
+     * has been reached
+     * @throws IOException if an I/O error occurs while reading the record
+     */
+    protected static WarcRecord nextRecord(WarcReader reader, WarcFileRange range) throws IOException {
+        WarcRecord record = reader.getNextRecord();
+        if (record != null && record.getStartOffset() >= range.end) {
+            record = null;
+        }
+        return record;
+    }
+
+    /**
+     * Returns an ordered <code>Stream</code> over the records of the ranges.
+     * A parallel stream is split at range boundaries and each range is read
+     * by its own reader, so the ranges should be smaller than the total size
+     * divided by the number of cores. The <code>threads</code> field is not
+     * used, parallel streams run in the common fork-join pool.
+     * Each record is closed as soon as it has passed through the stream
+     * pipeline, so its payload must be consumed within the pipeline stages.
+     * Close the stream to release the files of a partially consumed stream.
+     * @param ranges ranges to read, in offset order
+     * @param bParallel return a parallel stream
+     * @return <code>Stream</code> over the records of the ranges
+     */
+    public Stream<WarcRecord> stream(List<WarcFileRange> ranges, boolean bParallel) {
+        if (ranges == null) {
+            throw new IllegalArgumentException("'ranges' is null!");
+        }
+        final WarcRangeSpliterator spliterator = new WarcRangeSpliterator(this, ranges);
+        return StreamSupport.stream(spliterator, bParallel).onClose(new Runnable() {
+            @Override
+            public void run() {
+                spliterator.closeAll();
+            }
+        });
+    }
+
+    /**
+     * Returns a parallel <code>Stream</code> over the records of a WARC file.
+     * The file is split into ranges using <code>WarcFileSplitter</code>.
+     * ({@link #stream(List, boolean)})
+     * @param file GZip compressed or uncompressed WARC file
+     * @param splits requested number of ranges
+     * @return parallel <code>Stream</code> over the records of the file
+     * @throws IOException if an I/O error occurs while splitting the file
+     */
+    public Stream<WarcRecord> parallelStream(File file, int splits) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("'file' is null!");
+        }
+        List<WarcFileRange> ranges;
+        InputStream in = new FileInputStream(file);
+        boolean bCompressed;
+        try {
+            bCompressed = GzipReader.isGzipped(new ByteCountingPushBackInputStream(in, GzipReader.DEFAULT_INPUT_BUFFER_SIZE));
+        } finally {
+            in.close();
+        }
+        if (bCompressed) {
+            ranges = WarcFileSplitter.splitCompressed(file, splits);
+        } else {
+            ranges = WarcFileSplitter.splitUncompressed(file, splits);
+        }
+        return stream(ranges, true);
+    }
+
+    /**
+     * Parse ranges in parallel, the records are delivered unordered.
+     * @param ranges ranges to parse
+     * @param callback thread-safe callback handler invoked for each record
+     * @return number of records parsed
+     * @throws IOException if an I/O error occurs while parsing a range
+     * @throws InterruptedException if interrupted while waiting for the parsers
+     */
+    public long parse(List<WarcFileRange> ranges, final WarcRangeCallback callback) throws IOException, InterruptedException {
+        if (ranges == null) {
+            throw new IllegalArgumentException("'ranges' is null!");
+        }
+        if (callback == null) {
+            throw new IllegalArgumentException("'callback' is null!");
+        }
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>(ranges.size());
+        for (int i=0; i<ranges.size(); ++i) {
+            final WarcFileRange range = ranges.get(i);
+            tasks.add(new Callable<Integer>() {
+                @Override
+                public Integer call() throws IOException {
+                    return parseRange(range, callback);
+                }
+            });
+        }
+        long records = 0;
+        List<Future<Integer>> futures = invokeAll(tasks);
+        for (int i=0; i<futures.size(); ++i) {
+            records += getResult(futures.get(i));
+        }
+        return records;
+    }
+
+    /**
+     * Parse ranges in parallel, the records are mapped to values in parallel
+     * and delivered in offset order on the calling thread. The values of a
+     * range are kept in memory until all the preceding ranges have been
+     * delivered.
+     * @param ranges ranges to parse, in offset order
+     * @param mapper mapper used to map and deliver the records
+     * @param <T> type of value each record is mapped to
+     * @return number of records parsed
+     * @throws IOException if an I/O error occurs while parsing a range
+     * @throws InterruptedException if interrupted while waiting for the parsers
+     */
+    public <T> long parseOrdered(List<WarcFileRange> ranges, final WarcRangeMapper<T> mapper) throws IOException, InterruptedException {
+        if (ranges == null) {
+            throw new IllegalArgumentException("'ranges' is null!");
+        }
+        if (mapper == null) {
+            throw new IllegalArgumentException("'mapper' is null!");
+        }
+        List<Callable<List<T>>> tasks = new ArrayList<Callable<List<T>>>(ranges.size());
+        for (int i=0; i<ranges.size(); ++i) {
+            final WarcFileRange range = ranges.get(i);
+            tasks.add(new Callable<List<T>>() {
+                @Override
+                public List<T> call() throws IOException {
+                    final List<T> values = new ArrayList<T>();
+                    parseRange(range, new WarcRangeCallback() {
+                        @Override
+                        public void warcRangeRecord(WarcFileRange range, WarcRecord record) throws IOException {
+                            values.add(mapper.mapRecord(range, record));
+                        }
+                    });
+                    return values;
+                }
+            });
+        }
+        long records = 0;
+        ExecutorService executor = newExecutor();
+        try {
+            List<Future<List<T>>> futures = new ArrayList<Future<List<T>>>(tasks.size());
+            for (int i=0; i<tasks.size(); ++i) {
+                futures.add(executor.submit(tasks.get(i)));
+            }
+            List<T> values;
+            T value;
+            for (int i=0; i<futures.size(); ++i) {
+                values = getResult(futures.get(i));
+                futures.set(i, null);
+                for (int j=0; j<values.size(); ++j) {
+                    value = values.get(j);
+                    if (value != null) {
+                        mapper.recordMapped(value);
+                    }
+                }
+                records += values.size();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return records;
+    }
+
+    /**
+     * Create a work-stealing pool with the configured number of threads.
+     * @return work-stealing pool
+     */
+    protected ExecutorService newExecutor() {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("'threads' must be greater than 0!");
+        }
+        return Executors.newWorkStealingPool(threads);
+    }
+
+    /**
+     * Run all the tasks on a work-stealing pool and wait for them to finish.
+     * @param tasks tasks to run
+     * @param <V> task result type
+     * @return list of completed futures
+     * @throws InterruptedException if interrupted while waiting for the tasks
+     */
+    protected <V> List<Future<V>> invokeAll(List<Callable<V>> tasks) throws InterruptedException {
+        ExecutorService executor = newExecutor();
+        try {
+            return executor.invokeAll(tasks);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Return the result of a completed future, rethrowing a task exception
+     * as an <code>IOException</code> or <code>RuntimeException</code>.
+     * @param future future of a task
+     * @param <V> task result type
+     * @return result of the task
+     * @throws IOException if the task failed with an I/O exception
+     * @throws InterruptedException if interrupted while waiting for the task
+     */
+    protected static <V> V getResult(Future<V> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable t = e.getCause();
+            if (t instanceof IOException) {
+                throw (IOException)t;
+            } else if (t instanceof RuntimeException) {
+                throw (RuntimeException)t;
+            } else if (t instanceof Error) {
+                throw (Error)t;
+            }
+            throw new IOException(t);
+        }
+    }
+
+}
@@ -0,0 +1,208 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * <code>Spliterator</code> over the records of a list of WARC file ranges.
+ * Splitting hands off whole ranges, each read by its own reader, so parallel
+ * streams scale with the number of ranges. Records are closed after they have
+ * been passed to the stream action. Used by <code>WarcRangeParser</code>.
+ * ({@link WarcRangeParser#stream(java.util.List, boolean)})
+ *
+ * @author nicl
+ */
+public class WarcRangeSpliterator implements Spliterator<WarcRecord> {
+
+    /** Parser used to open the range readers. */
+    protected final WarcRangeParser parser;
+
+    /** Ranges in offset order. */
+    protected final List<WarcFileRange> ranges;
+
+    /** Index of the next range to open. */
+    protected int index;
+
+    /** Index after the last range covered by this spliterator. */
+    protected int fence;
+
+    /** Spliterators with open files, shared by all the split instances. */
+    protected final Set<WarcRangeSpliterator> open;
+
+    /** Range currently being read or null. */
+    protected WarcFileRange range;
+
+    /** File of the range currently being read or null. */
+    protected RandomAccessFile raf;
+
+    /** Reader of the range currently being read or null. */
+    protected WarcReader reader;
+
+    /**
+     * Construct a spliterator covering all the ranges.
+     * @param parser parser used to open the range readers
+     * @param ranges ranges in offset order
+     */
+    public WarcRangeSpliterator(WarcRangeParser parser, List<WarcFileRange> ranges) {
+        this(parser, new ArrayList<WarcFileRange>(ranges), 0, ranges.size(),
+                Collections.newSetFromMap(new ConcurrentHashMap<WarcRangeSpliterator, Boolean>()));
+    }
+
+    /**
+     * Construct a spliterator covering a part of the ranges.
+     * @param parser parser used to open the range readers
+     * @param ranges ranges in offset order
+     * @param index index of the first range
+     * @param fence index after the last range
+     * @param open spliterators with open files
+     */
+    protected WarcRangeSpliterator(WarcRangeParser parser, List<WarcFileRange> ranges, int index, int fence, Set<WarcRangeSpliterator> open) {
+        if (parser == null) {
+            throw new IllegalArgumentException("'parser' is null!");
+        }
+        this.parser = parser;
+        this.ranges = ranges;
+        this.index = index;
+        this.fence = fence;
+        this.open = open;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super WarcRecord> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        try {
+            WarcRecord record;
+            while (true) {
+                if (reader == null) {
+                    if (index >= fence) {
+                        return false;
+                    }
+                    openRange(ranges.get(index++));
+                }
+                record = WarcRangeParser.nextRecord(reader, range);
+                if (record != null) {
+                    action.accept(record);
+                    record.close();
+                    return true;
+                }
+                closeRange();
+            }
+        } catch (IOException e) {
+            closeRange();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Spliterator<WarcRecord> trySplit() {
+        // Ranges not yet opened, the current range stays with the prefix.
+        int remaining = fence - index;
+        int mid;
+        if (reader == null) {
+            if (remaining < 2) {
+                return null;
+            }
+            mid = index + (remaining >>> 1);
+        } else {
+            if (remaining < 1) {
+                return null;
+            }
+            mid = index + ((remaining - 1) >>> 1);
+        }
+        // The prefix is handed off, including any range being read.
+        WarcRangeSpliterator prefix = new WarcRangeSpliterator(parser, ranges, index, mid, open);
+        if (reader != null) {
+            prefix.range = range;
+            prefix.raf = raf;
+            prefix.reader = reader;
+            open.add(prefix);
+            open.remove(this);
+            range = null;
+            raf = null;
+            reader = null;
+        }
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        // The number of records is unknown.
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return Spliterator.ORDERED | Spliterator.NONNULL;
+    }
+
+    /**
+     * Open a reader positioned at the start of a range.
+     * @param range range to open
+     * @throws IOException if an I/O error occurs while opening the range
+     */
+    protected void openRange(WarcFileRange range) throws IOException {
+        raf = new RandomAccessFile(range.file, "r");
+        open.add(this);
+        this.range = range;
+        reader = parser.openReader(raf, range);
+    }
+
+    /**
+     * Close the range currently being read, if any.
+     */
+    protected void closeRange() {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException e) {
+            }
+            raf = null;
+        }
+        range = null;
+        open.remove(this);
+    }
+
+    /**
+     * Close the ranges left open by all the split instances, for instance
+     * when a stream is closed before all the records have been read.
+     */
+    public void closeAll() {
+        WarcRangeSpliterator[] spliterators = open.toArray(new WarcRangeSpliterator[0]);
+        for (int i=0; i<spliterators.length; ++i) {
+            spliterators[i].closeRange();
+        }
+    }
+
+}
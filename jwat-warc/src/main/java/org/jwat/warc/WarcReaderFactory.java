@@ -18,9 +18,11 @@
 package org.jwat.warc;
 
 import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.stream.Stream;
 
 import org.jwat.archive.common.ReaderFactoryAbstract;
 import org.jwat.common.ByteCountingPushBackInputStream;
@@ -42,6 +44,9 @@ public class WarcReaderFactory extends ReaderFactoryAbstract {
     /** Buffer size used by <code>PushbackInputStream</code>. */
     public static final int PUSHBACK_BUFFER_SIZE = 32;
 
+    /** Number of ranges per available processor used by <code>parallelStream</code>. */
+    public static final int PARALLEL_SPLITS_PER_PROCESSOR = 4;
+
     /**
      * Private constructor to enforce factory methods.
      */
@@ -238,4 +243,27 @@ public class WarcReaderFactory extends ReaderFactoryAbstract {
                 new BufferedInputStream(in, buffer_size)));
     }
 
+    /**
+     * Returns a parallel <code>Stream</code> over the records of a GZip
+     * compressed or uncompressed WARC file. The file is split into
+     * <code>PARALLEL_SPLITS_PER_PROCESSOR</code> ranges per available
+     * processor, each read by its own reader. Use <code>WarcRangeParser</code>
+     * directly to configure the readers or the splits.
+     * Each record is closed as soon as it has passed through the stream
+     * pipeline, so its payload must be consumed within the pipeline stages.
+     * Close the stream to release the files of a partially consumed stream.
+     * ({@link WarcRangeParser#parallelStream(File, int)})
+     * @param file WARC file
+     * @return parallel <code>Stream</code> over the records of the file
+     * @throws IOException if an I/O error occurs while splitting the file
+     */
+    public static Stream<WarcRecord> parallelStream(File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException(
+                    "The file 'file' is null");
+        }
+        return new WarcRangeParser().parallelStream(file,
+                Runtime.getRuntime().availableProcessors() * PARALLEL_SPLITS_PER_PROCESSOR);
+    }
+
 }
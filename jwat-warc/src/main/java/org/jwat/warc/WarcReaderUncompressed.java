@@ -21,6 +21,7 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.jwat.archive.common.ReaderConfig;
 import org.jwat.common.ByteCountingPushBackInputStream;
 
 /**
@@ -63,6 +64,35 @@ public class WarcReaderUncompressed extends WarcReader {
         init();
     }
 
+    /**
+     * This constructor is used to get random access to records using the
+     * supplied configuration and its shared precomputed state.
+     * The records are then accessed using the getNextRecordFrom methods
+     * using a supplied input stream for each record.
+     * @param config reader configuration
+     */
+    public WarcReaderUncompressed(ReaderConfig config) {
+        super(config);
+        init(config);
+    }
+
+    /**
+     * Construct reader using the supplied input stream, configuration and
+     * its shared precomputed state.
+     * This method is primarily for sequential access to records.
+     * @param in WARC file input stream
+     * @param config reader configuration
+     */
+    public WarcReaderUncompressed(ByteCountingPushBackInputStream in, ReaderConfig config) {
+        super(config);
+        if (in == null) {
+            throw new IllegalArgumentException(
+                    "The inputstream 'in' is null");
+        }
+        this.in = in;
+        init(config);
+    }
+
     @Override
     public boolean isCompressed() {
         return false;
@@ -27,14 +27,16 @@ import java.util.List;
 import org.jwat.common.Base16;
 import org.jwat.common.Base32;
 import org.jwat.common.Base64;
+import org.jwat.common.ByteCountingInputStream;
 import org.jwat.common.ByteCountingPushBackInputStream;
-import org.jwat.common.Diagnosis;
 import org.jwat.common.DiagnosisType;
 import org.jwat.common.Diagnostics;
+import org.jwat.common.FixedLengthInputStream;
 import org.jwat.common.HeaderLine;
 import org.jwat.common.HttpHeader;
 import org.jwat.common.NewlineParser;
 import org.jwat.common.Payload;
+import org.jwat.common.PayloadOnAccessHandler;
 import org.jwat.common.PayloadOnClosedHandler;
 
 /**
@@ -45,7 +47,7 @@ import org.jwat.common.PayloadOnClosedHandler;
  *
  * @author nicl
  */
-public class WarcRecord implements PayloadOnClosedHandler, Closeable {
+public class WarcRecord implements PayloadOnClosedHandler, PayloadOnAccessHandler, Closeable {
 
     /** Reader instance used, required for file compliance. */
     protected WarcReader reader;
@@ -63,6 +65,10 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
     /** Uncompressed bytes consumed while validating this record. */
     protected long consumed;
 
+    /** Bytes occupied by this record in the archive file, the GZip entry
+     *  size for compressed files, or -1 until the record is closed. */
+    protected long compressedLength = -1;
+
     /** Validation errors and warnings. */
     public final Diagnostics diagnostics = new Diagnostics();
 
@@ -98,6 +104,12 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
     /** Payload object if any exists. */
     protected Payload payload;
 
+    /** Length of the record block skipped on close in header only mode. */
+    protected long skipLength;
+
+    /** HTTP header type to parse from the payload, or 0 if none. */
+    protected int httpHeaderType;
+
     /** HTTP header content parsed from payload. */
     protected HttpHeader httpHeader;
 
@@ -107,6 +119,10 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
     /** Computed payload digest. */
     public WarcDigest computedPayloadDigest;
 
+    /** Computed payload fingerprint, of the HTTP payload for records with
+     *  a valid HTTP header otherwise of the block. (Null is equal to not computed) */
+    public byte[] computedPayloadFingerprint;
+
     /**
      * Non public constructor to allow unit testing.
      */
@@ -140,6 +156,7 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
         record.in = in;
         record.reader = reader;
         record.startOffset = in.getConsumed();
+        record.diagnostics.setValidationLevel(reader.validationLevel);
         // Initialize WarcHeader with required context.
         record.header = WarcHeader.initHeader(reader, in.getConsumed(), record.diagnostics);
         WarcHeader header = record.header;
@@ -153,7 +170,13 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
             /*
              * Payload processing.
              */
-            if (header.contentLength != null && header.contentLength > 0) {
+            boolean bSampled = reader.sampleRecord();
+            if (reader.bHeaderOnly || !bSampled) {
+                // Skip the block when the record is closed.
+                if (header.contentLength != null && header.contentLength > 0) {
+                    record.skipLength = header.contentLength;
+                }
+            } else if (header.contentLength != null && header.contentLength > 0) {
                 /*
                  * Payload.
                  */
@@ -170,24 +193,22 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
                         digestAlgorithm = reader.blockDigestAlgorithm;
                     }
                 }
+                int httpHeaderType = getHttpHeaderType(header);
+                // The block fingerprint is also computed for HTTP records,
+                // in case the HTTP header turns out to be invalid.
                 record.payload = Payload.processPayload(in, header.contentLength,
-                                         reader.payloadHeaderMaxSize, digestAlgorithm);
+                                         reader.payloadHeaderMaxSize, digestAlgorithm, reader.payloadFingerprintBits);
                 record.payload.setOnClosedHandler(record);
                 /*
                  * HttpHeader.
                  */
-                if (header.contentType != null
-                        && header.contentType.contentType.equals("application")
-                        && header.contentType.mediaType.equals("http")) {
-                    String value = header.contentType.getParameter("msgtype");
-                    // request
-                    int httpHeaderType = 0;
-                    if ("response".equalsIgnoreCase(value)) {
-                        httpHeaderType = HttpHeader.HT_RESPONSE;
-                    } else if ("request".equalsIgnoreCase(value)) {
-                        httpHeaderType = HttpHeader.HT_REQUEST;
-                    }
-                    if (httpHeaderType != 0) {
+                if (httpHeaderType != 0) {
+                    record.httpHeaderType = httpHeaderType;
+                    if (reader.bDeferHttpHeader && !reader.bPayloadDigest && reader.payloadFingerprintBits == 0) {
+                        // Postpone parsing until the http header or the
+                        // payload is requested.
+                        record.payload.setOnAccessHandler(record);
+                    } else {
                         digestAlgorithm = null;
                         if (reader.bPayloadDigest) {
                             if (header.warcPayloadDigest != null && header.warcPayloadDigest.algorithm != null) {
@@ -201,18 +222,7 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
                                 digestAlgorithm = reader.payloadDigestAlgorithm;
                             }
                         }
-                        // Try to read a valid HTTP request/response header from the payload.
-                        record.httpHeader = HttpHeader.processPayload(httpHeaderType,
-                                record.payload.getInputStream(), header.contentLength,
-                                digestAlgorithm);
-                        if (record.httpHeader != null) {
-                            if (record.httpHeader.isValid()) {
-                                record.payload.setPayloadHeaderWrapped(record.httpHeader);
-                            } else if (reader.bReportHttpHeaderError) {
-                                record.diagnostics.addWarning(
-                                        DiagnosisType.ERROR, "http header", "Unable to parse http header!");
-                            }
-                        }
+                        record.processHttpHeader(digestAlgorithm);
                     }
                 }
             }
@@ -230,18 +240,18 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
             reader.consumed += excess;
             reader.diagnostics.addAll(record.diagnostics);
             if (record.diagnostics.hasErrors() || record.diagnostics.hasWarnings()) {
-                reader.errors += record.diagnostics.getErrors().size();
-                reader.warnings += record.diagnostics.getWarnings().size();
+                reader.errors += record.diagnostics.getErrorCount();
+                reader.warnings += record.diagnostics.getWarningCount();
                 reader.bIsCompliant = false;
             }
             // Require one or more records to be present.
             if (reader.records == 0) {
-                reader.diagnostics.addError(new Diagnosis(DiagnosisType.ERROR_EXPECTED, "WARC file", "One or more records"));
+                reader.diagnostics.addError(DiagnosisType.ERROR_EXPECTED, "WARC file", "One or more records");
                 ++reader.errors;
                 reader.bIsCompliant = false;
             }
             if (excess != 0) {
-                reader.diagnostics.addError(new Diagnosis(DiagnosisType.UNDESIRED_DATA, "Trailing data", "Garbage data found at offset=" + record.startOffset + " - length=" + excess));
+                reader.diagnostics.addError(DiagnosisType.UNDESIRED_DATA, "Trailing data", "Garbage data found at offset=" + record.startOffset + " - length=" + excess);
             }
             // EOF
             record = null;
@@ -249,6 +259,64 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
         return record;
     }
 
+    /**
+     * Returns the HTTP header type given by the msgtype parameter of an
+     * "application/http" content type.
+     * @param header WARC header
+     * @return <code>HttpHeader.HT_RESPONSE</code>,
+     * <code>HttpHeader.HT_REQUEST</code> or 0 if the block is not an HTTP
+     * message
+     */
+    protected static int getHttpHeaderType(WarcHeader header) {
+        int httpHeaderType = 0;
+        if (header.contentType != null
+                && header.contentType.contentType.equals("application")
+                && header.contentType.mediaType.equals("http")) {
+            String value = header.contentType.getParameter("msgtype");
+            // request
+            if ("response".equalsIgnoreCase(value)) {
+                httpHeaderType = HttpHeader.HT_RESPONSE;
+            } else if ("request".equalsIgnoreCase(value)) {
+                httpHeaderType = HttpHeader.HT_REQUEST;
+            }
+        }
+        return httpHeaderType;
+    }
+
+    /**
+     * Try to read a valid HTTP request/response header from the payload.
+     * @param digestAlgorithm payload digest algorithm or null
+     * @throws IOException if an I/O error occurs while reading the header
+     */
+    protected void processHttpHeader(String digestAlgorithm) throws IOException {
+        httpHeader = HttpHeader.processPayload(httpHeaderType,
+                payload.getInputStream(), header.contentLength,
+                digestAlgorithm, reader.payloadFingerprintBits);
+        if (httpHeader != null) {
+            if (httpHeader.isValid()) {
+                payload.setPayloadHeaderWrapped(httpHeader);
+            } else if (reader.bReportHttpHeaderError) {
+                diagnostics.addWarning(
+                        DiagnosisType.ERROR, "http header", "Unable to parse http header!");
+            }
+        }
+    }
+
+    /**
+     * Called the first time the payload is accessed, if the parsing of the
+     * HTTP header was postponed.
+     * @param payload payload object being accessed
+     */
+    @Override
+    public void payloadAccessed(Payload payload) {
+        try {
+            processHttpHeader(null);
+        } catch (IOException e) {
+            diagnostics.addError(
+                    DiagnosisType.ERROR, "http header", e.toString());
+        }
+    }
+
     /**
      * Called when the payload object is closed and final steps in the
      * validation process can be performed.
@@ -281,6 +349,12 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
                     processComputedDigest(computedBlockDigest,
                             reader.blockDigestAlgorithm, reader.blockDigestEncoding, "block");
                 }
+                // Fingerprint of the HTTP payload or of the block.
+                if (httpHeader != null && httpHeader.isValid()) {
+                    computedPayloadFingerprint = httpHeader.getFingerprint();
+                } else {
+                    computedPayloadFingerprint = payload.getFingerprint();
+                }
                 // Revisit payload digest refers to the original. Continuation payload digest in first record also refers to original.
                 if ((header.warcTypeIdx != null && header.warcTypeIdx != WarcConstants.RT_IDX_REVISIT && header.warcTypeIdx != WarcConstants.RT_IDX_CONTINUATION) && httpHeader != null && httpHeader.isValid()) {
                     /*
@@ -302,6 +376,12 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
                                 reader.payloadDigestAlgorithm, reader.payloadDigestEncoding, "payload");
                     }
                 }
+            } else if (skipLength > 0) {
+                // Header only, skip the record block.
+                if (in.skipFully(skipLength) < skipLength) {
+                    // Payload length mismatch - Payload truncated
+                    addErrorDiagnosis(DiagnosisType.INVALID_DATA, "Payload length mismatch", "Payload truncated");
+                }
             }
             // Check for trailing newlines.
             trailingNewlines = nlp.parseCRLFs(in, diagnostics);
@@ -314,14 +394,15 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
             // isCompliant status update.
             if (diagnostics.hasErrors() || diagnostics.hasWarnings()) {
                 bIsCompliant = false;
-                reader.errors += diagnostics.getErrors().size();
-                reader.warnings += diagnostics.getWarnings().size();
+                reader.errors += diagnostics.getErrorCount();
+                reader.warnings += diagnostics.getWarningCount();
             } else {
                 bIsCompliant = true;
             }
             reader.bIsCompliant &= bIsCompliant;
             // Updated consumed after payload has been consumed.
             consumed = in.getConsumed() - startOffset;
+            compressedLength = consumed;
             // Don't not close payload again.
             bPayloadClosed = true;
             // Callback.
@@ -474,6 +555,17 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
         return consumed;
     }
 
+    /**
+     * Return number of bytes occupied by this record in the archive file.
+     * For compressed files this is the size of the GZip entry, otherwise it
+     * equals the number of bytes consumed. Only available once the record
+     * has been closed.
+     * @return number of bytes occupied by this record in the archive file or -1
+     */
+    public long getCompressedLength() {
+        return compressedLength;
+    }
+
     /**
      * Get a <code>List</code> of all the non-standard WARC headers found
      * during parsing.
@@ -505,6 +597,59 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
         return (payload != null);
     }
 
+    /**
+     * Peek at the start of the record block without consuming it, e.g. to
+     * read the status line of an HTTP response cheaply. Only possible when
+     * reading record headers only and before the record is closed. No more
+     * bytes than the size of the reader's push back buffer can be peeked.
+     * @param buffer byte buffer to peek bytes into
+     * @return the number of bytes peeked or -1, if the block is not available
+     * @throws IOException if an I/O error occurs while peeking
+     */
+    public int peekBlock(byte[] buffer) throws IOException {
+        if (bClosed || payload != null || skipLength <= 0) {
+            return -1;
+        }
+        if (buffer.length <= skipLength) {
+            return in.peek(buffer);
+        }
+        // Never peek past the end of the block.
+        byte[] tmpBuf = new byte[(int)skipLength];
+        int peeked = in.peek(tmpBuf);
+        System.arraycopy(tmpBuf, 0, buffer, 0, peeked);
+        return peeked;
+    }
+
+    /**
+     * Returns the <code>HttpHeader</code> object like
+     * <code>getHttpHeader</code>, but when reading record headers only the
+     * HTTP header is also read from the start of the record block. Only the
+     * HTTP header is read, the rest of the block is still skipped when the
+     * record is closed. Must be called before the record is closed, the
+     * block can not be peeked afterwards.
+     * @return the <code>HttpHeader</code> object if identified or null
+     * @throws IOException if an I/O error occurs while reading the header
+     */
+    public HttpHeader readHttpHeader() throws IOException {
+        if (httpHeader == null && payload == null && !bClosed && skipLength > 0) {
+            int type = getHttpHeaderType(header);
+            if (type != 0) {
+                ByteCountingInputStream bcin = new ByteCountingInputStream(
+                        new FixedLengthInputStream(in, skipLength));
+                HttpHeader hh = HttpHeader.processPayload(type,
+                        new ByteCountingPushBackInputStream(bcin, reader.payloadHeaderMaxSize),
+                        skipLength, null);
+                // Bytes read past a header are part of the skipped block anyway.
+                skipLength -= bcin.getConsumed();
+                if (hh.isValid()) {
+                    httpHeaderType = type;
+                    httpHeader = hh;
+                }
+            }
+        }
+        return getHttpHeader();
+    }
+
     /**
      * Return Payload object.
      * @return payload or <code>null</code>
@@ -527,6 +672,10 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
      * @return the <code>HttpHeader</code> object if identified or null
      */
     public HttpHeader getHttpHeader() {
+        if (payload != null) {
+            // Parse a postponed http header.
+            payload.getPayloadHeaderWrapped();
+        }
         return httpHeader;
     }
 
@@ -539,7 +688,7 @@ public class WarcRecord implements PayloadOnClosedHandler, Closeable {
      * @param information optional extra information
      */
     protected void addErrorDiagnosis(DiagnosisType type, String entity, String... information) {
-        diagnostics.addError(new Diagnosis(type, entity, information));
+        diagnostics.addError(type, entity, information);
     }
 
 }
@@ -20,20 +20,22 @@ package org.jwat.warc;
 import org.jwat.common.DiagnosisType;
 import org.jwat.common.Diagnostics;
 import org.jwat.common.TreeOfIntMapper;
-import org.jwat.warc.WarcValidatorFactories.WarcValidatorFactory;
 
 /**
  * Central version dependent WARC validation class.
  * Has the factories for the different validator factories.
  * Also used to get version relevant validators based on a WARC header.
+ * Validators for all supported versions are created up front and never
+ * changed afterwards, so one instance can be shared by any number of
+ * readers and threads.
  *
  * @author nicl
  */
 public class WarcValidation {
 
-    protected WarcValidatorFactories factories;
+    protected final WarcValidatorFactories factories;
 
-    protected TreeOfIntMapper<WarcValidatorBase> treeOfValidators;
+    protected final TreeOfIntMapper<WarcValidatorBase> treeOfValidators;
 
     /**
      * Construct a validation object to hold validator factories and validator instances.
@@ -41,6 +43,10 @@ public class WarcValidation {
     public WarcValidation() {
         this.factories = new WarcValidatorFactories();
         treeOfValidators = new TreeOfIntMapper<>();
+        int[][] versions = factories.getSupportedVersions();
+        for (int i=0; i<versions.length; ++i) {
+            treeOfValidators.add(factories.get(versions[i]).getValidatorFor(versions[i]), versions[i]);
+        }
     }
 
     /**
@@ -73,15 +79,14 @@ public class WarcValidation {
                 break;
             }
             if (!warcHeader.bValidVersion) {
-                warcHeader.diagnostics.addError(new Diagnosis(DiagnosisType.UNKNOWN, "Magic version number", warcHeader.versionStr));
+                warcHeader.diagnostics.addError(DiagnosisType.UNKNOWN, "Magic version number", warcHeader.versionStr);
             }
         }
         else {
-            warcHeader.diagnostics.addError(new Diagnosis(DiagnosisType.INVALID_DATA, "Magic Version string", warcHeader.versionStr));
+            warcHeader.diagnostics.addError(DiagnosisType.INVALID_DATA, "Magic Version string", warcHeader.versionStr);
         }
         */
         // TODO Add version class.
-        WarcValidatorFactory factory;
         WarcValidatorBase validator = null;
         if (warcHeader.bVersionParsed && warcHeader.versionArr.length == 2) {
             validator = treeOfValidators.lookup(warcHeader.versionArr);
@@ -89,15 +94,8 @@ public class WarcValidation {
                 warcHeader.bValidVersion = true;
             }
             else {
-                factory = factories.get(warcHeader.versionArr);
-                if (factory != null) {
-                    validator = factory.getValidatorFor(warcHeader.versionArr);
-                    warcHeader.bValidVersion = true;
-                    treeOfValidators.add(validator, warcHeader.versionArr);
-                }
-                else {
-                    validator = new WarcValidator11(warcHeader.versionArr);
-                }
+                // Unsupported version, validate using the latest rules.
+                validator = new WarcValidator11(warcHeader.versionArr);
             }
             if (!warcHeader.bValidVersion) {
                 diagnostics.addError(DiagnosisType.UNKNOWN, "Magic version number", warcHeader.versionStr);
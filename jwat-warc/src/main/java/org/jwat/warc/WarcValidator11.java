@@ -28,6 +28,7 @@ public class WarcValidator11 extends WarcValidatorBase {
         setVersions(arr);
         field_policy = new int[RT_INDEX_OF_LAST][FN_INDEX_OF_LAST];
         setWarcHeaderPolicyMatrix();
+        compileWarcHeaderPolicyMatrix();
     }
 
     @Override
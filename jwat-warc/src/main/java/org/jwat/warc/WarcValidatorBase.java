@@ -17,13 +17,13 @@
  */
 package org.jwat.warc;
 
-import java.net.InetAddress;
 import java.util.List;
 
 import org.jwat.common.ContentType;
 import org.jwat.common.DiagnosisType;
 import org.jwat.common.Diagnostics;
 import org.jwat.common.Uri;
+import org.jwat.common.ValidationLevel;
 
 /**
  * WARC validator abstract base class. Has some common fields and methods.
@@ -38,6 +38,34 @@ public abstract class WarcValidatorBase extends WarcConstants {
     /** A (Warc-Types x Warc-Header-Fields) matrix used for policy validation. */
     protected int[][] field_policy;
 
+    /** Bitset of the fields validated using the precompiled policy bitsets. */
+    protected static final long POLICY_FIELDS = (1L << FN_IDX_CONTENT_TYPE)
+            | (1L << FN_IDX_WARC_IP_ADDRESS)
+            | (1L << FN_IDX_WARC_CONCURRENT_TO)
+            | (1L << FN_IDX_WARC_REFERS_TO)
+            | (1L << FN_IDX_WARC_TARGET_URI)
+            | (1L << FN_IDX_WARC_TRUNCATED)
+            | (1L << FN_IDX_WARC_WARCINFO_ID)
+            | (1L << FN_IDX_WARC_BLOCK_DIGEST)
+            | (1L << FN_IDX_WARC_PAYLOAD_DIGEST)
+            | (1L << FN_IDX_WARC_FILENAME)
+            | (1L << FN_IDX_WARC_PROFILE)
+            | (1L << FN_IDX_WARC_IDENTIFIED_PAYLOAD_TYPE)
+            | (1L << FN_IDX_WARC_SEGMENT_NUMBER)
+            | (1L << FN_IDX_WARC_SEGMENT_ORIGIN_ID)
+            | (1L << FN_IDX_WARC_SEGMENT_TOTAL_LENGTH)
+            | (1L << FN_IDX_WARC_REFERS_TO_TARGET_URI)
+            | (1L << FN_IDX_WARC_REFERS_TO_DATE);
+
+    /** Per Warc-Type bitset of fields reported as errors if missing. */
+    protected long[] policy_required;
+
+    /** Per Warc-Type bitset of fields reported as errors if present. */
+    protected long[] policy_forbidden;
+
+    /** Per Warc-Type bitset of fields reported as warnings if present. */
+    protected long[] policy_undesired;
+
     /**
      * Internal constructor.
      */
@@ -64,6 +92,41 @@ public abstract class WarcValidatorBase extends WarcConstants {
      */
     public abstract void setWarcHeaderPolicyMatrix();
 
+    /**
+     * Compile the policy matrix into per Warc-Type bitsets so the presence
+     * of all the policy validated fields can be checked in one pass.
+     * Must be called after the policy matrix has been initialized.
+     */
+    protected void compileWarcHeaderPolicyMatrix() {
+        policy_required = new long[RT_INDEX_OF_LAST];
+        policy_forbidden = new long[RT_INDEX_OF_LAST];
+        policy_undesired = new long[RT_INDEX_OF_LAST];
+        long bit;
+        for (int rt=0; rt<RT_INDEX_OF_LAST; ++rt) {
+            for (int fn=0; fn<FN_INDEX_OF_LAST; ++fn) {
+                bit = 1L << fn;
+                if ((POLICY_FIELDS & bit) != 0) {
+                    switch (field_policy[rt][fn]) {
+                    case POLICY_MANDATORY:
+                    case POLICY_SHALL:
+                        policy_required[rt] |= bit;
+                        break;
+                    case POLICY_SHALL_NOT:
+                        policy_forbidden[rt] |= bit;
+                        break;
+                    case POLICY_MAY_NOT:
+                        policy_undesired[rt] |= bit;
+                        break;
+                    case POLICY_MAY:
+                    case POLICY_IGNORE:
+                    default:
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Validate the WARC header relative to the WARC-Type and according to the
      * WARC ISO standard.
@@ -220,60 +283,125 @@ public abstract class WarcValidatorBase extends WarcConstants {
              * Check the policies for each field.
              */
 
-            InetAddress warcInetAddress = header.warcInetAddress;
-            String warcIpAddress = header.warcIpAddress;
-            List<WarcConcurrentTo> warcConcurrentToList = header.warcConcurrentToList;
-            Uri warcRefersToUri = header.warcRefersToUri;
-            String warcRefersToStr = header.warcRefersToStr;
-            Uri warcTargetUriUri = header.warcTargetUriUri;
-            String warcTargetUriStr = header.warcTargetUriStr;
-            Integer warcTruncatedIdx = header.warcTruncatedIdx;
-            String warcTruncatedStr = header.warcTruncatedStr;
-            Uri warcWarcinfoIdUri = header.warcWarcinfoIdUri;
-            String warcWarcinfoIdStr = header.warcWarcinfoIdStr;
-            WarcDigest warcBlockDigest = header.warcBlockDigest;
-            String warcBlockDigestStr = header.warcBlockDigestStr;
-            WarcDigest warcPayloadDigest = header.warcPayloadDigest;
-            String warcPayloadDigestStr = header.warcPayloadDigestStr;
-            String warcFilename = header.warcFilename;
-            ContentType warcIdentifiedPayloadType = header.warcIdentifiedPayloadType;
-            String warcIdentifiedPayloadTypeStr = header.warcIdentifiedPayloadTypeStr;
-            Uri warcSegmentOriginIdUrl = header.warcSegmentOriginIdUrl;
-            String warcSegmentOriginIdStr = header.warcSegmentOriginIdStr;
-            Long warcSegmentTotalLength = header.warcSegmentTotalLength;
-            String warcSegmentTotalLengthStr = header.warcSegmentTotalLengthStr;
-            Uri warcRefersToTargetUriUri = header.warcRefersToTargetUriUri;
-            String warcRefersToTargetUriStr = header.warcRefersToTargetUriStr;
-            WarcDate warcRefersToDate = header.warcRefersToDate;
-            String warcRefersToDateStr = header.warcRefersToDateStr;
-
-            WarcConcurrentTo warcConcurrentTo;
-            if (warcTypeIdx  > 0) {
-                checkFieldPolicy(warcTypeIdx, FN_IDX_CONTENT_TYPE, contentType, contentTypeStr, diagnostics);
-                checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_IP_ADDRESS, warcInetAddress, warcIpAddress, diagnostics);
-                for (int i=0; i<warcConcurrentToList.size(); ++i) {
-                    warcConcurrentTo = warcConcurrentToList.get(0);
-                    checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_CONCURRENT_TO, warcConcurrentTo.warcConcurrentToUri, warcConcurrentTo.warcConcurrentToStr, diagnostics);
+            if (warcTypeIdx > 0 && diagnostics.getValidationLevel() != ValidationLevel.NONE) {
+                long present = 0L;
+                if (contentType != null) {
+                    present |= 1L << FN_IDX_CONTENT_TYPE;
+                }
+                if (header.warcIpAddressObj != null || header.warcInetAddress != null) {
+                    present |= 1L << FN_IDX_WARC_IP_ADDRESS;
+                }
+                if (header.warcRefersToUri != null) {
+                    present |= 1L << FN_IDX_WARC_REFERS_TO;
+                }
+                if (header.warcTargetUriUri != null) {
+                    present |= 1L << FN_IDX_WARC_TARGET_URI;
+                }
+                if (header.warcTruncatedIdx != null) {
+                    present |= 1L << FN_IDX_WARC_TRUNCATED;
+                }
+                if (header.warcWarcinfoIdUri != null) {
+                    present |= 1L << FN_IDX_WARC_WARCINFO_ID;
+                }
+                if (header.warcBlockDigest != null) {
+                    present |= 1L << FN_IDX_WARC_BLOCK_DIGEST;
+                }
+                if (header.warcPayloadDigest != null) {
+                    present |= 1L << FN_IDX_WARC_PAYLOAD_DIGEST;
+                }
+                if (header.warcFilename != null) {
+                    present |= 1L << FN_IDX_WARC_FILENAME;
+                }
+                if (warcProfileUri != null) {
+                    present |= 1L << FN_IDX_WARC_PROFILE;
+                }
+                if (header.warcIdentifiedPayloadType != null) {
+                    present |= 1L << FN_IDX_WARC_IDENTIFIED_PAYLOAD_TYPE;
+                }
+                if (warcSegmentNumber != null) {
+                    present |= 1L << FN_IDX_WARC_SEGMENT_NUMBER;
+                }
+                if (header.warcSegmentOriginIdUrl != null) {
+                    present |= 1L << FN_IDX_WARC_SEGMENT_ORIGIN_ID;
+                }
+                if (header.warcSegmentTotalLength != null) {
+                    present |= 1L << FN_IDX_WARC_SEGMENT_TOTAL_LENGTH;
+                }
+                if (header.warcRefersToTargetUriUri != null) {
+                    present |= 1L << FN_IDX_WARC_REFERS_TO_TARGET_URI;
+                }
+                if (header.warcRefersToDate != null) {
+                    present |= 1L << FN_IDX_WARC_REFERS_TO_DATE;
+                }
+                long errorFields = (policy_required[warcTypeIdx] & ~present)
+                        | (policy_forbidden[warcTypeIdx] & present);
+                long warningFields = policy_undesired[warcTypeIdx] & present;
+                // Warc-Concurrent-To is checked once for each occurrence.
+                long concurrentToBit = 1L << FN_IDX_WARC_CONCURRENT_TO;
+                errorFields &= ~concurrentToBit;
+                warningFields &= ~concurrentToBit;
+                int errors = Long.bitCount(errorFields);
+                int warnings = Long.bitCount(warningFields);
+                List<WarcConcurrentTo> warcConcurrentToList = header.warcConcurrentToList;
+                if (!warcConcurrentToList.isEmpty()) {
+                    if (warcConcurrentToList.get(0).warcConcurrentToUri != null) {
+                        if ((policy_forbidden[warcTypeIdx] & concurrentToBit) != 0L) {
+                            errors += warcConcurrentToList.size();
+                        } else if ((policy_undesired[warcTypeIdx] & concurrentToBit) != 0L) {
+                            warnings += warcConcurrentToList.size();
+                        }
+                    } else if ((policy_required[warcTypeIdx] & concurrentToBit) != 0L) {
+                        errors += warcConcurrentToList.size();
+                    }
+                }
+                if (errors > 0 || warnings > 0) {
+                    if (diagnostics.getValidationLevel() == ValidationLevel.FULL) {
+                        checkFieldPolicies(header, warcTypeIdx, diagnostics);
+                    } else {
+                        diagnostics.countErrors(errors);
+                        diagnostics.countWarnings(warnings);
+                    }
                 }
-                checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_REFERS_TO, warcRefersToUri, warcRefersToStr, diagnostics);
-                checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_TARGET_URI, warcTargetUriUri, warcTargetUriStr, diagnostics);
-                checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_TRUNCATED, warcTruncatedIdx, warcTruncatedStr, diagnostics);
-                checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_WARCINFO_ID, warcWarcinfoIdUri, warcWarcinfoIdStr, diagnostics);
-                checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_BLOCK_DIGEST, warcBlockDigest, warcBlockDigestStr, diagnostics);
-                checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_PAYLOAD_DIGEST, warcPayloadDigest, warcPayloadDigestStr, diagnostics);
-                checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_FILENAME, warcFilename, warcFilename, diagnostics);
-                // Could also use warcProfileIdx for really strict.
-                checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_PROFILE, warcProfileUri, warcProfileStr, diagnostics);
-                checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_IDENTIFIED_PAYLOAD_TYPE, warcIdentifiedPayloadType, warcIdentifiedPayloadTypeStr, diagnostics);
-                checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_SEGMENT_NUMBER, warcSegmentNumber, warcSegmentNumberStr, diagnostics);
-                checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_SEGMENT_ORIGIN_ID, warcSegmentOriginIdUrl, warcSegmentOriginIdStr, diagnostics);
-                checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_SEGMENT_TOTAL_LENGTH, warcSegmentTotalLength, warcSegmentTotalLengthStr, diagnostics);
-                checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_REFERS_TO_TARGET_URI, warcRefersToTargetUriUri, warcRefersToTargetUriStr, diagnostics);
-                checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_REFERS_TO_DATE, warcRefersToDate, warcRefersToDateStr, diagnostics);
             }
         }
     }
 
+    /**
+     * Check the policy of each policy validated field and report the
+     * violations as diagnoses. Only called when the precompiled policy
+     * bitsets have identified one or more violations.
+     * @param header WARC header
+     * @param warcTypeIdx WARC record type id
+     * @param diagnostics diagnostics used to report errors and/or warnings
+     */
+    protected void checkFieldPolicies(WarcHeader header, int warcTypeIdx, Diagnostics diagnostics) {
+        checkFieldPolicy(warcTypeIdx, FN_IDX_CONTENT_TYPE, header.contentType, header.contentTypeStr, diagnostics);
+        // Only the presence is checked, avoid creating an InetAddress.
+        Object warcIpAddressObj = (header.warcIpAddressObj != null) ? header.warcIpAddressObj : header.warcInetAddress;
+        checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_IP_ADDRESS, warcIpAddressObj, header.warcIpAddress, diagnostics);
+        List<WarcConcurrentTo> warcConcurrentToList = header.warcConcurrentToList;
+        WarcConcurrentTo warcConcurrentTo;
+        for (int i=0; i<warcConcurrentToList.size(); ++i) {
+            warcConcurrentTo = warcConcurrentToList.get(0);
+            checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_CONCURRENT_TO, warcConcurrentTo.warcConcurrentToUri, warcConcurrentTo.warcConcurrentToStr, diagnostics);
+        }
+        checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_REFERS_TO, header.warcRefersToUri, header.warcRefersToStr, diagnostics);
+        checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_TARGET_URI, header.warcTargetUriUri, header.warcTargetUriStr, diagnostics);
+        checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_TRUNCATED, header.warcTruncatedIdx, header.warcTruncatedStr, diagnostics);
+        checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_WARCINFO_ID, header.warcWarcinfoIdUri, header.warcWarcinfoIdStr, diagnostics);
+        checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_BLOCK_DIGEST, header.warcBlockDigest, header.warcBlockDigestStr, diagnostics);
+        checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_PAYLOAD_DIGEST, header.warcPayloadDigest, header.warcPayloadDigestStr, diagnostics);
+        checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_FILENAME, header.warcFilename, header.warcFilename, diagnostics);
+        // Could also use warcProfileIdx for really strict.
+        checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_PROFILE, header.warcProfileUri, header.warcProfileStr, diagnostics);
+        checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_IDENTIFIED_PAYLOAD_TYPE, header.warcIdentifiedPayloadType, header.warcIdentifiedPayloadTypeStr, diagnostics);
+        checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_SEGMENT_NUMBER, header.warcSegmentNumber, header.warcSegmentNumberStr, diagnostics);
+        checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_SEGMENT_ORIGIN_ID, header.warcSegmentOriginIdUrl, header.warcSegmentOriginIdStr, diagnostics);
+        checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_SEGMENT_TOTAL_LENGTH, header.warcSegmentTotalLength, header.warcSegmentTotalLengthStr, diagnostics);
+        checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_REFERS_TO_TARGET_URI, header.warcRefersToTargetUriUri, header.warcRefersToTargetUriStr, diagnostics);
+        checkFieldPolicy(warcTypeIdx, FN_IDX_WARC_REFERS_TO_DATE, header.warcRefersToDate, header.warcRefersToDateStr, diagnostics);
+    }
+
     /**
      * Given a WARC record type and a WARC field looks up the policy in a
      * matrix build from the WARC ISO standard.
@@ -55,6 +55,9 @@ public class WarcValidatorFactories {
         }
     }
 
+    /** Versions supported by a validator factory. */
+    protected static final int[][] SUPPORTED_VERSIONS = {{0, 17}, {0, 18}, {1, 0}, {1, 1}};
+
     /** Tree structure with validator factories store by their version denoted as an interger array */
     protected TreeOfIntMapper<WarcValidatorFactory> treeOfValidatorFactories;
 
@@ -63,10 +66,22 @@ public class WarcValidatorFactories {
      */
     public WarcValidatorFactories() {
         treeOfValidatorFactories = new TreeOfIntMapper<>();
-        treeOfValidatorFactories.add(new WarcValidator10Factory(), new int[] {0, 17});
-        treeOfValidatorFactories.add(new WarcValidator10Factory(), new int[] {0, 18});
-        treeOfValidatorFactories.add(new WarcValidator10Factory(), new int[] {1, 0});
-        treeOfValidatorFactories.add(new WarcValidator11Factory(), new int[] {1, 1});
+        treeOfValidatorFactories.add(new WarcValidator10Factory(), SUPPORTED_VERSIONS[0]);
+        treeOfValidatorFactories.add(new WarcValidator10Factory(), SUPPORTED_VERSIONS[1]);
+        treeOfValidatorFactories.add(new WarcValidator10Factory(), SUPPORTED_VERSIONS[2]);
+        treeOfValidatorFactories.add(new WarcValidator11Factory(), SUPPORTED_VERSIONS[3]);
+    }
+
+    /**
+     * Returns the versions supported by a validator factory.
+     * @return array of versions denoted as integer arrays
+     */
+    public int[][] getSupportedVersions() {
+        int[][] versions = new int[SUPPORTED_VERSIONS.length][];
+        for (int i=0; i<SUPPORTED_VERSIONS.length; ++i) {
+            versions[i] = SUPPORTED_VERSIONS[i].clone();
+        }
+        return versions;
     }
 
     /**
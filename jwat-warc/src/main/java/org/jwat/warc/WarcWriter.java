@@ -23,6 +23,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+import org.jwat.common.Base16;
+import org.jwat.common.Base32;
+import org.jwat.common.Base64;
 import org.jwat.common.Diagnosis;
 import org.jwat.common.DiagnosisType;
 import org.jwat.common.Diagnostics;
@@ -70,6 +73,9 @@ public abstract class WarcWriter implements Closeable {
      *  (Default is true) */
     protected boolean bExceptionOnContentLengthMismatch;
 
+    /** Payload digest lookup used to write revisit records, null if disabled. */
+    protected WarcDigestLookup digestLookup;
+
     /*
      * State.
      */
@@ -168,6 +174,24 @@ public abstract class WarcWriter implements Closeable {
         bExceptionOnContentLengthMismatch = enabled;
     }
 
+    /**
+     * Set the payload digest lookup used by <code>writeResponse</code> to
+     * replace duplicate responses with revisit records.
+     * If null, responses are always written in full.
+     * @param digestLookup payload digest lookup or null
+     */
+    public void setDigestLookup(WarcDigestLookup digestLookup) {
+        this.digestLookup = digestLookup;
+    }
+
+    /**
+     * Get the payload digest lookup used to write revisit records.
+     * @return payload digest lookup or null
+     */
+    public WarcDigestLookup getDigestLookup() {
+        return digestLookup;
+    }
+
     /**
      * Is this writer set to block digest payload.
      * @return boolean indicating payload block digesting
@@ -733,4 +757,147 @@ public abstract class WarcWriter implements Closeable {
         return len;
     }
 
+    /**
+     * Write a complete response record or, if its payload digest is known
+     * by the digest lookup, a revisit record referring to the earlier
+     * capture. Since the file name and offset of the record are unknown, the
+     * capture is not added to the digest lookup.
+     * @param record response record with a WARC-Payload-Digest
+     * @param httpHeader raw HTTP response header
+     * @param payload HTTP response payload
+     * @return boolean indicating whether a revisit record was written
+     * @throws IOException if an I/O exception occurs while writing the record
+     * @see #writeResponse(WarcRecord, byte[], InputStream, String, long)
+     */
+    public boolean writeResponse(WarcRecord record, byte[] httpHeader, InputStream payload) throws IOException {
+        return writeResponse(record, httpHeader, payload, null, -1);
+    }
+
+    /**
+     * Write a complete response record or, if its payload digest is known
+     * by the digest lookup, a revisit record referring to the earlier
+     * capture. The revisit record uses the identical-payload-digest profile
+     * and its block only contains the HTTP header, the payload stream is not
+     * read. The header of the supplied record is changed into the revisit
+     * header in place. Responses without a payload digest, or written
+     * without a digest lookup, are always written in full and the record
+     * is closed in both cases.
+     * A response written in full is added to the digest lookup once the
+     * record has been closed, and only if the file name and offset are
+     * known, so a failed write never leaves a capture behind.
+     * @param record response record with a WARC-Payload-Digest
+     * @param httpHeader raw HTTP response header
+     * @param payload HTTP response payload
+     * @param filename name of the file the record is written to or null
+     * @param offset offset of the record in the file or -1
+     * @return boolean indicating whether a revisit record was written
+     * @throws IOException if an I/O exception occurs while writing the record
+     */
+    public boolean writeResponse(WarcRecord record, byte[] httpHeader, InputStream payload, String filename, long offset) throws IOException {
+        if (record == null) {
+            throw new IllegalArgumentException(
+                    "The 'record' parameter is null!");
+        }
+        if (httpHeader == null) {
+            throw new IllegalArgumentException(
+                    "The 'httpHeader' parameter is null!");
+        }
+        if (payload == null) {
+            throw new IllegalArgumentException(
+                    "The 'payload' parameter is null!");
+        }
+        WarcHeader header = record.header;
+        byte[] digest = null;
+        WarcDedupEntry original = null;
+        if (digestLookup != null) {
+            digest = getDigestBytes(header.warcPayloadDigest);
+            if (digest != null) {
+                original = digestLookup.lookup(digest);
+            }
+        }
+        if (original == null) {
+            writeHeader(record);
+            writePayload(httpHeader);
+            streamPayload(payload);
+            closeRecord();
+            if (digest != null && filename != null && offset >= 0) {
+                digestLookup.putIfAbsent(digest, WarcDedupEntry.fromHeader(header, filename, offset));
+            }
+        } else {
+            setRevisitHeader(header, original, httpHeader.length);
+            writeHeader(record);
+            writePayload(httpHeader);
+            closeRecord();
+        }
+        return original != null;
+    }
+
+    /**
+     * Return the bytes of a digest, decoding the digest string if the digest
+     * was added to the header as a string.
+     * @param warcDigest WARC digest or null
+     * @return digest bytes or null, if the digest is missing or undecodable
+     */
+    protected static byte[] getDigestBytes(WarcDigest warcDigest) {
+        if (warcDigest == null) {
+            return null;
+        }
+        if (warcDigest.digestBytes == null && warcDigest.digestString != null) {
+            int digestAlgorithmLength = WarcDigest.digestAlgorithmLength(warcDigest.algorithm);
+            byte[] digest = Base32.decodeToArray(warcDigest.digestString, true);
+            if (digest == null || digest.length != digestAlgorithmLength) {
+                digest = Base16.decodeToArray(warcDigest.digestString);
+            }
+            if (digest == null || digest.length != digestAlgorithmLength) {
+                digest = Base64.decodeToArray(warcDigest.digestString, true);
+            }
+            if (digest != null && digest.length == digestAlgorithmLength) {
+                warcDigest.digestBytes = digest;
+            }
+        }
+        return warcDigest.digestBytes;
+    }
+
+    /**
+     * Turn a response header into an identical-payload-digest revisit header
+     * referring to an earlier capture.
+     * @param header response header
+     * @param original earlier capture with the same payload
+     * @param httpHeaderLength length of the HTTP header, the new block size
+     */
+    protected void setRevisitHeader(WarcHeader header, WarcDedupEntry original, int httpHeaderLength) {
+        header.warcTypeIdx = WarcConstants.RT_IDX_REVISIT;
+        header.warcTypeStr = WarcConstants.RT_REVISIT;
+        header.warcProfileUri = null;
+        if (header.major == 1 && header.minor == 0) {
+            header.warcProfileIdx = WarcConstants.WARC10_PROFILE_IDX_IDENTICAL_PAYLOAD_DIGEST;
+            header.warcProfileStr = WarcConstants.WARC10_PROFILE_IDENTICAL_PAYLOAD_DIGEST;
+        } else {
+            header.warcProfileIdx = WarcConstants.WARC11_PROFILE_IDX_IDENTICAL_PAYLOAD_DIGEST;
+            header.warcProfileStr = WarcConstants.WARC11_PROFILE_IDENTICAL_PAYLOAD_DIGEST;
+        }
+        String refersTo = original.recordId;
+        if (refersTo != null && refersTo.length() >= 2
+                && refersTo.charAt(0) == '<' && refersTo.charAt(refersTo.length() - 1) == '>') {
+            refersTo = refersTo.substring(1, refersTo.length() - 1);
+        }
+        header.warcRefersToUri = null;
+        header.warcRefersToStr = refersTo;
+        // Only the hash of the original target URI is known.
+        String targetUri = WarcDedupEntry.getTargetUri(header);
+        header.warcRefersToTargetUriUri = null;
+        if (targetUri != null && WarcDedupStore.hashUri(targetUri) == original.targetUriHash) {
+            header.warcRefersToTargetUriStr = targetUri;
+        } else {
+            header.warcRefersToTargetUriStr = null;
+        }
+        header.warcRefersToDate = original.date;
+        header.warcRefersToDateStr = null;
+        // The block digest of the response does not match the truncated block.
+        header.warcBlockDigest = null;
+        header.warcBlockDigestStr = null;
+        header.contentLength = (long)httpHeaderLength;
+        header.contentLengthStr = null;
+    }
+
 }
@@ -79,7 +79,7 @@ public class TestBaseUtils {
         System.out.println("Content-Length: " + header.contentLength);
         System.out.println("  Content-Type: " + header.contentType);
         System.out.println("     Truncated: " + header.warcTruncatedStr);
-        System.out.println("   InetAddress: " + header.warcInetAddress);
+        System.out.println("   InetAddress: " + header.getWarcInetAddress());
         for (int i=0; i<header.warcConcurrentToList.size(); ++i) {
             System.out.println("  ConcurrentTo: " + header.warcConcurrentToList.get(i));
         }
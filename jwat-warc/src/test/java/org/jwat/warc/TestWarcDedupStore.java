@@ -0,0 +1,210 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestWarcDedupStore {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    public static byte[] digest(int i) {
+        Random random = new Random(i);
+        byte[] digest = new byte[20];
+        random.nextBytes(digest);
+        return digest;
+    }
+
+    public static WarcDedupEntry entry(int i) {
+        WarcDedupEntry entry = new WarcDedupEntry();
+        entry.recordId = "<urn:uuid:" + i + ">";
+        entry.targetUriHash = WarcDedupStore.hashUri("http://example.org/" + i);
+        entry.date = WarcDate.getWarcDate("2019-01-0" + (1 + i % 9) + "T12:00:00Z");
+        entry.filename = "file-" + (i % 3) + ".warc.gz";
+        entry.offset = i * 100L;
+        return entry;
+    }
+
+    public static void assertEntry(int i, WarcDedupEntry entry) {
+        WarcDedupEntry expected = entry(i);
+        Assert.assertNotNull(entry);
+        Assert.assertEquals(expected.recordId, entry.recordId);
+        Assert.assertEquals(expected.targetUriHash, entry.targetUriHash);
+        Assert.assertEquals(expected.date.toString(), entry.date.toString());
+        Assert.assertEquals(expected.filename, entry.filename);
+        Assert.assertEquals(expected.offset, entry.offset);
+    }
+
+    @Test
+    public void test_warcdedupstore() throws Exception {
+        File file = tmpFolder.newFile("dedup.tbl");
+        final WarcDedupStore store = WarcDedupStore.create(file, 20000, 20);
+        Assert.assertEquals(20, store.getDigestLength());
+        Assert.assertTrue(store.getCapacity() >= 20000);
+        Assert.assertEquals(0, store.size());
+        Assert.assertNull(store.lookup(digest(1)));
+        // Concurrent inserts, each digest is inserted by two threads.
+        final AtomicInteger stored = new AtomicInteger();
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t=0; t<4; ++t) {
+            final int first = (t / 2) * 5000;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i=first; i<first + 5000; ++i) {
+                            WarcDedupEntry existing = store.putIfAbsent(digest(i), entry(i));
+                            if (existing == null) {
+                                stored.incrementAndGet();
+                            } else {
+                                assertEntry(i, existing);
+                            }
+                            assertEntry(i, store.lookup(digest(i)));
+                        }
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (int t=0; t<threads.size(); ++t) {
+            threads.get(t).join();
+        }
+        Assert.assertEquals(0, failures.size());
+        Assert.assertEquals(10000, stored.get());
+        Assert.assertEquals(10000, store.size());
+        Assert.assertNull(store.lookup(digest(10001)));
+        // Entries without optional values.
+        WarcDedupEntry empty = new WarcDedupEntry();
+        Assert.assertNull(store.putIfAbsent(digest(20000), empty));
+        empty = store.lookup(digest(20000));
+        Assert.assertNull(empty.recordId);
+        Assert.assertNull(empty.date);
+        Assert.assertNull(empty.filename);
+        Assert.assertEquals(-1, empty.offset);
+        store.close();
+        try {
+            store.lookup(digest(1));
+            Assert.fail("Exception expected!");
+        } catch (IllegalStateException e) {
+        }
+
+        // The entries survive reopening.
+        WarcDedupStore store2 = WarcDedupStore.open(file);
+        try {
+            Assert.assertEquals(10001, store2.size());
+            for (int i=0; i<10000; ++i) {
+                assertEntry(i, store2.lookup(digest(i)));
+            }
+            Assert.assertNull(store2.putIfAbsent(digest(10001), entry(10001)));
+            assertEntry(10001, store2.lookup(digest(10001)));
+            assertEntry(10001, store2.putIfAbsent(digest(10001), entry(1)));
+        } finally {
+            store2.close();
+        }
+    }
+
+    @Test
+    public void test_warcdedupstore_limits() throws IOException {
+        File file = tmpFolder.newFile("small.tbl");
+        WarcDedupStore store = WarcDedupStore.create(file, 10, 32);
+        try {
+            byte[] digest = new byte[32];
+            WarcDate date = WarcDate.getWarcDate("2016-01-11T23:24:25.412030Z");
+            WarcDedupEntry entry = new WarcDedupEntry();
+            entry.date = date;
+            Assert.assertNull(store.putIfAbsent(digest, entry));
+            Assert.assertEquals(date.toString(), store.lookup(digest).date.toString());
+            digest[0] = 1;
+            entry.date = WarcDate.getWarcDate("2016-01");
+            Assert.assertNull(store.putIfAbsent(digest, entry));
+            Assert.assertEquals("2016-01", store.lookup(digest).date.toString());
+            digest[0] = 0;
+            try {
+                for (int i=1; i<1000; ++i) {
+                    digest[31] = (byte)i;
+                    digest[30] = (byte)(i >> 8);
+                    store.putIfAbsent(digest, entry);
+                }
+                Assert.fail("Exception expected!");
+            } catch (IllegalStateException e) {
+            }
+            Assert.assertEquals(store.getCapacity() - 1, store.size());
+            try {
+                store.lookup(new byte[20]);
+                Assert.fail("Exception expected!");
+            } catch (IllegalArgumentException e) {
+            }
+            try {
+                store.putIfAbsent(new byte[32], null);
+                Assert.fail("Exception expected!");
+            } catch (IllegalArgumentException e) {
+            }
+        } finally {
+            store.close();
+        }
+        try {
+            WarcDedupStore.create(file, 0, 20);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            WarcDedupStore.create(file, 10, 4);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            WarcDedupStore.open(tmpFolder.newFile("invalid.tbl"));
+            Assert.fail("Exception expected!");
+        } catch (IOException e) {
+        }
+    }
+
+    @Test
+    public void test_warcdedupentry_fromheader() {
+        WarcHeader header = new WarcHeader();
+        header.warcRecordIdStr = "<urn:uuid:1>";
+        header.warcTargetUriStr = "http://example.org/";
+        header.warcDate = WarcDate.now();
+        WarcDedupEntry entry = WarcDedupEntry.fromHeader(header, "a.warc", 42);
+        Assert.assertEquals("<urn:uuid:1>", entry.recordId);
+        Assert.assertEquals(WarcDedupStore.hashUri("http://example.org/"), entry.targetUriHash);
+        Assert.assertSame(header.warcDate, entry.date);
+        Assert.assertEquals("a.warc", entry.filename);
+        Assert.assertEquals(42, entry.offset);
+    }
+
+}
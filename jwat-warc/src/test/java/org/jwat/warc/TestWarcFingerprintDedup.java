@@ -0,0 +1,193 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.common.Fingerprint;
+
+@RunWith(JUnit4.class)
+public class TestWarcFingerprintDedup {
+
+    public static WarcDedupEntry capture(int i) {
+        WarcDedupEntry entry = new WarcDedupEntry();
+        entry.recordId = "<urn:uuid:" + i + ">";
+        return entry;
+    }
+
+    /**
+     * Digest source counting the number of digests requested.
+     */
+    public static class CountingSource implements WarcFingerprintDedup.DigestSource {
+        byte[] payload;
+        List<CountingSource> requested;
+        public CountingSource(byte[] payload, List<CountingSource> requested) {
+            this.payload = payload;
+            this.requested = requested;
+        }
+        @Override
+        public byte[] getDigest(String algorithm) throws IOException {
+            requested.add(this);
+            try {
+                return MessageDigest.getInstance(algorithm).digest(payload);
+            } catch (NoSuchAlgorithmException e) {
+                return null;
+            }
+        }
+    }
+
+    @Test
+    public void test_fingerprintdedup() throws IOException {
+        try {
+            new WarcFingerprintDedup("SHAFT-1");
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        WarcFingerprintDedup dedup = new WarcFingerprintDedup("SHA-256");
+        Assert.assertEquals("SHA-256", dedup.getDigestAlgorithm());
+        List<CountingSource> requested = new ArrayList<CountingSource>();
+        byte[][] payloads = new byte[10][];
+        for (int i=0; i<payloads.length; ++i) {
+            payloads[i] = ("payload " + i).getBytes();
+        }
+        // Unique payloads, no digests are computed.
+        for (int i=0; i<payloads.length; ++i) {
+            byte[] fp = Fingerprint.fingerprint(payloads[i], 0, payloads[i].length, 64);
+            Assert.assertNull(dedup.check(fp, capture(i), new CountingSource(payloads[i], requested)));
+        }
+        Assert.assertEquals(10, dedup.size());
+        Assert.assertEquals(0, requested.size());
+        // Duplicate, both digests are computed once.
+        byte[] fp = Fingerprint.fingerprint(payloads[3], 0, payloads[3].length, 64);
+        WarcDedupEntry original = dedup.check(fp, capture(100), new CountingSource(payloads[3].clone(), requested));
+        Assert.assertEquals("<urn:uuid:3>", original.recordId);
+        Assert.assertEquals(2, requested.size());
+        original = dedup.check(fp, capture(101), new CountingSource(payloads[3].clone(), requested));
+        Assert.assertEquals("<urn:uuid:3>", original.recordId);
+        Assert.assertEquals(3, requested.size());
+        Assert.assertEquals(2, dedup.getFingerprintMatches());
+        Assert.assertEquals(0, dedup.getCollisions());
+        // Forced fingerprint collision, the digests tell the payloads apart.
+        byte[] other = "another payload".getBytes();
+        Assert.assertNull(dedup.check(fp, capture(200), new CountingSource(other, requested)));
+        Assert.assertEquals(1, dedup.getCollisions());
+        original = dedup.check(fp, capture(201), dedup.digestOf(other, 0, other.length));
+        Assert.assertEquals("<urn:uuid:200>", original.recordId);
+        original = dedup.check(fp, capture(202), dedup.digestOf(payloads[3], 0, payloads[3].length));
+        Assert.assertEquals("<urn:uuid:3>", original.recordId);
+        // Byte array digests are computed immediately.
+        WarcFingerprintDedup.DigestSource source = dedup.digestOf(other, 0, other.length);
+        other[0] = 'A';
+        original = dedup.check(fp, capture(203), source);
+        Assert.assertEquals("<urn:uuid:200>", original.recordId);
+        Assert.assertNull(source.getDigest("SHA-1"));
+        // Unavailable digest, never a duplicate.
+        Assert.assertNull(dedup.check(fp, capture(300), new WarcFingerprintDedup.DigestSource() {
+            @Override
+            public byte[] getDigest(String algorithm) {
+                return null;
+            }
+        }));
+        Assert.assertEquals(10, dedup.size());
+    }
+
+    @Test
+    public void test_fingerprintdedup_records() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WarcWriter writer = WarcWriterFactory.getWriter(out, true);
+        String[] payloads = {"Hello", "World", "Hello", "Hello"};
+        for (int i=0; i<payloads.length; ++i) {
+            WarcRecord record = TestWarcWriter_Revisit.newResponse(writer, i + 1, "http://example.org/" + i, payloads[i], i != 3);
+            writer.writeHeader(record);
+            writer.writePayload(TestWarcWriter_Revisit.HTTP_HEADER);
+            writer.writePayload(payloads[i].getBytes());
+            writer.closeRecord();
+        }
+        writer.close();
+
+        WarcFingerprintDedup dedup = new WarcFingerprintDedup("SHA-1");
+        WarcReader reader = WarcReaderFactory.getReader(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(0, reader.getPayloadFingerprintBits());
+        try {
+            reader.setPayloadFingerprintBits(32);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        reader.setPayloadFingerprintBits(Fingerprint.BITS_128);
+        Assert.assertEquals(128, reader.getPayloadFingerprintBits());
+        // Deferred parsing is overridden, the fingerprint needs the HTTP header.
+        reader.setDeferHttpHeader(true);
+        List<String> duplicateOf = new ArrayList<String>();
+        WarcRecord record;
+        while ((record = reader.getNextRecord()) != null) {
+            record.close();
+            Assert.assertNotNull(record.getHttpHeader());
+            int idx = duplicateOf.size();
+            Assert.assertArrayEquals(Fingerprint.fingerprint(payloads[idx].getBytes(), 0, payloads[idx].length(), 128), record.computedPayloadFingerprint);
+            WarcDedupEntry original = dedup.check(record, "test.warc.gz", record.getStartOffset());
+            duplicateOf.add(original != null ? original.recordId : null);
+        }
+        reader.close();
+        Assert.assertNull(duplicateOf.get(0));
+        Assert.assertNull(duplicateOf.get(1));
+        Assert.assertEquals("<urn:uuid:1>", duplicateOf.get(2));
+        // Digest only present as a string in the header.
+        Assert.assertEquals("<urn:uuid:1>", duplicateOf.get(3));
+
+        // Records read without fingerprints are rejected.
+        reader = WarcReaderFactory.getReader(new ByteArrayInputStream(out.toByteArray()));
+        record = reader.getNextRecord();
+        record.close();
+        Assert.assertNull(record.computedPayloadFingerprint);
+        try {
+            dedup.check(record, null, -1);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        reader.close();
+
+        // Invalid HTTP header, the block is fingerprinted instead.
+        byte[] block = "NOT HTTP\r\n\r\nHello".getBytes();
+        out = new ByteArrayOutputStream();
+        writer = WarcWriterFactory.getWriter(out, true);
+        record = TestWarcWriter_Revisit.newResponse(writer, 1, "http://example.org/", "Hello", true);
+        record.header.contentLength = (long)block.length;
+        writer.writeHeader(record);
+        writer.writePayload(block);
+        writer.closeRecord();
+        writer.close();
+        reader = WarcReaderFactory.getReader(new ByteArrayInputStream(out.toByteArray()));
+        reader.setPayloadFingerprintBits(Fingerprint.BITS_128);
+        record = reader.getNextRecord();
+        record.close();
+        Assert.assertFalse(record.getHttpHeader().isValid());
+        Assert.assertArrayEquals(Fingerprint.fingerprint(block, 0, block.length, 128), record.computedPayloadFingerprint);
+        reader.close();
+    }
+
+}
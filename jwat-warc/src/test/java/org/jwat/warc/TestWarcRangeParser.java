@@ -0,0 +1,457 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestWarcRangeParser {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    public static byte[] warcRecord(int idx, byte[] payload) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String header = "WARC/1.0\r\n"
+                + "WARC-Type: resource\r\n"
+                + "WARC-Record-ID: <urn:uuid:0d5d5e9f-2222-4780-b5a4-bbcb3f28" + (1000 + idx) + ">\r\n"
+                + "WARC-Date: 2012-05-17T00:14:47Z\r\n"
+                + "WARC-Target-URI: http://jwat.org/" + idx + "\r\n"
+                + "Content-Type: application/octet-stream\r\n"
+                + "Content-Length: " + payload.length + "\r\n"
+                + "\r\n";
+        out.write(header.getBytes("ISO-8859-1"));
+        out.write(payload);
+        out.write("\r\n\r\n".getBytes("ISO-8859-1"));
+        return out.toByteArray();
+    }
+
+    public static byte[] gzip(byte[] data, boolean bStored) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzout;
+        if (bStored) {
+            gzout = new GZIPOutputStream(out) {
+                {
+                    def.setLevel(Deflater.NO_COMPRESSION);
+                }
+            };
+        } else {
+            gzout = new GZIPOutputStream(out);
+        }
+        gzout.write(data);
+        gzout.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Write a compressed WARC file where every third record stores an
+     * embedded GZip stream verbatim to produce false member candidates.
+     */
+    public static File writeWarcGz(File file, int records) throws IOException {
+        byte[] embedded = gzip("embedded gzip data which is not a WARC record".getBytes("ISO-8859-1"), false);
+        OutputStream out = new FileOutputStream(file);
+        byte[] payload;
+        for (int i=0; i<records; ++i) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (int j=0; j<=i % 5; ++j) {
+                bytes.write(("Payload " + i + "-" + j + " ").getBytes("ISO-8859-1"));
+                bytes.write(embedded);
+            }
+            payload = bytes.toByteArray();
+            out.write(gzip(warcRecord(i, payload), i % 3 == 0));
+        }
+        out.close();
+        return file;
+    }
+
+    public static String recordId(WarcRecord record) {
+        return record.header.warcRecordIdStr;
+    }
+
+    @Test
+    public void test_warcrangeparser_compressed() throws IOException, InterruptedException {
+        File file = writeWarcGz(tmpFolder.newFile("ranges.warc.gz"), 40);
+
+        // Reference offsets and record ids using a sequential reader.
+        List<Long> offsets = new ArrayList<Long>();
+        List<String> ids = new ArrayList<String>();
+        InputStream in = new FileInputStream(file);
+        WarcReader reader = WarcReaderFactory.getReaderCompressed(in);
+        WarcRecord record;
+        while ((record = reader.getNextRecord()) != null) {
+            offsets.add(record.getStartOffset());
+            ids.add(recordId(record));
+        }
+        reader.close();
+        in.close();
+        Assert.assertEquals(40, ids.size());
+
+        List<WarcFileRange> ranges = WarcFileSplitter.splitCompressed(file, 6);
+        Assert.assertTrue(ranges.size() > 1);
+        Assert.assertTrue(ranges.size() <= 6);
+        checkRanges(file, ranges, offsets);
+
+        WarcRangeParser parser = new WarcRangeParser();
+        parser.threads = 3;
+        checkReaderOffsets(parser, file, ranges, offsets);
+
+        // Parallel, unordered.
+        final Map<Long, String> parsed = new ConcurrentHashMap<Long, String>();
+        long records = parser.parse(ranges, new WarcRangeCallback() {
+            @Override
+            public void warcRangeRecord(WarcFileRange range, WarcRecord record) throws IOException {
+                Assert.assertTrue(record.getStartOffset() >= range.start);
+                Assert.assertTrue(record.getStartOffset() < range.end);
+                Assert.assertTrue(record.isCompliant());
+                parsed.put(record.getStartOffset(), recordId(record));
+            }
+        });
+        Assert.assertEquals(40, records);
+        Assert.assertEquals(40, parsed.size());
+        for (int i=0; i<offsets.size(); ++i) {
+            Assert.assertEquals(ids.get(i), parsed.get(offsets.get(i)));
+        }
+
+        // Parallel, ordered.
+        final List<String> ordered = new ArrayList<String>();
+        records = parser.parseOrdered(ranges, new WarcRangeMapper<String>() {
+            @Override
+            public String mapRecord(WarcFileRange range, WarcRecord record) throws IOException {
+                return recordId(record);
+            }
+            @Override
+            public void recordMapped(String value) throws IOException {
+                ordered.add(value);
+            }
+        });
+        Assert.assertEquals(40, records);
+        Assert.assertEquals(ids, ordered);
+
+        // Per range, using known record offsets.
+        long[] offsetArr = new long[offsets.size()];
+        for (int i=0; i<offsetArr.length; ++i) {
+            offsetArr[i] = offsets.get(i);
+        }
+        ranges = WarcFileSplitter.split(file, offsetArr, 4, true);
+        Assert.assertEquals(4, ranges.size());
+        checkRanges(file, ranges, offsets);
+        final List<String> sequential = new ArrayList<String>();
+        records = 0;
+        for (int i=0; i<ranges.size(); ++i) {
+            records += parser.parseRange(ranges.get(i), new WarcRangeCallback() {
+                @Override
+                public void warcRangeRecord(WarcFileRange range, WarcRecord record) throws IOException {
+                    sequential.add(recordId(record));
+                }
+            });
+        }
+        Assert.assertEquals(40, records);
+        Assert.assertEquals(ids, sequential);
+
+        // A single split covers the whole file.
+        ranges = WarcFileSplitter.splitCompressed(file, 1);
+        Assert.assertEquals(1, ranges.size());
+        Assert.assertEquals(0, ranges.get(0).start);
+        Assert.assertEquals(file.length(), ranges.get(0).end);
+
+        try {
+            WarcFileSplitter.splitCompressed(file, 0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new WarcFileRange(file, 10, 5, true);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    /**
+     * Write an uncompressed WARC file where the payloads contain WARC version
+     * lines and embedded record headers to produce false record candidates.
+     */
+    public static File writeWarc(File file, int records) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        for (int i=0; i<records; ++i) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (int j=0; j<=i % 5; ++j) {
+                bytes.write(("Payload " + i + "-" + j + "\n").getBytes("ISO-8859-1"));
+                bytes.write("WARC/1.0\r\nWARC-Type: resource\r\nContent-Length: 5\r\n\r\nabcde\r\n\r\nnot a record\n".getBytes("ISO-8859-1"));
+                bytes.write("WARC/1.0 is just text here\n".getBytes("ISO-8859-1"));
+            }
+            out.write(warcRecord(i, bytes.toByteArray()));
+        }
+        out.close();
+        return file;
+    }
+
+    @Test
+    public void test_warcrangeparser_uncompressed() throws IOException, InterruptedException {
+        File file = writeWarc(tmpFolder.newFile("ranges.warc"), 40);
+
+        // Reference offsets and record ids using a sequential reader.
+        List<Long> offsets = new ArrayList<Long>();
+        List<String> ids = new ArrayList<String>();
+        InputStream in = new FileInputStream(file);
+        WarcReader reader = WarcReaderFactory.getReaderUncompressed(in);
+        WarcRecord record;
+        while ((record = reader.getNextRecord()) != null) {
+            offsets.add(record.getStartOffset());
+            ids.add(recordId(record));
+        }
+        reader.close();
+        in.close();
+        Assert.assertEquals(40, ids.size());
+
+        // Every scan position must lead to the next record boundary.
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            int idx = 0;
+            for (long from=0; from<file.length(); from += 97) {
+                while (idx < offsets.size() && offsets.get(idx) < from) {
+                    ++idx;
+                }
+                long expected = (idx < offsets.size()) ? offsets.get(idx) : -1;
+                Assert.assertEquals(expected, WarcFileSplitter.findRecordStart(raf, from, file.length()));
+            }
+            Assert.assertEquals(-1, WarcFileSplitter.findRecordStart(raf, offsets.get(1) + 1, offsets.get(2)));
+        } finally {
+            raf.close();
+        }
+
+        List<WarcFileRange> ranges = WarcFileSplitter.splitUncompressed(file, 7);
+        Assert.assertEquals(7, ranges.size());
+        checkRanges(file, ranges, offsets);
+        for (int i=0; i<ranges.size(); ++i) {
+            Assert.assertFalse(ranges.get(i).bCompressed);
+        }
+
+        WarcRangeParser parser = new WarcRangeParser();
+        parser.threads = 3;
+        checkReaderOffsets(parser, file, ranges, offsets);
+
+        // Parallel, unordered.
+        final Map<Long, String> parsed = new ConcurrentHashMap<Long, String>();
+        long records = parser.parse(ranges, new WarcRangeCallback() {
+            @Override
+            public void warcRangeRecord(WarcFileRange range, WarcRecord record) throws IOException {
+                Assert.assertTrue(record.getStartOffset() >= range.start);
+                Assert.assertTrue(record.getStartOffset() < range.end);
+                Assert.assertTrue(record.isCompliant());
+                parsed.put(record.getStartOffset(), recordId(record));
+            }
+        });
+        Assert.assertEquals(40, records);
+        Assert.assertEquals(40, parsed.size());
+        for (int i=0; i<offsets.size(); ++i) {
+            Assert.assertEquals(ids.get(i), parsed.get(offsets.get(i)));
+        }
+
+        // Parallel, ordered.
+        final List<String> ordered = new ArrayList<String>();
+        records = parser.parseOrdered(ranges, new WarcRangeMapper<String>() {
+            @Override
+            public String mapRecord(WarcFileRange range, WarcRecord record) throws IOException {
+                return recordId(record);
+            }
+            @Override
+            public void recordMapped(String value) throws IOException {
+                ordered.add(value);
+            }
+        });
+        Assert.assertEquals(40, records);
+        Assert.assertEquals(ids, ordered);
+
+        // More splits than records.
+        ranges = WarcFileSplitter.splitUncompressed(file, 1000);
+        Assert.assertEquals(40, ranges.size());
+        checkRanges(file, ranges, offsets);
+
+        try {
+            WarcFileSplitter.splitUncompressed(file, 0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            WarcFileSplitter.findRecordStart(null, 0, 0);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void test_warcrangeparser_stream() throws IOException {
+        File[] files = new File[] {
+                writeWarcGz(tmpFolder.newFile("stream.warc.gz"), 40),
+                writeWarc(tmpFolder.newFile("stream.warc"), 40)
+        };
+        WarcRangeParser parser = new WarcRangeParser();
+        for (int f=0; f<files.length; ++f) {
+            File file = files[f];
+            List<String> ids = new ArrayList<String>();
+            InputStream in = new FileInputStream(file);
+            WarcReader reader = WarcReaderFactory.getReader(in);
+            WarcRecord record;
+            while ((record = reader.getNextRecord()) != null) {
+                ids.add(recordId(record));
+            }
+            reader.close();
+            in.close();
+            Assert.assertEquals(40, ids.size());
+
+            Function<WarcRecord, String> idMapper = new Function<WarcRecord, String>() {
+                @Override
+                public String apply(WarcRecord record) {
+                    // The payload must be readable inside the stream stage.
+                    try {
+                        InputStream pin = record.getPayloadContent();
+                        while (pin.read() != -1) {
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    Assert.assertTrue(record.isCompliant());
+                    return recordId(record);
+                }
+            };
+
+            Stream<WarcRecord> stream = parser.parallelStream(file, 8);
+            Assert.assertTrue(stream.isParallel());
+            List<String> parallel = stream.map(idMapper).collect(Collectors.toList());
+            stream.close();
+            Assert.assertEquals(ids, parallel);
+
+            stream = WarcReaderFactory.parallelStream(file);
+            Assert.assertTrue(stream.isParallel());
+            Assert.assertEquals(ids, stream.map(idMapper).collect(Collectors.toList()));
+            stream.close();
+
+            List<WarcFileRange> ranges = (f == 0) ? WarcFileSplitter.splitCompressed(file, 5) : WarcFileSplitter.splitUncompressed(file, 5);
+            stream = parser.stream(ranges, false);
+            Assert.assertFalse(stream.isParallel());
+            Assert.assertEquals(ids, stream.map(idMapper).collect(Collectors.toList()));
+            stream.close();
+
+            // Short-circuiting leaves ranges open until the stream is closed.
+            stream = parser.stream(ranges, false);
+            Assert.assertEquals(ids.get(0), stream.map(idMapper).findFirst().get());
+            stream.close();
+
+            // Splitting hands off whole ranges as prefixes.
+            WarcRangeSpliterator spliterator = new WarcRangeSpliterator(parser, ranges);
+            final List<String> split = new ArrayList<String>();
+            Consumer<WarcRecord> collector = new Consumer<WarcRecord>() {
+                @Override
+                public void accept(WarcRecord record) {
+                    split.add(recordId(record));
+                }
+            };
+            Assert.assertTrue(spliterator.tryAdvance(collector));
+            Spliterator<WarcRecord> prefix = spliterator.trySplit();
+            Assert.assertNotNull(prefix);
+            prefix.forEachRemaining(collector);
+            Spliterator<WarcRecord> prefix2 = spliterator.trySplit();
+            Assert.assertNotNull(prefix2);
+            prefix2.forEachRemaining(collector);
+            spliterator.forEachRemaining(collector);
+            Assert.assertNull(spliterator.trySplit());
+            Assert.assertEquals(ids, split);
+        }
+        try {
+            parser.stream(null, true);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            WarcReaderFactory.parallelStream(null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    /**
+     * Check that the ranges are contiguous, cover the whole file and start
+     * at record offsets.
+     */
+    public static void checkRanges(File file, List<WarcFileRange> ranges, List<Long> offsets) {
+        long expectedStart = 0;
+        for (int i=0; i<ranges.size(); ++i) {
+            WarcFileRange range = ranges.get(i);
+            Assert.assertEquals(expectedStart, range.start);
+            Assert.assertTrue(range.getLength() > 0);
+            Assert.assertTrue(offsets.contains(range.start));
+            expectedStart = range.end;
+        }
+        Assert.assertEquals(file.length(), expectedStart);
+    }
+
+    /**
+     * Check that the reader and record offsets of each range are relative
+     * to the beginning of the file.
+     */
+    public static void checkReaderOffsets(WarcRangeParser parser, File file, List<WarcFileRange> ranges, List<Long> offsets) throws IOException {
+        int records = 0;
+        for (int i=0; i<ranges.size(); ++i) {
+            WarcFileRange range = ranges.get(i);
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            WarcReader reader = parser.openReader(raf, range);
+            Assert.assertEquals(range.start, reader.getOffset());
+            WarcRecord record;
+            while ((record = WarcRangeParser.nextRecord(reader, range)) != null) {
+                Assert.assertEquals(offsets.get(records), Long.valueOf(record.getStartOffset()));
+                Assert.assertEquals(record.getStartOffset(), reader.getStartOffset());
+                if (!range.bCompressed) {
+                    Assert.assertEquals(record.getStartOffset(), record.startOffset);
+                }
+                record.close();
+                Assert.assertTrue(reader.getOffset() > record.getStartOffset());
+                ++records;
+            }
+            reader.close();
+            raf.close();
+        }
+        Assert.assertEquals(offsets.size(), records);
+    }
+
+}
@@ -0,0 +1,122 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.common.DiagnosisType;
+
+@RunWith(JUnit4.class)
+public class TestWarcReader_HeaderOnly {
+
+    public static final String[] FILES = new String[] {
+        "IAH-20080430204825-00000-blackbook.warc.gz",
+        "valid-warcfile-fields-warcinfo.warc",
+        "valid-warcfile-utf8.warc"
+    };
+
+    @Test
+    public void test_warcreader_headeronly() throws IOException {
+        for (int f=0; f<FILES.length; ++f) {
+            List<Object[]> full = readRecords(FILES[f], false);
+            List<Object[]> headers = readRecords(FILES[f], true);
+            Assert.assertTrue(full.size() > 0);
+            Assert.assertEquals(full.size(), headers.size());
+            for (int i=0; i<full.size(); ++i) {
+                Object[] expected = full.get(i);
+                Object[] actual = headers.get(i);
+                // Record-ID, start offset, consumed, compressed length.
+                Assert.assertEquals(expected[0], actual[0]);
+                Assert.assertEquals(expected[1], actual[1]);
+                Assert.assertEquals(expected[2], actual[2]);
+                Assert.assertEquals(expected[3], actual[3]);
+                long offset = (Long)actual[1];
+                long compressedLength = (Long)actual[3];
+                if (i + 1 < headers.size()) {
+                    Assert.assertEquals((Long)headers.get(i + 1)[1] - offset, compressedLength);
+                }
+                if (!FILES[f].endsWith(".gz")) {
+                    Assert.assertEquals(actual[2], actual[3]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the records of a test file.
+     * @param fileName test file
+     * @param bHeaderOnly header only reading
+     * @return record-id, start offset, consumed and compressed length of each record
+     * @throws IOException if an I/O exception occurs while reading
+     */
+    public static List<Object[]> readRecords(String fileName, boolean bHeaderOnly) throws IOException {
+        InputStream in = TestWarcReader_HeaderOnly.class.getClassLoader().getResourceAsStream(fileName);
+        WarcReader reader = WarcReaderFactory.getReader(in);
+        reader.setHeaderOnly(bHeaderOnly);
+        Assert.assertEquals(bHeaderOnly, reader.getHeaderOnly());
+        List<Object[]> records = new ArrayList<Object[]>();
+        WarcRecord record;
+        while ((record = reader.getNextRecord()) != null) {
+            Assert.assertEquals(-1, record.getCompressedLength());
+            if (bHeaderOnly) {
+                Assert.assertFalse(record.hasPayload());
+                Assert.assertNull(record.getHttpHeader());
+            }
+            record.close();
+            records.add(new Object[] {record.header.warcRecordIdStr, record.getStartOffset(),
+                    record.getConsumed(), record.getCompressedLength()});
+        }
+        reader.close();
+        in.close();
+        return records;
+    }
+
+    @Test
+    public void test_warcreader_headeronly_truncated() throws IOException {
+        String warcData = "WARC/1.0\r\n"
+                + "WARC-Type: resource\r\n"
+                + "WARC-Record-ID: <urn:uuid:0d5d5e9f-2222-4780-b5a4-bbcb3f28431f>\r\n"
+                + "WARC-Date: 2012-05-17T00:14:47Z\r\n"
+                + "WARC-Target-URI: http://jwat.org/\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Length: 100\r\n"
+                + "\r\n"
+                + "0123456789";
+        byte[] bytes = warcData.getBytes("ISO-8859-1");
+        WarcReader reader = WarcReaderFactory.getReaderUncompressed(new ByteArrayInputStream(bytes));
+        reader.setHeaderOnly(true);
+        WarcRecord record = reader.getNextRecord();
+        Assert.assertNotNull(record);
+        record.close();
+        Assert.assertFalse(record.isCompliant());
+        Assert.assertEquals(DiagnosisType.INVALID_DATA, record.diagnostics.getErrors().get(0).type);
+        Assert.assertEquals("Payload length mismatch", record.diagnostics.getErrors().get(0).entity);
+        Assert.assertEquals(bytes.length, record.getConsumed());
+        Assert.assertNull(reader.getNextRecord());
+        reader.close();
+    }
+
+}
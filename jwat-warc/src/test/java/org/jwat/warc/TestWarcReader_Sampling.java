@@ -0,0 +1,192 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.archive.common.RecordSampler;
+import org.jwat.archive.common.ReservoirSampler;
+
+@RunWith(JUnit4.class)
+public class TestWarcReader_Sampling {
+
+    /**
+     * Read the record-ids of a test file, using a sampler if not null.
+     * @param fileName test file
+     * @param sampler sampler or null
+     * @param indexes list to add the sample index of each record to or null
+     * @return record-ids of the records returned
+     * @throws IOException if an I/O exception occurs while reading
+     */
+    public static List<String> readRecordIds(String fileName, RecordSampler sampler, List<Long> indexes) throws IOException {
+        InputStream in = TestWarcReader_Sampling.class.getClassLoader().getResourceAsStream(fileName);
+        WarcReader reader = WarcReaderFactory.getReader(in);
+        reader.setSampler(sampler);
+        Assert.assertSame(sampler, reader.getSampler());
+        List<String> ids = new ArrayList<String>();
+        WarcRecord record;
+        while ((record = reader.getNextSampledRecord()) != null) {
+            if (record.header.contentLength != null && record.header.contentLength > 0) {
+                Assert.assertTrue(record.hasPayload());
+            }
+            ids.add(record.header.warcRecordIdStr);
+            if (indexes != null) {
+                indexes.add(reader.getSampleIndex());
+            }
+        }
+        Assert.assertTrue(reader.isCompliant());
+        reader.close();
+        in.close();
+        return ids;
+    }
+
+    @Test
+    public void test_warcreader_sampling() throws IOException {
+        for (int f=0; f<TestWarcReader_HeaderOnly.FILES.length; ++f) {
+            String fileName = TestWarcReader_HeaderOnly.FILES[f];
+            List<String> all = readRecordIds(fileName, null, null);
+            Assert.assertTrue(all.size() > 0);
+
+            List<Long> indexes = new ArrayList<Long>();
+            List<String> ids = readRecordIds(fileName, RecordSampler.everyNth(3), indexes);
+            Assert.assertEquals((all.size() + 2) / 3, ids.size());
+            for (int i=0; i<ids.size(); ++i) {
+                Assert.assertEquals(all.get(i * 3), ids.get(i));
+                Assert.assertEquals(Long.valueOf(i * 3), indexes.get(i));
+            }
+
+            RecordSampler expected = RecordSampler.bernoulli(0.5, 42L);
+            ids = readRecordIds(fileName, RecordSampler.bernoulli(0.5, 42L), null);
+            int idx = 0;
+            for (int i=0; i<all.size(); ++i) {
+                if (expected.sample(i)) {
+                    Assert.assertEquals(all.get(i), ids.get(idx++));
+                }
+            }
+            Assert.assertEquals(idx, ids.size());
+
+            Assert.assertEquals(0, readRecordIds(fileName, RecordSampler.bernoulli(0.0, 42L), null).size());
+
+            // The reservoir is a subset of the records returned.
+            ReservoirSampler reservoir = RecordSampler.reservoir(2, 42L);
+            indexes.clear();
+            ids = readRecordIds(fileName, reservoir, indexes);
+            long[] kept = reservoir.getIndexes();
+            Assert.assertEquals(Math.min(2, all.size()), kept.length);
+            for (int i=0; i<kept.length; ++i) {
+                Assert.assertTrue(indexes.contains(kept[i]));
+            }
+        }
+    }
+
+    /**
+     * Input stream counting the bytes actually read, skipped bytes are not
+     * counted.
+     */
+    public static class ReadCountingInputStream extends FilterInputStream {
+        public long read;
+        public ReadCountingInputStream(InputStream in) {
+            super(in);
+        }
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                ++read;
+            }
+            return b;
+        }
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                read += n;
+            }
+            return n;
+        }
+    }
+
+    @Test
+    public void test_warcreader_sampling_skip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] block = new byte[64 * 1024];
+        List<Long> offsets = new ArrayList<Long>();
+        for (int i=0; i<20; ++i) {
+            offsets.add((long)out.size());
+            String header = "WARC/1.0\r\n"
+                    + "WARC-Type: resource\r\n"
+                    + "WARC-Record-ID: <urn:uuid:0d5d5e9f-2222-4780-b5a4-bbcb3f2843" + (10 + i) + ">\r\n"
+                    + "WARC-Date: 2012-05-17T00:14:47Z\r\n"
+                    + "WARC-Target-URI: http://jwat.org/" + i + "\r\n"
+                    + "Content-Type: application/octet-stream\r\n"
+                    + "Content-Length: " + block.length + "\r\n"
+                    + "\r\n";
+            out.write(header.getBytes("ISO-8859-1"));
+            out.write(block);
+            out.write("\r\n\r\n".getBytes("ISO-8859-1"));
+        }
+        byte[] bytes = out.toByteArray();
+
+        ReadCountingInputStream in = new ReadCountingInputStream(new ByteArrayInputStream(bytes));
+        WarcReader reader = WarcReaderFactory.getReaderUncompressed(in, 8192);
+        reader.setSampler(RecordSampler.everyNth(10));
+        WarcRecord record;
+        List<String> uris = new ArrayList<String>();
+        while ((record = reader.getNextSampledRecord()) != null) {
+            uris.add(record.header.warcTargetUriStr);
+        }
+        Assert.assertTrue(reader.isCompliant());
+        Assert.assertEquals(20, reader.getRecordCount());
+        reader.close();
+        Assert.assertEquals(2, uris.size());
+        Assert.assertEquals("http://jwat.org/0", uris.get(0));
+        Assert.assertEquals("http://jwat.org/10", uris.get(1));
+        // The blocks of the 18 unsampled records are skipped, not read.
+        Assert.assertTrue(in.read < 4 * block.length);
+
+        // Random access to the records selected from an index.
+        long[] offsetArr = new long[offsets.size()];
+        for (int i=0; i<offsetArr.length; ++i) {
+            offsetArr[i] = offsets.get(i);
+        }
+        ReservoirSampler reservoir = RecordSampler.reservoir(5, 42L);
+        long[] selected = reservoir.select(offsetArr);
+        Assert.assertEquals(5, selected.length);
+        long[] kept = reservoir.getIndexes();
+        reader = WarcReaderFactory.getReaderUncompressed();
+        for (int i=0; i<selected.length; ++i) {
+            Assert.assertEquals(offsetArr[(int)kept[i]], selected[i]);
+            in = new ReadCountingInputStream(new ByteArrayInputStream(bytes, (int)selected[i], bytes.length - (int)selected[i]));
+            record = reader.getNextRecordFrom(in, selected[i]);
+            Assert.assertEquals("http://jwat.org/" + kept[i], record.header.warcTargetUriStr);
+            record.close();
+        }
+        reader.close();
+    }
+
+}
@@ -0,0 +1,122 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.common.ValidationLevel;
+
+@RunWith(JUnit4.class)
+public class TestWarcReader_ValidationLevel {
+
+    public static final String WARC_DATA =
+            "WARC/1.0\r\n"
+            + "WARC-Type: warcinfo\r\n"
+            + "WARC-Record-ID: <urn:uuid:0d5d5e9f-2222-4780-b5a4-bbcb3f28431f>\r\n"
+            + "WARC-Date: 2012-05-17T00:14:47Z\r\n"
+            + "WARC-Target-URI: http://jwat.org/\r\n"
+            + "WARC-IP-Address: 127.0.0.1\r\n"
+            + "WARC-Concurrent-To: <urn:uuid:1d5d5e9f-2222-4780-b5a4-bbcb3f28431f>\r\n"
+            + "WARC-Concurrent-To: <urn:uuid:2d5d5e9f-2222-4780-b5a4-bbcb3f28431f>\r\n"
+            + "WARC-Warcinfo-ID: <urn:uuid:3d5d5e9f-2222-4780-b5a4-bbcb3f28431f>\r\n"
+            + "Content-Length: 0\r\n"
+            + "\r\n"
+            + "\r\n\r\n"
+            + "WARC/1.0\r\n"
+            + "WARC-Type: request\r\n"
+            + "WARC-Record-ID: <urn:uuid:4d5d5e9f-2222-4780-b5a4-bbcb3f28431f>\r\n"
+            + "WARC-Date: 2012-05-17T00:14:47Z\r\n"
+            + "Content-Length: 0\r\n"
+            + "\r\n"
+            + "\r\n\r\n"
+            + "WARC/1.0\r\n"
+            + "WARC-Type: response\r\n"
+            + "WARC-Record-ID: <urn:uuid:5d5d5e9f-2222-4780-b5a4-bbcb3f28431f>\r\n"
+            + "WARC-Date: 2012-05-17T00:14:47Z\r\n"
+            + "WARC-Target-URI: http://jwat.org/\r\n"
+            + "Content-Length: 0\r\n"
+            + "\r\n"
+            + "\r\n\r\n";
+
+    @Test
+    public void test_warcreader_validationlevel() throws IOException {
+        int[][] full = readRecords(ValidationLevel.FULL, true);
+        int[][] countOnly = readRecords(ValidationLevel.COUNT_ONLY, false);
+        int[][] none = readRecords(ValidationLevel.NONE, false);
+
+        Assert.assertEquals(3, full.length);
+        // warcinfo: 4 errors (3 different fields, Warc-Concurrent-To twice) and 1 warning.
+        Assert.assertEquals(4, full[0][0]);
+        Assert.assertEquals(1, full[0][1]);
+        // request: missing Warc-Target-URI.
+        Assert.assertEquals(1, full[1][0]);
+        Assert.assertEquals(0, full[1][1]);
+        // response: compliant.
+        Assert.assertEquals(0, full[2][0]);
+        Assert.assertEquals(0, full[2][1]);
+
+        Assert.assertEquals(full.length, countOnly.length);
+        Assert.assertEquals(full.length, none.length);
+        for (int i=0; i<full.length; ++i) {
+            Assert.assertEquals(full[i][0], countOnly[i][0]);
+            Assert.assertEquals(full[i][1], countOnly[i][1]);
+            Assert.assertEquals(0, none[i][0]);
+            Assert.assertEquals(0, none[i][1]);
+        }
+    }
+
+    /**
+     * Read all the test records using the given validation level.
+     * @param validationLevel validation level
+     * @param bDiagnoses are diagnosis objects expected
+     * @return number of errors and warnings for each record
+     * @throws IOException if an I/O exception occurs while reading
+     */
+    public static int[][] readRecords(ValidationLevel validationLevel, boolean bDiagnoses) throws IOException {
+        ByteArrayInputStream in = new ByteArrayInputStream(WARC_DATA.getBytes("ISO-8859-1"));
+        WarcReader reader = WarcReaderFactory.getReaderUncompressed(in);
+        reader.setValidationLevel(validationLevel);
+        Assert.assertEquals(validationLevel, reader.getValidationLevel());
+        Assert.assertEquals(validationLevel, reader.diagnostics.getValidationLevel());
+        int[][] counts = new int[3][];
+        int idx = 0;
+        WarcRecord record;
+        while ((record = reader.getNextRecord()) != null) {
+            record.close();
+            Assert.assertEquals(validationLevel, record.diagnostics.getValidationLevel());
+            if (bDiagnoses) {
+                Assert.assertEquals(record.diagnostics.getErrorCount(), record.diagnostics.getErrors().size());
+                Assert.assertEquals(record.diagnostics.getWarningCount(), record.diagnostics.getWarnings().size());
+            } else {
+                Assert.assertEquals(0, record.diagnostics.getErrors().size());
+                Assert.assertEquals(0, record.diagnostics.getWarnings().size());
+            }
+            Assert.assertEquals(record.diagnostics.getErrorCount() == 0 && record.diagnostics.getWarningCount() == 0, record.isCompliant());
+            counts[idx++] = new int[] {record.diagnostics.getErrorCount(), record.diagnostics.getWarningCount()};
+        }
+        Assert.assertEquals(validationLevel == ValidationLevel.NONE, reader.isCompliant());
+        reader.close();
+        return counts;
+    }
+
+}
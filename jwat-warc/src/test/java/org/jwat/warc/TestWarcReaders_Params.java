@@ -25,6 +25,10 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.jwat.archive.common.ReaderConfig;
+import org.jwat.common.ByteCountingPushBackInputStream;
+import org.jwat.common.UriProfile;
+import org.jwat.common.ValidationLevel;
 import org.jwat.gzip.GzipReader;
 
 @RunWith(JUnit4.class)
@@ -99,7 +103,7 @@ public class TestWarcReaders_Params {
 
             readerUncompressed = new WarcReaderUncompressed();
             try {
-                readerUncompressed = new WarcReaderUncompressed(null);
+                readerUncompressed = new WarcReaderUncompressed((ByteCountingPushBackInputStream)null);
             } catch (IllegalArgumentException e) {
                 readerUncompressed = null;
             }
@@ -216,7 +220,7 @@ public class TestWarcReaders_Params {
 
             readerCompressed = new WarcReaderCompressed();
             try {
-                readerCompressed = new WarcReaderCompressed(null);
+                readerCompressed = new WarcReaderCompressed((GzipReader)null);
             } catch (IllegalArgumentException e) {
                 readerCompressed = null;
             }
@@ -385,4 +389,126 @@ public class TestWarcReaders_Params {
         }
     }
 
+    @Test
+    public void test_params_readers_config() {
+        ReaderConfig config = new ReaderConfig.Builder()
+                .setUriProfile(UriProfile.RFC3986_ABS_16BIT_LAX)
+                .setWarcTargetUriProfile(UriProfile.RFC3986_ABS_16BIT)
+                .setBlockDigestEnabled(true)
+                .setBlockDigestAlgorithm("sha1")
+                .setBlockDigestEncoding("base16")
+                .setPayloadDigestEnabled(true)
+                .setPayloadDigestAlgorithm("md5")
+                .setPayloadDigestEncoding("base64")
+                .setRecordHeaderMaxSize(1024)
+                .setPayloadHeaderMaxSize(2048)
+                .setReportHttpHeaderErrors(false)
+                .setDeferHttpHeader(true)
+                .setHeaderOnly(true)
+                .setValidationLevel(ValidationLevel.COUNT_ONLY)
+                .build();
+        WarcReader[] readers = new WarcReader[] {
+                new WarcReaderUncompressed(), new WarcReaderCompressed()
+        };
+        for (int i=0; i<readers.length; ++i) {
+            WarcReader reader = readers[i];
+            try {
+                reader.setConfig(null);
+                Assert.fail("Exception expected!");
+            } catch (IllegalArgumentException e) {
+            }
+            reader.setConfig(config);
+            Assert.assertEquals(UriProfile.RFC3986_ABS_16BIT_LAX, reader.getUriProfile());
+            Assert.assertEquals(UriProfile.RFC3986_ABS_16BIT, reader.getWarcTargetUriProfile());
+            Assert.assertTrue(reader.getBlockDigestEnabled());
+            Assert.assertEquals("sha1", reader.getBlockDigestAlgorithm());
+            Assert.assertEquals("base16", reader.getBlockDigestEncoding());
+            Assert.assertTrue(reader.getPayloadDigestEnabled());
+            Assert.assertEquals("md5", reader.getPayloadDigestAlgorithm());
+            Assert.assertEquals("base64", reader.getPayloadDigestEncoding());
+            Assert.assertEquals(1024, reader.getRecordHeaderMaxSize());
+            Assert.assertEquals(2048, reader.getPayloadHeaderMaxSize());
+            Assert.assertFalse(reader.getReportHttpHeaderErrors());
+            Assert.assertTrue(reader.getDeferHttpHeader());
+            Assert.assertTrue(reader.getHeaderOnly());
+            Assert.assertEquals(ValidationLevel.COUNT_ONLY, reader.getValidationLevel());
+            Assert.assertEquals(ValidationLevel.COUNT_ONLY, reader.diagnostics.getValidationLevel());
+            reader.setConfig(ReaderConfig.DEFAULT);
+            Assert.assertEquals(UriProfile.RFC3986, reader.getUriProfile());
+            Assert.assertEquals(UriProfile.RFC3986, reader.getWarcTargetUriProfile());
+            Assert.assertFalse(reader.getBlockDigestEnabled());
+            Assert.assertNull(reader.getBlockDigestAlgorithm());
+            Assert.assertEquals("base32", reader.getBlockDigestEncoding());
+            Assert.assertEquals(8192, reader.getRecordHeaderMaxSize());
+            Assert.assertEquals(32768, reader.getPayloadHeaderMaxSize());
+            Assert.assertTrue(reader.getReportHttpHeaderErrors());
+            Assert.assertFalse(reader.getDeferHttpHeader());
+            Assert.assertFalse(reader.getHeaderOnly());
+            Assert.assertEquals(ValidationLevel.FULL, reader.getValidationLevel());
+            try {
+                reader.setValidationLevel(null);
+                Assert.fail("Exception expected!");
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+
+    @Test
+    public void test_params_readers_config_constructors() {
+        ReaderConfig config = new ReaderConfig.Builder()
+                .setUriProfile(UriProfile.RFC3986_ABS_16BIT_LAX)
+                .setBlockDigestEnabled(true)
+                .setRecordHeaderMaxSize(1024)
+                .setValidationLevel(ValidationLevel.COUNT_ONLY)
+                .build();
+        ByteCountingPushBackInputStream pbin = new ByteCountingPushBackInputStream(new ByteArrayInputStream(new byte[0]), 16);
+        GzipReader gzipReader = new GzipReader(new ByteArrayInputStream(new byte[0]));
+        WarcReader[] readers = new WarcReader[] {
+                new WarcReaderUncompressed(config),
+                new WarcReaderUncompressed(pbin, config),
+                new WarcReaderCompressed(config),
+                new WarcReaderCompressed(gzipReader, config),
+                new WarcReaderCompressed(gzipReader, 8192, config)
+        };
+        for (int i=0; i<readers.length; ++i) {
+            WarcReader reader = readers[i];
+            Assert.assertEquals(UriProfile.RFC3986_ABS_16BIT_LAX, reader.getUriProfile());
+            Assert.assertEquals(UriProfile.RFC3986, reader.getWarcTargetUriProfile());
+            Assert.assertTrue(reader.getBlockDigestEnabled());
+            Assert.assertEquals(1024, reader.getRecordHeaderMaxSize());
+            Assert.assertEquals(32768, reader.getPayloadHeaderMaxSize());
+            Assert.assertEquals(ValidationLevel.COUNT_ONLY, reader.diagnostics.getValidationLevel());
+            Assert.assertNotNull(reader.lineReader);
+            Assert.assertNotNull(reader.headerLineReader);
+            Assert.assertNotNull(reader.fieldParsers);
+            // Validation is precomputed once per configuration.
+            Assert.assertSame(readers[0].validation, reader.validation);
+            Assert.assertSame(config.getSharedState(WarcValidation.class), reader.validation);
+        }
+        Assert.assertNotSame(readers[0].validation, new WarcReaderUncompressed(config.toBuilder().build()).validation);
+        // Readers constructed without a configuration have their own validation.
+        Assert.assertNotSame(new WarcReaderUncompressed().validation, new WarcReaderUncompressed().validation);
+        Assert.assertNotSame(readers[0].validation, new WarcReaderCompressed().validation);
+        try {
+            new WarcReaderUncompressed((ReaderConfig)null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new WarcReaderCompressed((ReaderConfig)null);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new WarcReaderUncompressed(null, config);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new WarcReaderCompressed(null, config);
+            Assert.fail("Exception expected!");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
 }
@@ -20,6 +20,7 @@ package org.jwat.warc;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -603,6 +604,87 @@ public class TestWarcRecord extends TestWarcRecordHelper {
             }
             reader.close();
             Assert.assertFalse(reader.isCompliant());
+
+            /*
+             * Deferred http header parsing.
+             */
+            reader = WarcReaderFactory.getReader(new ByteArrayInputStream(out.toByteArray()));
+            reader.setBlockDigestEnabled(false);
+            reader.setPayloadDigestEnabled(false);
+            Assert.assertFalse(reader.getDeferHttpHeader());
+            reader.setDeferHttpHeader(true);
+            Assert.assertTrue(reader.getDeferHttpHeader());
+            recordNumber = 0;
+            while ((record = reader.getNextRecord()) != null) {
+                ++recordNumber;
+                // Nothing parsed yet.
+                Assert.assertNull(record.httpHeader);
+                switch (recordNumber) {
+                case 1:
+                case 2:
+                case 3:
+                    // Never accessed, never parsed.
+                    record.close();
+                    Assert.assertEquals(0, record.diagnostics.getErrors().size());
+                    Assert.assertEquals(0, record.diagnostics.getWarnings().size());
+                    Assert.assertNull(record.getHttpHeader());
+                    Assert.assertTrue(record.isCompliant());
+                    break;
+                case 4:
+                    Assert.assertNull(record.getHttpHeader());
+                    record.close();
+                    Assert.assertEquals(0, record.diagnostics.getWarnings().size());
+                    break;
+                case 5:
+                    Assert.assertNotNull(record.getHttpHeader());
+                    Assert.assertFalse(record.httpHeader.isValid());
+                    record.close();
+                    Assert.assertEquals(1, record.diagnostics.getWarnings().size());
+                    expectedDiagnoses = new Object[][] {
+                            {DiagnosisType.ERROR, "http header", 1}
+                    };
+                    TestBaseUtils.compareDiagnoses(expectedDiagnoses, record.diagnostics.getWarnings());
+                    Assert.assertFalse(record.isCompliant());
+                    break;
+                case 6:
+                    // Accessing the complete stream must include the header.
+                    ByteArrayOutputStream completeOut = new ByteArrayOutputStream();
+                    InputStream completeIn = record.getPayload().getInputStreamComplete();
+                    Assert.assertNotNull(record.httpHeader);
+                    Assert.assertTrue(record.httpHeader.isValid());
+                    Assert.assertEquals(HttpHeader.HT_REQUEST, record.httpHeader.headerType);
+                    byte[] tmpBuf = new byte[16];
+                    int read;
+                    while ((read = completeIn.read(tmpBuf)) != -1) {
+                        completeOut.write(tmpBuf, 0, read);
+                    }
+                    Assert.assertArrayEquals(httpRequestHeaderBytes, completeOut.toByteArray());
+                    record.close();
+                    Assert.assertEquals(0, record.diagnostics.getWarnings().size());
+                    Assert.assertTrue(record.isCompliant());
+                    break;
+                }
+            }
+            reader.close();
+            Assert.assertEquals(6, recordNumber);
+
+            /*
+             * Payload digests force the http header to be parsed.
+             */
+            reader = WarcReaderFactory.getReader(new ByteArrayInputStream(out.toByteArray()));
+            reader.setBlockDigestEnabled(false);
+            reader.setPayloadDigestEnabled(true);
+            reader.setDeferHttpHeader(true);
+            recordNumber = 0;
+            while ((record = reader.getNextRecord()) != null) {
+                ++recordNumber;
+                if (recordNumber != 1 && recordNumber != 4) {
+                    Assert.assertNotNull(record.httpHeader);
+                }
+                record.close();
+            }
+            reader.close();
+            Assert.assertEquals(6, recordNumber);
         } catch (IOException e) {
             e.printStackTrace();
             Assert.fail("Unexepected exception!");
@@ -31,6 +31,8 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -296,4 +298,38 @@ public class TestWarcRecordIerator {
         Assert.assertEquals(0, i_warnings);
     }
 
+
+    @Test
+    public void test_warcreader_stream() throws IOException {
+        InputStream in = TestHelpers.getTestResourceAsStream(warcFile);
+        WarcReader reader = WarcReaderFactory.getReader(in, 8192);
+        final AtomicLong payloadBytes = new AtomicLong();
+        long records = reader.stream().filter(new Predicate<WarcRecord>() {
+            @Override
+            public boolean test(WarcRecord record) {
+                // The payload must be readable inside the stream stage.
+                if (record.hasPayload()) {
+                    try {
+                        InputStream pin = record.getPayloadContent();
+                        byte[] buffer = new byte[8192];
+                        int read;
+                        while ((read = pin.read(buffer)) != -1) {
+                            payloadBytes.addAndGet(read);
+                        }
+                    } catch (IOException e) {
+                        Assert.fail("Unexpected exception!");
+                    }
+                }
+                return record.isCompliant();
+            }
+        }).count();
+        Assert.assertEquals(expected_records, records);
+        Assert.assertEquals(expected_records, reader.getRecordCount());
+        Assert.assertTrue(payloadBytes.get() > 0);
+        Assert.assertTrue(reader.isCompliant());
+        Assert.assertFalse(reader.stream().iterator().hasNext());
+        reader.close();
+        in.close();
+    }
+
 }
@@ -349,7 +349,7 @@ public class TestWarcWriter_Headers {
                     // This test uses the local time and not UTC!
                     Assert.assertEquals(warcDateObj.getDateUTC().getTime(), header.warcDate.getDateUTC().getTime());
                     Assert.assertEquals(inetAddressStr, header.warcIpAddress);
-                    Assert.assertEquals(inetAddressObj, header.warcInetAddress);
+                    Assert.assertEquals(inetAddressObj, header.getWarcInetAddress());
                     //Assert.assertEquals(recordIdStr, header.warcRecordIdStr);
                     Assert.assertEquals(recordIdObj, header.warcRecordIdUri);
                     //Assert.assertEquals(refersToStr, header.warcRefersToStr);
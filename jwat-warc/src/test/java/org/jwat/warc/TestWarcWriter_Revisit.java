@@ -0,0 +1,205 @@
+/**
+ * Java Web Archive Toolkit - Software to read and validate ARC, WARC
+ * and GZip files. (http://jwat.org/)
+ * Copyright 2011-2012 Netarkivet.dk (http://netarkivet.dk/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jwat.warc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.jwat.common.Base32;
+import org.jwat.common.ContentType;
+import org.jwat.common.RandomAccessFileInputStream;
+import org.jwat.common.Uri;
+
+@RunWith(JUnit4.class)
+public class TestWarcWriter_Revisit {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    public static final byte[] HTTP_HEADER = "HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\n\r\n".getBytes();
+
+    public static WarcRecord newResponse(WarcWriter writer, int id, String url, String payload, boolean bDigestBytes) throws Exception {
+        byte[] payloadBytes = payload.getBytes();
+        MessageDigest md = MessageDigest.getInstance("SHA1");
+        byte[] digest = md.digest(payloadBytes);
+        WarcRecord record = WarcRecord.createRecord(writer);
+        WarcHeader header = record.header;
+        header.warcTypeIdx = WarcConstants.RT_IDX_RESPONSE;
+        header.warcRecordIdUri = new Uri("urn:uuid:" + id);
+        header.warcDate = WarcDate.getWarcDate("2019-01-0" + id + "T12:00:00Z");
+        header.warcTargetUriUri = new Uri(url);
+        header.contentType = ContentType.parseContentType("application/http; msgtype=response");
+        header.contentLength = (long)(HTTP_HEADER.length + payloadBytes.length);
+        if (bDigestBytes) {
+            header.warcPayloadDigest = WarcDigest.createWarcDigest("sha1", digest, "base32", Base32.encodeArray(digest));
+        } else {
+            header.addHeader(WarcConstants.FN_WARC_PAYLOAD_DIGEST, "sha1:" + Base32.encodeArray(digest));
+        }
+        return record;
+    }
+
+    public static List<WarcRecord> readRecords(InputStream in, List<byte[]> blocks) throws Exception {
+        List<WarcRecord> records = new ArrayList<WarcRecord>();
+        WarcReader reader = WarcReaderFactory.getReader(in);
+        WarcRecord record;
+        while ((record = reader.getNextRecord()) != null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            InputStream block = record.getPayload().getInputStreamComplete();
+            byte[] tmpBuf = new byte[1024];
+            int read;
+            while ((read = block.read(tmpBuf)) != -1) {
+                out.write(tmpBuf, 0, read);
+            }
+            blocks.add(out.toByteArray());
+            record.close();
+            Assert.assertFalse(record.diagnostics.hasErrors());
+            records.add(record);
+        }
+        reader.close();
+        return records;
+    }
+
+    @Test
+    public void test_warcwriter_revisit() throws Exception {
+        boolean[] compressed = {false, true};
+        for (int i=0; i<compressed.length; ++i) {
+            WarcDedupStore store = WarcDedupStore.create(tmpFolder.newFile(), 1024, 20);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            WarcWriter writer = WarcWriterFactory.getWriter(out, compressed[i]);
+            Assert.assertNull(writer.getDigestLookup());
+            // Without a lookup everything is written in full.
+            Assert.assertFalse(writer.writeResponse(newResponse(writer, 1, "http://example.org/", "Hello", true), HTTP_HEADER, new ByteArrayInputStream("Hello".getBytes())));
+            writer.setDigestLookup(store);
+            Assert.assertSame(store, writer.getDigestLookup());
+            // Captures are only registered when the file name and offset are known.
+            Assert.assertFalse(writer.writeResponse(newResponse(writer, 6, "http://example.org/", "Hello", true), HTTP_HEADER, new ByteArrayInputStream("Hello".getBytes())));
+            Assert.assertEquals(0, store.size());
+            Assert.assertFalse(writer.writeResponse(newResponse(writer, 2, "http://example.org/", "Hello", true), HTTP_HEADER, new ByteArrayInputStream("Hello".getBytes()), "test.warc", out.size()));
+            Assert.assertEquals(1, store.size());
+            // Same URL, same payload, digest only given as a string.
+            Assert.assertTrue(writer.writeResponse(newResponse(writer, 3, "http://example.org/", "Hello", false), HTTP_HEADER, new ByteArrayInputStream("Hello".getBytes())));
+            // Other URL, same payload.
+            Assert.assertTrue(writer.writeResponse(newResponse(writer, 4, "http://example.org/copy", "Hello", true), HTTP_HEADER, new ByteArrayInputStream("Hello".getBytes())));
+            // Other payload.
+            Assert.assertFalse(writer.writeResponse(newResponse(writer, 5, "http://example.org/", "World", true), HTTP_HEADER, new ByteArrayInputStream("World".getBytes()), "test.warc", out.size()));
+            Assert.assertEquals(2, store.size());
+            writer.close();
+            store.close();
+
+            List<byte[]> blocks = new ArrayList<byte[]>();
+            List<WarcRecord> records = readRecords(new ByteArrayInputStream(out.toByteArray()), blocks);
+            Assert.assertEquals(6, records.size());
+            int[] types = {WarcConstants.RT_IDX_RESPONSE, WarcConstants.RT_IDX_RESPONSE, WarcConstants.RT_IDX_RESPONSE, WarcConstants.RT_IDX_REVISIT, WarcConstants.RT_IDX_REVISIT, WarcConstants.RT_IDX_RESPONSE};
+            for (int j=0; j<types.length; ++j) {
+                Assert.assertEquals(types[j], records.get(j).header.warcTypeIdx.intValue());
+            }
+            for (int j=3; j<=4; ++j) {
+                WarcHeader header = records.get(j).header;
+                Assert.assertEquals(WarcConstants.WARC10_PROFILE_IDENTICAL_PAYLOAD_DIGEST, header.warcProfileStr);
+                Assert.assertEquals("<urn:uuid:2>", header.warcRefersToStr);
+                Assert.assertEquals("2019-01-02T12:00:00Z", header.warcRefersToDate.toString());
+                Assert.assertEquals(HTTP_HEADER.length, header.contentLength.longValue());
+                Assert.assertNull(header.warcBlockDigestStr);
+                Assert.assertNotNull(header.warcPayloadDigestStr);
+                Assert.assertArrayEquals(HTTP_HEADER, blocks.get(j));
+            }
+            Assert.assertEquals("http://example.org/", records.get(3).header.warcRefersToTargetUriStr);
+            Assert.assertNull(records.get(4).header.warcRefersToTargetUriStr);
+            Assert.assertEquals(HTTP_HEADER.length + 5, blocks.get(5).length);
+        }
+    }
+
+    @Test
+    public void test_warcwriter_revisit_failed_write() throws Exception {
+        WarcDedupStore store = WarcDedupStore.create(tmpFolder.newFile(), 1024, 20);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WarcWriter writer = WarcWriterFactory.getWriter(out, false);
+        writer.setDigestLookup(store);
+        InputStream payload = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException();
+            }
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                throw new IOException();
+            }
+        };
+        try {
+            writer.writeResponse(newResponse(writer, 1, "http://example.org/", "Hello", true), HTTP_HEADER, payload, "test.warc", 0);
+            Assert.fail("Exception expected!");
+        } catch (IOException e) {
+        }
+        // The capture of a failed write is never registered.
+        Assert.assertEquals(0, store.size());
+        store.close();
+    }
+
+    @Test
+    public void test_warcfilewriter_revisit() throws Exception {
+        File targetDir = tmpFolder.newFolder();
+        WarcDedupStore store = WarcDedupStore.create(tmpFolder.newFile(), 1024, 20);
+        WarcFileWriter warcFileWriter = WarcFileWriter.getWarcWriterInstance(new WarcFileNamingSingleFile("dedup.warc.gz"), new WarcFileWriterConfig(targetDir, true, 100000, false));
+        try {
+            warcFileWriter.writeResponse(null, HTTP_HEADER, new ByteArrayInputStream(new byte[0]));
+            Assert.fail("Exception expected!");
+        } catch (IllegalStateException e) {
+        }
+        warcFileWriter.open();
+        WarcWriter writer = warcFileWriter.getWriter();
+        writer.setDigestLookup(store);
+        // Leave the first record open, the file writer must close it before taking the offset.
+        writer.writeHeader(newResponse(writer, 1, "http://example.org/a", "A", true));
+        writer.writePayload(HTTP_HEADER);
+        writer.writePayload("A".getBytes());
+        Assert.assertFalse(warcFileWriter.writeResponse(newResponse(writer, 2, "http://example.org/", "Hello", true), HTTP_HEADER, new ByteArrayInputStream("Hello".getBytes())));
+        Assert.assertTrue(warcFileWriter.writeResponse(newResponse(writer, 3, "http://example.org/", "Hello", true), HTTP_HEADER, new ByteArrayInputStream("Hello".getBytes())));
+        warcFileWriter.close();
+
+        byte[] digest = MessageDigest.getInstance("SHA1").digest("Hello".getBytes());
+        WarcDedupEntry entry = store.lookup(digest);
+        Assert.assertEquals("dedup.warc.gz", entry.filename);
+        Assert.assertEquals("<urn:uuid:2>", entry.recordId);
+        store.close();
+
+        File file = new File(targetDir, "dedup.warc.gz");
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        raf.seek(entry.offset);
+        WarcReader reader = WarcReaderFactory.getReaderCompressed();
+        WarcRecord record = reader.getNextRecordFrom(new RandomAccessFileInputStream(raf), entry.offset);
+        Assert.assertEquals("<urn:uuid:2>", record.header.warcRecordIdStr);
+        Assert.assertEquals(WarcConstants.RT_IDX_RESPONSE, record.header.warcTypeIdx.intValue());
+        record.close();
+        reader.close();
+        raf.close();
+    }
+
+}